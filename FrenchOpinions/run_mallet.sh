@@ -1,11 +1,14 @@
 # run_mallet.sh
-# Use: sh run_mallet.sh language inputdir numtopics
-#      (language must be in lowercase two-letter form)
+# Use: sh run_mallet.sh language input numtopics [numtopwords]
+#      (language must be in lowercase two-letter form; input is either a
+#      directory with one file per document, or a single file with one
+#      document per line: "name label words...")
 
 # Parameters
 language="$1"
-inputdir="$2"
+input="$2"
 numtopics="$3"
+numtopwords="${4:-16}"
 
 malletfile="topics/.mallet"
 outputkeys="topics/keys.txt"
@@ -13,8 +16,12 @@ outputcompo="topics/compo.txt"
 inferencer="topics/inferencer.ser"
 
 
-# Importing the corpus directory
-./mallet/bin/mallet import-dir --input "$inputdir" --output "$malletfile" --keep-sequence --token-regex "[\p{L}\p{M}]+" --remove-stopwords --stoplist-file lib/mallet_stoplist_"$language".txt
+# Importing the corpus
+if [ -f "$input" ]; then
+    ./mallet/bin/mallet import-file --input "$input" --output "$malletfile" --keep-sequence --token-regex "[\p{L}\p{M}]+" --remove-stopwords --stoplist-file lib/mallet_stoplist_"$language".txt
+else
+    ./mallet/bin/mallet import-dir --input "$input" --output "$malletfile" --keep-sequence --token-regex "[\p{L}\p{M}]+" --remove-stopwords --stoplist-file lib/mallet_stoplist_"$language".txt
+fi
 
 # Training the topic model
-./mallet/bin/mallet train-topics --input "$malletfile" --num-topics "$numtopics" --output-topic-keys "$outputkeys" --output-doc-topics "$outputcompo" --num-top-words 16 --optimize-interval 20
\ No newline at end of file
+./mallet/bin/mallet train-topics --input "$malletfile" --num-topics "$numtopics" --output-topic-keys "$outputkeys" --output-doc-topics "$outputcompo" --num-top-words "$numtopwords" --optimize-interval 20
\ No newline at end of file
@@ -1,9 +1,17 @@
 package ch.epfl.lia.entity;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.sql.Timestamp;
 
 import ch.epfl.lia.parser.LanguageParser;
 import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.parser.SentenceScreener;
+import ch.epfl.lia.storage.ArticleCodec;
+import ch.epfl.lia.util.Articles;
 import ch.epfl.lia.util.Preconditions;
 import ch.epfl.lia.util.Serialization;
 
@@ -96,6 +104,37 @@ public class Article implements Entity {
         return parsed;
     }
     
+    /**
+     * Second pass of the two-pass mode: parses the current article from its
+     * tagged version, only extracting the dependencies of the sentences
+     * accepted by the screener.<br>
+     * Will NOT reparse the article if it has already been parsed.
+     * 
+     * @param parser
+     *            the parser to parse the article with. If {@code null}, will
+     *            automatically determine the appropriate parser for the
+     *            language of the article
+     * @param tagged
+     *            the tagged article, see {@link LanguageParser#tag(Article)}
+     * @param screener
+     *            the sentence screener, or {@code null} to parse all sentences
+     * @return the parsed article
+     * @throws ParseException
+     */
+    public ParsedArticle parse(LanguageParser parser, ParsedArticle tagged, SentenceScreener screener)
+            throws ParseException {
+        Preconditions.throwIfNull("tagged article may not be null", tagged);
+        if (tagged.id() != id) {
+            throw new IllegalArgumentException("tagged article id does not match");
+        }
+        
+        if (!isParsed()) {
+            parser = parser == null ? LanguageParser.getForLanguage(language) : parser;
+            parsed = parser.parse(tagged, screener);
+        }
+        return parsed;
+    }
+    
     /**
      * Shorthand for {@code parse(null)}.
      * 
@@ -109,29 +148,64 @@ public class Article implements Entity {
     }
     
     /**
-     * Saves the current state of the article to disk
+     * @param parsed
+     *            the parse to attach, or {@code null} to leave the article
+     *            unparsed
+     * @return a copy of the article, with the provided parse
+     */
+    Article withParse(ParsedArticle parsed) {
+        return new Article(id, language, location, imageLocation, title, contents, creationDate, parsed);
+    }
+    
+    /**
+     * Saves the current state of the article to disk, in the binary format of
+     * {@link ArticleCodec} (or with Java serialization, if the article carries
+     * parse trees)
      * 
      * @param fileName
      *            path to save to
      */
     public void saveToDisk(String fileName) {
-        Serialization.serialize(this, fileName);
+        if (!ArticleCodec.canEncode(this)) {
+            Serialization.serialize(this, fileName);
+            return;
+        }
+        
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName))) {
+            ArticleCodec.encode(this, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
+    /**
+     * Saves the article (see {@link Articles#saveToDisk(Article)})
+     * 
+     * @throws UncheckedIOException
+     *             if the article could not be saved
+     */
     @Override
     public int save() {
-        // TODO Auto-generated method stub
-        return 0;
+        try {
+            Articles.saveToDisk(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return id;
     }
 
     @Override
     public void delete() {
-        // TODO Auto-generated method stub
+        Articles.deleteFromDisk(id);
     }
 
+    /**
+     * Drops the parse of the article, which may be read back with
+     * {@link Articles#getFromDisk(int)} if it was saved
+     */
     @Override
     public void clear() {
-        // TODO Auto-generated method stub
+        parsed = null;
     }
 
     @Override
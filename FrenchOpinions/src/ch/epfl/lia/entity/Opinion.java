@@ -2,6 +2,7 @@ package ch.epfl.lia.entity;
 
 import ch.epfl.lia.nlp.Word;
 import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.storage.EntityStore;
 import ch.epfl.lia.util.Preconditions;
 
 /**
@@ -11,12 +12,19 @@ import ch.epfl.lia.util.Preconditions;
  * - a topic word ({@link #topicWord}), linked to a {@link #topic},<br>
  * - a polar word ({@link #polarWord}), along with its {@link #polarity}.
  * </p>
+ * <p>
+ * It may be attached to the article and sentence it was extracted from (see
+ * {@link #inArticle(int, int)}).
+ * </p>
  * 
  * @author Cyriaque Brousse
  */
 public class Opinion implements Entity {
 
     private static final long serialVersionUID = 1L;
+    
+    /** Article id (and sentence index) of the opinions that are not attached to an article */
+    public static final int NO_ARTICLE = -1;
 
     /** The topic this opinion is related to */
     private final Topic topic;
@@ -30,7 +38,18 @@ public class Opinion implements Entity {
     /** The polarity of the opinion, i.e. the polarity of the polar word of the opinion */
     private final Polarity polarity;
 
+    /** The id of the article this opinion was extracted from, or {@link #NO_ARTICLE} */
+    private final int articleId;
+    
+    /** The index of the sentence this opinion was extracted from in its article, or {@link #NO_ARTICLE} */
+    private final int sentenceIndex;
+    
     public Opinion(Topic topic, Word topicWord, Word polarityWord, Polarity polarity) {
+        this(topic, topicWord, polarityWord, polarity, NO_ARTICLE, NO_ARTICLE);
+    }
+    
+    private Opinion(Topic topic, Word topicWord, Word polarityWord, Polarity polarity, int articleId,
+            int sentenceIndex) {
         Preconditions.throwIfNull("polarity and topic words may not be null", polarityWord, topicWord);
         Preconditions.throwIfNull("topic may not be null", topic);
         Preconditions.throwIfNull("polarity may not be null", polarity);
@@ -39,6 +58,8 @@ public class Opinion implements Entity {
         this.topicWord = topicWord;
         this.polarWord = polarityWord;
         this.polarity = polarity;
+        this.articleId = articleId;
+        this.sentenceIndex = sentenceIndex;
     }
     
     public Word topicWord() {
@@ -57,20 +78,54 @@ public class Opinion implements Entity {
         return polarity;
     }
 
+    /**
+     * @return the id of the article this opinion was extracted from, or
+     *         {@link #NO_ARTICLE}
+     */
+    public int articleId() {
+        return articleId;
+    }
+    
+    /**
+     * @return the index of the sentence this opinion was extracted from in
+     *         its article, or {@link #NO_ARTICLE}
+     */
+    public int sentenceIndex() {
+        return sentenceIndex;
+    }
+    
+    /**
+     * @param articleId
+     *            the id of the article this opinion was extracted from
+     * @param sentenceIndex
+     *            the index of the sentence it was extracted from in the
+     *            article
+     * @return the same opinion, attached to the article
+     */
+    public Opinion inArticle(int articleId, int sentenceIndex) {
+        if (articleId < 0 || sentenceIndex < 0) {
+            throw new IllegalArgumentException("article id and sentence index must be positive");
+        }
+        
+        return new Opinion(topic, topicWord, polarWord, polarity, articleId, sentenceIndex);
+    }
+    
+    /**
+     * Saves the opinion to the {@link EntityStore}, attached to its article
+     */
     @Override
     public int save() {
-        // TODO Auto-generated method stub
-        return 0;
+        return EntityStore.getInstance().save(this);
     }
 
     @Override
     public void delete() {
-        // TODO Auto-generated method stub
+        EntityStore.getInstance().delete(this);
     }
 
     @Override
     public void clear() {
-        // TODO Auto-generated method stub
+        /* Nothing to free: the fields are immutable */
     }
     
     @Override
@@ -83,7 +138,9 @@ public class Opinion implements Entity {
      * <em>Note:</em><br>
      * The equality check will ignore the {@link #topic} contained in this
      * opinion, since the same opinion can be extracted with two distinct
-     * topics.
+     * topics. It does account for the {@link #articleId} and
+     * {@link #sentenceIndex}: the same couple of words found at the same
+     * positions in two sentences makes two opinions.
      */
     @Override
     public int hashCode() {
@@ -95,6 +152,8 @@ public class Opinion implements Entity {
                 + ((polarity == null) ? 0 : polarity.hashCode());
         result = prime * result
                 + ((topicWord == null) ? 0 : topicWord.hashCode());
+        result = prime * result + articleId;
+        result = prime * result + sentenceIndex;
         return result;
     }
 
@@ -102,7 +161,9 @@ public class Opinion implements Entity {
      * <em>Note:</em><br>
      * The equality check will ignore the {@link #topic} contained in this
      * opinion, since the same opinion can be extracted with two distinct
-     * topics.
+     * topics. It does account for the {@link #articleId} and
+     * {@link #sentenceIndex}: the same couple of words found at the same
+     * positions in two sentences makes two opinions.
      */
     @Override
     public boolean equals(Object obj) {
@@ -133,6 +194,12 @@ public class Opinion implements Entity {
         } else if (!topicWord.equals(other.topicWord)) {
             return false;
         }
+        if (articleId != other.articleId) {
+            return false;
+        }
+        if (sentenceIndex != other.sentenceIndex) {
+            return false;
+        }
         return true;
     }
 }
@@ -1,22 +1,42 @@
 package ch.epfl.lia.entity;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import ch.epfl.lia.nlp.Vocabulary;
+import ch.epfl.lia.util.Articles;
 import ch.epfl.lia.util.Preconditions;
 
 /**
+ * An article split into parsed (or merely tagged) sentences, along with its
+ * nouns. The nouns are held as their ids in the {@link Vocabulary}; the
+ * serialized form still holds them as strings.
+ * <p>
+ * The accessors return unmodifiable views, which are not copied.
+ * </p>
+ * 
  * @author Cyriaque Brousse
  */
 public class ParsedArticle implements Entity {
 
     private static final long serialVersionUID = 1L;
     
-    private final int id;
-    private final List<ParsedSentence> parsedSentences;
-    private final List<String> nouns;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("parsedSentences", List.class),
+        new ObjectStreamField("nouns", List.class)
+    };
+    
+    private int id;
+    private List<ParsedSentence> parsedSentences;
+    private int[] nounIds;
     
     public ParsedArticle(int id, List<ParsedSentence> parsedSentences, List<String> nouns) {
         Preconditions.throwIfNullOrEmpty("Cannot construct a parsed article with no sentences", parsedSentences);
@@ -26,8 +46,8 @@ public class ParsedArticle implements Entity {
         }
         
         this.id = id;
-        this.parsedSentences = new ArrayList<>(parsedSentences);
-        this.nouns = new ArrayList<>(nouns);
+        this.parsedSentences = Collections.unmodifiableList(new ArrayList<>(parsedSentences));
+        this.nounIds = idsOf(nouns);
     }
     
     public int id() {
@@ -35,43 +55,69 @@ public class ParsedArticle implements Entity {
     }
     
     public List<ParsedSentence> parsedSentences() {
-        return new ArrayList<>(parsedSentences);
+        return parsedSentences;
     }
     
     public List<String> nouns() {
-        return new ArrayList<>(nouns);
+        return Vocabulary.getInstance().tokens(nounIds);
     }
     
     /**
-     * Writes all the nouns from the article (one per line), to the specified
-     * file
-     * 
-     * @param fileName
-     *            file to write to
-     * @throws IOException
+     * @return the ids of the nouns in the {@link Vocabulary}, in order
      */
-    public void writeNouns(String fileName) throws IOException {
-        PrintWriter writer = new PrintWriter(fileName);
-        for (String noun : nouns) {
-            writer.write(noun + "\n");
-        }
-        writer.close();
+    public int[] nounIds() {
+        return nounIds.clone();
     }
     
+    /**
+     * Saves the parsed article along with its article (see
+     * {@link Articles#saveToDisk(Article)}), which must have been saved before
+     * 
+     * @throws IllegalStateException
+     *             if the article is not on the disk
+     * @throws UncheckedIOException
+     *             if the parse could not be saved
+     */
     @Override
     public int save() {
-        // TODO Auto-generated method stub
-        return 0;
-    }
+        final Article article = Articles.getFromDisk(id);
+        if (article == null) {
+            throw new IllegalStateException("article " + id + " must be saved before its parse");
+        }
 
+        try {
+            Articles.saveToDisk(article.withParse(this));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return id;
+    }
+    
+    /**
+     * Removes the parse from the saved article, which is kept
+     * 
+     * @throws UncheckedIOException
+     *             if the article could not be saved again
+     */
     @Override
     public void delete() {
-        // TODO Auto-generated method stub
+        final Article article = Articles.getFromDisk(id);
+        if (article != null && article.isParsed()) {
+            try {
+                Articles.saveToDisk(article.withParse(null));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
+    /**
+     * Drops the word and dependency objects of the sentences (see
+     * {@link ParsedSentence#clearViews()})
+     */
     @Override
     public void clear() {
-        // TODO Auto-generated method stub
+        parsedSentences.forEach(ParsedSentence::clearViews);
     }
 
     @Override
@@ -100,6 +146,35 @@ public class ParsedArticle implements Entity {
         return true;
     }
     
+    private static int[] idsOf(List<String> nouns) {
+        final Vocabulary vocabulary = Vocabulary.getInstance();
+        final int[] ids = new int[nouns.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = vocabulary.id(nouns.get(i));
+        }
+        return ids;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("parsedSentences", new ArrayList<>(parsedSentences));
+        fields.put("nouns", new ArrayList<>(nouns()));
+        out.writeFields();
+    }
     
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final List<String> nouns = (List<String>) fields.get("nouns", null);
+        final List<ParsedSentence> sentences = (List<ParsedSentence>) fields.get("parsedSentences", null);
+        if (nouns == null || sentences == null) {
+            throw new InvalidObjectException("parsed sentences and nouns may not be null");
+        }
+        
+        id = fields.get("id", 0);
+        parsedSentences = Collections.unmodifiableList(new ArrayList<>(sentences));
+        nounIds = idsOf(nouns);
+    }
 
 }
@@ -1,29 +1,77 @@
 package ch.epfl.lia.entity;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.SymbolTable;
+import ch.epfl.lia.nlp.Vocabulary;
 import ch.epfl.lia.nlp.Word;
 import ch.epfl.lia.util.Preconditions;
 import edu.stanford.nlp.trees.Tree;
 
 /** Represents a parsed sentence, which is a list of words and a list of dependencies. This implementation
  * may also contain a parse tree, if it is provided.
+ * <p>
+ * The sentence is stored by columns: the vocabulary ids of the values, the
+ * positions and POS tag codes of the words on the one hand, and the relation
+ * codes, governor and dependent indices of the dependencies on the other hand.
+ * Words found in the dependencies only are stored after the words of the
+ * sentence. The indexed accessors read the columns directly, without any
+ * allocation: they are to be preferred in loops.
+ * </p>
+ * <p>
+ * The {@link Word} and {@link Dependency} objects are created on the first
+ * call to {@link #words()}, {@link #dependencies()} or {@link #wordAt(int)},
+ * and kept until {@link #clearViews()}: the same objects are returned on every
+ * call, and a word of the sentence is the very object found in the
+ * dependencies. Holders of many sentences drop them once done with the
+ * objects (see {@link ParsedArticle#clear()}), or the columns save nothing.
+ * </p>
+ * <p>
+ * The serialized form is still made of the lists of words and dependencies,
+ * since the ids and codes are only valid within the running process (see
+ * {@link Vocabulary} and {@link SymbolTable}).
+ * </p>
  * @author Cyriaque Brousse
  */
 public class ParsedSentence implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    /** List of words contained in the sentence. See what a {@link Word} is. */
-    private final List<Word> words;
-    /** List of dependencies contained in the sentence */
-    private final List<Dependency> dependencies;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("words", List.class),
+        new ObjectStreamField("dependencies", List.class),
+        new ObjectStreamField("parseTree", Tree.class)
+    };
+    
+    /* Word columns, the words of the sentence first. Only set by the constructors and readObject. */
+    private int size;
+    private int[] values;
+    private int[] positions;
+    private short[] posTags;
+    
+    /* Dependency columns (indices into the word columns) */
+    private short[] relations;
+    private int[] governors;
+    private int[] dependents;
+    
     /** Parse tree for this sentence. This element is nullable. */
-    private final Tree parseTree;
+    private Tree parseTree;
+    
+    /* Objects built from the columns on demand, guarded by this for writing */
+    private transient volatile Word[] wordViews = null;
+    private transient volatile List<Dependency> dependencyViews = null;
     
     public ParsedSentence(List<Word> words, List<Dependency> dependencies, Tree parseTree) {
         Preconditions.throwIfNull("Cannot construct a parsed sentence with null argument",
@@ -31,8 +79,7 @@ public class ParsedSentence implements Serializable {
         Preconditions.throwIfNull("Please provide a parse tree for this parse sentence,"
                         + " or use the appropriate constructor", parseTree);
         
-        this.words = new ArrayList<>(words);
-        this.dependencies = new ArrayList<>(dependencies);
+        fill(words, dependencies);
         this.parseTree = parseTree;
     }
     
@@ -40,17 +87,123 @@ public class ParsedSentence implements Serializable {
         Preconditions.throwIfNull("Cannot construct a parsed sentence with null argument",
                 words, dependencies);
         
-        this.words = new ArrayList<>(words);
-        this.dependencies = new ArrayList<>(dependencies);
+        fill(words, dependencies);
         this.parseTree = null;
     }
     
+    /**
+     * @return the words of the sentence, as an unmodifiable list
+     */
     public List<Word> words() {
-        return new ArrayList<>(words);
+        return Collections.unmodifiableList(Arrays.asList(wordViews()).subList(0, size));
     }
 
+    /**
+     * @return the dependencies of the sentence, as an unmodifiable list. A
+     *         word shared by several dependencies is a single object.
+     */
     public List<Dependency> dependencies() {
-        return new ArrayList<>(dependencies);
+        List<Dependency> dependencies = dependencyViews;
+        if (dependencies == null) {
+            synchronized (this) {
+                dependencies = dependencyViews;
+                if (dependencies == null) {
+                    final Word[] words = wordViews();
+                    final List<Dependency> list = new ArrayList<>(relations.length);
+                    for (int d = 0; d < relations.length; d++) {
+                        list.add(new Dependency(relation(d), words[governors[d]], words[dependents[d]]));
+                    }
+                    dependencies = Collections.unmodifiableList(list);
+                    dependencyViews = dependencies;
+                }
+            }
+        }
+        return dependencies;
+    }
+    
+    /**
+     * @return the number of words of the sentence
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param index
+     *            the index of a word, below {@link #size()} for the words of
+     *            the sentence (above for those found in the dependencies only)
+     * @return the word
+     */
+    public Word wordAt(int index) {
+        return wordViews()[index];
+    }
+    
+    /**
+     * Drops the {@link Word} and {@link Dependency} objects, which are created
+     * again when needed, so that only the columns take heap
+     */
+    public synchronized void clearViews() {
+        wordViews = null;
+        dependencyViews = null;
+    }
+    
+    /**
+     * @return the value of the word at the provided index
+     */
+    public String value(int index) {
+        return Vocabulary.getInstance().token(values[index]);
+    }
+    
+    /**
+     * @return the id of the value of the word at the provided index in the
+     *         {@link Vocabulary}
+     */
+    public int valueId(int index) {
+        return values[index];
+    }
+    
+    /**
+     * @return the POS tag of the word at the provided index
+     */
+    public String posTag(int index) {
+        return SymbolTable.POS_TAGS.symbol(posTags[index]);
+    }
+    
+    /**
+     * @return the position (that is, the id) of the word at the provided index
+     */
+    public int position(int index) {
+        return positions[index];
+    }
+    
+    /**
+     * @return the number of dependencies of the sentence
+     */
+    public int dependencyCount() {
+        return relations.length;
+    }
+    
+    /**
+     * @return the relation of the dependency at the provided index
+     */
+    public String relation(int dependency) {
+        return SymbolTable.RELATIONS.symbol(relations[dependency]);
+    }
+    
+    /**
+     * @return the index of the governor of the dependency at the provided
+     *         index, for use with the word accessors
+     */
+    public int governor(int dependency) {
+        return governors[dependency];
+    }
+    
+    /**
+     * @return the index of the dependent of the dependency at the provided
+     *         index, for use with the word accessors
+     */
+    public int dependent(int dependency) {
+        return dependents[dependency];
     }
     
     /**
@@ -63,4 +216,81 @@ public class ParsedSentence implements Serializable {
             return Optional.of(parseTree);
         }
     }
+    
+    /**
+     * Fills the columns, with the words found in the dependencies only after
+     * those of the sentence
+     */
+    private void fill(List<Word> words, List<Dependency> dependencies) {
+        final List<Word> all = new ArrayList<>(words);
+        final Map<Word, Integer> indices = new HashMap<>();
+        for (int i = words.size() - 1; i >= 0; i--) {
+            indices.put(words.get(i), i);
+        }
+
+        relations = new short[dependencies.size()];
+        governors = new int[dependencies.size()];
+        dependents = new int[dependencies.size()];
+        for (int d = 0; d < dependencies.size(); d++) {
+            final Dependency dependency = dependencies.get(d);
+            relations[d] = dependency.relnCode();
+            governors[d] = indices.computeIfAbsent(dependency.gov(), w -> add(all, w));
+            dependents[d] = indices.computeIfAbsent(dependency.dep(), w -> add(all, w));
+        }
+        
+        size = words.size();
+        values = new int[all.size()];
+        positions = new int[all.size()];
+        posTags = new short[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            final Word word = all.get(i);
+            values[i] = word.valueId();
+            positions[i] = word.id();
+            posTags[i] = word.posCode();
+        }
+    }
+    
+    /**
+     * @return the words of the sentence, then those found in the dependencies
+     *         only, created on first call
+     */
+    private Word[] wordViews() {
+        Word[] words = wordViews;
+        if (words == null) {
+            synchronized (this) {
+                words = wordViews;
+                if (words == null) {
+                    words = new Word[values.length];
+                    for (int i = 0; i < words.length; i++) {
+                        words[i] = new Word(value(i), positions[i], posTag(i));
+                    }
+                    wordViews = words;
+                }
+            }
+        }
+        return words;
+    }
+    
+    private static int add(List<Word> words, Word word) {
+        words.add(word);
+        return words.size() - 1;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("words", words());
+        fields.put("dependencies", dependencies());
+        fields.put("parseTree", parseTree);
+        out.writeFields();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final List<Word> words = (List<Word>) fields.get("words", Collections.emptyList());
+        final List<Dependency> dependencies = (List<Dependency>) fields.get("dependencies",
+                Collections.emptyList());
+        fill(words, dependencies);
+        parseTree = (Tree) fields.get("parseTree", null);
+    }
 }
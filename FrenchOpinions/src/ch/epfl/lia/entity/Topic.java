@@ -1,20 +1,45 @@
 package ch.epfl.lia.entity;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+import ch.epfl.lia.nlp.Vocabulary;
+import ch.epfl.lia.opinion.dictionary.Stemmer;
+import ch.epfl.lia.storage.EntityStore;
 import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Tuple;
 
 /**
+ * A topic, as extracted by the topic model. The keys are held as their ids in
+ * the {@link Vocabulary}; the serialized form still holds them as strings.
+ * 
  * @author Cyriaque Brousse
  */
 public class Topic implements Entity {
 
     private static final long serialVersionUID = 1L;
     
-    private final int lineId;
-    private final List<String> keys;
-    private final double proportion;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("lineId", int.class),
+        new ObjectStreamField("keys", List.class),
+        new ObjectStreamField("proportion", double.class)
+    };
+    
+    private int lineId;
+    private int[] keyIds;
+    private double proportion;
+    
+    /* Normalized keys, along with the stemmer they were computed with */
+    private transient volatile Tuple<Stemmer, Set<String>> normalizedKeys = null;
     
     public Topic(int lineId, double proportion, List<String> keys) {
         Preconditions.throwIfNullOrEmpty("key list may not be null or empty", keys);
@@ -23,7 +48,7 @@ public class Topic implements Entity {
         }
         
         this.lineId = lineId;
-        this.keys = new LinkedList<>(keys);
+        this.keyIds = idsOf(keys);
         this.proportion = proportion;
     }
     
@@ -31,40 +56,76 @@ public class Topic implements Entity {
         return lineId;
     }
     
+    /**
+     * @return an unmodifiable view of the keys, which is not copied
+     */
     public List<String> keys() {
-        return new LinkedList<>(keys);
+        return Vocabulary.getInstance().tokens(keyIds);
+    }
+    
+    /**
+     * @return the ids of the keys in the {@link Vocabulary}, in order
+     */
+    public int[] keyIds() {
+        return keyIds.clone();
     }
     
     public double proportion() {
         return proportion;
     }
 
+    /**
+     * @param stemmer
+     *            the stemmer to normalize the keys with
+     * @return the normalized (see {@link Stemmer#normalize(String)}) and
+     *         interned keys of the topic, for matching by a mere set probe.
+     *         They are computed once per stemmer, and must not be modified.
+     */
+    public Set<String> normalizedKeys(Stemmer stemmer) {
+        Preconditions.throwIfNull("stemmer may not be null", stemmer);
+        
+        Tuple<Stemmer, Set<String>> normalized = normalizedKeys;
+        if (normalized == null || normalized._1() != stemmer) {
+            Set<String> set = new HashSet<>();
+            keys().forEach(k -> set.add(stemmer.normalize(k).intern()));
+            normalized = new Tuple<>(stemmer, Collections.unmodifiableSet(set));
+            normalizedKeys = normalized;
+        }
+        
+        return normalized._2();
+    }
+    
+    /**
+     * Saves the topic to the {@link EntityStore}
+     */
     @Override
     public int save() {
-        // TODO Auto-generated method stub
-        return 0;
+        return EntityStore.getInstance().save(this);
     }
 
     @Override
     public void delete() {
-        // TODO Auto-generated method stub
+        EntityStore.getInstance().delete(this);
     }
 
+    /**
+     * Drops the normalized keys, which are computed again when needed
+     */
     @Override
     public void clear() {
-        // TODO Auto-generated method stub
+        normalizedKeys = null;
     }
     
     @Override
     public String toString() {
-        return "{" + lineId + '/' + proportion + "}" + keys.toString();
+        return "{" + lineId + '/' + proportion + "}" + keys().toString();
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((keys == null) ? 0 : keys.hashCode());
+        result = prime * result + Arrays.hashCode(keyIds);
         result = prime * result + lineId;
         return result;
     }
@@ -81,11 +142,7 @@ public class Topic implements Entity {
             return false;
         }
         Topic other = (Topic) obj;
-        if (keys == null) {
-            if (other.keys != null) {
-                return false;
-            }
-        } else if (!keys.equals(other.keys)) {
+        if (!Arrays.equals(keyIds, other.keyIds)) {
             return false;
         }
         if (lineId != other.lineId) {
@@ -94,5 +151,35 @@ public class Topic implements Entity {
         return true;
     }
 
+    private static int[] idsOf(List<String> keys) {
+        final Vocabulary vocabulary = Vocabulary.getInstance();
+        final int[] ids = new int[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            ids[i++] = vocabulary.id(key);
+        }
+        return ids;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("lineId", lineId);
+        fields.put("keys", new LinkedList<>(keys()));
+        fields.put("proportion", proportion);
+        out.writeFields();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final List<String> keys = (List<String>) fields.get("keys", null);
+        if (keys == null) {
+            throw new InvalidObjectException("key list may not be null");
+        }
+        
+        lineId = fields.get("lineId", 0);
+        keyIds = idsOf(keys);
+        proportion = fields.get("proportion", 0.0);
+    }
     
 }
@@ -0,0 +1,89 @@
+package ch.epfl.lia.main;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.topic.TopicExtractionException;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Benchmark of the allocation rate of opinion extraction.
+ * <p>
+ * Use: {@code AllocationBenchmark rounds id...}<br>
+ * The articles are loaded (parsed if not already done) and their topics are
+ * extracted, then opinions are extracted in each mode, for the given number
+ * of rounds, after as many rounds of warm-up. The bytes allocated by the
+ * extracting thread, as counted by the JVM, are printed per article along
+ * with the time per article.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class AllocationBenchmark {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private AllocationBenchmark() { }
+    
+    public static void main(String[] args) throws IOException, ParseException, TopicExtractionException,
+            OpinionExtractionException {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Allocation counting is not supported by this JVM");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        
+        final int rounds = Integer.parseInt(args[0]);
+        final List<ParsedArticle> parsedArticles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            final Article article = Articles.getFromDisk(Integer.parseInt(args[i]));
+            parsedArticles.add(article != null ? article.parse()
+                    : Articles.constructArticleFromRaw(Integer.parseInt(args[i]), LANGUAGE).parse());
+        }
+        final Collection<Topic> topics = TopicManager.extractTopics(parsedArticles, LANGUAGE);
+        
+        final long thread = Thread.currentThread().getId();
+        for (ExtractionMode mode : ExtractionMode.values()) {
+            final OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE, mode);
+            
+            /* Warm-up */
+            int opinions = extract(extractor, parsedArticles, topics, rounds);
+            
+            final long bytes = threads.getThreadAllocatedBytes(thread);
+            final long start = System.nanoTime();
+            opinions += extract(extractor, parsedArticles, topics, rounds);
+            final long nanos = System.nanoTime() - start;
+            final long allocated = threads.getThreadAllocatedBytes(thread) - bytes;
+            
+            final long count = (long) rounds * parsedArticles.size();
+            System.out.println(String.format("%s: %,d bytes/article, %.2f ms/article (%d opinions)", mode,
+                    allocated / count, nanos / 1e6 / count, opinions));
+        }
+    }
+    
+    private static int extract(OpinionExtractor extractor, List<ParsedArticle> parsedArticles,
+            Collection<Topic> topics, int rounds) throws OpinionExtractionException {
+        int opinions = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (ParsedArticle parsed : parsedArticles) {
+                opinions += extractor.extractOpinions(parsed, topics).size();
+            }
+        }
+        return opinions;
+    }
+    
+}
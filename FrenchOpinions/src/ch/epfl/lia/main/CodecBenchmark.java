@@ -0,0 +1,117 @@
+package ch.epfl.lia.main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.storage.ArticleCodec;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Benchmark of the binary article format against Java serialization.
+ * <p>
+ * Use: {@code CodecBenchmark id...}<br>
+ * The articles are read from the parse cache (see
+ * {@link Articles#getFromDisk(int)}), then repeatedly saved and loaded in
+ * memory in both formats. The sizes and the save/load throughputs are
+ * printed.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class CodecBenchmark {
+
+    private static final int ROUNDS = 20;
+    
+    private CodecBenchmark() { }
+    
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        final List<Article> articles = new ArrayList<>();
+        for (String arg : args) {
+            final Article article = Articles.getFromDisk(Integer.parseInt(arg));
+            if (article == null) {
+                System.err.println("No cached article " + arg + ", skipping");
+            } else {
+                articles.add(article);
+            }
+        }
+        if (articles.isEmpty()) {
+            return;
+        }
+        
+        /* Warm-up, and sizes */
+        long serializedSize = 0;
+        long encodedSize = 0;
+        for (Article article : articles) {
+            final byte[] serialized = serialize(article);
+            new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+            serializedSize += serialized.length;
+            
+            final byte[] encoded = ArticleCodec.encode(article);
+            ArticleCodec.decode(encoded);
+            encodedSize += encoded.length;
+        }
+        
+        long start = System.nanoTime();
+        final List<byte[]> serialized = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            serialized.clear();
+            for (Article article : articles) {
+                serialized.add(serialize(article));
+            }
+        }
+        final long serializeNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] bytes : serialized) {
+                new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            }
+        }
+        final long deserializeNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        final List<byte[]> encoded = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            encoded.clear();
+            for (Article article : articles) {
+                encoded.add(ArticleCodec.encode(article));
+            }
+        }
+        final long encodeNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] bytes : encoded) {
+                ArticleCodec.decode(bytes);
+            }
+        }
+        final long decodeNanos = System.nanoTime() - start;
+        
+        final int count = articles.size() * ROUNDS;
+        System.out.println(String.format("%d articles, %d rounds", articles.size(), ROUNDS));
+        System.out.println(String.format("Java serialization: %d bytes, save %.0f art/s, load %.0f art/s",
+                serializedSize, perSecond(count, serializeNanos), perSecond(count, deserializeNanos)));
+        System.out.println(String.format("Binary codec:       %d bytes, save %.0f art/s, load %.0f art/s",
+                encodedSize, perSecond(count, encodeNanos), perSecond(count, decodeNanos)));
+        System.out.println(String.format("Size ratio: %.2f", (double) encodedSize / serializedSize));
+    }
+    
+    private static byte[] serialize(Article article) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(article);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static double perSecond(int count, long nanos) {
+        return count * 1e9 / Math.max(1, nanos);
+    }
+    
+}
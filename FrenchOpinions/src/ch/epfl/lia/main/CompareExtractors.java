@@ -0,0 +1,82 @@
+package ch.epfl.lia.main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.ExtractorComparison;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.parser.FrenchParser;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.topic.TopicExtractionException;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Comparison harness between the window-based (fast) and the dependency-based
+ * (full) opinion extraction.
+ * <p>
+ * Use: {@code CompareExtractors id...}<br>
+ * Raw articles are always re-processed, so that the timings include tagging
+ * for both paths, and dependency parsing for the full path.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class CompareExtractors {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private CompareExtractors() { }
+    
+    public static void main(String[] args) throws IOException, ParseException,
+            TopicExtractionException, OpinionExtractionException {
+        final LanguageParser parser = new FrenchParser();
+        final List<ParsedArticle> taggedArticles = new ArrayList<>();
+        final List<Long> taggingNanos = new ArrayList<>();
+        
+        /* Tagging is common to both paths */
+        for (String arg : args) {
+            final Article article = Articles.constructArticleFromRaw(Integer.parseInt(arg), LANGUAGE);
+            
+            final long start = System.nanoTime();
+            taggedArticles.add(parser.tag(article));
+            taggingNanos.add(System.nanoTime() - start);
+        }
+        
+        final Collection<Topic> topics = TopicManager.extractTopics(taggedArticles, LANGUAGE);
+        
+        final OpinionExtractor full = OpinionExtractor.getForLanguage(LANGUAGE, ExtractionMode.DEPENDENCY);
+        final OpinionExtractor fast = OpinionExtractor.getForLanguage(LANGUAGE, ExtractionMode.WINDOW);
+        final ExtractorComparison comparison = new ExtractorComparison();
+        
+        for (int i = 0; i < taggedArticles.size(); i++) {
+            final ParsedArticle tagged = taggedArticles.get(i);
+            System.err.println("Comparing on " + tagged.id());
+            
+            long start = System.nanoTime();
+            final Set<Opinion> fastOpinions = fast.extractOpinions(tagged, topics);
+            final long fastNanos = taggingNanos.get(i) + System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            final ParsedArticle parsed = parser.parse(tagged, null);
+            final Set<Opinion> fullOpinions = full.extractOpinions(parsed, topics);
+            final long fullNanos = taggingNanos.get(i) + System.nanoTime() - start;
+            
+            comparison.addArticle(fullOpinions, fullNanos, fastOpinions, fastNanos);
+        }
+        
+        System.out.println(comparison);
+    }
+    
+}
@@ -10,6 +10,87 @@ public final class Config {
     
     /** Location of mallet-extracted topic keys (all languages) */
     public static final String MALLET_TOPIC_KEYS_LOCATION = "topics/keys.txt";
+    
+    /** Location of the Java-serialized parsed articles, one file per article (superseded by the store) */
+    public static final String SERIALIZED_ARTICLES_LOCATION = "parsed/ser/";
+    
+    /** Location of the store of parsed articles (see {@link ch.epfl.lia.storage.ParsedArticleStore}) */
+    public static final String ARTICLE_STORE_LOCATION = "parsed/store/";
+    
+    /** Size (in bytes) from which a new segment of the store of parsed articles is started */
+    public static final long ARTICLE_STORE_SEGMENT_SIZE = 64L << 20;
+    
+    /** Share of superseded records above which the store of parsed articles is compacted when opened */
+    public static final double ARTICLE_STORE_COMPACTION_RATIO = 0.5;
+    
+    /** Number of parsed articles waiting to be saved from which submitting more blocks */
+    public static final int ARTICLE_WRITER_QUEUE_CAPACITY = 32;
+    
+    /** Maximal number of parsed articles saved (and forced to the disk) at once by the article writer */
+    public static final int ARTICLE_WRITER_BATCH_SIZE = 8;
+    
+    /** Number of threads loading the articles saved on the disk (see {@link ch.epfl.lia.util.ArticleLoader}) */
+    public static final int ARTICLE_LOADER_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /** Maximal number of articles loaded ahead of their use */
+    public static final int ARTICLE_LOADER_PREFETCH = 4 * ARTICLE_LOADER_THREADS;
+    
+    /** Location of the manifest of the built artefacts (see {@link ch.epfl.lia.storage.BuildManifest}) */
+    public static final String BUILD_MANIFEST_LOCATION = "parsed/manifest.tsv";
+    
+    /** Version of the opinion extraction rules, to increment whenever they change */
+    public static final int OPINION_RULES_VERSION = 1;
+    
+    /** Location of the opinion logs of the backfills, one directory per version tag (see {@link OpinionBackfill}) */
+    public static final String OPINION_BACKFILL_LOCATION = "parsed/backfill/";
+    
+    /** Number of articles between two checkpoints of a backfill */
+    public static final int OPINION_BACKFILL_CHUNK_SIZE = 256;
+    
+    /** Number of threads extracting opinions in a backfill */
+    public static final int OPINION_BACKFILL_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /** Location of the index from the words to the sentences of the stored parses (see {@link RecomputeOpinions}) */
+    public static final String WORD_INDEX_LOCATION = "parsed/words.idx";
+    
+    /** Initial size (in bytes) of the buffer the corpus files are read through */
+    public static final int CORPUS_READ_BUFFER_SIZE = 1 << 20;
+    
+    /** Size (in bytes) from which a record of a corpus file is skipped */
+    public static final int CORPUS_MAX_RECORD_SIZE = 64 << 20;
+    
+    /** Location of the checkpoints of the corpus ingestions, one per corpus file (see {@link IngestCorpus}) */
+    public static final String CORPUS_CHECKPOINT_LOCATION = "parsed/ingest/";
+    
+    /** Number of articles between two checkpoints of a corpus ingestion */
+    public static final int CORPUS_CHECKPOINT_INTERVAL = 256;
+    
+    /** Time (in milliseconds) a watched raw article must stay unchanged before it is processed */
+    public static final long WATCH_QUIET_MILLIS = 1000;
+    
+    /** Interval (in milliseconds) between two listings of the raw articles, when they cannot be watched */
+    public static final long WATCH_POLL_MILLIS = 2000;
+    
+    /** Number of detected articles waiting or being processed from which detecting more waits */
+    public static final int WATCH_MAX_IN_FLIGHT = 16;
+    
+    /** Time (in milliseconds) given to the article being processed to complete, on shutdown */
+    public static final long WATCH_SHUTDOWN_MILLIS = 30000;
+    
+    /** Location of the log of the entity store (see {@link ch.epfl.lia.storage.EntityStore}) */
+    public static final String ENTITY_STORE_LOCATION = "parsed/entities.log";
+    
+    /** Maximal number of records written (and forced to the disk) at once by the entity store */
+    public static final int ENTITY_STORE_BATCH_SIZE = 4096;
+    
+    /** Number of records waiting to be written from which saving entities blocks */
+    public static final int ENTITY_STORE_QUEUE_CAPACITY = 65536;
+    
+    /** Location of the log of extracted opinions (see {@link ch.epfl.lia.storage.OpinionLog}) */
+    public static final String OPINION_LOG_LOCATION = "parsed/opinions/";
+    
+    /** Number of records per segment of the log of extracted opinions */
+    public static final int OPINION_LOG_SEGMENT_RECORDS = 1 << 20;
 
     /** Location of CoNLL-parsed files */
     public static final String PARSED_CONLL_FILES_LOCATION = "parsed/conll/";
@@ -35,11 +116,83 @@ public final class Config {
     /** French run script for MALLET tool */
     public static final String MALLET_RUN_SCRIPT_LOCATION = "run_mallet.sh";
 
-    /** Location of extracted nouns (all languages) */
-    public static final String NOUNS_LOCATION = "parsed/nouns/";
+    /** Location of the file the nouns are streamed to for MALLET, one article per line (all languages) */
+    public static final String NOUNS_FILE_LOCATION = "parsed/nouns.txt";
 
     /** Regexp that matches non-junk tokens (this to avoid tokens as "`") */
     public static final String NOT_JUNK_DEP_REGEXP = "^\\p{L}+.*$";
+    
+    /** Maximal distance (in tokens) between a topic word and a polar word, for window-based extraction */
+    public static final int OPINION_WINDOW_SIZE = 5;
+    
+    /** Prefix of the location of the stopword lists (all languages), followed by the language short name */
+    public static final String STOPLIST_LOCATION_PREFIX = "lib/mallet_stoplist_";
+    
+    /** Number of topics to extract */
+    public static final int TOPIC_COUNT = 16;
+    
+    /** Number of keys per extracted topic */
+    public static final int TOPIC_TOP_WORDS = 16;
+    
+    /** Number of sampling iterations of the in-process topic model */
+    public static final int LDA_ITERATIONS = 1000;
+    
+    /** Number of iterations between two optimizations of the topic model prior */
+    public static final int LDA_OPTIMIZE_INTERVAL = 20;
+    
+    /** Number of iterations before the first optimization of the topic model prior */
+    public static final int LDA_BURN_IN = 200;
+    
+    /** Initial sum of the document-topic Dirichlet parameters */
+    public static final double LDA_ALPHA_SUM = 5.0;
+    
+    /** Topic-word Dirichlet parameter */
+    public static final double LDA_BETA = 0.01;
+    
+    /** Number of threads used to train the topic model */
+    public static final int LDA_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /** Random seed of the topic model */
+    public static final long LDA_SEED = 42;
+    
+    /** Location of the frozen topic model (all languages) */
+    public static final String TOPIC_MODEL_LOCATION = "topics/model.ser";
+    
+    /** Number of sampling iterations when inferring the topics of an article */
+    public static final int LDA_INFERENCE_ITERATIONS = 100;
+    
+    /** Number of iterations before the topic distribution of an article is averaged */
+    public static final int LDA_INFERENCE_BURN_IN = 20;
+    
+    /** Age (in days) above which the frozen topic model is retrained */
+    public static final int TOPIC_MODEL_MAX_AGE_DAYS = 30;
+    
+    /** Number of new articles above which the frozen topic model is retrained */
+    public static final int TOPIC_MODEL_MAX_NEW_ARTICLES = 5000;
+    
+    /** Number of articles per mini-batch of the online topic model */
+    public static final int ONLINE_LDA_BATCH_SIZE = 32;
+    
+    /** Expected number of articles in the stream, for the online topic model */
+    public static final int ONLINE_LDA_CORPUS_SIZE = 10000;
+    
+    /** Minimal learning rate of the online topic model (the higher, the faster stale topics fade out) */
+    public static final double ONLINE_LDA_MIN_LEARNING_RATE = 0.05;
+    
+    /** Share of the word mass under which a topic of the online model is considered faded out */
+    public static final double ONLINE_LDA_FADE_THRESHOLD = 0.01;
+    
+    /** Location of the cache of extracted topics (all languages) */
+    public static final String TOPIC_CACHE_LOCATION = "topics/cache/";
+    
+    /** Share of the total topic proportion under which an extracted topic is dropped */
+    public static final double TOPIC_MIN_SHARE = 0.02;
+    
+    /** Key overlap (Jaccard index) from which two extracted topics are merged */
+    public static final double TOPIC_MERGE_OVERLAP = 0.5;
+    
+    /** Maximal number of keys per extracted topic, once post-processed */
+    public static final int TOPIC_MAX_KEYS = 10;
 
     private Config() { }
 
@@ -0,0 +1,183 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.BUILD_MANIFEST_LOCATION;
+import static ch.epfl.lia.main.Config.CORPUS_CHECKPOINT_INTERVAL;
+import static ch.epfl.lia.main.Config.CORPUS_CHECKPOINT_LOCATION;
+import static ch.epfl.lia.main.Config.CORPUS_MAX_RECORD_SIZE;
+import static ch.epfl.lia.main.Config.CORPUS_READ_BUFFER_SIZE;
+import static ch.epfl.lia.main.Config.WORD_INDEX_LOCATION;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.PARSED_ARTICLE;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.nlp.Vocabulary;
+import ch.epfl.lia.parser.FrenchParser;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.storage.BuildManifest;
+import ch.epfl.lia.storage.WordIndex;
+import ch.epfl.lia.util.ArticleWriter;
+import ch.epfl.lia.util.Articles;
+import ch.epfl.lia.util.CorpusReader;
+
+/**
+ * Bulk ingestion of corpus files in the JSON Lines format (see
+ * {@link CorpusReader}), such as the daily dumps of the upstream.
+ * <p>
+ * Use: {@code IngestCorpus [--restart | --from=offset] file...}<br>
+ * The articles are streamed from each file in turn, parsed, saved in the
+ * background (see {@link Articles#writer()}), indexed (see {@link WordIndex})
+ * and recorded in the {@link BuildManifest}; articles whose saved parse is
+ * fresh are skipped. The opinions are then extracted from the stored parses,
+ * e.g. by {@link OpinionBackfill}.
+ * </p>
+ * <p>
+ * The files are streamed, and only the articles since the last checkpoint
+ * are held. The word index and the build manifest however are held in memory
+ * as a whole, and written anew at each checkpoint: both grow with the number
+ * of distinct articles ingested (about two bytes per distinct word of each
+ * sentence, and one entry per article), and so does the time taken by a
+ * checkpoint.
+ * </p>
+ * <p>
+ * Every {@link Config#CORPUS_CHECKPOINT_INTERVAL} articles, once the parsed
+ * articles are on the disk, the byte offset reached in the file is written
+ * to a checkpoint in {@link Config#CORPUS_CHECKPOINT_LOCATION}. An
+ * interrupted ingestion resumes from its checkpoint, unless started again
+ * with {@code --restart}, or from another offset with {@code --from}.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class IngestCorpus {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private static final String RESTART_OPTION = "--restart";
+    private static final String FROM_OPTION_PREFIX = "--from=";
+    
+    private IngestCorpus() { }
+    
+    public static void main(String[] args) throws IOException {
+        boolean restart = false;
+        long from = -1;
+        final LanguageParser parser = new FrenchParser();
+        final BuildManifest manifest = BuildManifest.load(BUILD_MANIFEST_LOCATION);
+        final WordIndex index = WordIndex.load(WORD_INDEX_LOCATION, LANGUAGE);
+        final String parserVersions = Main.parserVersions();
+        
+        for (String arg : args) {
+            if (arg.equals(RESTART_OPTION)) {
+                restart = true;
+            } else if (arg.startsWith(FROM_OPTION_PREFIX)) {
+                from = Long.parseLong(arg.substring(FROM_OPTION_PREFIX.length()));
+            } else {
+                ingest(arg, restart ? 0 : from, parser, manifest, index, parserVersions);
+                from = -1;
+            }
+        }
+        
+        System.err.println(Articles.writer());
+        System.err.println(manifest);
+        System.err.println(index);
+        System.err.println(Vocabulary.getInstance());
+    }
+    
+    /**
+     * @param from
+     *            the offset to start at, or -1 to resume from the checkpoint
+     *            (if any)
+     */
+    private static void ingest(String location, long from, LanguageParser parser, BuildManifest manifest,
+            WordIndex index, String parserVersions) throws IOException {
+        final Path checkpointPath = Paths.get(CORPUS_CHECKPOINT_LOCATION,
+                Paths.get(location).getFileName() + ".properties");
+        final String corpus = Paths.get(location).toAbsolutePath().normalize().toString();
+        
+        long offset = Math.max(from, 0);
+        final Properties checkpoint = OpinionBackfill.readCheckpoint(checkpointPath);
+        if (from < 0 && checkpoint != null && corpus.equals(checkpoint.getProperty("corpus"))) {
+            offset = Long.parseLong(checkpoint.getProperty("offset"));
+            System.err.println("Resuming " + location + " at offset " + offset);
+        }
+        
+        final long start = System.nanoTime();
+        long parsed = 0;
+        long fresh = 0;
+        long failed = 0;
+        /* Articles parsed since the last checkpoint, with their content hashes */
+        final Map<Integer, String> pending = new LinkedHashMap<>();
+        try (CorpusReader reader = new CorpusReader(location, offset, LANGUAGE, CORPUS_READ_BUFFER_SIZE,
+                CORPUS_MAX_RECORD_SIZE)) {
+            Article article;
+            while ((article = reader.next()) != null) {
+                final String hash = BuildManifest.contentHash(article);
+                if (manifest.isFresh(PARSED_ARTICLE, article.id(), hash, parserVersions)) {
+                    fresh++;
+                } else {
+                    try {
+                        index.add(article.parse(parser));
+                        Articles.writer().submit(article);
+                        pending.put(article.id(), hash);
+                        parsed++;
+                    } catch (ParseException e) {
+                        System.err.println("Could not parse article " + article.id() + ": " + e.getMessage());
+                        failed++;
+                    }
+                }
+                
+                if (reader.recordCount() % CORPUS_CHECKPOINT_INTERVAL == 0) {
+                    failed += checkpoint(checkpointPath, corpus, reader.offset(), pending, manifest, index,
+                            parserVersions);
+                    final double seconds = (System.nanoTime() - start) / 1e9;
+                    System.err.println(String.format("%s: %.0f articles/s (%d parsed, %d fresh, %d failed)", reader,
+                            reader.recordCount() / seconds, parsed, fresh, failed));
+                }
+            }
+            
+            failed += checkpoint(checkpointPath, corpus, reader.offset(), pending, manifest, index, parserVersions);
+            System.err.println(String.format("%s, done in %.1f s (%d parsed, %d fresh, %d failed)", reader,
+                    (System.nanoTime() - start) / 1e9, parsed, fresh, failed));
+        }
+    }
+    
+    /**
+     * Waits for the parsed articles to be on the disk, records them, and only
+     * then writes the offset reached, so that no article before it is lost.
+     * The articles that could not be saved are not recorded: they are parsed
+     * again when the corpus is ingested anew (see {@link #RESTART_OPTION}).
+     * 
+     * @return the number of articles that could not be saved
+     */
+    private static int checkpoint(Path path, String corpus, long offset, Map<Integer, String> pending,
+            BuildManifest manifest, WordIndex index, String parserVersions) throws IOException {
+        int unsaved = 0;
+        try {
+            Articles.writer().flush();
+        } catch (ArticleWriter.SaveFailedException e) {
+            System.err.println(e.getMessage());
+            pending.keySet().removeAll(e.articleIds());
+            unsaved = e.articleIds().size();
+        }
+        for (Map.Entry<Integer, String> entry : pending.entrySet()) {
+            manifest.record(PARSED_ARTICLE, entry.getKey(), entry.getValue(), parserVersions);
+        }
+        pending.clear();
+        manifest.save();
+        index.save();
+        
+        final Properties checkpoint = new Properties();
+        checkpoint.setProperty("corpus", corpus);
+        checkpoint.setProperty("offset", Long.toString(offset));
+        OpinionBackfill.writeCheckpoint(path, checkpoint);
+        return unsaved;
+    }
+    
+}
@@ -1,8 +1,32 @@
 package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.ARTICLE_LOADER_PREFETCH;
+import static ch.epfl.lia.main.Config.ARTICLE_LOADER_THREADS;
+import static ch.epfl.lia.main.Config.BUILD_MANIFEST_LOCATION;
+import static ch.epfl.lia.main.Config.LDA_INFERENCE_BURN_IN;
+import static ch.epfl.lia.main.Config.LDA_INFERENCE_ITERATIONS;
+import static ch.epfl.lia.main.Config.LDA_SEED;
+import static ch.epfl.lia.main.Config.MALT_CONFIG_LOCATION_FR;
+import static ch.epfl.lia.main.Config.OPINION_LOG_LOCATION;
+import static ch.epfl.lia.main.Config.OPINION_LOG_SEGMENT_RECORDS;
+import static ch.epfl.lia.main.Config.OPINION_RULES_VERSION;
+import static ch.epfl.lia.main.Config.SENTIMENT_DIC_LOCATION_FR;
+import static ch.epfl.lia.main.Config.STANFORD_TAGGER_LOCATION_FR;
+import static ch.epfl.lia.main.Config.TOPIC_MODEL_LOCATION;
+import static ch.epfl.lia.main.Config.TOPIC_MODEL_MAX_AGE_DAYS;
+import static ch.epfl.lia.main.Config.TOPIC_MODEL_MAX_NEW_ARTICLES;
+import static ch.epfl.lia.main.Config.WORD_INDEX_LOCATION;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.OPINIONS;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.PARSED_ARTICLE;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import ch.epfl.lia.entity.Article;
@@ -10,59 +34,237 @@ import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.entity.Opinion;
 import ch.epfl.lia.entity.ParsedArticle;
 import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.EscalationPolicy;
 import ch.epfl.lia.opinion.Evaluator;
+import ch.epfl.lia.opinion.ExtractionMode;
 import ch.epfl.lia.opinion.OpinionExtractionException;
 import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.opinion.TieredOpinionExtractor;
+import ch.epfl.lia.opinion.dictionary.FrenchSentimentDictionary;
 import ch.epfl.lia.parser.FrenchParser;
 import ch.epfl.lia.parser.LanguageParser;
 import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.parser.SentenceScreener;
+import ch.epfl.lia.storage.BuildManifest;
+import ch.epfl.lia.storage.OpinionLog;
+import ch.epfl.lia.storage.WordIndex;
+import ch.epfl.lia.topic.NounCorpus;
+import ch.epfl.lia.topic.RetrainPolicy;
 import ch.epfl.lia.topic.TopicExtractionException;
+import ch.epfl.lia.topic.TopicInferencer;
 import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.topic.TopicModel;
+import ch.epfl.lia.util.ArticleLoader;
+import ch.epfl.lia.util.ArticleWriter;
 import ch.epfl.lia.util.Articles;
 
 /**
+ * Use: {@code Main [--invalidate-topic-cache] [--frozen-topics] [--log-opinions]
+ * [--screen | --fast | --tiered [--escalate-on=reason,...]] (id | from-to)...}
+ * <p>
+ * The articles already saved on the disk are loaded in parallel (see
+ * {@link ArticleLoader}); only the missing ones are read from their raw files
+ * and parsed. A range {@code from-to} includes both of its bounds.
+ * </p>
+ * <p>
+ * Processing is incremental (see {@link BuildManifest}): a saved parse is
+ * reused only if the raw article did not change since, and if the tagger and
+ * parser models are the same. Likewise, the opinions of an article are
+ * appended to the opinion log only if they were not logged yet from the same
+ * article, models, dictionary, rules, extraction mode and topics; those logged
+ * before are then superseded (see {@link OpinionLog#replace(int, Collection)}).
+ * </p>
+ * <p>
+ * With {@code --screen}, articles are first tagged only, and the topics are
+ * extracted from their nouns. Only then are the sentences that may contain an
+ * opinion sent to the dependency parser. Such screened parses depend on the
+ * topics of the batch, and are thus not cached.
+ * </p>
+ * <p>
+ * With {@code --fast}, articles are tagged only, and opinions are extracted
+ * without any dependency (see {@link ExtractionMode#WINDOW}).
+ * </p>
+ * <p>
+ * With {@code --tiered}, articles are tagged only, and only the ambiguous
+ * sentences are dependency-parsed (see {@link TieredOpinionExtractor}). The
+ * reasons for escalating a sentence may be restricted to a comma-separated
+ * list among {@code conflict}, {@code negation} and {@code verb}.
+ * </p>
+ * <p>
+ * Extracted topics are cached (see {@link Config#TOPIC_CACHE_LOCATION}), so
+ * that re-running on the same articles does not retrain the topic model. The
+ * cache is emptied beforehand with {@code --invalidate-topic-cache}.
+ * </p>
+ * <p>
+ * With {@code --frozen-topics}, the topics are not extracted from the batch:
+ * the topic model saved at {@link Config#TOPIC_MODEL_LOCATION} is reused, and
+ * the topics of the articles are inferred against it. The model is (re)trained
+ * on the batch only if there is none yet, or if the {@link RetrainPolicy}
+ * requires it.
+ * </p>
+ * <p>
+ * With {@code --log-opinions}, the extracted opinions are appended to the
+ * opinion log at {@link Config#OPINION_LOG_LOCATION}.
+ * </p>
+ * <p>
+ * Newly parsed articles are saved in the background (see
+ * {@link ArticleWriter}) while the next ones are parsed, and are on the disk
+ * before the topics are extracted. The words of the articles, parsed or only
+ * tagged, are indexed in every mode (see {@link WordIndex}), for
+ * {@link RecomputeOpinions}.
+ * </p>
+ * 
  * @author Cyriaque Brousse
  */
 public class Main {
 
     private static final Language LANGUAGE = Language.FRENCH;
     
+    private static final String SCREEN_OPTION = "--screen";
+    private static final String FAST_OPTION = "--fast";
+    private static final String TIERED_OPTION = "--tiered";
+    private static final String ESCALATE_OPTION_PREFIX = "--escalate-on=";
+    private static final String FROZEN_TOPICS_OPTION = "--frozen-topics";
+    private static final String INVALIDATE_CACHE_OPTION = "--invalidate-topic-cache";
+    private static final String LOG_OPINIONS_OPTION = "--log-opinions";
+    
+    private static final RetrainPolicy RETRAIN_POLICY = new RetrainPolicy.Builder()
+            .maxAgeDays(TOPIC_MODEL_MAX_AGE_DAYS)
+            .maxNewArticles(TOPIC_MODEL_MAX_NEW_ARTICLES)
+            .build();
+    
     public static void main(String[] args) throws IOException, ParseException,
             TopicExtractionException, OpinionExtractionException {
         
         final LanguageParser parser = new FrenchParser();
-        final List<Article> articles = new ArrayList<>();
-        final String serialPathPrefix = "parsed/ser/";
+        final List<Integer> articleIds = new ArrayList<>();
+        boolean screening = false;
+        boolean frozenTopics = false;
+        boolean logOpinions = false;
+        ExtractionMode mode = ExtractionMode.DEPENDENCY;
+        EscalationPolicy policy = new EscalationPolicy.Builder().build();
         
         for (String arg : args) {
-            final int articleId = Integer.parseInt(arg);
-            
-            Article article = Articles.getFromDisk(serialPathPrefix + articleId + ".ser");
-            if (article == null) {
-                article = Articles.constructArticleFromRaw(articleId, LANGUAGE);
+            if (arg.equals(SCREEN_OPTION)) {
+                screening = true;
+                continue;
+            } else if (arg.equals(FAST_OPTION)) {
+                mode = ExtractionMode.WINDOW;
+                continue;
+            } else if (arg.equals(TIERED_OPTION)) {
+                mode = ExtractionMode.TIERED;
+                continue;
+            } else if (arg.equals(INVALIDATE_CACHE_OPTION)) {
+                System.err.println("Invalidated " + TopicManager.invalidateCache() + " cached topic extraction(s)");
+                continue;
+            } else if (arg.equals(FROZEN_TOPICS_OPTION)) {
+                frozenTopics = true;
+                continue;
+            } else if (arg.equals(LOG_OPINIONS_OPTION)) {
+                logOpinions = true;
+                continue;
+            } else if (arg.startsWith(ESCALATE_OPTION_PREFIX)) {
+                policy = parseEscalationPolicy(arg.substring(ESCALATE_OPTION_PREFIX.length()));
+                continue;
             }
             
-            articles.add(article);
+            final int dash = arg.indexOf('-');
+            if (dash > 0) {
+                articleIds.addAll(ArticleLoader.range(Integer.parseInt(arg.substring(0, dash)),
+                        Integer.parseInt(arg.substring(dash + 1))));
+            } else {
+                articleIds.add(Integer.parseInt(arg));
+            }
         }
-
-        for (Article article : articles) {
-            System.err.println("Parsing " + article.id());
-            article.parse(parser);
-            article.saveToDisk(serialPathPrefix + article.id() + ".ser");
+        if (screening && mode != ExtractionMode.DEPENDENCY) {
+            System.err.println("Usage: Main [--invalidate-topic-cache] [--frozen-topics] [--log-opinions] "
+                    + "[--screen | --fast | --tiered [--escalate-on=reason,...]] (id | from-to)...");
+            return;
         }
+        
+        /* Saved articles are loaded in parallel, the missing ones are read from the raw files */
+        final BuildManifest manifest = BuildManifest.load(BUILD_MANIFEST_LOCATION);
+        final String parserVersions = parserVersions();
+        final List<Article> articles = new ArrayList<>();
+        final ArticleLoader.Result loaded = new ArticleLoader(ARTICLE_LOADER_THREADS, ARTICLE_LOADER_PREFETCH)
+                .load(articleIds, (id, saved) -> articles.add(freshest(manifest, id, saved, parserVersions)));
+        System.err.println(loaded);
+        
+        /* The nouns are gathered as the articles get parsed */
+        final NounCorpus corpus = new NounCorpus(LANGUAGE, NounCorpus.loadStoplist(LANGUAGE));
+        
+        final boolean tagOnly = mode != ExtractionMode.DEPENDENCY;
+        final Map<Article, ParsedArticle> tagged = new HashMap<>();
+        final WordIndex index = WordIndex.load(WORD_INDEX_LOCATION, LANGUAGE);
+        final Collection<Topic> topics;
+        if (tagOnly) {
+            topics = tagOnly(parser, articles, tagged, corpus, index, frozenTopics);
+        } else if (screening) {
+            topics = parseScreened(parser, articles, corpus, index, frozenTopics);
+        } else {
+            final List<Article> newlyParsed = new ArrayList<>();
+            for (Article article : articles) {
+                if (article.isParsed()) {
+                    corpus.add(article.parse());
+                    if (!index.isIndexed(article.id())) {
+                        index.add(article.parse());
+                    }
+                    continue;
+                }
+                
+                System.err.println("Parsing " + article.id());
+                corpus.add(article.parse(parser));
+                index.add(article.parse());
+                Articles.writer().submit(article);
+                newlyParsed.add(article);
+            }
             
-        Collection<Topic> topics = TopicManager.extractTopics(articles);
+            /* The parsed articles are durable before moving on, and only then recorded */
+            Set<Integer> unsaved = Collections.emptySet();
+            try {
+                Articles.writer().flush();
+            } catch (ArticleWriter.SaveFailedException e) {
+                System.err.println(e.getMessage() + ", they will be parsed again next time");
+                unsaved = e.articleIds();
+            }
+            System.err.println(Articles.writer());
+            for (Article article : newlyParsed) {
+                if (!unsaved.contains(article.id())) {
+                    manifest.record(PARSED_ARTICLE, article.id(), BuildManifest.contentHash(article), parserVersions);
+                }
+            }
+            manifest.save();
+            
+            topics = extractTopics(corpus, frozenTopics);
+        }
+        index.save();
+        System.err.println(index);
         
-        OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE);
+        OpinionExtractor extractor = mode == ExtractionMode.TIERED
+                ? new TieredOpinionExtractor(parser, policy)
+                : OpinionExtractor.getForLanguage(LANGUAGE, mode);
         Evaluator.Builder evalBuilder = new Evaluator.Builder();
+        final OpinionLog opinionLog = logOpinions
+                ? new OpinionLog(OPINION_LOG_LOCATION, OPINION_LOG_SEGMENT_RECORDS)
+                : null;
+        final String opinionVersions = opinionVersions(parserVersions, mode, topics);
+        final List<Article> logged = new ArrayList<>();
         
         for (Article article : articles) {
             System.out.println("\n####### " + article.id() + " #######");
             
-            ParsedArticle parsed = article.parse(); // no parsing effect
+            ParsedArticle parsed = tagOnly ? tagged.get(article) : article.parse(); // no parsing effect
             
             Set<Opinion> opinions = extractor.extractOpinions(parsed, topics);
+            /* Only the columns of the sentences are kept (see ParsedSentence) */
+            parsed.clear();
             System.out.println("Extracted opinions:\t" + opinions);
+            if (opinionLog != null
+                    && !manifest.isFresh(OPINIONS, article.id(), BuildManifest.contentHash(article), opinionVersions)) {
+                /* Stale opinions of the article are superseded, not left next to the new ones */
+                opinionLog.replace(article.id(), opinions);
+                logged.add(article);
+            }
             
             evalBuilder.addOpinionsToArticle(article, opinions);
             
@@ -73,8 +275,214 @@ public class Main {
             System.out.println("Extracted opinions:\t" + numberExtractedOpinions);
         }
         
+        if (opinionLog != null) {
+            opinionLog.close();
+            System.err.println("Opinion log: " + opinionLog.size() + " record(s)");
+            for (Article article : logged) {
+                manifest.record(OPINIONS, article.id(), BuildManifest.contentHash(article), opinionVersions);
+            }
+        }
+        manifest.save();
+        System.err.println(manifest);
+        
         /* Statistics */
         System.out.println(evalBuilder.build());
+        if (extractor instanceof TieredOpinionExtractor) {
+            System.out.println(((TieredOpinionExtractor) extractor).statistics());
+        }
+    }
+    
+    /**
+     * @param saved
+     *            the article loaded from the disk, or {@code null} if there
+     *            was none
+     * @return the saved article if its parse is fresh, or if there is no raw
+     *         file to build it again from; the raw article otherwise
+     */
+    private static Article freshest(BuildManifest manifest, int articleId, Article saved, String parserVersions)
+            throws IOException {
+        if (saved != null && !Articles.rawExists(articleId)) {
+            return saved;
+        }
+        
+        final Article raw = Articles.constructArticleFromRaw(articleId, LANGUAGE);
+        if (saved == null) {
+            return raw;
+        }
+        
+        final String hash = BuildManifest.contentHash(raw);
+        if (manifest.isFresh(PARSED_ARTICLE, articleId, hash, parserVersions)) {
+            return saved;
+        }
+        
+        /* Saved before there was a manifest: adopted if the article did not change since */
+        if (!manifest.isRecorded(PARSED_ARTICLE, articleId) && hash.equals(BuildManifest.contentHash(saved))) {
+            manifest.record(PARSED_ARTICLE, articleId, hash, parserVersions);
+            return saved;
+        }
+        
+        System.err.println("Stale parse of " + articleId);
+        return raw;
+    }
+    
+    /**
+     * @return the versions a parse depends on: those of the tagger and parser
+     *         models
+     */
+    static String parserVersions() {
+        return "tagger=" + BuildManifest.fileVersion(STANFORD_TAGGER_LOCATION_FR)
+                + ",malt=" + BuildManifest.fileVersion(MALT_CONFIG_LOCATION_FR);
+    }
+    
+    /**
+     * @return the versions the opinions of an article depend on: those of its
+     *         parse, of the dictionary and of the rules, the extraction mode,
+     *         and the topics
+     */
+    static String opinionVersions(String parserVersions, ExtractionMode mode, Collection<Topic> topics) {
+        final String topicsHash = BuildManifest.hash(topics.stream().map(Topic::toString).sorted()
+                .toArray(String[]::new));
+        return parserVersions + ",dictionary=" + BuildManifest.fileVersion(SENTIMENT_DIC_LOCATION_FR)
+                + ",rules=" + OPINION_RULES_VERSION + ",mode=" + mode + ",topics=" + topicsHash;
+    }
+    
+    /**
+     * @return the provided versions of the opinions of an article (see
+     *         {@link #opinionVersions(String, ExtractionMode, Collection)}),
+     *         without that of the dictionary
+     */
+    static String withoutDictionary(String opinionVersions) {
+        return opinionVersions.replaceFirst(",dictionary=[^,]*", "");
+    }
+    
+    /**
+     * @param reasons
+     *            comma-separated list of escalation reasons
+     * @return the policy escalating for the provided reasons only
+     */
+    private static EscalationPolicy parseEscalationPolicy(String reasons) {
+        final List<String> list = Arrays.asList(reasons.split(","));
+        for (String reason : list) {
+            if (!reason.matches("conflict|negation|verb")) {
+                throw new IllegalArgumentException("unknown escalation reason: " + reason);
+            }
+        }
+        
+        return new EscalationPolicy.Builder()
+                .onConflict(list.contains("conflict"))
+                .onNegation(list.contains("negation"))
+                .onVerbInversion(list.contains("verb"))
+                .build();
+    }
+    
+    /**
+     * Tags the articles, and extracts the topics from their nouns
+     * 
+     * @param tagged
+     *            map to put the tagged articles in
+     * @param corpus
+     *            corpus to add the nouns of the articles to
+     * @param index
+     *            index to add the words of the articles to
+     * @return the extracted topics
+     */
+    private static Collection<Topic> tagOnly(LanguageParser parser, List<Article> articles,
+            Map<Article, ParsedArticle> tagged, NounCorpus corpus, WordIndex index, boolean frozenTopics)
+            throws ParseException, TopicExtractionException {
+        for (Article article : articles) {
+            if (article.isParsed()) {
+                tagged.put(article, article.parse());
+                if (!index.isIndexed(article.id())) {
+                    index.add(article.parse());
+                }
+            } else {
+                System.err.println("Tagging " + article.id());
+                tagged.put(article, parser.tag(article));
+                index.add(tagged.get(article));
+            }
+            corpus.add(tagged.get(article));
+        }
+        
+        return extractTopics(corpus, frozenTopics);
+    }
+    
+    /**
+     * Two-pass parsing: tags the articles that are not parsed yet, extracts the
+     * topics, then parses only the sentences that may yield an opinion
+     * 
+     * @param corpus
+     *            corpus to add the nouns of the articles to
+     * @param index
+     *            index to add the words of the articles to
+     * @return the extracted topics
+     */
+    private static Collection<Topic> parseScreened(LanguageParser parser, List<Article> articles,
+            NounCorpus corpus, WordIndex index, boolean frozenTopics) throws ParseException, TopicExtractionException {
+        final Map<Article, ParsedArticle> tagged = new HashMap<>();
+        
+        /* First pass: tagging */
+        for (Article article : articles) {
+            if (article.isParsed()) {
+                corpus.add(article.parse());
+                if (!index.isIndexed(article.id())) {
+                    index.add(article.parse());
+                }
+            } else {
+                System.err.println("Tagging " + article.id());
+                final ParsedArticle taggedArticle = parser.tag(article);
+                tagged.put(article, taggedArticle);
+                corpus.add(taggedArticle);
+            }
+        }
+        
+        final Collection<Topic> topics = extractTopics(corpus, frozenTopics);
+        
+        /* Second pass: dependency parsing of the candidate sentences */
+        final SentenceScreener screener = new SentenceScreener(topics, FrenchSentimentDictionary.getInstance());
+        for (Article article : articles) {
+            if (tagged.containsKey(article)) {
+                System.err.println("Parsing " + article.id());
+                index.add(article.parse(parser, tagged.get(article), screener));
+            }
+        }
+        
+        System.err.println(screener);
+        return topics;
+    }
+    
+    /**
+     * Extracts the topics of the batch, or, with {@code --frozen-topics},
+     * infers the topics of the articles against the saved model
+     * 
+     * @param corpus
+     *            the nouns of the articles of the batch
+     * @param frozenTopics
+     *            whether to reuse the saved topic model
+     * @return the topics
+     */
+    private static Collection<Topic> extractTopics(NounCorpus corpus, boolean frozenTopics)
+            throws TopicExtractionException {
+        if (!frozenTopics) {
+            return TopicManager.extractTopics(corpus);
+        }
+        
+        TopicModel model = TopicModel.load(TOPIC_MODEL_LOCATION);
+        final String reason = model == null ? "no saved model" : RETRAIN_POLICY.reason(model);
+        if (reason != null) {
+            System.err.println("Training topic model: " + reason);
+            /* Retraining a saved model: the cache would give the same, stale model back for the same batch */
+            model = TopicManager.trainModel(corpus, model != null);
+        } else {
+            final TopicInferencer inferencer = new TopicInferencer(model, LDA_INFERENCE_ITERATIONS,
+                    LDA_INFERENCE_BURN_IN, LDA_SEED);
+            for (int d = 0; d < corpus.size(); d++) {
+                System.err.println(inferencer.infer(corpus, d));
+            }
+            System.err.println(model.monitor());
+        }
+        
+        model.save(TOPIC_MODEL_LOCATION);
+        return TopicManager.postProcess(model.topics());
     }
     
 }
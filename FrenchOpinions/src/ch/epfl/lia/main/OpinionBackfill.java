@@ -0,0 +1,278 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.OPINION_BACKFILL_CHUNK_SIZE;
+import static ch.epfl.lia.main.Config.OPINION_BACKFILL_LOCATION;
+import static ch.epfl.lia.main.Config.OPINION_BACKFILL_THREADS;
+import static ch.epfl.lia.main.Config.OPINION_LOG_SEGMENT_RECORDS;
+import static ch.epfl.lia.main.Config.TOPIC_MODEL_LOCATION;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.storage.BuildManifest;
+import ch.epfl.lia.storage.OpinionLog;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.topic.TopicModel;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Backfill of the opinions of the stored parsed articles, after a change of
+ * the dictionary or of the extraction rules. Nothing is parsed, and no topic
+ * is extracted: the opinions are extracted again, in parallel, from the
+ * parsed articles of the store (see {@link Articles#storedIds()}) and the
+ * stored topics.
+ * <p>
+ * Use: {@code OpinionBackfill [--fast] [--tag=name]}<br>
+ * The topics are those of the topic model saved by {@code Main
+ * --frozen-topics}. The opinions are appended to an opinion log in a
+ * directory of {@link Config#OPINION_BACKFILL_LOCATION} named after the
+ * version tag, by default a digest of the versions of the models, dictionary,
+ * rules, extraction mode and topics. With {@code --fast}, opinions are
+ * extracted without any dependency.
+ * </p>
+ * <p>
+ * The articles are processed in increasing order of their ids, by chunks of
+ * {@link Config#OPINION_BACKFILL_CHUNK_SIZE}. After each chunk, the log is
+ * forced to the disk and a checkpoint is written: an interrupted backfill
+ * resumes after the last checkpoint, dropping the opinions logged since. The
+ * throughput is printed for each chunk.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class OpinionBackfill {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private static final String FAST_OPTION = "--fast";
+    private static final String TAG_OPTION_PREFIX = "--tag=";
+    
+    private static final String CHECKPOINT_FILE = "checkpoint.properties";
+    
+    private OpinionBackfill() { }
+    
+    public static void main(String[] args) throws IOException, OpinionExtractionException {
+        ExtractionMode mode = ExtractionMode.DEPENDENCY;
+        String tag = null;
+        for (String arg : args) {
+            if (arg.equals(FAST_OPTION)) {
+                mode = ExtractionMode.WINDOW;
+            } else if (arg.startsWith(TAG_OPTION_PREFIX)) {
+                tag = arg.substring(TAG_OPTION_PREFIX.length());
+            } else {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+        
+        final Collection<Topic> topics = storedTopics();
+        if (topics.isEmpty()) {
+            System.err.println("No stored topics: run Main with --frozen-topics first");
+            return;
+        }
+        
+        final String versions = Main.opinionVersions(Main.parserVersions(), mode, topics);
+        if (tag == null) {
+            tag = BuildManifest.hash(versions).substring(0, 12);
+        }
+        final Path directory = Paths.get(OPINION_BACKFILL_LOCATION, tag);
+        final Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        
+        final OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE, mode);
+        final List<Integer> ids = Articles.storedIds();
+        final ExecutorService pool = Executors.newFixedThreadPool(OPINION_BACKFILL_THREADS);
+        
+        try (OpinionLog log = new OpinionLog(directory.toString(), OPINION_LOG_SEGMENT_RECORDS)) {
+            final int lastId = resume(log, checkpointPath, versions);
+            if (lastId >= 0) {
+                System.err.println("Resuming backfill " + tag + " after article " + lastId);
+            } else {
+                System.err.println("Starting backfill " + tag + " (" + versions + ")");
+            }
+            
+            final List<Integer> remaining = new ArrayList<>();
+            for (int id : ids) {
+                if (id > lastId) {
+                    remaining.add(id);
+                }
+            }
+            
+            final long start = System.nanoTime();
+            final long initialOpinions = log.size();
+            int skipped = 0;
+            for (int from = 0; from < remaining.size(); from += OPINION_BACKFILL_CHUNK_SIZE) {
+                final long chunkStart = System.nanoTime();
+                final long chunkOpinions = log.size();
+                final List<Integer> chunk = remaining.subList(from,
+                        Math.min(from + OPINION_BACKFILL_CHUNK_SIZE, remaining.size()));
+                
+                final List<Future<Set<Opinion>>> futures = new ArrayList<>();
+                for (int id : chunk) {
+                    futures.add(pool.submit(() -> {
+                        final Article article = Articles.getFromDisk(id);
+                        if (article == null || !article.isParsed()) {
+                            return null;
+                        }
+                        final ParsedArticle parsed = article.parse();
+                        final Set<Opinion> opinions = extractor.extractOpinions(parsed, topics);
+                        parsed.clear();
+                        return opinions;
+                    }));
+                }
+                
+                /* Appended in order of the ids, so that the log does not depend on the scheduling */
+                for (Future<Set<Opinion>> future : futures) {
+                    final Set<Opinion> opinions = await(future);
+                    if (opinions == null) {
+                        skipped++;
+                    } else {
+                        log.appendAll(opinions);
+                    }
+                }
+                
+                checkpoint(log, checkpointPath, chunk.get(chunk.size() - 1), versions);
+                
+                final double seconds = (System.nanoTime() - chunkStart) / 1e9;
+                System.err.println(String.format("Checkpoint at article %d (%d/%d): %.0f articles/s, "
+                        + "%.0f opinions/s", chunk.get(chunk.size() - 1), from + chunk.size(), remaining.size(),
+                        chunk.size() / seconds, (log.size() - chunkOpinions) / seconds));
+            }
+            
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.println(String.format("Backfill %s: %d article(s) (%d skipped, not parsed), %d opinion(s) "
+                    + "in %.1f s, %.0f articles/s; %d opinion(s) in the log", tag, remaining.size(), skipped,
+                    log.size() - initialOpinions, seconds, seconds == 0 ? 0 : remaining.size() / seconds,
+                    log.size()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Drops the opinions logged after the last checkpoint, if any
+     * 
+     * @return the id of the last article of the checkpoint, or -1 if there is
+     *         none
+     * @throws IllegalStateException
+     *             if the backfill was started with other versions
+     * @throws StreamCorruptedException
+     *             if the log lost opinions since the checkpoint
+     */
+    static int resume(OpinionLog log, Path checkpointPath, String versions) throws IOException {
+        final Properties checkpoint = readCheckpoint(checkpointPath);
+        if (checkpoint == null) {
+            return -1;
+        }
+        if (!versions.equals(checkpoint.getProperty("versions"))) {
+            throw new IllegalStateException("backfill " + checkpointPath.getParent() + " was started with other "
+                    + "versions: " + checkpoint.getProperty("versions"));
+        }
+        
+        final long logged = Long.parseLong(checkpoint.getProperty("opinions"));
+        if (log.size() < logged) {
+            throw new StreamCorruptedException("backfill log " + checkpointPath.getParent() + " lost opinions "
+                    + "since its last checkpoint");
+        }
+        if (log.size() > logged) {
+            System.err.println("Dropping " + (log.size() - logged) + " opinion(s) logged after the last checkpoint");
+            log.truncate(logged);
+        }
+        return Integer.parseInt(checkpoint.getProperty("lastId"));
+    }
+    
+    /**
+     * Forces the log to the disk, and only then writes the checkpoint
+     * 
+     * @param lastId
+     *            the id of the last article whose opinions are logged
+     */
+    static void checkpoint(OpinionLog log, Path checkpointPath, int lastId, String versions) throws IOException {
+        log.sync();
+        final Properties reached = new Properties();
+        reached.setProperty("lastId", Integer.toString(lastId));
+        reached.setProperty("opinions", Long.toString(log.size()));
+        reached.setProperty("versions", versions);
+        writeCheckpoint(checkpointPath, reached);
+    }
+    
+    /**
+     * @return the topics of the topic model saved by {@code Main
+     *         --frozen-topics}, or nothing
+     */
+    static Collection<Topic> storedTopics() {
+        final TopicModel model = TopicModel.load(TOPIC_MODEL_LOCATION);
+        return model == null ? Collections.emptyList() : TopicManager.postProcess(model.topics());
+    }
+    
+    private static Set<Opinion> await(Future<Set<Opinion>> future) throws IOException,
+            OpinionExtractionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while extracting opinions");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OpinionExtractionException) {
+                throw (OpinionExtractionException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    /**
+     * @return the checkpoint, or {@code null} if there is none
+     */
+    static Properties readCheckpoint(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        
+        final Properties checkpoint = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            checkpoint.load(reader);
+        }
+        return checkpoint;
+    }
+    
+    /**
+     * Writes the checkpoint through a temporary file, so that it is never
+     * left half written
+     */
+    static void writeCheckpoint(Path path, Properties checkpoint) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "Checkpoint");
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+}
@@ -0,0 +1,86 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.OPINION_LOG_SEGMENT_RECORDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.storage.OpinionLog;
+
+/**
+ * Benchmark of the opinion log.
+ * <p>
+ * Use: {@code OpinionLogBenchmark directory [millions]}<br>
+ * Synthetic opinions (drawn from a fixed vocabulary) are appended to a log in
+ * the provided directory, by articles of a thousand opinions. The append
+ * throughput is printed for each million of opinions, then the log is
+ * scanned, and read by article.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class OpinionLogBenchmark {
+
+    private static final int OPINIONS_PER_ARTICLE = 1000;
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int MILLION = 1_000_000;
+    
+    private OpinionLogBenchmark() { }
+    
+    public static void main(String[] args) throws IOException {
+        final int millions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final Random random = new Random(42);
+        
+        final List<Topic> topics = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            topics.add(new Topic(t, 1.0 / 16, Arrays.asList("sujet" + t, "theme" + t)));
+        }
+        
+        try (OpinionLog log = new OpinionLog(args[0], OPINION_LOG_SEGMENT_RECORDS)) {
+            final long initial = log.size();
+            int articleId = (int) (initial / OPINIONS_PER_ARTICLE);
+            
+            for (int m = 0; m < millions; m++) {
+                final long start = System.nanoTime();
+                for (int a = 0; a < MILLION / OPINIONS_PER_ARTICLE; a++, articleId++) {
+                    final List<Opinion> opinions = new ArrayList<>(OPINIONS_PER_ARTICLE);
+                    for (int o = 0; o < OPINIONS_PER_ARTICLE; o++) {
+                        opinions.add(new Opinion(topics.get(random.nextInt(topics.size())),
+                                new Word("mot" + random.nextInt(VOCABULARY_SIZE), 1 + random.nextInt(30), "NC"),
+                                new Word("adj" + random.nextInt(VOCABULARY_SIZE), 1 + random.nextInt(30), "ADJ"),
+                                random.nextBoolean() ? Polarity.POSITIVE : Polarity.NEGATIVE)
+                                .inArticle(articleId, o / 10));
+                    }
+                    log.appendAll(opinions);
+                }
+                log.flush();
+                final double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format("Million #%d: %.0f opinions/s (%.0f million/hour)", m + 1,
+                        MILLION / seconds, 3600 / seconds));
+            }
+            log.sync();
+            
+            long start = System.nanoTime();
+            final int[] positives = new int[1];
+            log.scan(e -> positives[0] += e.polarity() == Polarity.POSITIVE ? 1 : 0);
+            System.out.println(String.format("Scan of %d records: %d ms (%d positive)", log.size(),
+                    (System.nanoTime() - start) / 1_000_000, positives[0]));
+            
+            start = System.nanoTime();
+            int read = 0;
+            for (int a = 0; a < 1000; a++) {
+                read += log.ofArticle(random.nextInt(articleId)).size();
+            }
+            System.out.println(String.format("Indexed read of 1000 articles (%d records): %d ms", read,
+                    (System.nanoTime() - start) / 1_000_000));
+        }
+    }
+    
+}
@@ -0,0 +1,208 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.ARTICLE_LOADER_PREFETCH;
+import static ch.epfl.lia.main.Config.ARTICLE_LOADER_THREADS;
+import static ch.epfl.lia.main.Config.BUILD_MANIFEST_LOCATION;
+import static ch.epfl.lia.main.Config.OPINION_BACKFILL_CHUNK_SIZE;
+import static ch.epfl.lia.main.Config.OPINION_LOG_LOCATION;
+import static ch.epfl.lia.main.Config.OPINION_LOG_SEGMENT_RECORDS;
+import static ch.epfl.lia.main.Config.WORD_INDEX_LOCATION;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.OPINIONS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.storage.BuildManifest;
+import ch.epfl.lia.storage.OpinionLog;
+import ch.epfl.lia.storage.WordIndex;
+import ch.epfl.lia.util.ArticleLoader;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Differential recomputation of the opinions of the stored parsed articles,
+ * after a few entries of the dictionary changed. Only the sentences that
+ * contain one of the changed words (or one of its inflections) are found
+ * through the {@link WordIndex}, and their opinions extracted again. In the
+ * opinion log at {@link Config#OPINION_LOG_LOCATION}, the opinions of each
+ * sentence whose opinions changed are then superseded by the new ones (see
+ * {@link OpinionLog#replace(int, int, Collection)}).
+ * <p>
+ * The opinions of an article are then recorded as fresh in the
+ * {@link BuildManifest}, with the current versions, if they were recorded
+ * from the same content with versions that only differ by the dictionary:
+ * the other sentences do not contain any changed word, so that their logged
+ * opinions are still those the current dictionary yields.
+ * </p>
+ * <p>
+ * Use: {@code RecomputeOpinions [--fast] [--reindex] word...}<br>
+ * The stored articles missing from the index are indexed first. With
+ * {@code --reindex}, the index is rebuilt from scratch, which drops the
+ * postings of former parses. The topics are the stored ones (see
+ * {@link OpinionBackfill}). With {@code --fast}, opinions are extracted
+ * without any dependency.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class RecomputeOpinions {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private static final String FAST_OPTION = "--fast";
+    private static final String REINDEX_OPTION = "--reindex";
+    
+    private RecomputeOpinions() { }
+    
+    public static void main(String[] args) throws IOException, ParseException, OpinionExtractionException {
+        ExtractionMode mode = ExtractionMode.DEPENDENCY;
+        boolean reindex = false;
+        final List<String> words = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals(FAST_OPTION)) {
+                mode = ExtractionMode.WINDOW;
+            } else if (arg.equals(REINDEX_OPTION)) {
+                reindex = true;
+            } else {
+                words.add(arg);
+            }
+        }
+        if (words.isEmpty()) {
+            System.err.println("Usage: RecomputeOpinions [--fast] [--reindex] word...");
+            return;
+        }
+        
+        final Collection<Topic> topics = OpinionBackfill.storedTopics();
+        if (topics.isEmpty()) {
+            System.err.println("No stored topics: run Main with --frozen-topics first");
+            return;
+        }
+        
+        final long start = System.nanoTime();
+        final ArticleLoader loader = new ArticleLoader(ARTICLE_LOADER_THREADS, ARTICLE_LOADER_PREFETCH);
+        if (reindex) {
+            Files.deleteIfExists(Paths.get(WORD_INDEX_LOCATION));
+        }
+        final WordIndex index = WordIndex.load(WORD_INDEX_LOCATION, LANGUAGE);
+        
+        /* Catch up with the articles stored before the index, or out of Main */
+        final List<Integer> storedIds = Articles.storedIds();
+        final List<Integer> unindexed = new ArrayList<>();
+        for (int id : storedIds) {
+            if (!index.isIndexed(id)) {
+                unindexed.add(id);
+            }
+        }
+        if (!unindexed.isEmpty()) {
+            System.err.println("Indexing " + unindexed.size() + " stored article(s)");
+            for (int from = 0; from < unindexed.size(); from += OPINION_BACKFILL_CHUNK_SIZE) {
+                for (Article article : parsedArticles(loader, unindexed, from)) {
+                    index.add(article.parse());
+                }
+            }
+            index.save();
+        }
+        System.err.println(index);
+        
+        final SortedMap<Integer, SortedSet<Integer>> affected = index.sentencesWith(words);
+        final int sentenceCount = affected.values().stream().mapToInt(Set::size).sum();
+        System.err.println(String.format("%d sentence(s) of %d article(s) (out of %d stored) contain %s",
+                sentenceCount, affected.size(), storedIds.size(), words));
+        
+        final OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE, mode);
+        final List<Integer> affectedIds = new ArrayList<>(affected.keySet());
+        int added = 0;
+        int removed = 0;
+        int stamped = 0;
+        final BuildManifest manifest = BuildManifest.load(BUILD_MANIFEST_LOCATION);
+        final String versions = Main.opinionVersions(Main.parserVersions(), mode, topics);
+        try (OpinionLog log = new OpinionLog(OPINION_LOG_LOCATION, OPINION_LOG_SEGMENT_RECORDS)) {
+            /* Loaded one chunk at a time, so that memory does not depend on the number of affected articles */
+            for (int from = 0; from < affectedIds.size(); from += OPINION_BACKFILL_CHUNK_SIZE) {
+                for (Article article : parsedArticles(loader, affectedIds, from)) {
+                    final Set<Integer> sentences = affected.get(article.id());
+                    final List<Opinion> logged = new ArrayList<>();
+                    for (OpinionLog.Entry entry : log.ofArticle(article.id())) {
+                        logged.add(log.opinion(entry));
+                    }
+                    final Map<Integer, Set<Opinion>> former = bySentence(logged);
+                    final ParsedArticle parsed = article.parse();
+                    final Map<Integer, Set<Opinion>> fresh = bySentence(extractor.extractOpinions(parsed, sentences,
+                            topics));
+                    parsed.clear();
+                    
+                    /* Only the sentences whose opinions changed are superseded */
+                    for (int sentence : sentences) {
+                        final Set<Opinion> before = former.getOrDefault(sentence, Collections.emptySet());
+                        final Set<Opinion> after = fresh.getOrDefault(sentence, Collections.emptySet());
+                        if (!before.equals(after)) {
+                            log.replace(article.id(), sentence, after);
+                            added += after.stream().filter(o -> !before.contains(o)).count();
+                            removed += before.stream().filter(o -> !after.contains(o)).count();
+                        }
+                    }
+                    
+                    final String hash = BuildManifest.contentHash(article);
+                    final String recorded = manifest.recordedVersions(OPINIONS, article.id(), hash);
+                    if (recorded != null
+                            && Main.withoutDictionary(recorded).equals(Main.withoutDictionary(versions))) {
+                        manifest.record(OPINIONS, article.id(), hash, versions);
+                        stamped++;
+                    }
+                }
+            }
+        }
+        /* Only once the opinions are on the disk */
+        manifest.save();
+        
+        System.err.println(String.format("Recomputed %d sentence(s) in %.1f s: %d opinion(s) added, %d removed, "
+                + "%d article(s) recorded as fresh", sentenceCount, (System.nanoTime() - start) / 1e9, added,
+                removed, stamped));
+    }
+    
+    /**
+     * @return the opinions, by index of their sentence
+     */
+    private static Map<Integer, Set<Opinion>> bySentence(Collection<Opinion> opinions) {
+        final Map<Integer, Set<Opinion>> bySentence = new HashMap<>();
+        for (Opinion opinion : opinions) {
+            bySentence.computeIfAbsent(opinion.sentenceIndex(), k -> new HashSet<>()).add(opinion);
+        }
+        return bySentence;
+    }
+    
+    /**
+     * @return the parsed articles of the chunk of ids starting at the
+     *         provided position
+     */
+    private static List<Article> parsedArticles(ArticleLoader loader, List<Integer> ids, int from)
+            throws IOException {
+        final List<Article> articles = new ArrayList<>();
+        loader.load(ids.subList(from, Math.min(from + OPINION_BACKFILL_CHUNK_SIZE, ids.size())), (id, article) -> {
+            if (article != null && article.isParsed()) {
+                articles.add(article);
+            }
+        });
+        return articles;
+    }
+
+}
@@ -0,0 +1,148 @@
+package ch.epfl.lia.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Benchmark of the heap taken by parsed sentences.
+ * <p>
+ * Use: {@code SentenceFootprintBenchmark copies id...}<br>
+ * The sentences of the cached articles are copied the provided number of
+ * times, once in the columnar representation of {@link ParsedSentence}, and
+ * once in the former representation: lists of words and dependencies holding
+ * their values, POS tags and relations as strings (the {@link Word} and
+ * {@link Dependency} classes now hold ids, so they cannot model it). The heap
+ * retained by each copy, and the time taken to traverse all the dependencies,
+ * are printed.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class SentenceFootprintBenchmark {
+
+    private SentenceFootprintBenchmark() { }
+    
+    public static void main(String[] args) throws ParseException {
+        final int copies = Integer.parseInt(args[0]);
+        final List<ParsedSentence> sentences = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            final Article article = Articles.getFromDisk(Integer.parseInt(args[i]));
+            if (article != null && article.isParsed()) {
+                sentences.addAll(article.parse().parsedSentences());
+            }
+        }
+        
+        /* The objects of the source sentences are kept once built: build them before measuring */
+        sentences.forEach(ParsedSentence::dependencies);
+        
+        final long base = usedHeap();
+        final List<ParsedSentence> columnar = new ArrayList<>();
+        for (int c = 0; c < copies; c++) {
+            for (ParsedSentence sentence : sentences) {
+                columnar.add(new ParsedSentence(sentence.words(), sentence.dependencies()));
+            }
+        }
+        final long columnarHeap = usedHeap() - base;
+        
+        final List<ObjectSentence> objects = new ArrayList<>();
+        for (int c = 0; c < copies; c++) {
+            for (ParsedSentence sentence : sentences) {
+                objects.add(new ObjectSentence(sentence));
+            }
+        }
+        final long objectHeap = usedHeap() - base - columnarHeap;
+        
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (ParsedSentence sentence : columnar) {
+            for (int d = 0; d < sentence.dependencyCount(); d++) {
+                checksum += sentence.position(sentence.governor(d)) + sentence.value(sentence.dependent(d)).length();
+            }
+        }
+        final long columnarNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (ObjectSentence sentence : objects) {
+            for (FormerDependency dependency : sentence.dependencies) {
+                checksum -= dependency.gov.id + dependency.dep.value.length();
+            }
+        }
+        final long objectNanos = System.nanoTime() - start;
+        
+        System.out.println(String.format("%d sentences x %d copies (checksum %d)", sentences.size(), copies,
+                checksum));
+        System.out.println(String.format("Columnar: %d KiB, traversal %d ms", columnarHeap >> 10,
+                columnarNanos / 1_000_000));
+        System.out.println(String.format("Objects:  %d KiB, traversal %d ms", objectHeap >> 10,
+                objectNanos / 1_000_000));
+    }
+    
+    
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * A sentence as it was formerly held: lists of words and dependencies,
+     * with two new words per dependency, and strings as produced by the
+     * parser (not shared)
+     */
+    private static final class ObjectSentence {
+    
+        private final List<FormerWord> words = new ArrayList<>();
+        private final List<FormerDependency> dependencies = new ArrayList<>();
+        
+        private ObjectSentence(ParsedSentence sentence) {
+            for (Word w : sentence.words()) {
+                words.add(new FormerWord(w));
+            }
+            for (Dependency d : sentence.dependencies()) {
+                dependencies.add(new FormerDependency(d));
+            }
+        }
+    }
+    
+    /**
+     * The fields of a word, as formerly held
+     */
+    private static final class FormerWord {
+    
+        private final String value;
+        private final int id;
+        private final String posTag;
+        
+        private FormerWord(Word word) {
+            this.value = new String(word.value());
+            this.id = word.id();
+            this.posTag = new String(word.posTag());
+        }
+    }
+    
+    /**
+     * The fields of a dependency, as formerly held
+     */
+    private static final class FormerDependency {
+    
+        private final String reln;
+        private final FormerWord gov;
+        private final FormerWord dep;
+        
+        private FormerDependency(Dependency dependency) {
+            this.reln = new String(dependency.reln());
+            this.gov = new FormerWord(dependency.gov());
+            this.dep = new FormerWord(dependency.dep());
+        }
+    }
+    
+}
@@ -0,0 +1,118 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.LDA_ALPHA_SUM;
+import static ch.epfl.lia.main.Config.LDA_BETA;
+import static ch.epfl.lia.main.Config.LDA_SEED;
+import static ch.epfl.lia.main.Config.ONLINE_LDA_BATCH_SIZE;
+import static ch.epfl.lia.main.Config.ONLINE_LDA_CORPUS_SIZE;
+import static ch.epfl.lia.main.Config.ONLINE_LDA_FADE_THRESHOLD;
+import static ch.epfl.lia.main.Config.ONLINE_LDA_MIN_LEARNING_RATE;
+import static ch.epfl.lia.main.Config.TOPIC_COUNT;
+import static ch.epfl.lia.main.Config.TOPIC_TOP_WORDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.parser.FrenchParser;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.topic.NounCorpus;
+import ch.epfl.lia.topic.OnlineLda;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Continuous opinion extraction over a stream of articles, with an online
+ * topic model.
+ * <p>
+ * Use: {@code StreamOpinions [--fast] id...}<br>
+ * The articles are processed in mini-batches of
+ * {@link Config#ONLINE_LDA_BATCH_SIZE}, in order: each mini-batch updates the
+ * topic model, and the opinions of its articles are extracted right away with
+ * the topics known at that time. With {@code --fast}, articles are tagged
+ * only, and opinions are extracted without any dependency.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class StreamOpinions {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private static final String FAST_OPTION = "--fast";
+    
+    private StreamOpinions() { }
+    
+    public static void main(String[] args) throws IOException, ParseException, OpinionExtractionException {
+        final LanguageParser parser = new FrenchParser();
+        final OnlineLda model = new OnlineLda.Builder(LANGUAGE, NounCorpus.loadStoplist(LANGUAGE))
+                .numTopics(TOPIC_COUNT)
+                .priors(LDA_ALPHA_SUM / TOPIC_COUNT, LDA_BETA)
+                .learningRate(64, 0.7, ONLINE_LDA_MIN_LEARNING_RATE)
+                .corpusSize(ONLINE_LDA_CORPUS_SIZE)
+                .fadeThreshold(ONLINE_LDA_FADE_THRESHOLD)
+                .seed(LDA_SEED)
+                .build();
+        
+        ExtractionMode mode = ExtractionMode.DEPENDENCY;
+        final List<Integer> ids = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals(FAST_OPTION)) {
+                mode = ExtractionMode.WINDOW;
+            } else {
+                ids.add(Integer.parseInt(arg));
+            }
+        }
+        final OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE, mode);
+        
+        for (int from = 0; from < ids.size(); from += ONLINE_LDA_BATCH_SIZE) {
+            final long start = System.nanoTime();
+            final List<ParsedArticle> batch = new ArrayList<>();
+            
+            for (int id : ids.subList(from, Math.min(ids.size(), from + ONLINE_LDA_BATCH_SIZE))) {
+                Article article = Articles.getFromDisk(id);
+                if (article == null) {
+                    article = Articles.constructArticleFromRaw(id, LANGUAGE);
+                }
+                
+                if (mode == ExtractionMode.WINDOW && !article.isParsed()) {
+                    batch.add(parser.tag(article));
+                } else if (article.isParsed()) {
+                    batch.add(article.parse());
+                } else {
+                    batch.add(article.parse(parser));
+                    Articles.saveToDisk(article);
+                }
+            }
+            
+            model.update(batch);
+            final List<Topic> topics = TopicManager.postProcess(model.topics(TOPIC_TOP_WORDS));
+            
+            /* No live topic yet (or any more): nothing to extract opinions about */
+            if (topics.isEmpty()) {
+                System.err.println("Mini-batch " + model.updateCount() + ": no live topic, skipping extraction");
+            } else {
+                for (ParsedArticle parsed : batch) {
+                    final Set<Opinion> opinions = extractor.extractOpinions(parsed, topics);
+                    parsed.clear();
+                    System.out.println(parsed.id() + "\t" + opinions);
+                }
+            }
+            
+            System.err.println(String.format("Mini-batch %d: %d articles, %d live topics, %d words, %d ms",
+                    model.updateCount(), batch.size(), topics.size(), model.vocabularySize(),
+                    (System.nanoTime() - start) / 1_000_000));
+        }
+    }
+    
+}
@@ -0,0 +1,132 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.LDA_ALPHA_SUM;
+import static ch.epfl.lia.main.Config.LDA_BETA;
+import static ch.epfl.lia.main.Config.LDA_BURN_IN;
+import static ch.epfl.lia.main.Config.LDA_ITERATIONS;
+import static ch.epfl.lia.main.Config.LDA_OPTIMIZE_INTERVAL;
+import static ch.epfl.lia.main.Config.LDA_SEED;
+import static ch.epfl.lia.main.Config.LDA_THREADS;
+import static ch.epfl.lia.main.Config.TOPIC_COUNT;
+import static ch.epfl.lia.main.Config.TOPIC_TOP_WORDS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.parser.FrenchParser;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.topic.GibbsTopicModel;
+import ch.epfl.lia.topic.NounCorpus;
+import ch.epfl.lia.topic.TopicExtractionException;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.topic.Topics;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Benchmark of the in-process topic model against MALLET.
+ * <p>
+ * Use: {@code TopicModelBenchmark id...}<br>
+ * The articles are tagged, then topics are extracted with MALLET (bypassing
+ * the cache), and with the in-process model on one thread and on
+ * {@link Config#LDA_THREADS} threads. The timings and the overlap of the topics
+ * with MALLET's (both post-processed) are printed, along with the
+ * log-likelihood per token of each model: its trace, its final value, and the
+ * iteration after which it stays within {@link #CONVERGENCE_TOLERANCE} of it.
+ * Both measure the same joint likelihood of the topic assignments, every ten
+ * iterations.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class TopicModelBenchmark {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    /** Relative distance to the final log-likelihood that counts as converged */
+    private static final double CONVERGENCE_TOLERANCE = 0.01;
+    
+    /** Number of iterations between two log-likelihood measures, for both models */
+    private static final int LIKELIHOOD_INTERVAL = 10;
+    
+    private TopicModelBenchmark() { }
+    
+    public static void main(String[] args) throws IOException, ParseException, TopicExtractionException {
+        final LanguageParser parser = new FrenchParser();
+        final List<ParsedArticle> taggedArticles = new ArrayList<>();
+        for (String arg : args) {
+            final Article article = Articles.constructArticleFromRaw(Integer.parseInt(arg), LANGUAGE);
+            taggedArticles.add(parser.tag(article));
+        }
+        
+        long start = System.nanoTime();
+        final NounCorpus corpus = NounCorpus.fromArticles(taggedArticles, LANGUAGE);
+        System.out.println("Corpus: " + corpus.size() + " documents, " + corpus.tokenCount() + " tokens, "
+                + corpus.vocabularySize() + " words, built in " + millisSince(start) + " ms");
+        
+        start = System.nanoTime();
+        final Collection<Topic> malletTopics = TopicManager.extractTopicsWithMallet(corpus, true);
+        System.out.println("MALLET: " + millisSince(start) + " ms");
+        final List<Double> malletLikelihoods = TopicManager.malletLikelihoods();
+        System.out.println("  log-likelihood/token: " + malletLikelihoods);
+        System.out.println("  " + convergence(malletLikelihoods));
+        
+        for (int threads : new int[] {1, LDA_THREADS}) {
+            final GibbsTopicModel model = new GibbsTopicModel(TOPIC_COUNT, LDA_ALPHA_SUM, LDA_BETA, threads, LDA_SEED);
+            start = System.nanoTime();
+            model.train(corpus, LDA_ITERATIONS, LDA_OPTIMIZE_INTERVAL, LDA_BURN_IN);
+            System.out.println("In-process, " + threads + " thread(s): " + millisSince(start) + " ms");
+            System.out.println("  log-likelihood/token: " + model.likelihoods());
+            System.out.println("  " + convergence(model.likelihoods()));
+            if (!malletLikelihoods.isEmpty()) {
+                final List<Double> likelihoods = model.likelihoods();
+                System.out.println(String.format("  final log-likelihood/token minus MALLET's: %+.4f",
+                        likelihoods.get(likelihoods.size() - 1) - malletLikelihoods.get(malletLikelihoods.size() - 1)));
+            }
+            
+            final List<Topic> topics = TopicManager.postProcess(model.topics(TOPIC_TOP_WORDS));
+            double overlapSum = 0;
+            for (Topic topic : topics) {
+                final double best = malletTopics.stream().mapToDouble(t -> Topics.keyOverlap(topic, t)).max()
+                        .orElse(0);
+                System.out.println(String.format("  %s (best MALLET overlap: %.2f)", topic, best));
+                overlapSum += best;
+            }
+            System.out.println(String.format("  mean best overlap: %.2f",
+                    topics.isEmpty() ? 0 : overlapSum / topics.size()));
+        }
+    }
+    
+    /**
+     * @param likelihoods
+     *            log-likelihood per token, measured every
+     *            {@link #LIKELIHOOD_INTERVAL} iterations
+     * @return the final log-likelihood, and the iteration after which the
+     *         trace stays within the tolerance of it
+     */
+    private static String convergence(List<Double> likelihoods) {
+        if (likelihoods.isEmpty()) {
+            return "no log-likelihood reported";
+        }
+        
+        final double last = likelihoods.get(likelihoods.size() - 1);
+        int converged = likelihoods.size() - 1;
+        while (converged > 0
+                && Math.abs(likelihoods.get(converged - 1) - last) <= CONVERGENCE_TOLERANCE * Math.abs(last)) {
+            converged--;
+        }
+        return String.format("final log-likelihood/token: %.4f, within %.0f%% of it after %d iterations", last,
+                100 * CONVERGENCE_TOLERANCE, (converged + 1) * LIKELIHOOD_INTERVAL);
+    }
+    
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+}
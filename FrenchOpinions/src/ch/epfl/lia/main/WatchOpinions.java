@@ -0,0 +1,307 @@
+package ch.epfl.lia.main;
+
+import static ch.epfl.lia.main.Config.BUILD_MANIFEST_LOCATION;
+import static ch.epfl.lia.main.Config.LDA_INFERENCE_BURN_IN;
+import static ch.epfl.lia.main.Config.LDA_INFERENCE_ITERATIONS;
+import static ch.epfl.lia.main.Config.LDA_SEED;
+import static ch.epfl.lia.main.Config.OPINION_LOG_LOCATION;
+import static ch.epfl.lia.main.Config.OPINION_LOG_SEGMENT_RECORDS;
+import static ch.epfl.lia.main.Config.RAW_ARTICLES_LOCATION;
+import static ch.epfl.lia.main.Config.TOPIC_MODEL_LOCATION;
+import static ch.epfl.lia.main.Config.WATCH_MAX_IN_FLIGHT;
+import static ch.epfl.lia.main.Config.WATCH_POLL_MILLIS;
+import static ch.epfl.lia.main.Config.WATCH_QUIET_MILLIS;
+import static ch.epfl.lia.main.Config.WATCH_SHUTDOWN_MILLIS;
+import static ch.epfl.lia.main.Config.WORD_INDEX_LOCATION;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.OPINIONS;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.PARSED_ARTICLE;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Vocabulary;
+import ch.epfl.lia.opinion.ExtractionMode;
+import ch.epfl.lia.opinion.OpinionExtractionException;
+import ch.epfl.lia.opinion.OpinionExtractor;
+import ch.epfl.lia.parser.FrenchParser;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.storage.BuildManifest;
+import ch.epfl.lia.storage.OpinionLog;
+import ch.epfl.lia.storage.WordIndex;
+import ch.epfl.lia.topic.TopicInferencer;
+import ch.epfl.lia.topic.TopicManager;
+import ch.epfl.lia.topic.TopicModel;
+import ch.epfl.lia.util.ArticleWatcher;
+import ch.epfl.lia.util.Articles;
+
+/**
+ * Continuous opinion extraction, as a daemon: the raw articles are processed
+ * as they land (or change) in {@link Config#RAW_ARTICLES_LOCATION}, rather
+ * than given as ids to {@link Main}.
+ * <p>
+ * Use: {@code WatchOpinions [--poll] [--backlog]}<br>
+ * The directory is watched (see {@link ArticleWatcher}), or listed
+ * periodically with {@code --poll}, e.g. on network file systems. Only the
+ * articles written after the start are processed, unless with
+ * {@code --backlog}.
+ * </p>
+ * <p>
+ * Each settled article is parsed (unless its saved parse is fresh, see
+ * {@link BuildManifest}), saved and indexed; then its opinions are extracted
+ * against the topics of the frozen topic model, which must have been saved by
+ * {@code Main --frozen-topics}, and replace its former ones in the opinion
+ * log (see {@link OpinionLog#replace(int, Collection)}). The topic mixture of
+ * the article is inferred against the model (see {@link TopicInferencer}) and
+ * reported, but does not restrict the extraction: as with {@link Main}, all
+ * the topics are used, so that the logged opinions do not depend on how they
+ * were produced. Articles are processed one at a time, and at most
+ * {@link Config#WATCH_MAX_IN_FLIGHT} detected articles wait: beyond that,
+ * detection waits too.
+ * </p>
+ * <p>
+ * On shutdown, detection stops and the waiting articles are dropped (they
+ * are detected again on the next start, with {@code --backlog}), and the
+ * article being processed is given {@link Config#WATCH_SHUTDOWN_MILLIS} to
+ * complete before the opinion log, the manifest and the index are closed.
+ * </p>
+ * <p>
+ * The latency from the detection of a file to its opinions being on the disk
+ * is printed for each article, and summed up regularly.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class WatchOpinions {
+
+    private static final Language LANGUAGE = Language.FRENCH;
+    
+    private static final String POLL_OPTION = "--poll";
+    private static final String BACKLOG_OPTION = "--backlog";
+    
+    /** Number of processed articles between two summaries of the latencies */
+    private static final int REPORT_INTERVAL = 32;
+    
+    private WatchOpinions() { }
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final boolean poll = Arrays.asList(args).contains(POLL_OPTION);
+        final boolean backlog = Arrays.asList(args).contains(BACKLOG_OPTION);
+        
+        final TopicModel model = TopicModel.load(TOPIC_MODEL_LOCATION);
+        if (model == null) {
+            System.err.println("No saved topic model: run Main with --frozen-topics first");
+            return;
+        }
+        
+        final Pipeline pipeline = new Pipeline(model);
+        final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "article-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Semaphore inFlight = new Semaphore(WATCH_MAX_IN_FLIGHT);
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pipeline.stop();
+            worker.shutdown();
+            try {
+                /* Closed only once no article is being processed */
+                if (worker.awaitTermination(WATCH_SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    pipeline.close();
+                } else {
+                    System.err.println("Shutting down: an article is still being processed, the opinion log is "
+                            + "left unclosed");
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+            System.err.println(pipeline.latencies);
+        }));
+        
+        try (ArticleWatcher watcher = new ArticleWatcher(RAW_ARTICLES_LOCATION, WATCH_QUIET_MILLIS,
+                WATCH_POLL_MILLIS, poll, backlog)) {
+            System.err.println((watcher.isPolling() ? "Polling " : "Watching ") + RAW_ARTICLES_LOCATION);
+            while (!pipeline.isStopping()) {
+                for (ArticleWatcher.Arrival arrival : watcher.awaitSettled()) {
+                    /* Bounded in-flight work: detection waits for the pipeline to catch up */
+                    inFlight.acquire();
+                    try {
+                        worker.execute(() -> {
+                            try {
+                                pipeline.process(arrival);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        /* Shut down between the check of the loop and now */
+                        inFlight.release();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Parsing, topic inference and opinion extraction of the detected
+     * articles, on the worker thread
+     */
+    private static final class Pipeline {
+    
+        private final LanguageParser parser = new FrenchParser();
+        private final OpinionExtractor extractor = OpinionExtractor.getForLanguage(LANGUAGE,
+                ExtractionMode.DEPENDENCY);
+        private final TopicInferencer inferencer;
+        private final Collection<Topic> topics;
+        private final BuildManifest manifest;
+        private final WordIndex index;
+        private final OpinionLog opinionLog;
+        private final String parserVersions;
+        private final String opinionVersions;
+        private final Latencies latencies = new Latencies();
+        private volatile boolean stopping = false;
+        
+        Pipeline(TopicModel model) throws IOException {
+            this.inferencer = new TopicInferencer(model, LDA_INFERENCE_ITERATIONS, LDA_INFERENCE_BURN_IN, LDA_SEED);
+            this.topics = TopicManager.postProcess(model.topics());
+            this.manifest = BuildManifest.load(BUILD_MANIFEST_LOCATION);
+            this.index = WordIndex.load(WORD_INDEX_LOCATION, LANGUAGE);
+            this.opinionLog = new OpinionLog(OPINION_LOG_LOCATION, OPINION_LOG_SEGMENT_RECORDS);
+            this.parserVersions = Main.parserVersions();
+            this.opinionVersions = Main.opinionVersions(parserVersions, ExtractionMode.DEPENDENCY, topics);
+        }
+        
+        void process(ArticleWatcher.Arrival arrival) {
+            if (stopping) {
+                return;
+            }
+            
+            final long start = System.nanoTime();
+            try {
+                final Article raw = Articles.constructArticleFromRaw(arrival.articleId(), LANGUAGE);
+                final String hash = BuildManifest.contentHash(raw);
+                
+                /* A saved parse is reused if the article did not change since (e.g. a touched file) */
+                Article article = null;
+                if (manifest.isFresh(PARSED_ARTICLE, raw.id(), hash, parserVersions)) {
+                    article = Articles.getFromDisk(raw.id());
+                }
+                if (article == null || !article.isParsed()) {
+                    article = raw;
+                    index.add(article.parse(parser));
+                    Articles.writer().submit(article);
+                    Articles.writer().flush();
+                    manifest.record(PARSED_ARTICLE, article.id(), hash, parserVersions);
+                    index.save();
+                }
+                final ParsedArticle parsed = article.parse();
+                
+                final TopicInferencer.Inference inference = inferencer.infer(parsed);
+                /* Opinions logged from the same content and versions are not extracted again */
+                final boolean fresh = manifest.isFresh(OPINIONS, article.id(), hash, opinionVersions);
+                int opinionCount = 0;
+                if (!fresh) {
+                    final Set<Opinion> opinions = extractor.extractOpinions(parsed, topics);
+                    opinionLog.replace(article.id(), opinions);
+                    opinionLog.sync();
+                    manifest.record(OPINIONS, article.id(), hash, opinionVersions);
+                    opinionCount = opinions.size();
+                }
+                parsed.clear();
+                manifest.save();
+                
+                final long end = System.nanoTime();
+                latencies.record(end - arrival.detectedNanos(), end - start);
+                System.err.println(String.format("Article %d: %s, main topic %d; %.0f ms from arrival "
+                        + "(%.0f ms processing)", article.id(), fresh ? "opinions fresh" : opinionCount
+                        + " opinion(s)", inference.mainTopic(), (end - arrival.detectedNanos()) / 1e6,
+                        (end - start) / 1e6));
+                if (latencies.count() % REPORT_INTERVAL == 0) {
+                    System.err.println(latencies);
+                    System.err.println(Vocabulary.getInstance());
+                }
+            } catch (IOException | ParseException | OpinionExtractionException e) {
+                System.err.println("Could not process " + arrival + ": " + e);
+            } catch (RuntimeException e) {
+                /* The daemon keeps going with the next articles */
+                e.printStackTrace();
+            }
+        }
+        
+        /**
+         * Makes the articles not processed yet be dropped
+         */
+        void stop() {
+            stopping = true;
+        }
+        
+        boolean isStopping() {
+            return stopping;
+        }
+        
+        void close() throws IOException {
+            opinionLog.close();
+            manifest.save();
+            index.save();
+        }
+        
+    }
+    
+    /**
+     * Latencies of the processed articles: from detection to opinions on the
+     * disk (end-to-end), and from the start of processing (processing). The
+     * percentiles are over the last {@link #WINDOW} articles.
+     */
+    private static final class Latencies {
+    
+        private static final int WINDOW = 1024;
+        
+        private final long[] recent = new long[WINDOW];
+        private long count = 0;
+        private long endToEndSum = 0;
+        private long processingSum = 0;
+        private long endToEndMax = 0;
+        
+        synchronized void record(long endToEndNanos, long processingNanos) {
+            recent[(int) (count % WINDOW)] = endToEndNanos;
+            count++;
+            endToEndSum += endToEndNanos;
+            processingSum += processingNanos;
+            endToEndMax = Math.max(endToEndMax, endToEndNanos);
+        }
+        
+        synchronized long count() {
+            return count;
+        }
+        
+        @Override
+        public synchronized String toString() {
+            if (count == 0) {
+                return "Latency: no article processed";
+            }
+            
+            final long[] sorted = Arrays.copyOf(recent, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            return String.format("Latency over %d article(s): end-to-end mean %.0f ms, p50 %.0f ms, p95 %.0f ms, "
+                    + "max %.0f ms; processing mean %.0f ms", count, endToEndSum / 1e6 / count,
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.95)] / 1e6, endToEndMax / 1e6,
+                    processingSum / 1e6 / count);
+        }
+        
+    }
+    
+}
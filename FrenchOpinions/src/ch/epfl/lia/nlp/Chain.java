@@ -1,7 +1,8 @@
 package ch.epfl.lia.nlp;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
 import ch.epfl.lia.util.Preconditions;
@@ -20,8 +21,8 @@ import ch.epfl.lia.util.Preconditions;
  */
 public class Chain {
 
-    private final List<Dependency> dependencies = new LinkedList<>();
-    private final List<Integer> wordIds = new LinkedList<>();
+    private final List<Dependency> dependencies = new ArrayList<>();
+    private final List<Integer> wordIds = new ArrayList<>();
     
     public Chain(Dependency... dependencies) {
         if (dependencies == null || dependencies.length == 0) {
@@ -74,7 +75,7 @@ public class Chain {
             throw new IllegalArgumentException("chain invariant violated for " + dep);
         }
         
-        List<Dependency> dependencies = new LinkedList<>(this.dependencies);
+        List<Dependency> dependencies = new ArrayList<>(this.dependencies);
         dependencies.add(dep);
         
         return new Chain(dependencies);
@@ -93,8 +94,11 @@ public class Chain {
         return builder.toString();
     }
     
+    /**
+     * @return an unmodifiable view of the dependencies, which is not copied
+     */
     public List<Dependency> dependencies() {
-        return new LinkedList<>(dependencies);
+        return Collections.unmodifiableList(dependencies);
     }
     
     /**
@@ -192,7 +196,7 @@ public class Chain {
      * @return the word id list constructed from the dependency list
      */
     private List<Integer> wordIdListFromDependencies(List<Dependency> dependencies) {
-        List<Integer> wordIds = new LinkedList<>();
+        List<Integer> wordIds = new ArrayList<>();
         Dependency last = dependencies.get(dependencies.size() - 1);
         
         for (Dependency dep : dependencies) {
@@ -1,19 +1,33 @@
 package ch.epfl.lia.nlp;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import ch.epfl.lia.util.Preconditions;
 
 /**
+ * A typed dependency between two words. The relation is held as its code in
+ * {@link SymbolTable#RELATIONS}; the serialized form still holds its name.
+ * 
  * @author Cyriaque Brousse
  */
 public class Dependency implements Serializable {
     
     private static final long serialVersionUID = 1L;
 
-    private final String reln;
-    private final Word gov;
-    private final Word dep;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("reln", String.class),
+        new ObjectStreamField("gov", Word.class),
+        new ObjectStreamField("dep", Word.class)
+    };
+    
+    private short relnCode;
+    private Word gov;
+    private Word dep;
 
     public Dependency(String reln, String gov, int govId, String govPos, String dep, int depId, String depPos) {
         Preconditions.throwIfEmptyString("dependency members may not be empty", reln, gov, dep, govPos, depPos);
@@ -21,7 +35,7 @@ public class Dependency implements Serializable {
             throw new IllegalArgumentException("govId and depId must be strictly positive");
         }
         
-        this.reln = reln;
+        this.relnCode = SymbolTable.RELATIONS.code(reln);
         this.gov = new Word(gov, govId, govPos);
         this.dep = new Word(dep, depId, depPos);
     }
@@ -30,7 +44,7 @@ public class Dependency implements Serializable {
         Preconditions.throwIfEmptyString("reln may not be empty", reln);
         Preconditions.throwIfNull("dependency members may not be null", gov, dep);
         
-        this.reln = reln;
+        this.relnCode = SymbolTable.RELATIONS.code(reln);
         this.gov = gov;
         this.dep = dep;
     }
@@ -61,14 +75,7 @@ public class Dependency implements Serializable {
         } else if (!gov.equals(other.gov)) {
             return false;
         }
-        if (reln == null) {
-            if (other.reln != null) {
-                return false;
-            }
-        } else if (!reln.equals(other.reln)) {
-            return false;
-        }
-        return true;
+        return relnCode == other.relnCode;
     }
 
     @Override
@@ -77,18 +84,25 @@ public class Dependency implements Serializable {
         int result = 1;
         result = prime * result + ((dep == null) ? 0 : dep.hashCode());
         result = prime * result + ((gov == null) ? 0 : gov.hashCode());
-        result = prime * result + ((reln == null) ? 0 : reln.hashCode());
+        result = prime * result + relnCode;
         return result;
     }
     
 
     public String toString() {
-        return reln + '(' + gov + '-' + gov.id() + '-' + gov.posTag() + ','
+        return reln() + '(' + gov + '-' + gov.id() + '-' + gov.posTag() + ','
                 + dep + '-' + dep.id() + '-' + dep.posTag() + ')';
     }
 
     public String reln() {
-        return reln;
+        return SymbolTable.RELATIONS.symbol(relnCode);
+    }
+    
+    /**
+     * @return the code of the relation in {@link SymbolTable#RELATIONS}
+     */
+    public short relnCode() {
+        return relnCode;
     }
 
     public Word gov() {
@@ -99,4 +113,24 @@ public class Dependency implements Serializable {
         return dep;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("reln", reln());
+        fields.put("gov", gov);
+        fields.put("dep", dep);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final String reln = (String) fields.get("reln", null);
+        if (reln == null) {
+            throw new InvalidObjectException("reln may not be null");
+        }
+        
+        relnCode = SymbolTable.RELATIONS.code(reln);
+        gov = (Word) fields.get("gov", null);
+        dep = (Word) fields.get("dep", null);
+    }
+    
 }
@@ -0,0 +1,86 @@
+package ch.epfl.lia.nlp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Thread-safe table giving small integer codes to the symbols of a (nearly)
+ * closed set, such as POS tags or dependency relations, in order of first
+ * appearance.
+ * <p>
+ * Codes are only valid within the running process: anything written to the
+ * disk must hold the symbols themselves.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class SymbolTable {
+
+    /** Codes of the POS tags */
+    public static final SymbolTable POS_TAGS = new SymbolTable("POS tag");
+    
+    /** Codes of the dependency relations */
+    public static final SymbolTable RELATIONS = new SymbolTable("relation");
+    
+    private final String kind;
+    private final ConcurrentMap<String, Short> codes = new ConcurrentHashMap<>();
+    
+    /* Copied on write: symbols are seldom added, but looked up all the time */
+    private volatile String[] symbols = new String[0];
+    
+    private SymbolTable(String kind) {
+        this.kind = kind;
+    }
+    
+    /**
+     * @param symbol
+     *            a symbol
+     * @return its code, given on first call
+     * @throws NullPointerException
+     *             if the symbol is {@code null}
+     * @throws IllegalArgumentException
+     *             if the symbol is empty
+     * @throws IllegalStateException
+     *             if the table is full
+     */
+    public short code(String symbol) {
+        Preconditions.throwIfEmptyString(kind + " may not be empty", symbol);
+        final Short code = codes.get(symbol);
+        if (code != null) {
+            return code;
+        }
+        
+        synchronized (this) {
+            return codes.computeIfAbsent(symbol, s -> {
+                final int size = symbols.length;
+                if (size > Short.MAX_VALUE) {
+                    throw new IllegalStateException("too many distinct " + kind + "s");
+                }
+                final String[] grown = Arrays.copyOf(symbols, size + 1);
+                grown[size] = s.intern();
+                symbols = grown;
+                return (short) size;
+            });
+        }
+    }
+    
+    /**
+     * @param code
+     *            a code given by {@link #code(String)}
+     * @return the (interned) symbol with this code
+     */
+    public String symbol(short code) {
+        return symbols[code];
+    }
+    
+    /**
+     * @return the number of symbols in the table
+     */
+    public int size() {
+        return codes.size();
+    }
+    
+}
@@ -0,0 +1,149 @@
+package ch.epfl.lia.nlp;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Thread-safe vocabulary, giving integer ids to the token strings of the
+ * whole pipeline (word values, nouns, topic keys, dictionary entries), in
+ * order of first appearance. Each distinct token is thus held once, and
+ * tokens are compared by id.
+ * <p>
+ * Tokens are never removed. Like the codes of a {@link SymbolTable}, ids are
+ * only valid within the running process: anything written to the disk must
+ * hold the tokens themselves.
+ * </p>
+ * <p>
+ * The vocabulary thus grows with the number of distinct tokens seen by the
+ * process, and not with the number of articles: in a long-running process
+ * such as {@link ch.epfl.lia.main.WatchOpinions} or
+ * {@link ch.epfl.lia.main.IngestCorpus}, its growth slows down as the corpus
+ * grows (new articles mostly repeat known tokens), but never stops, since
+ * names, numbers and typos keep coming. Each token takes a map entry and an
+ * array slot (a few dozen bytes) on top of its string; these processes report
+ * the size of the vocabulary, and are to be restarted if it gets too large.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class Vocabulary {
+
+    private static final Vocabulary INSTANCE = new Vocabulary();
+    
+    /** Id of the tokens not in the vocabulary (see {@link #find(String)}) */
+    public static final int UNKNOWN = -1;
+    
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    
+    /* Grown by doubling under the lock, read without it */
+    private volatile String[] tokens = new String[1024];
+    private int size = 0;
+    
+    private Vocabulary() { }
+    
+    /**
+     * @return the vocabulary of the pipeline
+     */
+    public static Vocabulary getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * @param token
+     *            a token
+     * @return its id, given on first call
+     */
+    public int id(String token) {
+        Preconditions.throwIfNull("token may not be null", token);
+        final Integer id = ids.get(token);
+        if (id != null) {
+            return id;
+        }
+        
+        synchronized (this) {
+            return ids.computeIfAbsent(token, t -> {
+                String[] array = tokens;
+                if (size == array.length) {
+                    array = Arrays.copyOf(array, 2 * size);
+                }
+                array[size] = t;
+                /* Publish the array before the id */
+                tokens = array;
+                return size++;
+            });
+        }
+    }
+    
+    /**
+     * @param token
+     *            a token
+     * @return its id, or {@link #UNKNOWN} if it is not in the vocabulary (it
+     *         is not added)
+     */
+    public int find(String token) {
+        if (token == null) {
+            return UNKNOWN;
+        }
+        final Integer id = ids.get(token);
+        return id != null ? id : UNKNOWN;
+    }
+    
+    /**
+     * @param id
+     *            an id given by {@link #id(String)}
+     * @return the token with this id
+     */
+    public String token(int id) {
+        return tokens[id];
+    }
+    
+    /**
+     * @param ids
+     *            ids given by {@link #id(String)}, which must not be modified
+     *            afterwards
+     * @return an unmodifiable view of the tokens with these ids, in order
+     */
+    public List<String> tokens(int[] ids) {
+        Preconditions.throwIfNull("ids may not be null", ids);
+        return new TokenList(ids);
+    }
+    
+    /**
+     * @return the number of tokens in the vocabulary
+     */
+    public int size() {
+        return ids.size();
+    }
+    
+    @Override
+    public String toString() {
+        return "Vocabulary: " + size() + " token(s)";
+    }
+    
+    private final class TokenList extends AbstractList<String> implements RandomAccess {
+    
+        private final int[] ids;
+        
+        TokenList(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return token(ids[index]);
+        }
+        
+        @Override
+        public int size() {
+            return ids.length;
+        }
+        
+    }
+    
+}
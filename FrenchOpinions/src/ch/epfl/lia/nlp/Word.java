@@ -1,5 +1,10 @@
 package ch.epfl.lia.nlp;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import ch.epfl.lia.util.Preconditions;
@@ -7,6 +12,11 @@ import ch.epfl.lia.util.Preconditions;
 /**
  * Represents a word, which is essentially a string, an id (per sentence) and a
  * part of speech tag (grammatical nature).
+ * <p>
+ * The string is held as its id in the {@link Vocabulary}, and the tag as its
+ * code in {@link SymbolTable#POS_TAGS}, so that words are compared and hashed
+ * as integers. The serialized form still holds the string and the tag.
+ * </p>
  * 
  * @author Cyriaque Brousse
  */
@@ -14,14 +24,20 @@ public class Word implements Serializable {
 
     private static final long serialVersionUID = 1L;
     
-    /** The string representation of the word */
-    private final String value;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("value", String.class),
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("posTag", String.class)
+    };
+    
+    /** The vocabulary id of the string representation of the word */
+    private int valueId;
     
     /** The identifier of the word in a particular sentence */
-    private final int id;
+    private int id;
     
-    /** The grammatical nature of the word (part-of-speech tag) */
-    private final String posTag;
+    /** The code of the grammatical nature of the word (part-of-speech tag) */
+    private short posCode;
     
     public Word(String value, int id, String posTag) {
         Preconditions.throwIfEmptyString("word value and POS tag may not be empty", value, posTag);
@@ -29,16 +45,24 @@ public class Word implements Serializable {
             throw new IllegalArgumentException("word ids must be strictly positive");
         }
         
-        this.value = value;
+        this.valueId = Vocabulary.getInstance().id(value);
         this.id = id;
-        this.posTag = posTag;
+        this.posCode = SymbolTable.POS_TAGS.code(posTag);
     }
     
     /**
-     * See {@link #value}
+     * See {@link #valueId}
      */
     public String value() {
-        return value;
+        return Vocabulary.getInstance().token(valueId);
+    }
+    
+    /**
+     * @return the id of the string representation of the word in the
+     *         {@link Vocabulary}
+     */
+    public int valueId() {
+        return valueId;
     }
     
     /**
@@ -49,15 +73,22 @@ public class Word implements Serializable {
     }
     
     /**
-     * See {@link #posTag}
+     * See {@link #posCode}
      */
     public String posTag() {
-        return posTag;
+        return SymbolTable.POS_TAGS.symbol(posCode);
+    }
+    
+    /**
+     * @return the code of the POS tag in {@link SymbolTable#POS_TAGS}
+     */
+    public short posCode() {
+        return posCode;
     }
     
     @Override
     public String toString() {
-        return value;
+        return value();
     }
 
     @Override
@@ -65,8 +96,8 @@ public class Word implements Serializable {
         final int prime = 31;
         int result = 1;
         result = prime * result + id;
-        result = prime * result + ((posTag == null) ? 0 : posTag.hashCode());
-        result = prime * result + ((value == null) ? 0 : value.hashCode());
+        result = prime * result + posCode;
+        result = prime * result + valueId;
         return result;
     }
 
@@ -82,24 +113,28 @@ public class Word implements Serializable {
             return false;
         }
         Word other = (Word) obj;
-        if (id != other.id) {
-            return false;
-        }
-        if (posTag == null) {
-            if (other.posTag != null) {
-                return false;
-            }
-        } else if (!posTag.equals(other.posTag)) {
-            return false;
-        }
-        if (value == null) {
-            if (other.value != null) {
-                return false;
-            }
-        } else if (!value.equals(other.value)) {
-            return false;
+        return id == other.id && posCode == other.posCode && valueId == other.valueId;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("value", value());
+        fields.put("id", id);
+        fields.put("posTag", posTag());
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final String value = (String) fields.get("value", null);
+        final String posTag = (String) fields.get("posTag", null);
+        if (value == null || posTag == null) {
+            throw new InvalidObjectException("word value and POS tag may not be null");
         }
-        return true;
+        
+        valueId = Vocabulary.getInstance().id(value);
+        id = fields.get("id", 0);
+        posCode = SymbolTable.POS_TAGS.code(posTag);
     }
     
 }
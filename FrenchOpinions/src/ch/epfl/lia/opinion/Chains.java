@@ -1,8 +1,8 @@
 package ch.epfl.lia.opinion;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -25,20 +25,16 @@ public final class Chains {
      *            chains
      * @param allDeps
      *            the collection of all dependencies. <em>Note:</em> it may or
-     *            may not contain {@code dep}. If it does, a set exclusion will
-     *            first be performed.
+     *            may not contain {@code first}. If it does, it is skipped. The
+     *            collection is not copied.
      * @return a possibly empty set of chains, all starting from the provided
      *         dependency
      * @implNote returned chains are all of length 2
      */
     public static Set<Chain> allChainsFromFirst(Dependency first, Collection<Dependency> allDeps) {
-        /* Set exclusion */
-        Set<Dependency> dependencies = new HashSet<>(allDeps);
-        dependencies.remove(first);
-        
         /* Look for the dependencies that match the provided one,
            that is we have something if the form dep(a,b):::dep(b,c) */
-        List<Dependency> chainDeps = new LinkedList<>();
+        List<Dependency> chainDeps = new ArrayList<>();
         allDeps.stream().filter(second -> 
                        first.dep().equals(second.gov())
                    &&  first.dep().id() == second.gov().id()
@@ -0,0 +1,125 @@
+package ch.epfl.lia.opinion;
+
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Decides, from the cheap analysis of a sentence, whether the sentence is
+ * ambiguous enough to be worth a full dependency parse.
+ * <p>
+ * Build instances with {@link Builder}. By default, a sentence is escalated
+ * when it involves several topic words with conflicting polarities, a
+ * negation, or the inversion of a verb polarity.
+ * </p>
+ * 
+ * @see TieredOpinionExtractor
+ * @author Cyriaque Brousse
+ */
+public final class EscalationPolicy {
+
+    private final boolean onConflict;
+    private final boolean onNegation;
+    private final boolean onVerbInversion;
+    private final int maxOpinions;
+    
+    private EscalationPolicy(boolean onConflict, boolean onNegation, boolean onVerbInversion, int maxOpinions) {
+        this.onConflict = onConflict;
+        this.onNegation = onNegation;
+        this.onVerbInversion = onVerbInversion;
+        this.maxOpinions = maxOpinions;
+    }
+    
+    /**
+     * @param profile
+     *            the profile of the sentence, as computed by the window
+     *            analysis
+     * @return {@code true} if the sentence should be parsed, {@code false} if
+     *         the window analysis is to be trusted
+     */
+    public boolean shouldEscalate(SentenceProfile profile) {
+        Preconditions.throwIfNull("profile may not be null", profile);
+        
+        /* Nothing was found around the topic words */
+        if (profile.opinions().isEmpty()) {
+            return false;
+        }
+        
+        return onConflict && profile.topicWordCount() > 1 && profile.hasConflictingPolarities()
+                || onNegation && profile.hasNegation()
+                || onVerbInversion && profile.hasVerbInversion()
+                || profile.opinions().size() > maxOpinions;
+    }
+    
+    @Override
+    public String toString() {
+        return "EscalationPolicy(conflict=" + onConflict + ", negation=" + onNegation
+                + ", verbInversion=" + onVerbInversion + ", maxOpinions=" + maxOpinions + ')';
+    }
+    
+    /**
+     * Builder class for {@link EscalationPolicy}
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static class Builder {
+    
+        private boolean onConflict = true;
+        private boolean onNegation = true;
+        private boolean onVerbInversion = true;
+        private int maxOpinions = Integer.MAX_VALUE;
+        
+        /**
+         * @param escalate
+         *            whether to escalate sentences where several topic words
+         *            have conflicting polarities
+         * @return this builder
+         */
+        public Builder onConflict(boolean escalate) {
+            this.onConflict = escalate;
+            return this;
+        }
+        
+        /**
+         * @param escalate
+         *            whether to escalate sentences with a negation around an
+         *            opinion
+         * @return this builder
+         */
+        public Builder onNegation(boolean escalate) {
+            this.onNegation = escalate;
+            return this;
+        }
+        
+        /**
+         * @param escalate
+         *            whether to escalate sentences where a verb polarity
+         *            inverts an opinion
+         * @return this builder
+         */
+        public Builder onVerbInversion(boolean escalate) {
+            this.onVerbInversion = escalate;
+            return this;
+        }
+        
+        /**
+         * @param max
+         *            number of window opinions above which a sentence is
+         *            escalated anyway
+         * @return this builder
+         */
+        public Builder maxOpinions(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("max opinion count may not be negative");
+            }
+            this.maxOpinions = max;
+            return this;
+        }
+        
+        /**
+         * @return the built policy
+         */
+        public EscalationPolicy build() {
+            return new EscalationPolicy(onConflict, onNegation, onVerbInversion, maxOpinions);
+        }
+    }
+    
+}
@@ -0,0 +1,20 @@
+package ch.epfl.lia.opinion;
+
+/**
+ * The ways opinions can be extracted from an article
+ * 
+ * @see OpinionExtractor#getForLanguage(ch.epfl.lia.entity.Language, ExtractionMode)
+ * @author Cyriaque Brousse
+ */
+public enum ExtractionMode {
+
+    /** Based on the grammatical dependencies of the sentences (needs a full parse) */
+    DEPENDENCY,
+    
+    /** Based on part-of-speech tags and token distances only (needs tagging only) */
+    WINDOW,
+    
+    /** Window-based, with a dependency parse of the ambiguous sentences only (needs tagging only) */
+    TIERED;
+    
+}
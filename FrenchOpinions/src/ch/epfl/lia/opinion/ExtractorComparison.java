@@ -0,0 +1,146 @@
+package ch.epfl.lia.opinion;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Tuple;
+
+/**
+ * Compares the opinions of a candidate extractor (typically a fast one) to
+ * the ones of a reference extractor, article by article, along with the time
+ * each of them took.
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class ExtractorComparison {
+
+    private int articleCount = 0;
+    private int sameSignCount = 0;
+    
+    private long referenceCount = 0;
+    private long candidateCount = 0;
+    private long commonCount = 0;
+    private long commonCouplesCount = 0;
+    
+    private long referenceNanos = 0;
+    private long candidateNanos = 0;
+    
+    /**
+     * Registers the opinions extracted from an article by both extractors
+     * 
+     * @param reference
+     *            opinions of the reference extractor
+     * @param referenceNanos
+     *            time the reference extractor took, in nanoseconds
+     * @param candidate
+     *            opinions of the candidate extractor
+     * @param candidateNanos
+     *            time the candidate extractor took, in nanoseconds
+     */
+    public void addArticle(Set<Opinion> reference, long referenceNanos,
+            Set<Opinion> candidate, long candidateNanos) {
+        Preconditions.throwIfNull("both opinion sets must be provided", reference, candidate);
+        
+        articleCount++;
+        referenceCount += reference.size();
+        candidateCount += candidate.size();
+        this.referenceNanos += referenceNanos;
+        this.candidateNanos += candidateNanos;
+        
+        /* Couples (topic word, polar word) found by the reference, whatever their polarity */
+        final Set<Tuple<Word, Word>> referenceCouples = new HashSet<>();
+        reference.forEach(o -> referenceCouples.add(new Tuple<>(o.topicWord(), o.polarWord())));
+        
+        for (Opinion opinion : candidate) {
+            if (reference.contains(opinion)) {
+                commonCount++;
+            }
+            if (referenceCouples.contains(new Tuple<>(opinion.topicWord(), opinion.polarWord()))) {
+                commonCouplesCount++;
+            }
+        }
+        
+        if (Integer.signum(score(reference)) == Integer.signum(score(candidate))) {
+            sameSignCount++;
+        }
+    }
+    
+    /**
+     * @return the proportion of candidate opinions that the reference also
+     *         extracted, or {@link Double#NaN} if there were none
+     */
+    public double precision() {
+        return ratio(commonCount, candidateCount);
+    }
+    
+    /**
+     * @return the proportion of reference opinions that the candidate also
+     *         extracted, or {@link Double#NaN} if there were none
+     */
+    public double recall() {
+        return ratio(commonCount, referenceCount);
+    }
+    
+    /**
+     * @return the harmonic mean of {@link #precision()} and {@link #recall()}
+     */
+    public double f1() {
+        final double precision = precision();
+        final double recall = recall();
+        return 2 * precision * recall / (precision + recall);
+    }
+    
+    /**
+     * @return among the couples (topic word, polar word) found by both
+     *         extractors, the proportion that was given the same polarity
+     */
+    public double polarityAgreement() {
+        return ratio(commonCount, commonCouplesCount);
+    }
+    
+    /**
+     * @return the proportion of articles whose score has the same sign with
+     *         both extractors
+     */
+    public double scoreSignAgreement() {
+        return ratio(sameSignCount, articleCount);
+    }
+    
+    /**
+     * @return how many times faster the candidate is than the reference
+     */
+    public double speedup() {
+        return ratio(referenceNanos, candidateNanos);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("\n\n========= Extractor comparison =========\n");
+        
+        builder.append("Articles:\t" + articleCount + "\n");
+        builder.append("Opinions (reference/candidate/common):\t" + referenceCount + '/' + candidateCount
+                + '/' + commonCount + "\n");
+        builder.append("Precision:\t" + precision() + "\n");
+        builder.append("Recall:\t" + recall() + "\n");
+        builder.append("F1:\t" + f1() + "\n");
+        builder.append("Polarity agreement on common couples:\t" + polarityAgreement() + "\n");
+        builder.append("Article score sign agreement:\t" + scoreSignAgreement() + "\n");
+        builder.append("Reference throughput (articles/s):\t" + ratio(articleCount * 1e9, referenceNanos) + "\n");
+        builder.append("Candidate throughput (articles/s):\t" + ratio(articleCount * 1e9, candidateNanos) + "\n");
+        builder.append("Speedup:\t" + speedup() + "\n");
+        
+        return builder.toString();
+    }
+    
+    private static int score(Set<Opinion> opinions) {
+        return opinions.stream().mapToInt(o -> o.polarity().score()).sum();
+    }
+    
+    private static double ratio(double numerator, double denominator) {
+        return denominator == 0 ? Double.NaN : numerator / denominator;
+    }
+    
+}
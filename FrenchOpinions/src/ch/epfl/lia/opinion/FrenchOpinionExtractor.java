@@ -1,13 +1,10 @@
 package ch.epfl.lia.opinion;
 
-import static ch.epfl.lia.opinion.dictionary.Polarity.NEGATIVE;
-import static ch.epfl.lia.opinion.dictionary.Polarity.NEUTRAL;
-import static ch.epfl.lia.opinion.dictionary.Polarity.POSITIVE;
-import static ch.epfl.lia.util.NLPUtils.isVerb;
-
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -22,7 +19,7 @@ import ch.epfl.lia.nlp.Word;
 import ch.epfl.lia.opinion.dictionary.FrenchSentimentDictionary;
 import ch.epfl.lia.opinion.dictionary.Polarity;
 import ch.epfl.lia.opinion.dictionary.SentimentDictionary;
-import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.opinion.dictionary.Stemmer;
 
 /**
  * @author Cyriaque Brousse
@@ -30,6 +27,7 @@ import ch.epfl.lia.util.Preconditions;
 public class FrenchOpinionExtractor extends OpinionExtractor {
     
     private final SentimentDictionary dictionary = FrenchSentimentDictionary.getInstance();
+    private final Stemmer stemmer = Stemmer.getForLanguage(Language.FRENCH);
 
     @Override
     public Language getLanguage() {
@@ -37,28 +35,29 @@ public class FrenchOpinionExtractor extends OpinionExtractor {
     }
 
     @Override
-    public Set<Opinion> extractOpinions(ParsedArticle article,
-            Collection<Topic> topics) throws OpinionExtractionException {
-        Preconditions.throwIfNull("a parsed article is needed", article);
-        Preconditions.throwIfNullOrEmpty("topics are needed", topics);
-        
-        Set<Opinion> opinions = new HashSet<>();
-        article.parsedSentences().stream().forEach(s -> opinions.addAll(extractOpinions(s, topics)));
-
-        return opinions;
+    protected Set<Opinion> extractSentenceOpinions(ParsedArticle article, ParsedSentence sentence,
+            Collection<Topic> topics) {
+        return extractOpinions(sentence, topics);
     }
     
     /**
      * Extracts opinions from a sentence, basing the analysis on the provided
      * topics
      */
-    private Set<Opinion> extractOpinions(ParsedSentence sentence, Collection<Topic> topics) {
+    Set<Opinion> extractOpinions(ParsedSentence sentence, Collection<Topic> topics) {
         List<Dependency> allDeps = sentence.dependencies();
         Set<Opinion> opinions = new HashSet<>();
         
+        /* Normalization, once per word of the sentence */
+        final Map<Word, String> normalized = new HashMap<>();
+        allDeps.stream().forEach(d -> {
+            normalized.computeIfAbsent(d.gov(), w -> stemmer.normalize(w.value()));
+            normalized.computeIfAbsent(d.dep(), w -> stemmer.normalize(w.value()));
+        });
+        
         allDeps.stream().forEach(d -> {
             topics.stream().forEach(t -> {
-                opinions.addAll(analyzeDependency(d, allDeps, t));
+                opinions.addAll(analyzeDependency(d, allDeps, t, normalized));
             });
         });
         
@@ -68,9 +67,12 @@ public class FrenchOpinionExtractor extends OpinionExtractor {
     /**
      * Analyses a specific dependency, with respect to the collection of all
      * dependencies
+     * 
+     * @param normalized
+     *            the normalized value of each word of the sentence
      */
     private Set<Opinion> analyzeDependency(Dependency dependency,
-            Collection<Dependency> allDeps, Topic topic) {
+            Collection<Dependency> allDeps, Topic topic, Map<Word, String> normalized) {
         /* Opinion collector */
         final Set<Opinion> opinions = new HashSet<>();
         
@@ -79,11 +81,12 @@ public class FrenchOpinionExtractor extends OpinionExtractor {
         final Word otherWord;
         
         /* The first word of the dependency is the topical word */
-        if (topic.keys().contains(dependency.gov().value())) {
+        final Set<String> keys = topic.normalizedKeys(stemmer);
+        if (keys.contains(normalized.get(dependency.gov()))) {
             topicWord = dependency.gov();
             otherWord = dependency.dep();
         /* The second word is */
-        } else if (topic.keys().contains(dependency.dep().value())) {
+        } else if (keys.contains(normalized.get(dependency.dep()))) {
             topicWord = dependency.dep();
             otherWord = dependency.gov();
         } else {
@@ -96,7 +99,8 @@ public class FrenchOpinionExtractor extends OpinionExtractor {
             final Word polarWord = otherWord;
             final Polarity polarWordPolarity = polarityLookup.get();
             
-            final Polarity globalPolarity = determineGlobalPolarity(polarWord, polarWordPolarity, topicWord);
+            final Polarity globalPolarity = Polarities.determineGlobalPolarity(dictionary, polarWord,
+                    polarWordPolarity, topicWord);
             
             /* An opinion was found */
             if (!topicWord.equals(polarWord)) {
@@ -138,53 +142,4 @@ public class FrenchOpinionExtractor extends OpinionExtractor {
             return Optional.empty();
         }
     }
-
-    /**
-     * Determines the global polarity for the provided couple of words. It
-     * clears up inconsistencies such as a negative polarity for couples as
-     * (kill,cancer). It generally does not alter the predicted polarity for
-     * couples where there is no inconsistency, such as (bad,cancer).
-     * 
-     * @param polarWord
-     *            the polar word, i.e. the word that is not a topic key and has
-     *            a polarity
-     * @param polarWordPolarity
-     *            polarity extracted from the dictionary
-     * @param topicWord
-     *            the other word, that is a topic key
-     * @return the computed polarity for the couple (polarWord,topicWord)
-     */
-    private Polarity determineGlobalPolarity(Word polarWord, Polarity polarWordPolarity, Word topicWord) {
-        /* Check whether the topic word is also polar. If not, there is no further investigation to make */
-        Optional<Polarity> topicWordPolarityLookup = dictionary.stemAndlookup(topicWord);
-        
-        if (topicWordPolarityLookup.isPresent() && topicWordPolarityLookup.get() != NEUTRAL) {
-            
-            final Polarity topicWordPolarity = topicWordPolarityLookup.get();
-            
-            if (polarWordPolarity == NEGATIVE && isVerb(polarWord, getLanguage())) {
-                /* The polar word is a verb, and its polarity is negative */
-                System.err.println(polarWord + "-" + topicWord);
-                return topicWordPolarity == NEGATIVE ? POSITIVE : NEGATIVE;
-                
-            } else if (topicWordPolarity == NEGATIVE && isVerb(topicWord, getLanguage())) {
-                /* Same for the topic word */
-                System.err.println(polarWord + "+" + topicWord);
-                return polarWordPolarity == NEGATIVE ? POSITIVE : NEGATIVE;
-            }
-            
-            /* None of the words is a verb, but we have a +/- case: we need to
-               return negative (e.g. "rapid cancer" is +/-, but it is clearly
-               negative) */
-            if (polarWordPolarity != topicWordPolarity
-                    && polarWordPolarity != NEUTRAL
-                    && topicWordPolarity != NEUTRAL) {
-                System.err.println(polarWord + "*" + topicWord);
-                return NEGATIVE;
-            }
-            
-        }
-            
-        return polarWordPolarity;
-    }
 }
@@ -0,0 +1,167 @@
+package ch.epfl.lia.opinion;
+
+import static ch.epfl.lia.main.Config.NOT_JUNK_DEP_REGEXP;
+import static ch.epfl.lia.main.Config.OPINION_WINDOW_SIZE;
+import static ch.epfl.lia.util.NLPUtils.isNegation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.FrenchSentimentDictionary;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.opinion.dictionary.SentimentDictionary;
+import ch.epfl.lia.opinion.dictionary.Stemmer;
+
+/**
+ * Fast, approximate opinion extractor. It does not need any dependency: a
+ * topic word and a polar word form an opinion as soon as they are at most
+ * {@link #window} tokens apart in the sentence. It thus works on articles that
+ * were only tagged.
+ * <p>
+ * The polarity of the couple is determined as in {@link FrenchOpinionExtractor}
+ * (see {@link Polarities#determineGlobalPolarity}), and is then inverted if a
+ * negation word (e.g. "pas") lies between the two words or right before them.
+ * </p>
+ * 
+ * @see ExtractionMode#WINDOW
+ * @author Cyriaque Brousse
+ */
+public class FrenchWindowOpinionExtractor extends OpinionExtractor {
+
+    /** Number of tokens before the couple in which to look for a negation ("ne", "n'") */
+    private static final int NEGATION_LOOKBEHIND = 2;
+    
+    private final SentimentDictionary dictionary = FrenchSentimentDictionary.getInstance();
+    private final Stemmer stemmer = Stemmer.getForLanguage(Language.FRENCH);
+    private final int window;
+    
+    public FrenchWindowOpinionExtractor() {
+        this(OPINION_WINDOW_SIZE);
+    }
+    
+    /**
+     * @param window
+     *            maximal distance, in tokens, between a topic word and a polar
+     *            word
+     */
+    public FrenchWindowOpinionExtractor(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be strictly positive");
+        }
+        
+        this.window = window;
+    }
+    
+    @Override
+    public Language getLanguage() {
+        return Language.FRENCH;
+    }
+    
+    @Override
+    protected Set<Opinion> extractSentenceOpinions(ParsedArticle article, ParsedSentence sentence,
+            Collection<Topic> topics) {
+        return extractOpinions(sentence, topics);
+    }
+    
+    /**
+     * Extracts opinions from a sentence, basing the analysis on the provided
+     * topics
+     */
+    Set<Opinion> extractOpinions(ParsedSentence sentence, Collection<Topic> topics) {
+        return analyze(sentence, topics).opinions();
+    }
+    
+    /**
+     * Analyses a sentence, basing the analysis on the provided topics
+     * 
+     * @return the profile of the sentence, containing the extracted opinions
+     */
+    SentenceProfile analyze(ParsedSentence sentence, Collection<Topic> topics) {
+        final List<Word> words = sentence.words();
+        final SentenceProfile profile = new SentenceProfile();
+        
+        /* Dictionary lookups and normalization, once per word */
+        final List<Optional<Polarity>> polarities = lookupAll(words);
+        final String[] normalized = new String[words.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = stemmer.normalize(words.get(i).value());
+        }
+        
+        for (Topic topic : topics) {
+            final Set<String> keys = topic.normalizedKeys(stemmer);
+            
+            for (int i = 0; i < words.size(); i++) {
+                final Word topicWord = words.get(i);
+                if (!keys.contains(normalized[i])) {
+                    continue;
+                }
+                
+                final int from = Math.max(0, i - window);
+                final int to = Math.min(words.size() - 1, i + window);
+                for (int j = from; j <= to; j++) {
+                    if (j == i || !polarities.get(j).isPresent()) {
+                        continue;
+                    }
+                    
+                    final Word polarWord = words.get(j);
+                    final Polarity polarWordPolarity = polarities.get(j).get();
+                    final boolean verbInverted = Polarities.isVerbInversion(dictionary, polarWord,
+                            polarWordPolarity, topicWord);
+                    final boolean negated = isNegated(words, i, j);
+                    
+                    Polarity polarity = Polarities.determineGlobalPolarity(dictionary, polarWord,
+                            polarWordPolarity, topicWord);
+                    if (negated) {
+                        polarity = Polarities.invert(polarity);
+                    }
+                    
+                    profile.add(new Opinion(topic, topicWord, polarWord, polarity), negated, verbInverted);
+                }
+            }
+        }
+        
+        return profile;
+    }
+    
+    /**
+     * @return for each word, its polarity if it is polar (as is or stemmed)
+     *         and not junk, nothing otherwise
+     */
+    List<Optional<Polarity>> lookupAll(List<Word> words) {
+        final List<Optional<Polarity>> polarities = new ArrayList<>(words.size());
+        for (Word word : words) {
+            if (word.value().matches(NOT_JUNK_DEP_REGEXP)) {
+                polarities.add(dictionary.stemAndlookup(word));
+            } else {
+                polarities.add(Optional.empty());
+            }
+        }
+        return polarities;
+    }
+    
+    /**
+     * @return {@code true} if a negation word lies between the words at the
+     *         two provided indices, or right before the first of them
+     */
+    boolean isNegated(List<Word> words, int i, int j) {
+        final int from = Math.max(0, Math.min(i, j) - NEGATION_LOOKBEHIND);
+        final int to = Math.max(i, j);
+        
+        for (int k = from; k < to; k++) {
+            if (k != i && k != j && isNegation(words.get(k), getLanguage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+}
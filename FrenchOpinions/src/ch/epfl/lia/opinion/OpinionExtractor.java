@@ -2,21 +2,27 @@ package ch.epfl.lia.opinion;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.entity.Opinion;
 import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
 import ch.epfl.lia.entity.Topic;
 import ch.epfl.lia.util.LanguageDependent;
+import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Tuple;
 
 /**
  * @author Cyriaque Brousse
  */
 public abstract class OpinionExtractor implements LanguageDependent {
     
-    private static final Map<Language, OpinionExtractor> LANG_EXTRACTOR_MAP = initLangToExtractorMap();
+    private static final Map<Tuple<Language, ExtractionMode>, OpinionExtractor> LANG_EXTRACTOR_MAP =
+            initLangToExtractorMap();
 
     /**
      * Extracts opinions from the given article and previously extracted topics
@@ -27,30 +33,101 @@ public abstract class OpinionExtractor implements LanguageDependent {
      *            non-empty collection of topics to base the extraction on
      * @return the set of extracted opinions
      */
-    public abstract Set<Opinion> extractOpinions(ParsedArticle article,
+    public Set<Opinion> extractOpinions(ParsedArticle article,
+            Collection<Topic> topics) throws OpinionExtractionException {
+        Preconditions.throwIfNull("a parsed article is needed", article);
+        Preconditions.throwIfNullOrEmpty("topics are needed", topics);
+        
+        final Set<Opinion> opinions = new HashSet<>();
+        final List<ParsedSentence> sentences = article.parsedSentences();
+        for (int i = 0; i < sentences.size(); i++) {
+            for (Opinion opinion : extractSentenceOpinions(article, sentences.get(i), topics)) {
+                opinions.add(opinion.inArticle(article.id(), i));
+            }
+        }
+        
+        return opinions;
+    }
+    
+    /**
+     * Extracts opinions from some sentences of the given article only, e.g.
+     * those a change of the dictionary may affect
+     * 
+     * @param article
+     *            parsed article to work on
+     * @param sentenceIndices
+     *            indices of the sentences to work on (those beyond the end of
+     *            the article are ignored)
+     * @param topics
+     *            non-empty collection of topics to base the extraction on
+     * @return the set of opinions extracted from these sentences
+     */
+    public Set<Opinion> extractOpinions(ParsedArticle article, Collection<Integer> sentenceIndices,
+            Collection<Topic> topics) throws OpinionExtractionException {
+        Preconditions.throwIfNull("a parsed article and sentence indices are needed", article, sentenceIndices);
+        Preconditions.throwIfNullOrEmpty("topics are needed", topics);
+        
+        final Set<Opinion> opinions = new HashSet<>();
+        final List<ParsedSentence> sentences = article.parsedSentences();
+        for (int i : sentenceIndices) {
+            if (i >= 0 && i < sentences.size()) {
+                for (Opinion opinion : extractSentenceOpinions(article, sentences.get(i), topics)) {
+                    opinions.add(opinion.inArticle(article.id(), i));
+                }
+            }
+        }
+        
+        return opinions;
+    }
+    
+    /**
+     * Extracts opinions from a sentence of the given article
+     * 
+     * @param article
+     *            the article of the sentence
+     * @param sentence
+     *            the sentence to work on
+     * @param topics
+     *            non-empty collection of topics to base the extraction on
+     * @return the opinions of the sentence, not attached to the article yet
+     */
+    protected abstract Set<Opinion> extractSentenceOpinions(ParsedArticle article, ParsedSentence sentence,
             Collection<Topic> topics) throws OpinionExtractionException;
     
+    /**
+     * Shorthand for {@code getForLanguage(language, ExtractionMode.DEPENDENCY)}.
+     * 
+     * @see #getForLanguage(Language, ExtractionMode)
+     */
+    public static OpinionExtractor getForLanguage(Language language) {
+        return getForLanguage(language, ExtractionMode.DEPENDENCY);
+    }
+    
     /**
      * @param language
      *            the language to get an extractor for
-     * @return the extractor for this language
+     * @param mode
+     *            the extraction mode
+     * @return the extractor for this language and mode
      * @throws UnsupportedOperationException
-     *             if the language is not supported
+     *             if the language or mode is not supported
      */
-    public static OpinionExtractor getForLanguage(Language language) {
-        OpinionExtractor extractor = LANG_EXTRACTOR_MAP.get(language);
+    public static OpinionExtractor getForLanguage(Language language, ExtractionMode mode) {
+        OpinionExtractor extractor = LANG_EXTRACTOR_MAP.get(new Tuple<>(language, mode));
         
         if (extractor == null) {
-            throw new UnsupportedOperationException("no extractor for language " + language);
+            throw new UnsupportedOperationException("no " + mode + " extractor for language " + language);
         }
         
         return extractor;
     }
     
-    private static Map<Language, OpinionExtractor> initLangToExtractorMap() {
-        Map<Language, OpinionExtractor> map = new HashMap<>();
+    private static Map<Tuple<Language, ExtractionMode>, OpinionExtractor> initLangToExtractorMap() {
+        Map<Tuple<Language, ExtractionMode>, OpinionExtractor> map = new HashMap<>();
         
-        map.put(Language.FRENCH, new FrenchOpinionExtractor());
+        map.put(new Tuple<>(Language.FRENCH, ExtractionMode.DEPENDENCY), new FrenchOpinionExtractor());
+        map.put(new Tuple<>(Language.FRENCH, ExtractionMode.WINDOW), new FrenchWindowOpinionExtractor());
+        map.put(new Tuple<>(Language.FRENCH, ExtractionMode.TIERED), new TieredOpinionExtractor());
         
         return map;
     }
@@ -0,0 +1,119 @@
+package ch.epfl.lia.opinion;
+
+import static ch.epfl.lia.opinion.dictionary.Polarity.NEGATIVE;
+import static ch.epfl.lia.opinion.dictionary.Polarity.NEUTRAL;
+import static ch.epfl.lia.opinion.dictionary.Polarity.POSITIVE;
+import static ch.epfl.lia.util.NLPUtils.isVerb;
+
+import java.util.Optional;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.opinion.dictionary.SentimentDictionary;
+
+/**
+ * Collection of utility methods on polarities, shared by the opinion
+ * extractors
+ * 
+ * @see Polarity
+ * @author Cyriaque Brousse
+ */
+public final class Polarities {
+
+    private Polarities() { }
+    
+    /**
+     * Determines the global polarity for the provided couple of words. It
+     * clears up inconsistencies such as a negative polarity for couples as
+     * (kill,cancer). It generally does not alter the predicted polarity for
+     * couples where there is no inconsistency, such as (bad,cancer).
+     * 
+     * @param dictionary
+     *            the dictionary to look the topic word up in
+     * @param polarWord
+     *            the polar word, i.e. the word that is not a topic key and has
+     *            a polarity
+     * @param polarWordPolarity
+     *            polarity extracted from the dictionary
+     * @param topicWord
+     *            the other word, that is a topic key
+     * @return the computed polarity for the couple (polarWord,topicWord)
+     */
+    public static Polarity determineGlobalPolarity(SentimentDictionary dictionary, Word polarWord,
+            Polarity polarWordPolarity, Word topicWord) {
+        /* Check whether the topic word is also polar. If not, there is no further investigation to make */
+        Optional<Polarity> topicWordPolarityLookup = dictionary.stemAndlookup(topicWord);
+        
+        if (topicWordPolarityLookup.isPresent() && topicWordPolarityLookup.get() != NEUTRAL) {
+        
+            final Polarity topicWordPolarity = topicWordPolarityLookup.get();
+            
+            if (polarWordPolarity == NEGATIVE && isVerb(polarWord, dictionary.getLanguage())) {
+                /* The polar word is a verb, and its polarity is negative */
+                System.err.println(polarWord + "-" + topicWord);
+                return topicWordPolarity == NEGATIVE ? POSITIVE : NEGATIVE;
+                
+            } else if (topicWordPolarity == NEGATIVE && isVerb(topicWord, dictionary.getLanguage())) {
+                /* Same for the topic word */
+                System.err.println(polarWord + "+" + topicWord);
+                return polarWordPolarity == NEGATIVE ? POSITIVE : NEGATIVE;
+            }
+            
+            /* None of the words is a verb, but we have a +/- case: we need to
+               return negative (e.g. "rapid cancer" is +/-, but it is clearly
+               negative) */
+            if (polarWordPolarity != topicWordPolarity
+                    && polarWordPolarity != NEUTRAL
+                    && topicWordPolarity != NEUTRAL) {
+                System.err.println(polarWord + "*" + topicWord);
+                return NEGATIVE;
+            }
+            
+        }
+        
+        return polarWordPolarity;
+    }
+    
+    /**
+     * @return {@code true} if the polarity of the couple is inverted by
+     *         {@link #determineGlobalPolarity} because one of the words is a
+     *         negative verb, {@code false} otherwise
+     * @see #determineGlobalPolarity(SentimentDictionary, Word, Polarity, Word)
+     */
+    public static boolean isVerbInversion(SentimentDictionary dictionary, Word polarWord,
+            Polarity polarWordPolarity, Word topicWord) {
+        final Language language = dictionary.getLanguage();
+        final boolean polarWordIsNegativeVerb = polarWordPolarity == NEGATIVE && isVerb(polarWord, language);
+        final boolean topicWordIsVerb = isVerb(topicWord, language);
+        
+        if (!polarWordIsNegativeVerb && !topicWordIsVerb) {
+            return false;
+        }
+        
+        Optional<Polarity> topicWordPolarityLookup = dictionary.stemAndlookup(topicWord);
+        if (!topicWordPolarityLookup.isPresent() || topicWordPolarityLookup.get() == NEUTRAL) {
+            return false;
+        }
+        
+        return polarWordIsNegativeVerb || topicWordPolarityLookup.get() == NEGATIVE;
+    }
+    
+    /**
+     * @param polarity
+     *            the polarity to invert
+     * @return the opposite polarity. {@link Polarity#NEUTRAL} is its own
+     *         opposite.
+     */
+    public static Polarity invert(Polarity polarity) {
+        switch (polarity) {
+        case POSITIVE:
+            return NEGATIVE;
+        case NEGATIVE:
+            return POSITIVE;
+        default:
+            return NEUTRAL;
+        }
+    }
+    
+}
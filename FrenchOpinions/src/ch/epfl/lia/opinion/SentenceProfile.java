@@ -0,0 +1,82 @@
+package ch.epfl.lia.opinion;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+
+/**
+ * Outcome of the cheap, window-based analysis of a sentence: the opinions
+ * found, along with the hints that they may be wrong.
+ * 
+ * @see FrenchWindowOpinionExtractor
+ * @see EscalationPolicy
+ * @author Cyriaque Brousse
+ */
+public final class SentenceProfile {
+
+    private final Set<Opinion> opinions = new HashSet<>();
+    private final Set<Integer> topicWordIds = new HashSet<>();
+    private boolean negation = false;
+    private boolean verbInversion = false;
+    
+    SentenceProfile() { }
+    
+    /**
+     * Registers an opinion found in the sentence
+     * 
+     * @param opinion
+     *            the opinion
+     * @param negated
+     *            whether a negation was involved in computing its polarity
+     * @param verbInverted
+     *            whether the polarity of a verb was involved in computing its
+     *            polarity
+     */
+    void add(Opinion opinion, boolean negated, boolean verbInverted) {
+        opinions.add(opinion);
+        topicWordIds.add(opinion.topicWord().id());
+        negation |= negated;
+        verbInversion |= verbInverted;
+    }
+    
+    /**
+     * @return the opinions found by the window analysis
+     */
+    public Set<Opinion> opinions() {
+        return new HashSet<>(opinions);
+    }
+    
+    /**
+     * @return the number of distinct topic words involved in an opinion
+     */
+    public int topicWordCount() {
+        return topicWordIds.size();
+    }
+    
+    /**
+     * @return {@code true} if the opinions found are both positive and
+     *         negative
+     */
+    public boolean hasConflictingPolarities() {
+        return opinions.stream().anyMatch(o -> o.polarity() == Polarity.POSITIVE)
+                && opinions.stream().anyMatch(o -> o.polarity() == Polarity.NEGATIVE);
+    }
+    
+    /**
+     * @return {@code true} if a negation was found around an opinion
+     */
+    public boolean hasNegation() {
+        return negation;
+    }
+    
+    /**
+     * @return {@code true} if an opinion had its polarity inverted because of a
+     *         negative verb
+     */
+    public boolean hasVerbInversion() {
+        return verbInversion;
+    }
+    
+}
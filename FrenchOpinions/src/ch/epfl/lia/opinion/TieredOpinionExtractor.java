@@ -0,0 +1,179 @@
+package ch.epfl.lia.opinion;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.parser.LanguageParser;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Two-tier opinion extractor. Each sentence is first analysed with the cheap
+ * window-based extractor; only the sentences that the {@link EscalationPolicy}
+ * deems ambiguous are then dependency-parsed (if not already done), and their
+ * opinions extracted by the dependency-based extractor instead.
+ * <p>
+ * Works on tagged as well as on fully parsed articles.
+ * </p>
+ * 
+ * @see ExtractionMode#TIERED
+ * @author Cyriaque Brousse
+ */
+public class TieredOpinionExtractor extends OpinionExtractor {
+
+    private LanguageParser parser;
+    private final FrenchWindowOpinionExtractor fast;
+    private final FrenchOpinionExtractor full;
+    private final EscalationPolicy policy;
+    private final Statistics statistics = new Statistics();
+    
+    public TieredOpinionExtractor() {
+        this(null, new EscalationPolicy.Builder().build());
+    }
+    
+    /**
+     * @param parser
+     *            the parser to extract the dependencies of escalated sentences
+     *            with. If {@code null}, will automatically determine the
+     *            appropriate parser upon the first escalation
+     * @param policy
+     *            the escalation policy
+     */
+    public TieredOpinionExtractor(LanguageParser parser, EscalationPolicy policy) {
+        Preconditions.throwIfNull("policy may not be null", policy);
+        if (parser != null && parser.getLanguage() != getLanguage()) {
+            throw new IllegalArgumentException("parser language does not match");
+        }
+        
+        this.parser = parser;
+        this.policy = policy;
+        this.fast = new FrenchWindowOpinionExtractor();
+        this.full = new FrenchOpinionExtractor();
+    }
+    
+    @Override
+    public Language getLanguage() {
+        return Language.FRENCH;
+    }
+    
+    /**
+     * Escalated sentences are parsed as part of their article
+     */
+    @Override
+    protected Set<Opinion> extractSentenceOpinions(ParsedArticle article, ParsedSentence sentence,
+            Collection<Topic> topics) throws OpinionExtractionException {
+        return extractOpinions(article.id(), sentence, topics);
+    }
+    
+    /**
+     * @return the escalation and latency statistics of this extractor
+     */
+    public Statistics statistics() {
+        return statistics;
+    }
+    
+    private Set<Opinion> extractOpinions(int articleId, ParsedSentence sentence,
+            Collection<Topic> topics) throws OpinionExtractionException {
+        /* First tier: window analysis */
+        long start = System.nanoTime();
+        final SentenceProfile profile = fast.analyze(sentence, topics);
+        final boolean escalate = policy.shouldEscalate(profile);
+        statistics.fastNanos.addAndGet(System.nanoTime() - start);
+        statistics.sentences.incrementAndGet();
+        
+        if (!escalate) {
+            return profile.opinions();
+        }
+        
+        /* Second tier: dependency parsing, if needed, and analysis */
+        start = System.nanoTime();
+        final ParsedSentence parsed;
+        try {
+            parsed = sentence.dependencyCount() == 0 ? parser().parse(articleId, sentence) : sentence;
+        } catch (ParseException e) {
+            throw new OpinionExtractionException(e);
+        }
+        final Set<Opinion> opinions = full.extractOpinions(parsed, topics);
+        statistics.fullNanos.addAndGet(System.nanoTime() - start);
+        statistics.escalated.incrementAndGet();
+        
+        return opinions;
+    }
+    
+    private synchronized LanguageParser parser() {
+        if (parser == null) {
+            parser = LanguageParser.getForLanguage(getLanguage());
+        }
+        return parser;
+    }
+    
+    /**
+     * Escalation rate and per-tier latency of a {@link TieredOpinionExtractor}
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static final class Statistics {
+    
+        private final AtomicLong sentences = new AtomicLong();
+        private final AtomicLong escalated = new AtomicLong();
+        private final AtomicLong fastNanos = new AtomicLong();
+        private final AtomicLong fullNanos = new AtomicLong();
+        
+        private Statistics() { }
+        
+        /**
+         * @return the number of analysed sentences
+         */
+        public long sentenceCount() {
+            return sentences.get();
+        }
+        
+        /**
+         * @return the number of sentences that were escalated to the second
+         *         tier
+         */
+        public long escalatedCount() {
+            return escalated.get();
+        }
+        
+        /**
+         * @return the proportion of escalated sentences, or {@link Double#NaN}
+         *         if no sentence was analysed
+         */
+        public double escalationRate() {
+            return sentenceCount() == 0 ? Double.NaN : (double) escalatedCount() / sentenceCount();
+        }
+        
+        /**
+         * @return the average latency of the first tier, per analysed sentence,
+         *         in milliseconds
+         */
+        public double averageFastMillis() {
+            return sentenceCount() == 0 ? Double.NaN : fastNanos.get() / 1e6 / sentenceCount();
+        }
+        
+        /**
+         * @return the average latency of the second tier, per escalated
+         *         sentence, in milliseconds
+         */
+        public double averageFullMillis() {
+            return escalatedCount() == 0 ? Double.NaN : fullNanos.get() / 1e6 / escalatedCount();
+        }
+        
+        @Override
+        public String toString() {
+            return "Analysed sentences:\t" + sentenceCount()
+                    + "\nEscalated sentences:\t" + escalatedCount()
+                    + " (" + String.format("%.1f", 100 * escalationRate()) + "%)"
+                    + "\nAverage window tier latency (ms):\t" + averageFastMillis()
+                    + "\nAverage dependency tier latency (ms):\t" + averageFullMillis();
+        }
+    }
+    
+}
@@ -4,11 +4,15 @@ import static ch.epfl.lia.main.Config.SENTIMENT_DIC_LOCATION_FR;
 import static ch.epfl.lia.util.FileUtils.foreachNonEmptyLine;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.nlp.Vocabulary;
 import ch.epfl.lia.nlp.Word;
 
 /**
@@ -18,7 +22,11 @@ import ch.epfl.lia.nlp.Word;
  * <code>accessible  0  0  1<br> ... etc </code>
  * </p>
  * Note: there exists a single instance for this class, since the dictionary is
- * immutable.
+ * immutable. The polarities are indexed by the ids of the entries in the
+ * {@link Vocabulary}, so that a lookup is a mere array access, and by the
+ * normalized forms of the entries (see {@link Stemmer#normalize(String)}), so
+ * that inflected words are found too. A normalized form shared by entries of
+ * different polarities is left out.
  * 
  * @author Cyriaque Brousse
  */
@@ -27,10 +35,15 @@ public final class FrenchSentimentDictionary implements SentimentDictionary {
     private static final long serialVersionUID = 1L;
     
     private static FrenchSentimentDictionary instance = null;
-    private final Map<String, Polarity> dictionary;
+    
+    /* Polarities by vocabulary id. Tokens added to the vocabulary afterwards are beyond its bounds. */
+    private final Polarity[] dictionary;
+    
+    /* Polarities by normalized form of the entries */
+    private final Map<String, Polarity> byStem = new HashMap<>();
     
     private FrenchSentimentDictionary(String fileName) throws IOException {
-        this.dictionary = new HashMap<>();
+        final Map<String, Polarity> entries = new HashMap<>();
         
         foreachNonEmptyLine(fileName, line -> {
             final String[] entry = line.split("\\t");
@@ -53,8 +66,31 @@ public final class FrenchSentimentDictionary implements SentimentDictionary {
                 return;
             }
             
-            dictionary.put(word, polarity);
+            entries.put(word, polarity);
         });
+        
+        final Vocabulary vocabulary = Vocabulary.getInstance();
+        final Map<Integer, Polarity> byId = new HashMap<>();
+        int maxId = -1;
+        for (Map.Entry<String, Polarity> entry : entries.entrySet()) {
+            final int id = vocabulary.id(entry.getKey());
+            byId.put(id, entry.getValue());
+            maxId = Math.max(maxId, id);
+        }
+        
+        this.dictionary = new Polarity[maxId + 1];
+        byId.forEach((id, polarity) -> dictionary[id] = polarity);
+        
+        final FrenchStemmer stemmer = FrenchStemmer.getInstance();
+        final Set<String> ambiguous = new HashSet<>();
+        for (Map.Entry<String, Polarity> entry : entries.entrySet()) {
+            final String stem = stemmer.normalize(entry.getKey());
+            final Polarity former = byStem.putIfAbsent(stem, entry.getValue());
+            if (former != null && former != entry.getValue()) {
+                ambiguous.add(stem);
+            }
+        }
+        byStem.keySet().removeAll(ambiguous);
     }
     
     /**
@@ -74,26 +110,28 @@ public final class FrenchSentimentDictionary implements SentimentDictionary {
 
     @Override
     public Optional<Polarity> lookup(Word word) {
-        final Polarity polarity = dictionary.get(word.value());
+        return lookup(word.valueId());
+    }
+    
+    private Optional<Polarity> lookup(int valueId) {
+        final Polarity polarity = valueId >= 0 && valueId < dictionary.length ? dictionary[valueId] : null;
         
         return polarity != null ? Optional.of(polarity) : Optional.empty();
     }
     
+    /**
+     * Looks the word up as is, then by its normalized form, which matches the
+     * inflections of the entries (e.g. "efficaces" matches "efficace")
+     */
     @Override
     public Optional<Polarity> stemAndlookup(Word word) {
-        final FrenchStemmer stemmer = FrenchStemmer.getInstance();
-        final Optional<String> stemmedValue = stemmer.stem(word);
-        
-        if (stemmedValue.isPresent()) {
-            final Word stemmed = new Word(stemmedValue.get(), word.id(), word.posTag());
-            final Optional<Polarity> stemLookup = lookup(stemmed);
-            
-            if (stemLookup.isPresent()) {
-                return stemLookup;
-            }
+        final Optional<Polarity> surfaceLookup = lookup(word);
+        if (surfaceLookup.isPresent()) {
+            return surfaceLookup;
         }
 
-        return lookup(word);
+        final String stem = FrenchStemmer.getInstance().normalize(word.value());
+        return Optional.ofNullable(byStem.get(stem));
     }
 
     @Override
@@ -101,4 +139,12 @@ public final class FrenchSentimentDictionary implements SentimentDictionary {
         return Language.FRENCH;
     }
     
+    /**
+     * Vocabulary ids are only valid within the running process, so a
+     * deserialized dictionary is replaced by the unique instance
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return getInstance();
+    }
+
 }
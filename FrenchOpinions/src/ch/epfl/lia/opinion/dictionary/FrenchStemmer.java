@@ -1,11 +1,11 @@
 package ch.epfl.lia.opinion.dictionary;
 
+import java.io.ObjectStreamException;
 import java.util.Optional;
 
 import org.tartarus.snowball.ext.frenchStemmer;
 
 import ch.epfl.lia.entity.Language;
-import ch.epfl.lia.nlp.Word;
 
 /**
  * Wraps a Snowball stemmer for French.<br>
@@ -18,7 +18,7 @@ public final class FrenchStemmer implements Stemmer {
     private static final long serialVersionUID = 1L;
     
     private static FrenchStemmer instance = null;
-    private final frenchStemmer stemmer;
+    private final transient frenchStemmer stemmer;
     
     private FrenchStemmer() {
         this.stemmer = new frenchStemmer();
@@ -38,10 +38,18 @@ public final class FrenchStemmer implements Stemmer {
     }
 
     @Override
-    public synchronized Optional<String> stem(Word word) {
-        stemmer.setCurrent(word.value());
+    public synchronized Optional<String> stem(String value) {
+        stemmer.setCurrent(value);
         stemmer.stem();
         return Optional.of(stemmer.getCurrent());
     }
 
+    /**
+     * The Snowball stemmer is not serializable, so a deserialized stemmer is
+     * replaced by the unique instance
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return getInstance();
+    }
+
 }
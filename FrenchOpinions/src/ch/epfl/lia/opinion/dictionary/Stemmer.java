@@ -1,10 +1,13 @@
 package ch.epfl.lia.opinion.dictionary;
 
 import java.io.Serializable;
+import java.util.Locale;
 import java.util.Optional;
 
+import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.nlp.Word;
 import ch.epfl.lia.util.LanguageDependent;
+import ch.epfl.lia.util.Preconditions;
 
 /**
  * Models a stemmer, which is a component that takes a word as input, and output
@@ -22,6 +25,45 @@ public interface Stemmer extends Serializable, LanguageDependent {
      * @return the stemmed version of the word, if any. In case of failure, an
      *         empty {@link Optional} is returned.
      */
-    Optional<String> stem(Word word);
+    default Optional<String> stem(Word word) {
+        return stem(word.value());
+    }
+    
+    /**
+     * @param value
+     *            the word to stem
+     * @return the stemmed version of the word, if any. In case of failure, an
+     *         empty {@link Optional} is returned.
+     */
+    Optional<String> stem(String value);
+    
+    /**
+     * @param value
+     *            the word to normalize
+     * @return the lower-cased, then stemmed (if possible) version of the word.
+     *         Two inflections of a same word share their normalized form.
+     */
+    default String normalize(String value) {
+        final String lowerCased = value.toLowerCase(Locale.ROOT);
+        return stem(lowerCased).orElse(lowerCased);
+    }
+    
+    /**
+     * @param language
+     *            the language of the stemmer
+     * @return the stemmer for this language
+     * @throws UnsupportedOperationException
+     *             if the language is not supported
+     */
+    static Stemmer getForLanguage(Language language) {
+        Preconditions.throwIfNull("language may not be null", language);
+        
+        switch (language) {
+        case FRENCH:
+            return FrenchStemmer.getInstance();
+        default:
+            throw new UnsupportedOperationException("no stemmer for language " + language);
+        }
+    }
     
 }
@@ -205,15 +205,15 @@ public final class FrenchDependencyExtractionPipeline implements DependencyExtra
                     continue;
                 }
                 
-                gov = analyzer.words().get(govId - 1).value();
+                gov = analyzer.wordAt(govId - 1).value();
                 
                 /* Skip junk tokens, as defined in the configuration */
                 if (!gov.matches(NOT_JUNK_DEP_REGEXP) || !dep.matches(NOT_JUNK_DEP_REGEXP)) {
                     continue;
                 }
                 
-                govPos = analyzer.words().get(govId - 1).posTag();
-                depPos = analyzer.words().get(depId - 1).posTag();
+                govPos = analyzer.wordAt(govId - 1).posTag();
+                depPos = analyzer.wordAt(depId - 1).posTag();
                 
                 /* Skip residual junk tokens */
                 if (govPos == null || depPos == null) {
@@ -1,9 +1,9 @@
 package ch.epfl.lia.parser;
 
 import static ch.epfl.lia.main.Config.PARSED_CONLL_FILES_LOCATION;
-import static ch.epfl.lia.main.Config.RAW_ARTICLES_LOCATION;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,39 +35,70 @@ public class FrenchParser extends LanguageParser {
 
     @Override
     public ParsedArticle parse(Article article) throws ParseException {
+        return parse(tag(article), null);
+    }
+    
+    @Override
+    public ParsedArticle tag(Article article) throws ParseException {
         Preconditions.throwIfNull("article may not be null", article);
         
-        /* Files location */
-        final String rawFileLocation = RAW_ARTICLES_LOCATION + article.id() + ".txt";
-        final String conllOutputLocation = PARSED_CONLL_FILES_LOCATION + article.id() + ".txt";
+        List<ParsedSentence> taggedSentences = new ArrayList<>();
+        List<String> nouns = new ArrayList<>();
+        
+        /* The contents already are in memory: the raw file, if any, is not read again */
+        for (List<HasWord> sentence : new DocumentPreprocessor(new StringReader(article.contents()))) {
+            List<Word> words = tagWords(TAGGER, sentence);
+            
+            /* Part of speech tags and nouns extraction */
+            nouns.addAll(new ParsingAnalyzer(words).nounsAsStrings());
+            
+            taggedSentences.add(new ParsedSentence(words, new ArrayList<>()));
+        }
+        
+        return new ParsedArticle(article.id(), taggedSentences, nouns);
+    }
+    
+    @Override
+    public ParsedArticle parse(ParsedArticle tagged, SentenceScreener screener) throws ParseException {
+        Preconditions.throwIfNull("tagged article may not be null", tagged);
         
         List<ParsedSentence> parsedSentences = new ArrayList<>();
-        List<String> nouns = new ArrayList<>();
         
-        try {
-            for (List<HasWord> sentence : new DocumentPreprocessor(rawFileLocation)) {
-                List<Word> words = tagWords(TAGGER, sentence);
-                ConllWriter.writeWordsAsConll(words, conllOutputLocation);
-                
-                final ParsingAnalyzer analyzer = new ParsingAnalyzer(words);
-                
-                /* Dependencies extraction */
-                FrenchDependencyExtractionPipeline pipeline = new FrenchDependencyExtractionPipeline(
-                        conllOutputLocation, analyzer);
-                List<Dependency> dependencies = pipeline.extract();
-                
-                /* Part of speech tags and nouns extraction */
-                nouns.addAll(analyzer.nounsAsStrings());
-                
-                /* Saving the extracted features */
-                parsedSentences.add(new ParsedSentence(words, dependencies));
+        for (ParsedSentence sentence : tagged.parsedSentences()) {
+            /* Sentences that cannot yield any opinion are not worth parsing */
+            if (screener != null && !screener.isCandidate(sentence.words())) {
+                parsedSentences.add(sentence);
+            } else {
+                parsedSentences.add(parse(tagged.id(), sentence));
             }
+        }
+        
+        return new ParsedArticle(tagged.id(), parsedSentences, tagged.nouns());
+    }
+    
+    @Override
+    public ParsedSentence parse(int articleId, ParsedSentence tagged) throws ParseException {
+        Preconditions.throwIfNull("tagged sentence may not be null", tagged);
+        
+        /* File location */
+        final String conllOutputLocation = PARSED_CONLL_FILES_LOCATION + articleId + ".txt";
+        
+        final List<Word> words = tagged.words();
+        
+        try {
+            ConllWriter.writeWordsAsConll(words, conllOutputLocation);
+            
+            /* Dependencies extraction */
+            FrenchDependencyExtractionPipeline pipeline = new FrenchDependencyExtractionPipeline(
+                    conllOutputLocation, new ParsingAnalyzer(words));
+            List<Dependency> dependencies = pipeline.extract();
+            
+            /* Saving the extracted features */
+            return new ParsedSentence(words, dependencies);
             
         } catch (IOException | DependencyExtractionException e) {
             throw new ParseException(e);
         }
-        
-        return new ParsedArticle(article.id(), parsedSentences, nouns);
     }
     
     /**
@@ -6,6 +6,7 @@ import java.util.Map;
 import ch.epfl.lia.entity.Article;
 import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
 import ch.epfl.lia.util.LanguageDependent;
 
 /**
@@ -30,6 +31,44 @@ public abstract class LanguageParser implements LanguageDependent {
      */
     public abstract ParsedArticle parse(Article article) throws ParseException;
     
+    /**
+     * First pass of the two-pass mode: tags the provided Article, without
+     * extracting any dependency. The sentences of the returned parsed article
+     * hold their words only, but all the nouns are extracted.
+     * 
+     * @param article
+     *            the article to tag
+     * @return the tagged article
+     * @see #parse(ParsedArticle, SentenceScreener)
+     */
+    public abstract ParsedArticle tag(Article article) throws ParseException;
+    
+    /**
+     * Second pass of the two-pass mode: extracts the dependencies of the
+     * sentences of a tagged article. Sentences rejected by the screener are
+     * kept as is, i.e. without dependencies.
+     * 
+     * @param tagged
+     *            the article, as returned by {@link #tag(Article)}
+     * @param screener
+     *            the screener deciding which sentences to parse. If
+     *            {@code null}, all sentences are parsed
+     * @return the article parsed with the language parser
+     */
+    public abstract ParsedArticle parse(ParsedArticle tagged, SentenceScreener screener) throws ParseException;
+    
+    /**
+     * Extracts the dependencies of a single tagged sentence
+     * 
+     * @param articleId
+     *            id of the article the sentence belongs to
+     * @param tagged
+     *            the sentence, as contained in an article returned by
+     *            {@link #tag(Article)}
+     * @return the sentence, along with its dependencies
+     */
+    public abstract ParsedSentence parse(int articleId, ParsedSentence tagged) throws ParseException;
+    
     /**
      * @param language
      *            the language to get a parser for
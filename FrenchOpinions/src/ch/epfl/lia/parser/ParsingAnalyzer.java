@@ -1,6 +1,7 @@
 package ch.epfl.lia.parser;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -8,6 +9,9 @@ import ch.epfl.lia.nlp.Word;
 import static ch.epfl.lia.util.NLPUtils.POS_NOUNS_FR;
 
 /**
+ * Gives access to the words of a tagged sentence, and to its nouns. The
+ * accessors return unmodifiable views, which are not copied.
+ * 
  * @author Cyriaque Brousse
  */
 public class ParsingAnalyzer {
@@ -16,16 +20,32 @@ public class ParsingAnalyzer {
     private final List<Word> nouns;
 
     public ParsingAnalyzer(List<Word> words) {
-        this.words = new ArrayList<>(words);
-        this.nouns = initNouns();
+        this.words = Collections.unmodifiableList(new ArrayList<>(words));
+        this.nouns = Collections.unmodifiableList(initNouns());
     }
     
     public List<Word> words() {
-        return new ArrayList<>(words);
+        return words;
     }
     
     public List<Word> nouns() {
-        return new ArrayList<>(nouns);
+        return nouns;
+    }
+    
+    /**
+     * @return the number of words of the sentence
+     */
+    public int size() {
+        return words.size();
+    }
+    
+    /**
+     * @param index
+     *            the index of a word, from 0
+     * @return the word
+     */
+    public Word wordAt(int index) {
+        return words.get(index);
     }
     
     public List<String> nounsAsStrings() {
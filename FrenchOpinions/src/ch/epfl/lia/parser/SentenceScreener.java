@@ -0,0 +1,110 @@
+package ch.epfl.lia.parser;
+
+import static ch.epfl.lia.main.Config.NOT_JUNK_DEP_REGEXP;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.SentimentDictionary;
+import ch.epfl.lia.opinion.dictionary.Stemmer;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Decides, from the tagged words only, whether a sentence may yield an
+ * opinion, and thus whether it is worth running the dependency parser on it.
+ * <p>
+ * An opinion is always made of two distinct words of the sentence: a topic
+ * key, and a word found in the sentiment dictionary (as is, or stemmed). A
+ * sentence that does not contain such a couple is skipped.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class SentenceScreener {
+
+    private final Set<String> topicKeys;
+    private final SentimentDictionary dictionary;
+    private final Stemmer stemmer;
+    
+    /* Statistics */
+    private final AtomicLong screened = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    
+    public SentenceScreener(Collection<Topic> topics, SentimentDictionary dictionary) {
+        Preconditions.throwIfNullOrEmpty("topics are needed", topics);
+        Preconditions.throwIfNull("a dictionary is needed", dictionary);
+        
+        this.stemmer = Stemmer.getForLanguage(dictionary.getLanguage());
+        this.topicKeys = new HashSet<>();
+        topics.forEach(t -> topicKeys.addAll(t.normalizedKeys(stemmer)));
+        this.dictionary = dictionary;
+    }
+    
+    /**
+     * @param words
+     *            the tagged words of the sentence
+     * @return {@code true} if the sentence contains a topic key and another
+     *         polar word, {@code false} otherwise
+     */
+    public boolean isCandidate(List<Word> words) {
+        Preconditions.throwIfNull("words may not be null", words);
+        screened.incrementAndGet();
+        
+        boolean hasTopicWord = false;
+        boolean hasPolarWord = false;
+        
+        for (Word word : words) {
+            if (!word.value().matches(NOT_JUNK_DEP_REGEXP)) {
+                continue;
+            }
+            
+            final boolean isTopicWord = topicKeys.contains(stemmer.normalize(word.value()));
+            final boolean isPolarWord = dictionary.stemAndlookup(word).isPresent();
+            
+            /* The words seen before are distinct from the current one */
+            if (isTopicWord && hasPolarWord || isPolarWord && hasTopicWord) {
+                return true;
+            }
+            
+            hasTopicWord |= isTopicWord;
+            hasPolarWord |= isPolarWord;
+        }
+        
+        skipped.incrementAndGet();
+        return false;
+    }
+    
+    /**
+     * @return the number of sentences screened so far
+     */
+    public long screenedCount() {
+        return screened.get();
+    }
+    
+    /**
+     * @return the number of sentences skipped so far
+     */
+    public long skippedCount() {
+        return skipped.get();
+    }
+    
+    /**
+     * @return the proportion of screened sentences that were skipped, or
+     *         {@link Double#NaN} if no sentence was screened
+     */
+    public double skipRate() {
+        final long total = screenedCount();
+        return total == 0 ? Double.NaN : (double) skippedCount() / total;
+    }
+    
+    @Override
+    public String toString() {
+        return "Screened sentences:\t" + screenedCount() + "\nSkipped sentences:\t" + skippedCount()
+                + " (" + String.format("%.1f", 100 * skipRate()) + "%)";
+    }
+}
@@ -0,0 +1,383 @@
+package ch.epfl.lia.storage;
+
+import static ch.epfl.lia.storage.VarInts.readVarInt;
+import static ch.epfl.lia.storage.VarInts.readVarLong;
+import static ch.epfl.lia.storage.VarInts.writeVarInt;
+import static ch.epfl.lia.storage.VarInts.writeVarLong;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.parser.ParseException;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Versioned binary format for (parsed) articles, in place of Java
+ * serialization.
+ * <p>
+ * After a magic number and the format version, the article fields are
+ * written, then, if the article is parsed, a table of all the distinct
+ * strings of the parse (word values, POS tags, relations, nouns). Words are
+ * then written as indices into this table, and dependencies as indices into
+ * the words of their sentence, so that a word shared by several dependencies
+ * is stored once. All integers are varints (see {@link VarInts}).
+ * </p>
+ * <p>
+ * Parse trees are not part of the format (see {@link #canEncode(Article)}).
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class ArticleCodec {
+
+    /** Magic number at the start of encoded articles ("FOPA") */
+    public static final int MAGIC = 0x464F5041;
+    
+    /** Current version of the format */
+    public static final int VERSION = 1;
+    
+    private ArticleCodec() { }
+    
+    /**
+     * @param article
+     *            an article
+     * @return {@code true} if the article can be encoded, that is if none of
+     *         its sentences carries a parse tree
+     */
+    public static boolean canEncode(Article article) {
+        Preconditions.throwIfNull("article may not be null", article);
+        if (!article.isParsed()) {
+            return true;
+        }
+        
+        return parsedOf(article).parsedSentences().stream().noneMatch(s -> s.parseTree().isPresent());
+    }
+    
+    /**
+     * @param header
+     *            the first bytes of a file
+     * @return {@code true} if the bytes start with the magic number of the
+     *         format
+     */
+    public static boolean hasMagic(byte[] header) {
+        return header.length >= 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16
+                | (header[2] & 0xFF) << 8 | header[3] & 0xFF) == MAGIC;
+    }
+    
+    /**
+     * @param article
+     *            the article to encode
+     * @return the encoded article
+     * @throws IllegalArgumentException
+     *             if the article cannot be encoded
+     */
+    public static byte[] encode(Article article) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encode(article, bytes);
+        } catch (IOException e) {
+            /* Cannot happen with an in-memory stream */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * @param article
+     *            the article to encode
+     * @param out
+     *            the stream to write to. It is flushed, but not closed.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if the article cannot be encoded
+     */
+    public static void encode(Article article, OutputStream out) throws IOException {
+        Preconditions.throwIfNull("article and stream may not be null", article, out);
+        if (!canEncode(article)) {
+            throw new IllegalArgumentException("parse trees cannot be encoded");
+        }
+        
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        writeVarInt(data, VERSION);
+        
+        writeVarInt(data, article.id());
+        writeString(data, article.language().shortName());
+        writeNullableString(data, article.location());
+        writeNullableString(data, article.imageLocation());
+        writeString(data, article.title());
+        writeString(data, article.contents());
+        writeVarLong(data, article.creationDate().getTime());
+        writeVarInt(data, article.creationDate().getNanos());
+        
+        data.writeBoolean(article.isParsed());
+        if (article.isParsed()) {
+            writeParsed(data, parsedOf(article));
+        }
+        
+        data.flush();
+    }
+    
+    /**
+     * @param bytes
+     *            an encoded article
+     * @return the decoded article
+     * @throws IOException
+     *             if the bytes are not a valid encoded article
+     */
+    public static Article decode(byte[] bytes) throws IOException {
+        return decode(new ByteArrayInputStream(bytes));
+    }
+    
+    /**
+     * @param in
+     *            the stream to read the encoded article from. It is not
+     *            closed.
+     * @return the decoded article
+     * @throws IOException
+     *             if the stream does not contain a valid encoded article, or
+     *             failed
+     */
+    public static Article decode(InputStream in) throws IOException {
+        Preconditions.throwIfNull("stream may not be null", in);
+        
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new StreamCorruptedException("not an encoded article");
+        }
+        final int version = readVarInt(data);
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported format version " + version);
+        }
+        
+        final int id = readVarInt(data);
+        final Language language = languageOf(readString(data));
+        final String location = readNullableString(data);
+        final String imageLocation = readNullableString(data);
+        final String title = readString(data);
+        final String contents = readString(data);
+        final Timestamp creationDate = new Timestamp(readVarLong(data));
+        creationDate.setNanos(readVarInt(data));
+        
+        final ParsedArticle parsed = data.readBoolean() ? readParsed(data, id) : null;
+        
+        try {
+            return new Article(id, language, location, imageLocation, title, contents, creationDate, parsed);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new StreamCorruptedException("invalid article: " + e.getMessage());
+        }
+    }
+    
+    private static void writeParsed(DataOutput out, ParsedArticle parsed) throws IOException {
+        final List<ParsedSentence> sentences = parsed.parsedSentences();
+        
+        /* String table */
+        final Map<String, Integer> table = new LinkedHashMap<>();
+        parsed.nouns().forEach(n -> table.putIfAbsent(n, table.size()));
+        for (ParsedSentence sentence : sentences) {
+            for (Word word : sentence.words()) {
+                table.putIfAbsent(word.value(), table.size());
+                table.putIfAbsent(word.posTag(), table.size());
+            }
+            for (Dependency dependency : sentence.dependencies()) {
+                table.putIfAbsent(dependency.reln(), table.size());
+                for (Word word : new Word[] {dependency.gov(), dependency.dep()}) {
+                    table.putIfAbsent(word.value(), table.size());
+                    table.putIfAbsent(word.posTag(), table.size());
+                }
+            }
+        }
+        writeVarInt(out, table.size());
+        for (String s : table.keySet()) {
+            writeString(out, s);
+        }
+        
+        writeVarInt(out, parsed.nouns().size());
+        for (String noun : parsed.nouns()) {
+            writeVarInt(out, table.get(noun));
+        }
+        
+        writeVarInt(out, sentences.size());
+        for (ParsedSentence sentence : sentences) {
+            final List<Word> words = sentence.words();
+            final List<Dependency> dependencies = sentence.dependencies();
+            
+            /* Words only found in dependencies are appended after the others */
+            final Map<Word, Integer> indices = new HashMap<>();
+            words.forEach(w -> indices.putIfAbsent(w, indices.size()));
+            final List<Word> extra = new ArrayList<>();
+            for (Dependency dependency : dependencies) {
+                for (Word word : new Word[] {dependency.gov(), dependency.dep()}) {
+                    if (!indices.containsKey(word)) {
+                        indices.put(word, words.size() + extra.size());
+                        extra.add(word);
+                    }
+                }
+            }
+            
+            writeWords(out, words, table);
+            writeWords(out, extra, table);
+            
+            writeVarInt(out, dependencies.size());
+            for (Dependency dependency : dependencies) {
+                writeVarInt(out, table.get(dependency.reln()));
+                writeVarInt(out, indices.get(dependency.gov()));
+                writeVarInt(out, indices.get(dependency.dep()));
+            }
+        }
+    }
+    
+    private static ParsedArticle readParsed(DataInput in, int id) throws IOException {
+        final String[] table = new String[readVarInt(in)];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readString(in);
+        }
+        
+        try {
+            final int nounCount = readVarInt(in);
+            final List<String> nouns = new ArrayList<>(nounCount);
+            for (int i = 0; i < nounCount; i++) {
+                nouns.add(table[readVarInt(in)]);
+            }
+            
+            final int sentenceCount = readVarInt(in);
+            final List<ParsedSentence> sentences = new ArrayList<>(sentenceCount);
+            for (int s = 0; s < sentenceCount; s++) {
+                final List<Word> words = readWords(in, table);
+                final List<Word> all = new ArrayList<>(words);
+                all.addAll(readWords(in, table));
+                
+                final int dependencyCount = readVarInt(in);
+                final List<Dependency> dependencies = new ArrayList<>(dependencyCount);
+                for (int d = 0; d < dependencyCount; d++) {
+                    final String reln = table[readVarInt(in)];
+                    dependencies.add(new Dependency(reln, all.get(readVarInt(in)), all.get(readVarInt(in))));
+                }
+                
+                sentences.add(new ParsedSentence(words, dependencies));
+            }
+            
+            return new ParsedArticle(id, sentences, nouns);
+            
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | NullPointerException e) {
+            throw new StreamCorruptedException("invalid parsed article: " + e.getMessage());
+        }
+    }
+    
+    private static void writeWords(DataOutput out, List<Word> words, Map<String, Integer> table)
+            throws IOException {
+        writeVarInt(out, words.size());
+        for (Word word : words) {
+            writeVarInt(out, table.get(word.value()));
+            writeVarInt(out, table.get(word.posTag()));
+            writeVarInt(out, word.id());
+        }
+    }
+    
+    private static List<Word> readWords(DataInput in, String[] table) throws IOException {
+        final int count = readVarInt(in);
+        final List<Word> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String value = table[readVarInt(in)];
+            final String posTag = table[readVarInt(in)];
+            words.add(new Word(value, readVarInt(in), posTag));
+        }
+        return words;
+    }
+    
+    /**
+     * Writes a word on its own, with its strings in full (and not as indices
+     * into a table)
+     */
+    static void writeWord(DataOutput out, Word word) throws IOException {
+        writeString(out, word.value());
+        writeString(out, word.posTag());
+        writeVarInt(out, word.id());
+    }
+    
+    /**
+     * Reads a word written by {@link #writeWord(DataOutput, Word)}
+     */
+    static Word readWord(DataInput in) throws IOException {
+        final String value = readString(in);
+        final String posTag = readString(in);
+        try {
+            return new Word(value, readVarInt(in), posTag);
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("invalid word: " + e.getMessage());
+        }
+    }
+    
+    static void writeString(DataOutput out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+    
+    static String readString(DataInput in) throws IOException {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /* Nullable strings: length + 1, or 0 for null */
+    private static void writeNullableString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+        } else {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+    
+    private static String readNullableString(DataInput in) throws IOException {
+        final int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static Language languageOf(String shortName) throws IOException {
+        for (Language language : Language.values()) {
+            if (language.shortName().equals(shortName)) {
+                return language;
+            }
+        }
+        throw new StreamCorruptedException("unknown language " + shortName);
+    }
+    
+    private static ParsedArticle parsedOf(Article article) {
+        try {
+            return article.parse(null);
+        } catch (ParseException e) {
+            /* Cannot happen: the article is already parsed */
+            throw new IllegalStateException(e);
+        }
+    }
+    
+}
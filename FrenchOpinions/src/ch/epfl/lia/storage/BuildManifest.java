@@ -0,0 +1,270 @@
+package ch.epfl.lia.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Manifest of the artefacts built from the articles, for incremental
+ * reprocessing. For each artefact of an article, it records the content hash
+ * of the input it was built from, and the versions of everything else it
+ * depends on (models, dictionary, rules...). An artefact is <em>fresh</em> if
+ * both still match: it may be reused. Otherwise it is <em>stale</em>, and must
+ * be built again.
+ * <p>
+ * The manifest is a text file, with one tab-separated line per artefact:
+ * {@code artefact id inputHash versions}. It is written anew by
+ * {@link #save()}, through a temporary file, so that it is never left half
+ * written. An artefact is to be recorded only once it is on the disk.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class BuildManifest {
+
+    /**
+     * The kinds of artefacts built from an article
+     */
+    public enum Artefact {
+    
+        /** The tagged and parsed article, in the store of parsed articles */
+        PARSED_ARTICLE,
+        
+        /** The opinions of the article, in the opinion log */
+        OPINIONS;
+        
+    }
+    
+    private final Path path;
+    private final Map<Artefact, Map<Integer, Stamp>> stamps = new EnumMap<>(Artefact.class);
+    private int fresh = 0;
+    private int stale = 0;
+    
+    private BuildManifest(Path path) {
+        this.path = path;
+        for (Artefact artefact : Artefact.values()) {
+            stamps.put(artefact, new HashMap<>());
+        }
+    }
+    
+    /**
+     * @param location
+     *            the manifest file
+     * @return the manifest read from the file, or an empty one if there is
+     *         none yet
+     * @throws IOException
+     *             if the file could not be read, or is malformed
+     */
+    public static BuildManifest load(String location) throws IOException {
+        Preconditions.throwIfEmptyString("no location was provided", location);
+        
+        final BuildManifest manifest = new BuildManifest(Paths.get(location));
+        if (!Files.isRegularFile(manifest.path)) {
+            return manifest;
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(manifest.path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                
+                final String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    throw new IOException("malformed manifest line: " + line);
+                }
+                try {
+                    manifest.stamps.get(Artefact.valueOf(fields[0]))
+                            .put(Integer.parseInt(fields[1]), new Stamp(fields[2], fields[3]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("malformed manifest line: " + line, e);
+                }
+            }
+        }
+        
+        return manifest;
+    }
+    
+    /**
+     * @param artefact
+     *            the kind of artefact
+     * @param articleId
+     *            the id of the article it was built from
+     * @param inputHash
+     *            the content hash of the current input
+     * @param versions
+     *            the current versions of its other dependencies
+     * @return {@code true} if the artefact was recorded with the same input
+     *         hash and versions, and may thus be reused
+     */
+    public synchronized boolean isFresh(Artefact artefact, int articleId, String inputHash, String versions) {
+        Preconditions.throwIfNull("artefact, input hash and versions may not be null", artefact, inputHash,
+                versions);
+        
+        final Stamp stamp = stamps.get(artefact).get(articleId);
+        final boolean isFresh = stamp != null && stamp.inputHash.equals(inputHash)
+                && stamp.versions.equals(versions);
+        if (isFresh) {
+            fresh++;
+        } else {
+            stale++;
+        }
+        return isFresh;
+    }
+    
+    /**
+     * @return {@code true} if the artefact was ever recorded, whatever its
+     *         input hash and versions
+     */
+    public synchronized boolean isRecorded(Artefact artefact, int articleId) {
+        return stamps.get(artefact).containsKey(articleId);
+    }
+    
+    /**
+     * @param inputHash
+     *            the content hash of the current input
+     * @return the versions the artefact was recorded with, if it was recorded
+     *         with the same input hash, or {@code null}
+     */
+    public synchronized String recordedVersions(Artefact artefact, int articleId, String inputHash) {
+        Preconditions.throwIfNull("artefact and input hash may not be null", artefact, inputHash);
+        
+        final Stamp stamp = stamps.get(artefact).get(articleId);
+        return stamp != null && stamp.inputHash.equals(inputHash) ? stamp.versions : null;
+    }
+    
+    /**
+     * Records that the artefact was built (and is on the disk)
+     * 
+     * @param inputHash
+     *            the content hash of the input it was built from
+     * @param versions
+     *            the versions of its other dependencies
+     */
+    public synchronized void record(Artefact artefact, int articleId, String inputHash, String versions) {
+        Preconditions.throwIfNull("artefact, input hash and versions may not be null", artefact, inputHash,
+                versions);
+        if (inputHash.contains("\t") || versions.contains("\t") || versions.contains("\n")) {
+            throw new IllegalArgumentException("input hash and versions may not contain tabs or line breaks");
+        }
+        
+        stamps.get(artefact).put(articleId, new Stamp(inputHash, versions));
+    }
+    
+    /**
+     * Forgets the artefact, which is thus stale from now on
+     */
+    public synchronized void invalidate(Artefact artefact, int articleId) {
+        stamps.get(artefact).remove(articleId);
+    }
+    
+    /**
+     * Writes the manifest to its file
+     * 
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Artefact artefact : Artefact.values()) {
+                /* Sorted by id, for the file to be diffable */
+                for (Map.Entry<Integer, Stamp> entry : new TreeMap<>(stamps.get(artefact)).entrySet()) {
+                    writer.write(artefact.name() + '\t' + entry.getKey() + '\t' + entry.getValue().inputHash
+                            + '\t' + entry.getValue().versions);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * @return the content hash of the article: its language, title and
+     *         contents (but not its dates, which are not content)
+     */
+    public static String contentHash(Article article) {
+        Preconditions.throwIfNull("article may not be null", article);
+        return hash(article.language().name(), article.title(), article.contents());
+    }
+    
+    /**
+     * @return the hexadecimal SHA-256 digest of the provided parts
+     */
+    public static String hash(String... parts) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform is required to support SHA-256 */
+            throw new IllegalStateException(e);
+        }
+        
+        for (String part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * @param location
+     *            a file an artefact depends on (a model, a dictionary...)
+     * @return its version, made of its name, size and modification time (or
+     *         {@code :absent} if there is no such file). Files are not hashed,
+     *         since models weigh tens of megabytes.
+     */
+    public static String fileVersion(String location) {
+        final File file = new File(location);
+        if (!file.isFile()) {
+            return file.getName() + ":absent";
+        }
+        return file.getName() + ':' + file.length() + ':' + file.lastModified();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("Build manifest: %d parsed article(s), %d opinion set(s); %d fresh, %d stale",
+                stamps.get(Artefact.PARSED_ARTICLE).size(), stamps.get(Artefact.OPINIONS).size(), fresh, stale);
+    }
+    
+    /**
+     * The input hash and versions an artefact was built with
+     */
+    private static final class Stamp {
+    
+        private final String inputHash;
+        private final String versions;
+        
+        Stamp(String inputHash, String versions) {
+            this.inputHash = inputHash;
+            this.versions = versions;
+        }
+        
+    }
+    
+}
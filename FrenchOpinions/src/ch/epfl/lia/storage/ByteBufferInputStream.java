@@ -0,0 +1,55 @@
+package ch.epfl.lia.storage;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining bytes of a buffer, without copying them
+ * 
+ * @author Cyriaque Brousse
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    
+    /**
+     * @param buffer
+     *            the buffer to read from, from its position to its limit. It
+     *            is consumed by the stream.
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        
+        final int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+    
+    @Override
+    public long skip(long n) {
+        final int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+    
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+    
+}
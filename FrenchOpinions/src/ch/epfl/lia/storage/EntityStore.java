@@ -0,0 +1,789 @@
+package ch.epfl.lia.storage;
+
+import static ch.epfl.lia.main.Config.ENTITY_STORE_BATCH_SIZE;
+import static ch.epfl.lia.main.Config.ENTITY_STORE_LOCATION;
+import static ch.epfl.lia.main.Config.ENTITY_STORE_QUEUE_CAPACITY;
+
+import static ch.epfl.lia.storage.VarInts.readVarInt;
+import static ch.epfl.lia.storage.VarInts.writeVarInt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Embedded store of topics and opinions, in a single append-only log file.
+ * Parsed articles are kept along with their article, in the
+ * {@link ParsedArticleStore}.
+ * <p>
+ * Writes are <em>behind</em>: saving or deleting an entity takes effect in
+ * memory at once, and enqueues a log record, which a background thread
+ * appends later. The thread drains as many records as are waiting (up to
+ * {@link ch.epfl.lia.main.Config#ENTITY_STORE_BATCH_SIZE}), writes them at
+ * once and forces them to the disk with a single {@code fsync}: saving the
+ * thousands of opinions of an article thus takes a handful of commits. Use
+ * {@link #sync()} to wait until everything saved so far is on the disk.
+ * </p>
+ * <p>
+ * Topics and opinions are kept in memory, along with secondary indexes of the
+ * opinions by article, topic and polarity. On opening, the log is replayed to
+ * rebuild them; a record cut short by a crash is detected by its length or
+ * checksum, and truncated.
+ * </p>
+ * <p>
+ * Entities are written with the strings and words of {@link ArticleCodec},
+ * and varints. An opinion refers to its topic by id: saving an opinion saves
+ * its topic first if needed, and deleting a topic deletes its opinions. Saving
+ * an entity equal to a stored one (for opinions: in the same article)
+ * supersedes it, and keeps its id, which is given by the store.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class EntityStore implements Closeable {
+
+    /** Magic number at the start of the log ("FOPE") */
+    private static final int LOG_MAGIC = 0x464F5045;
+    private static final int LOG_VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 8;
+
+    /** Record header: payload length, checksum, kind, operation, id */
+    private static final int RECORD_HEADER_SIZE = 14;
+    
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+    
+    private static EntityStore instance = null;
+    
+    private final FileChannel channel;
+    private final int maxBatchSize;
+    private final BlockingQueue<Record> queue;
+    private final Thread committer;
+    
+    /* Serializes the producers, so that the log order is the order of the in-memory updates */
+    private final Object enqueueLock = new Object();
+    
+    /* In-memory state, guarded by this */
+    private final Map<Integer, Topic> topics = new HashMap<>();
+    private final Map<Topic, Integer> topicIds = new HashMap<>();
+    private final Map<Integer, Opinion> opinions = new HashMap<>();
+    /* An opinion is equal to another of the same sentence of the same article only (see Opinion#equals) */
+    private final Map<Opinion, Integer> opinionIds = new HashMap<>();
+    private final Map<Integer, Set<Integer>> opinionsByArticle = new HashMap<>();
+    private final Map<Topic, Set<Integer>> opinionsByTopic = new HashMap<>();
+    private final Map<Polarity, Set<Integer>> opinionsByPolarity = new EnumMap<>(Polarity.class);
+    private int nextId = 0;
+    private long end;
+    private long commitCount = 0;
+    private long committedRecords = 0;
+    private CompletableFuture<Void> lastEnqueued = CompletableFuture.completedFuture(null);
+    private IOException failure = null;
+    private boolean closed = false;
+    
+    /**
+     * Opens the store in the provided log file, creating it if needed, and
+     * replays it
+     * 
+     * @param location
+     *            the log file
+     * @param maxBatchSize
+     *            maximal number of records per commit
+     * @param queueCapacity
+     *            number of waiting records from which saving blocks until the
+     *            log catches up
+     * @throws IOException
+     *             if the log could not be read, or is not the log of a store
+     */
+    public EntityStore(String location, int maxBatchSize, int queueCapacity) throws IOException {
+        Preconditions.throwIfNull("location may not be null", location);
+        if (maxBatchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("batch size and queue capacity must be positive");
+        }
+        
+        final Path path = Paths.get(location);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        
+        replay();
+        
+        this.committer = new Thread(this::commitLoop, "entity-store-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+    
+    /**
+     * @return the store at {@link ch.epfl.lia.main.Config#ENTITY_STORE_LOCATION},
+     *         opened on first call, and closed on shutdown
+     * @throws UncheckedIOException
+     *             if the store could not be opened
+     */
+    public static synchronized EntityStore getInstance() {
+        if (instance == null) {
+            try {
+                instance = new EntityStore(ENTITY_STORE_LOCATION, ENTITY_STORE_BATCH_SIZE,
+                        ENTITY_STORE_QUEUE_CAPACITY);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            
+            final EntityStore opened = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * @param topic
+     *            the topic to save
+     * @return its id
+     */
+    public int save(Topic topic) {
+        Preconditions.throwIfNull("topic may not be null", topic);
+        final byte[] payload = encode(topic);
+        
+        synchronized (enqueueLock) {
+            final int id;
+            synchronized (this) {
+                ensureOpen();
+                final Integer existing = topicIds.get(topic);
+                id = existing != null ? existing : nextId++;
+                putTopic(id, topic);
+            }
+            enqueue(new Record(Kind.TOPIC, PUT, id, payload));
+            return id;
+        }
+    }
+    
+    /**
+     * @param opinion
+     *            the opinion to save
+     * @return its id
+     */
+    public int save(Opinion opinion) {
+        return saveAll(Collections.singletonList(opinion)).get(0);
+    }
+    
+    /**
+     * Saves the provided opinions, which are committed together (unless they
+     * outnumber the maximal batch size), along with the topics not saved yet
+     * 
+     * @param opinions
+     *            the opinions to save
+     * @return their ids, in iteration order
+     */
+    public List<Integer> saveAll(Collection<Opinion> opinions) {
+        Preconditions.throwIfNull("opinions may not be null", opinions);
+        for (Opinion opinion : opinions) {
+            Preconditions.throwIfNull("opinion may not be null", opinion);
+        }
+        
+        final List<Integer> ids = new ArrayList<>(opinions.size());
+        final List<Record> records = new ArrayList<>(opinions.size());
+        synchronized (enqueueLock) {
+            synchronized (this) {
+                ensureOpen();
+                for (Opinion opinion : opinions) {
+                    Integer topicId = topicIds.get(opinion.topic());
+                    if (topicId == null) {
+                        topicId = nextId++;
+                        putTopic(topicId, opinion.topic());
+                        records.add(new Record(Kind.TOPIC, PUT, topicId, encode(opinion.topic())));
+                    }
+                    
+                    final Integer existing = opinionIds.get(opinion);
+                    final int id = existing != null ? existing : nextId++;
+                    putOpinion(id, opinion);
+                    ids.add(id);
+                    records.add(new Record(Kind.OPINION, PUT, id, encode(opinion, topicId)));
+                }
+            }
+            for (Record record : records) {
+                enqueue(record);
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * @param topic
+     *            the topic to delete, along with its opinions
+     * @return {@code true} if it was in the store
+     */
+    public boolean delete(Topic topic) {
+        Preconditions.throwIfNull("topic may not be null", topic);
+        synchronized (enqueueLock) {
+            final List<Record> records = new ArrayList<>();
+            synchronized (this) {
+                ensureOpen();
+                final Integer id = topicIds.get(topic);
+                if (id == null) {
+                    return false;
+                }
+                
+                /* The opinions go first: on replay, an opinion needs its topic */
+                for (int opinionId : new ArrayList<>(opinionsByTopic.getOrDefault(topic, Collections.emptySet()))) {
+                    removeOpinion(opinionId);
+                    records.add(new Record(Kind.OPINION, DELETE, opinionId, new byte[0]));
+                }
+                removeTopic(id);
+                records.add(new Record(Kind.TOPIC, DELETE, id, new byte[0]));
+            }
+            for (Record record : records) {
+                enqueue(record);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * @param opinion
+     *            the opinion to delete, from the article it is attached to
+     * @return {@code true} if it was in the store
+     */
+    public boolean delete(Opinion opinion) {
+        Preconditions.throwIfNull("opinion may not be null", opinion);
+        synchronized (enqueueLock) {
+            final Integer id;
+            synchronized (this) {
+                ensureOpen();
+                id = opinionIds.get(opinion);
+                if (id == null) {
+                    return false;
+                }
+                removeOpinion(id);
+            }
+            enqueue(new Record(Kind.OPINION, DELETE, id, new byte[0]));
+            return true;
+        }
+    }
+    
+    /**
+     * @return the topic with the provided id, or {@code null}
+     */
+    public synchronized Topic topic(int id) {
+        return topics.get(id);
+    }
+    
+    /**
+     * @return the opinion with the provided id, or {@code null}
+     */
+    public synchronized Opinion opinion(int id) {
+        return opinions.get(id);
+    }
+    
+    /**
+     * @return the saved topics
+     */
+    public synchronized List<Topic> topics() {
+        return new ArrayList<>(topics.values());
+    }
+    
+    /**
+     * @return the saved opinions of the provided article
+     */
+    public synchronized List<Opinion> opinionsOfArticle(int articleId) {
+        return lookup(opinionsByArticle.get(articleId));
+    }
+    
+    /**
+     * @return the saved opinions related to the provided topic
+     */
+    public synchronized List<Opinion> opinionsOfTopic(Topic topic) {
+        return lookup(opinionsByTopic.get(topic));
+    }
+    
+    /**
+     * @return the saved opinions of the provided polarity
+     */
+    public synchronized List<Opinion> opinionsWithPolarity(Polarity polarity) {
+        return lookup(opinionsByPolarity.get(polarity));
+    }
+    
+    /**
+     * Waits until all the records enqueued so far are on the disk
+     * 
+     * @throws IOException
+     *             if a commit failed
+     */
+    public void sync() throws IOException {
+        final CompletableFuture<Void> last;
+        synchronized (this) {
+            last = lastEnqueued;
+        }
+        
+        try {
+            last.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the log");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    /**
+     * @return the number of commits (and thus of {@code fsync}s) so far
+     */
+    public synchronized long commitCount() {
+        return commitCount;
+    }
+    
+    /**
+     * @return the number of records committed so far
+     */
+    public synchronized long committedRecords() {
+        return committedRecords;
+    }
+    
+    /**
+     * @return the number of records waiting to be committed
+     */
+    public int pendingRecords() {
+        return queue.size();
+    }
+    
+    /**
+     * Commits the waiting records, then closes the log
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (enqueueLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            enqueue(new Record(null, PUT, 0, new byte[0]));
+        }
+        
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the log");
+        } finally {
+            channel.close();
+        }
+        
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("Entity store: %d topic(s), %d opinion(s); %d record(s) in %d commit(s), %d pending",
+                topics.size(), opinions.size(), committedRecords, commitCount, queue.size());
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("entity store is closed");
+        }
+    }
+    
+    /**
+     * Called with the enqueue lock held, but not the store lock: the
+     * committer needs the latter to make progress if the queue is full
+     */
+    private void enqueue(Record record) {
+        synchronized (this) {
+            lastEnqueued = record.done;
+        }
+        
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            record.done.completeExceptionally(new InterruptedIOException("interrupted while enqueuing"));
+        }
+    }
+    
+    private void commitLoop() {
+        final List<Record> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            
+            final Record last = batch.get(batch.size() - 1);
+            if (last.kind == null) {
+                /* Close marker, necessarily the last record */
+                batch.remove(batch.size() - 1);
+                running = false;
+            }
+            
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+            if (!running) {
+                last.done.complete(null);
+            }
+        }
+    }
+    
+    /**
+     * Appends the records, forces them to the disk, then marks them as
+     * committed
+     */
+    private void commit(List<Record> batch) {
+        int size = 0;
+        for (Record record : batch) {
+            size += RECORD_HEADER_SIZE + record.payload.length;
+        }
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        final long start;
+        synchronized (this) {
+            start = end;
+        }
+        for (Record record : batch) {
+            final int position = buffer.position();
+            buffer.putInt(record.payload.length).putInt(0).put((byte) record.kind.ordinal()).put(record.op)
+                    .putInt(record.id).put(record.payload);
+            buffer.putInt(position + 4, checksum(buffer, position + 8, RECORD_HEADER_SIZE - 8
+                    + record.payload.length));
+        }
+        buffer.flip();
+        
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, start + buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                /* Do not leave a partial batch behind */
+                channel.truncate(start);
+            } catch (IOException ignored) {
+                /* Truncated on the next opening anyway */
+            }
+            synchronized (this) {
+                failure = e;
+            }
+            batch.forEach(r -> r.done.completeExceptionally(e));
+            return;
+        }
+        
+        synchronized (this) {
+            end = start + size;
+            commitCount++;
+            committedRecords += batch.size();
+        }
+        batch.forEach(r -> r.done.complete(null));
+    }
+    
+    /**
+     * Rebuilds the in-memory state from the log, truncating an incomplete or
+     * corrupted record at its end. A new log (or one whose header was cut
+     * short) is given its header.
+     */
+    private void replay() throws IOException {
+        if (channel.size() < LOG_HEADER_SIZE) {
+            final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            header.putInt(LOG_MAGIC).putInt(LOG_VERSION).flip();
+            channel.truncate(0);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+        
+        final ByteBuffer logHeader = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        readFully(logHeader, 0);
+        if (logHeader.getInt(0) != LOG_MAGIC) {
+            throw new StreamCorruptedException("not the log of an entity store");
+        }
+        if (logHeader.getInt(4) != LOG_VERSION) {
+            throw new StreamCorruptedException("unsupported log version " + logHeader.getInt(4));
+        }
+        
+        final long size = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = LOG_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            final int length = header.getInt(0);
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            
+            final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+            readFully(record, position);
+            if (checksum(record, 8, RECORD_HEADER_SIZE - 8 + length) != record.getInt(4)
+                    || record.get(8) < 0 || record.get(8) >= Kind.values().length) {
+                break;
+            }
+            
+            final Kind kind = Kind.values()[record.get(8)];
+            final boolean put = record.get(9) == PUT;
+            final int id = record.getInt(10);
+            final byte[] payload = new byte[length];
+            record.position(RECORD_HEADER_SIZE);
+            record.get(payload);
+            apply(kind, put, id, payload);
+            
+            position += RECORD_HEADER_SIZE + length;
+        }
+        
+        if (position < size) {
+            System.err.println("Truncating " + (size - position) + " byte(s) of incomplete record at the end of "
+                    + "the entity log");
+            channel.truncate(position);
+        }
+        end = position;
+    }
+    
+    private void apply(Kind kind, boolean put, int id, byte[] payload) throws IOException {
+        switch (kind) {
+        case TOPIC:
+            if (put) {
+                putTopic(id, decodeTopic(payload));
+            } else {
+                removeTopic(id);
+            }
+            break;
+        case OPINION:
+            if (put) {
+                putOpinion(id, decodeOpinion(payload));
+            } else {
+                removeOpinion(id);
+            }
+            break;
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+    
+    private void putTopic(int id, Topic topic) {
+        removeTopic(id);
+        topics.put(id, topic);
+        topicIds.put(topic, id);
+    }
+    
+    private void removeTopic(int id) {
+        final Topic former = topics.remove(id);
+        if (former != null) {
+            topicIds.remove(former);
+        }
+    }
+    
+    private void putOpinion(int id, Opinion opinion) {
+        removeOpinion(id);
+        opinions.put(id, opinion);
+        opinionIds.put(opinion, id);
+        opinionsByArticle.computeIfAbsent(opinion.articleId(), k -> new LinkedHashSet<>()).add(id);
+        opinionsByTopic.computeIfAbsent(opinion.topic(), k -> new LinkedHashSet<>()).add(id);
+        opinionsByPolarity.computeIfAbsent(opinion.polarity(), k -> new LinkedHashSet<>()).add(id);
+    }
+    
+    private void removeOpinion(int id) {
+        final Opinion former = opinions.remove(id);
+        if (former == null) {
+            return;
+        }
+        
+        opinionIds.remove(former);
+        unindex(opinionsByArticle, former.articleId(), id);
+        unindex(opinionsByTopic, former.topic(), id);
+        unindex(opinionsByPolarity, former.polarity(), id);
+    }
+    
+    private static <K> void unindex(Map<K, Set<Integer>> index, K key, int id) {
+        final Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    private List<Opinion> lookup(Set<Integer> ids) {
+        final List<Opinion> list = new ArrayList<>();
+        if (ids != null) {
+            ids.forEach(id -> list.add(opinions.get(id)));
+        }
+        return list;
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new StreamCorruptedException("unexpected end of the log");
+            }
+        }
+    }
+    
+    private static int checksum(ByteBuffer buffer, int from, int length) {
+        final ByteBuffer range = buffer.duplicate();
+        range.limit(from + length).position(from);
+        final CRC32 crc = new CRC32();
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Topic payload: line id, proportion, then the keys
+     */
+    private static byte[] encode(Topic topic) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            final List<String> keys = topic.keys();
+            writeVarInt(out, topic.lineId());
+            out.writeDouble(topic.proportion());
+            writeVarInt(out, keys.size());
+            for (String key : keys) {
+                ArticleCodec.writeString(out, key);
+            }
+        } catch (IOException e) {
+            /* Cannot happen with an in-memory stream */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static Topic decodeTopic(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            final int lineId = readVarInt(in);
+            final double proportion = in.readDouble();
+            final int keyCount = readVarInt(in);
+            final List<String> keys = new ArrayList<>(keyCount);
+            for (int i = 0; i < keyCount; i++) {
+                keys.add(ArticleCodec.readString(in));
+            }
+            return new Topic(lineId, proportion, keys);
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new StreamCorruptedException("invalid topic record: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Opinion payload: topic id, topic word, polar word, polarity, then the
+     * article id and sentence index, shifted by one so that
+     * {@link Opinion#NO_ARTICLE} fits in a varint
+     */
+    private static byte[] encode(Opinion opinion, int topicId) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarInt(out, topicId);
+            ArticleCodec.writeWord(out, opinion.topicWord());
+            ArticleCodec.writeWord(out, opinion.polarWord());
+            writeVarInt(out, opinion.polarity().ordinal());
+            writeVarInt(out, opinion.articleId() + 1);
+            writeVarInt(out, opinion.sentenceIndex() + 1);
+        } catch (IOException e) {
+            /* Cannot happen with an in-memory stream */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Called while replaying, with the topics of the records so far
+     */
+    private Opinion decodeOpinion(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            final int topicId = readVarInt(in);
+            final Topic topic = topics.get(topicId);
+            if (topic == null) {
+                throw new StreamCorruptedException("opinion of unknown topic " + topicId);
+            }
+            
+            final Word topicWord = ArticleCodec.readWord(in);
+            final Word polarWord = ArticleCodec.readWord(in);
+            final Polarity polarity = Polarity.values()[readVarInt(in)];
+            final int articleId = readVarInt(in) - 1;
+            final int sentenceIndex = readVarInt(in) - 1;
+            
+            final Opinion opinion = new Opinion(topic, topicWord, polarWord, polarity);
+            return articleId == Opinion.NO_ARTICLE ? opinion : opinion.inArticle(articleId, sentenceIndex);
+        } catch (EOFException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new StreamCorruptedException("invalid opinion record: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Kinds of stored entities. The ordinals are written in the log, so the
+     * constants may only be appended to.
+     */
+    private enum Kind {
+        TOPIC, OPINION
+    }
+    
+    /**
+     * A log record, and its completion once committed
+     */
+    private static final class Record {
+    
+        private final Kind kind;
+        private final byte op;
+        private final int id;
+        private final byte[] payload;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        private Record(Kind kind, byte op, int id, byte[] payload) {
+            this.kind = kind;
+            this.op = op;
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+    
+}
@@ -0,0 +1,835 @@
+package ch.epfl.lia.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Tuple;
+
+/**
+ * Append-only log of extracted opinions, each encoded as a fixed-width record
+ * of integers: article id, sentence index, topic id, topic word id and
+ * position, polar word id and position, and polarity, followed by a checksum
+ * of them.
+ * <p>
+ * Records are never rewritten: the opinions extracted again from an article
+ * (or a sentence) are appended after a marker record superseding the former
+ * ones (see {@link #replace(int, Collection)} and
+ * {@link #replace(int, int, Collection)}), which {@link #ofArticle(int)} then
+ * leaves out. Markers have no topic, words nor polarity.
+ * </p>
+ * <p>
+ * Topics and words (value and POS tag) are given ids in order of first
+ * appearance, and written once to a dictionary file, next to the segments of
+ * records. Each segment holds a fixed number of records, so that the
+ * <i>n</i>-th record of the log is found by a mere computation; once full, a
+ * new segment is started.
+ * </p>
+ * <p>
+ * Records are buffered, and written by chunks after the dictionary entries
+ * they refer to. Reads (sequential with {@link #scan(Consumer)}, or indexed
+ * with {@link #read(long)} and {@link #ofArticle(int)}) go through
+ * memory-mapped segments. On opening, an incomplete record or dictionary
+ * entry left by a crash is truncated, as well as a record whose checksum does
+ * not match, such as the zeros of a tail that was allocated but never
+ * written. A last segment left without its header (created, but not written
+ * to) is deleted, and started again when needed.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class OpinionLog implements Closeable {
+
+    /** Size (in bytes) of a record, checksum included */
+    public static final int RECORD_SIZE = 36;
+    
+    /** Offset of the checksum in a record, and thus size of the checksummed fields */
+    private static final int CHECKSUM_OFFSET = 32;
+    
+    /** Magic number at the start of segment files ("FOPL") */
+    private static final int SEGMENT_MAGIC = 0x464F504C;
+    private static final int SEGMENT_VERSION = 2;
+    
+    /** Segment header: magic number, version, records per segment */
+    private static final int SEGMENT_HEADER_SIZE = 12;
+    
+    private static final String SEGMENT_FORMAT = "opinions-%06d.bin";
+    private static final String DICTIONARY_FILE = "dictionary.dat";
+    
+    private static final byte WORD_ENTRY = 0;
+    private static final byte TOPIC_ENTRY = 1;
+    
+    private static final int BUFFERED_RECORDS = 2048;
+    
+    /** Sentence index of a marker superseding all the former records of its article */
+    public static final int ALL_SENTENCES = -1;
+    
+    /** Topic id of the marker records */
+    private static final int MARKER = -1;
+    
+    private static final Polarity[] POLARITIES = Polarity.values();
+    
+    private final Path directory;
+    private final int recordsPerSegment;
+    
+    private final List<FileChannel> segments = new ArrayList<>();
+    private final List<MappedByteBuffer> maps = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFERED_RECORDS * RECORD_SIZE);
+    
+    /* Number of appended records, and number of those written to the segments */
+    private long count = 0;
+    private long written = 0;
+    
+    private final FileOutputStream dictionaryFile;
+    private final DataOutputStream dictionary;
+    private final List<Tuple<String, String>> words = new ArrayList<>();
+    private final Map<Tuple<String, String>, Integer> wordIds = new HashMap<>();
+    private final List<Topic> topics = new ArrayList<>();
+    private final Map<Topic, Integer> topicIds = new HashMap<>();
+    
+    /* Runs of consecutive records of each article: {first record, number of records} */
+    private final Map<Integer, List<long[]>> articleRuns = new HashMap<>();
+    
+    private boolean closed = false;
+    
+    /**
+     * Opens the log in the provided directory, creating it if needed
+     * 
+     * @param directory
+     *            the directory of the segments and of the dictionary
+     * @param recordsPerSegment
+     *            number of records per segment, for a new log (an existing
+     *            log keeps its own)
+     * @throws IOException
+     *             if the log could not be read, or is corrupted
+     */
+    public OpinionLog(String directory, int recordsPerSegment) throws IOException {
+        Preconditions.throwIfNull("directory may not be null", directory);
+        if (recordsPerSegment <= 0 || recordsPerSegment > (Integer.MAX_VALUE - SEGMENT_HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException("segments must hold a positive number of records, under 2 GiB");
+        }
+        
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+        
+        final long dictionarySize = readDictionary();
+        final Path dictionaryPath = this.directory.resolve(DICTIONARY_FILE);
+        try (FileChannel channel = FileChannel.open(dictionaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() > dictionarySize) {
+                System.err.println("Truncating " + (channel.size() - dictionarySize)
+                        + " byte(s) of incomplete entry at the end of " + dictionaryPath);
+                channel.truncate(dictionarySize);
+            }
+        }
+        this.dictionaryFile = new FileOutputStream(dictionaryPath.toFile(), true);
+        this.dictionary = new DataOutputStream(new BufferedOutputStream(dictionaryFile));
+        
+        this.recordsPerSegment = openSegments(recordsPerSegment);
+        recover();
+    }
+    
+    /**
+     * Appends the opinion to the log
+     * 
+     * @param opinion
+     *            the opinion to append
+     * @throws IOException
+     */
+    public synchronized void append(Opinion opinion) throws IOException {
+        Preconditions.throwIfNull("opinion may not be null", opinion);
+        ensureOpen();
+        
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        
+        final int position = buffer.position();
+        buffer.putInt(opinion.articleId())
+                .putInt(opinion.sentenceIndex())
+                .putInt(topicId(opinion.topic()))
+                .putInt(wordId(opinion.topicWord()))
+                .putInt(opinion.topicWord().id())
+                .putInt(wordId(opinion.polarWord()))
+                .putInt(opinion.polarWord().id())
+                .putInt(opinion.polarity().ordinal());
+        buffer.putInt(checksum(buffer, position));
+        index(opinion.articleId(), count++);
+    }
+    
+    /**
+     * Appends the opinions to the log
+     * 
+     * @param opinions
+     *            the opinions to append
+     * @throws IOException
+     */
+    public synchronized void appendAll(Collection<Opinion> opinions) throws IOException {
+        Preconditions.throwIfNull("opinions may not be null", opinions);
+        for (Opinion opinion : opinions) {
+            append(opinion);
+        }
+    }
+    
+    /**
+     * Supersedes the records of the article appended so far, and appends the
+     * provided opinions instead
+     * 
+     * @param articleId
+     *            the id of the article
+     * @param opinions
+     *            the opinions extracted anew from the article
+     * @throws IOException
+     */
+    public synchronized void replace(int articleId, Collection<Opinion> opinions) throws IOException {
+        Preconditions.throwIfNull("opinions may not be null", opinions);
+        for (Opinion opinion : opinions) {
+            if (opinion.articleId() != articleId) {
+                throw new IllegalArgumentException("opinion " + opinion + " is not of article " + articleId);
+            }
+        }
+        
+        if (articleRuns.containsKey(articleId)) {
+            supersede(articleId, ALL_SENTENCES);
+        }
+        appendAll(opinions);
+    }
+    
+    /**
+     * Supersedes the records of a sentence of the article appended so far,
+     * and appends the provided opinions instead
+     * 
+     * @param articleId
+     *            the id of the article
+     * @param sentenceIndex
+     *            the index of the sentence in the article
+     * @param opinions
+     *            the opinions extracted anew from the sentence
+     * @throws IOException
+     */
+    public synchronized void replace(int articleId, int sentenceIndex, Collection<Opinion> opinions)
+            throws IOException {
+        Preconditions.throwIfNull("opinions may not be null", opinions);
+        if (sentenceIndex < 0) {
+            throw new IllegalArgumentException("invalid sentence index: " + sentenceIndex);
+        }
+        for (Opinion opinion : opinions) {
+            if (opinion.articleId() != articleId || opinion.sentenceIndex() != sentenceIndex) {
+                throw new IllegalArgumentException("opinion " + opinion + " is not of sentence " + sentenceIndex
+                        + " of article " + articleId);
+            }
+        }
+        
+        if (articleRuns.containsKey(articleId)) {
+            supersede(articleId, sentenceIndex);
+        }
+        appendAll(opinions);
+    }
+    
+    /**
+     * Appends a marker superseding the records of the article (or of one of
+     * its sentences) appended so far
+     * 
+     * @param articleId
+     *            the id of the article
+     * @param sentenceIndex
+     *            the index of the sentence, or {@link #ALL_SENTENCES}
+     * @throws IOException
+     */
+    public synchronized void supersede(int articleId, int sentenceIndex) throws IOException {
+        if (sentenceIndex < ALL_SENTENCES) {
+            throw new IllegalArgumentException("invalid sentence index: " + sentenceIndex);
+        }
+        ensureOpen();
+        
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        
+        final int position = buffer.position();
+        buffer.putInt(articleId)
+                .putInt(sentenceIndex)
+                .putInt(MARKER)
+                .putInt(0)
+                .putInt(0)
+                .putInt(0)
+                .putInt(0)
+                .putInt(0);
+        buffer.putInt(checksum(buffer, position));
+        index(articleId, count++);
+    }
+    
+    /**
+     * @return the number of records in the log, markers included
+     */
+    public synchronized long size() {
+        return count;
+    }
+    
+    /**
+     * @param index
+     *            the index of a record, in order of appending
+     * @return the record
+     * @throws IOException
+     */
+    public synchronized Entry read(long index) throws IOException {
+        ensureOpen();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("no record " + index + " in a log of " + count);
+        }
+        if (index >= written) {
+            writeBuffer();
+        }
+        
+        final long offset = offsetOf(index);
+        return decode(map((int) (index / recordsPerSegment), offset + RECORD_SIZE), offset);
+    }
+    
+    /**
+     * @param articleId
+     *            the id of an article
+     * @return the records of the article not superseded since they were
+     *         appended, in order of appending
+     * @throws IOException
+     */
+    public synchronized List<Entry> ofArticle(int articleId) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        for (long[] run : articleRuns.getOrDefault(articleId, Collections.emptyList())) {
+            for (long index = run[0]; index < run[0] + run[1]; index++) {
+                final Entry entry = read(index);
+                if (!entry.isMarker()) {
+                    entries.add(entry);
+                } else if (entry.sentenceIndex == ALL_SENTENCES) {
+                    entries.clear();
+                } else {
+                    entries.removeIf(e -> e.sentenceIndex == entry.sentenceIndex);
+                }
+            }
+        }
+        return entries;
+    }
+    
+    /**
+     * Reads all the records, in order of appending, superseded ones and
+     * markers included. Records appended during the scan may not be seen.
+     * 
+     * @param action
+     *            the action to perform on each record
+     * @throws IOException
+     */
+    public void scan(Consumer<Entry> action) throws IOException {
+        Preconditions.throwIfNull("action may not be null", action);
+        final List<ByteBuffer> snapshot = new ArrayList<>();
+        final long total;
+        synchronized (this) {
+            ensureOpen();
+            writeBuffer();
+            total = written;
+            for (int s = 0; s * (long) recordsPerSegment < total; s++) {
+                snapshot.add(map(s, segments.get(s).size()));
+            }
+        }
+        
+        for (long index = 0; index < total; index++) {
+            action.accept(decode(snapshot.get((int) (index / recordsPerSegment)), offsetOf(index)));
+        }
+    }
+    
+    /**
+     * @param entry
+     *            a record of this log, other than a marker
+     * @return the opinion it encodes
+     */
+    public synchronized Opinion opinion(Entry entry) {
+        if (entry.isMarker()) {
+            throw new IllegalArgumentException("a marker encodes no opinion");
+        }
+        
+        final Tuple<String, String> topicWord = words.get(entry.topicWordId);
+        final Tuple<String, String> polarWord = words.get(entry.polarWordId);
+        final Opinion opinion = new Opinion(topics.get(entry.topicId),
+                new Word(topicWord._1(), entry.topicWordPosition, topicWord._2()),
+                new Word(polarWord._1(), entry.polarWordPosition, polarWord._2()),
+                entry.polarity);
+        return entry.articleId == Opinion.NO_ARTICLE ? opinion : opinion.inArticle(entry.articleId,
+                entry.sentenceIndex);
+    }
+    
+    /**
+     * @return the topic with the provided id
+     */
+    public synchronized Topic topic(int id) {
+        return topics.get(id);
+    }
+    
+    /**
+     * @return the value of the word with the provided id
+     */
+    public synchronized String word(int id) {
+        return words.get(id)._1();
+    }
+    
+    /**
+     * Drops the records from the provided index on, for instance those
+     * appended after the last checkpoint of an interrupted job. The
+     * dictionary entries are kept.
+     * 
+     * @param size
+     *            the number of records to keep
+     * @throws IOException
+     */
+    public synchronized void truncate(long size) throws IOException {
+        ensureOpen();
+        if (size < 0 || size > count) {
+            throw new IllegalArgumentException("cannot truncate a log of " + count + " record(s) to " + size);
+        }
+        writeBuffer();
+        
+        final int kept = (int) ((size + recordsPerSegment - 1) / recordsPerSegment);
+        for (int s = segments.size() - 1; s >= kept; s--) {
+            segments.remove(s).close();
+            maps.remove(s);
+            Files.delete(directory.resolve(String.format(SEGMENT_FORMAT, s)));
+        }
+        if (kept > 0) {
+            final FileChannel last = segments.get(kept - 1);
+            last.truncate(SEGMENT_HEADER_SIZE + (size - (kept - 1) * (long) recordsPerSegment) * RECORD_SIZE);
+            last.force(false);
+            maps.set(kept - 1, null);
+        }
+        
+        for (Iterator<List<long[]>> it = articleRuns.values().iterator(); it.hasNext();) {
+            final List<long[]> runs = it.next();
+            runs.removeIf(run -> run[0] >= size);
+            if (!runs.isEmpty()) {
+                final long[] last = runs.get(runs.size() - 1);
+                last[1] = Math.min(last[1], size - last[0]);
+            } else {
+                it.remove();
+            }
+        }
+        count = size;
+        written = size;
+    }
+    
+    /**
+     * Writes the buffered records and dictionary entries
+     * 
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        writeBuffer();
+    }
+    
+    /**
+     * Writes the buffered records and dictionary entries, and forces them to
+     * the disk
+     * 
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        flush();
+        dictionaryFile.getFD().sync();
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).force(false);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        
+        sync();
+        closed = true;
+        dictionary.close();
+        for (FileChannel segment : segments) {
+            segment.close();
+        }
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("opinion log is closed");
+        }
+    }
+    
+    private int topicId(Topic topic) throws IOException {
+        Integer id = topicIds.get(topic);
+        if (id == null) {
+            id = topics.size();
+            topics.add(topic);
+            topicIds.put(topic, id);
+            
+            dictionary.writeByte(TOPIC_ENTRY);
+            dictionary.writeInt(topic.lineId());
+            dictionary.writeDouble(topic.proportion());
+            final List<String> keys = topic.keys();
+            dictionary.writeInt(keys.size());
+            for (String key : keys) {
+                dictionary.writeUTF(key);
+            }
+        }
+        return id;
+    }
+    
+    private int wordId(Word word) throws IOException {
+        final Tuple<String, String> key = new Tuple<>(word.value(), word.posTag());
+        Integer id = wordIds.get(key);
+        if (id == null) {
+            id = words.size();
+            words.add(key);
+            wordIds.put(key, id);
+            
+            dictionary.writeByte(WORD_ENTRY);
+            dictionary.writeUTF(word.value());
+            dictionary.writeUTF(word.posTag());
+        }
+        return id;
+    }
+    
+    private void index(int articleId, long index) {
+        final List<long[]> runs = articleRuns.computeIfAbsent(articleId, k -> new ArrayList<>(1));
+        final long[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+        if (last != null && last[0] + last[1] == index) {
+            last[1]++;
+        } else {
+            runs.add(new long[] {index, 1});
+        }
+    }
+    
+    /**
+     * Writes the buffered records to the segments, after the dictionary
+     * entries they refer to
+     */
+    private void writeBuffer() throws IOException {
+        dictionary.flush();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            final int segment = (int) (written / recordsPerSegment);
+            if (segment == segments.size()) {
+                createSegment(segment);
+            }
+            
+            final int room = recordsPerSegment - (int) (written % recordsPerSegment);
+            final int records = Math.min(room, buffer.remaining() / RECORD_SIZE);
+            final ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunk.position() + records * RECORD_SIZE);
+            final long offset = offsetOf(written);
+            while (chunk.hasRemaining()) {
+                segments.get(segment).write(chunk, offset + chunk.position() - buffer.position());
+            }
+            
+            buffer.position(chunk.limit());
+            written += records;
+        }
+        buffer.clear();
+    }
+    
+    private long offsetOf(long index) {
+        return SEGMENT_HEADER_SIZE + (index % recordsPerSegment) * RECORD_SIZE;
+    }
+    
+    private static Entry decode(ByteBuffer segment, long offset) {
+        final int position = (int) offset;
+        final int topicId = segment.getInt(position + 8);
+        return new Entry(segment.getInt(position), segment.getInt(position + 4), topicId,
+                segment.getInt(position + 12), segment.getInt(position + 16), segment.getInt(position + 20),
+                segment.getInt(position + 24), topicId == MARKER ? null : POLARITIES[segment.getInt(position + 28)]);
+    }
+    
+    /**
+     * @param end
+     *            the end of the bytes to be read
+     * @return the mapping of the segment, mapped again if it does not reach
+     *         the end
+     */
+    private ByteBuffer map(int segment, long end) throws IOException {
+        MappedByteBuffer map = maps.get(segment);
+        if (map == null || map.capacity() < end) {
+            final FileChannel channel = segments.get(segment);
+            map = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            maps.set(segment, map);
+        }
+        return map;
+    }
+    
+    private void createSegment(int number) throws IOException {
+        final FileChannel channel = FileChannel.open(directory.resolve(String.format(SEGMENT_FORMAT, number)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!segments.isEmpty()) {
+            /* Seal the previous segment */
+            segments.get(segments.size() - 1).force(false);
+        }
+        
+        final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).putInt(recordsPerSegment);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        segments.add(channel);
+        maps.add(null);
+    }
+    
+    /**
+     * Reads the dictionary entries
+     * 
+     * @return the size (in bytes) of the complete entries
+     */
+    private long readDictionary() throws IOException {
+        final Path path = directory.resolve(DICTIONARY_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        
+        final byte[] bytes = Files.readAllBytes(path);
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long valid = 0;
+        try {
+            while (in.available() > 0) {
+                final byte type = in.readByte();
+                if (type == WORD_ENTRY) {
+                    final Tuple<String, String> word = new Tuple<>(in.readUTF(), in.readUTF());
+                    wordIds.put(word, words.size());
+                    words.add(word);
+                } else if (type == TOPIC_ENTRY) {
+                    final int lineId = in.readInt();
+                    final double proportion = in.readDouble();
+                    final int keyCount = in.readInt();
+                    final List<String> keys = new ArrayList<>();
+                    for (int i = 0; i < keyCount; i++) {
+                        keys.add(in.readUTF());
+                    }
+                    final Topic topic = new Topic(lineId, proportion, keys);
+                    topicIds.put(topic, topics.size());
+                    topics.add(topic);
+                } else {
+                    break;
+                }
+                valid = bytes.length - in.available();
+            }
+        } catch (EOFException | UTFDataFormatException | IllegalArgumentException e) {
+            /* Incomplete last entry */
+        }
+        return valid;
+    }
+    
+    /**
+     * Opens the existing segments
+     * 
+     * @return the number of records per segment of the log
+     */
+    private int openSegments(int recordsPerSegment) throws IOException {
+        int perSegment = recordsPerSegment;
+        for (int number = 0;; number++) {
+            final Path path = directory.resolve(String.format(SEGMENT_FORMAT, number));
+            if (!Files.exists(path)) {
+                return perSegment;
+            }
+            
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                /* read the header */
+            }
+            
+            /* A crash between the creation of the last segment and the writing of its header */
+            final boolean last = !Files.exists(directory.resolve(String.format(SEGMENT_FORMAT, number + 1)));
+            if (last && channel.size() <= SEGMENT_HEADER_SIZE && (header.hasRemaining() || header.getInt(0) == 0)) {
+                System.err.println("Deleting the header-less last segment of opinion log: " + path);
+                channel.close();
+                Files.delete(path);
+                return perSegment;
+            }
+            
+            segments.add(channel);
+            maps.add(null);
+            if (header.hasRemaining() || header.getInt(0) != SEGMENT_MAGIC || header.getInt(4) != SEGMENT_VERSION) {
+                throw new StreamCorruptedException("not a segment of opinion log: " + path);
+            }
+            if (number == 0) {
+                perSegment = header.getInt(8);
+            } else if (header.getInt(8) != perSegment) {
+                throw new StreamCorruptedException("inconsistent segment size: " + path);
+            }
+        }
+    }
+    
+    /**
+     * Scans the records to rebuild the article index, and truncates the log
+     * at the first incomplete record, or record referring to a missing
+     * dictionary entry
+     */
+    private void recover() throws IOException {
+        for (int s = 0; s < segments.size(); s++) {
+            final FileChannel channel = segments.get(s);
+            final long size = channel.size();
+            final long complete = (size - SEGMENT_HEADER_SIZE) / RECORD_SIZE;
+            if (s < segments.size() - 1 && complete != recordsPerSegment) {
+                throw new StreamCorruptedException("incomplete segment " + s + " of opinion log");
+            }
+            
+            final ByteBuffer map = map(s, size);
+            for (long r = 0; r < complete; r++) {
+                final int offset = (int) (SEGMENT_HEADER_SIZE + r * RECORD_SIZE);
+                if (!isValid(map, offset)) {
+                    break;
+                }
+                index(map.getInt(offset), count++);
+            }
+            
+            if (count == (long) (s + 1) * recordsPerSegment) {
+                continue;
+            }
+            if (s < segments.size() - 1) {
+                throw new StreamCorruptedException("invalid record in segment " + s + " of opinion log");
+            }
+            
+            final long valid = offsetOf(count);
+            if (valid == size) {
+                continue;
+            }
+            System.err.println("Truncating " + (size - valid) + " byte(s) of incomplete record(s) at the end of "
+                    + "segment " + s + " of opinion log");
+            channel.truncate(valid);
+            maps.set(s, null);
+        }
+        written = count;
+    }
+    
+    private boolean isValid(ByteBuffer map, int offset) {
+        if (checksum(map, offset) != map.getInt(offset + CHECKSUM_OFFSET)) {
+            return false;
+        }
+        
+        final int topicId = map.getInt(offset + 8);
+        if (topicId == MARKER) {
+            return map.getInt(offset + 4) >= ALL_SENTENCES;
+        }
+        
+        final int topicWordId = map.getInt(offset + 12);
+        final int polarWordId = map.getInt(offset + 20);
+        final int polarity = map.getInt(offset + 28);
+        return topicId >= 0 && topicId < topics.size()
+                && topicWordId >= 0 && topicWordId < words.size()
+                && polarWordId >= 0 && polarWordId < words.size()
+                && polarity >= 0 && polarity < POLARITIES.length;
+    }
+    
+    /**
+     * @return the checksum of the fields of the record at the provided offset
+     */
+    private static int checksum(ByteBuffer buffer, int offset) {
+        final ByteBuffer fields = buffer.duplicate();
+        fields.limit(offset + CHECKSUM_OFFSET).position(offset);
+        final CRC32 crc = new CRC32();
+        crc.update(fields);
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * A record of the log. The topic and words are referred to by id (see
+     * {@link OpinionLog#opinion(Entry)}), except for markers.
+     */
+    public static final class Entry {
+    
+        private final int articleId;
+        private final int sentenceIndex;
+        private final int topicId;
+        private final int topicWordId;
+        private final int topicWordPosition;
+        private final int polarWordId;
+        private final int polarWordPosition;
+        private final Polarity polarity;
+        
+        private Entry(int articleId, int sentenceIndex, int topicId, int topicWordId, int topicWordPosition,
+                int polarWordId, int polarWordPosition, Polarity polarity) {
+            this.articleId = articleId;
+            this.sentenceIndex = sentenceIndex;
+            this.topicId = topicId;
+            this.topicWordId = topicWordId;
+            this.topicWordPosition = topicWordPosition;
+            this.polarWordId = polarWordId;
+            this.polarWordPosition = polarWordPosition;
+            this.polarity = polarity;
+        }
+        
+        public int articleId() {
+            return articleId;
+        }
+        
+        public int sentenceIndex() {
+            return sentenceIndex;
+        }
+        
+        /**
+         * @return {@code true} if the record is a marker superseding the
+         *         former records of its article (or sentence, unless
+         *         {@link OpinionLog#ALL_SENTENCES})
+         */
+        public boolean isMarker() {
+            return topicId == MARKER;
+        }
+        
+        public int topicId() {
+            return topicId;
+        }
+        
+        public int topicWordId() {
+            return topicWordId;
+        }
+        
+        public int polarWordId() {
+            return polarWordId;
+        }
+        
+        /**
+         * @return the polarity, or {@code null} for a marker
+         */
+        public Polarity polarity() {
+            return polarity;
+        }
+        
+        @Override
+        public String toString() {
+            if (isMarker()) {
+                return articleId + ":" + (sentenceIndex == ALL_SENTENCES ? "*" : sentenceIndex) + " superseded";
+            }
+            return articleId + ":" + sentenceIndex + " " + polarity + "(topic " + topicId + ", " + topicWordId
+                    + "-" + topicWordPosition + "," + polarWordId + "-" + polarWordPosition + ")";
+        }
+    }
+    
+}
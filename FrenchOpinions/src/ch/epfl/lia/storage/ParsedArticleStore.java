@@ -0,0 +1,464 @@
+package ch.epfl.lia.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Append-only store of (parsed) articles, in a directory of segment files.
+ * <p>
+ * Each record holds an article in the format of {@link ArticleCodec}, after a
+ * header made of the length of the encoded article, the article id, and a
+ * checksum of both. Saving an article again appends a new record, which
+ * supersedes the former one; removing it appends an empty record. Once a
+ * segment grows over its maximal size, a new one is started.
+ * </p>
+ * <p>
+ * The id &rarr; record index is kept in memory, and rebuilt on opening by
+ * scanning the segments in order. Records are read through memory-mapped
+ * segments, and decoded straight from the mapping. A write that was cut short
+ * by a crash leaves a partial (or corrupted) record at the end of the last
+ * segment, which is detected by its length or checksum, and truncated when
+ * the store is next opened.
+ * </p>
+ * <p>
+ * Superseded records are only reclaimed by {@link #compact()}.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class ParsedArticleStore implements Closeable {
+
+    /** Magic number at the start of segment files ("FOPS") */
+    private static final int SEGMENT_MAGIC = 0x464F5053;
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    
+    /** Record header: length, article id, checksum */
+    private static final int RECORD_HEADER_SIZE = 12;
+    
+    private static final String SEGMENT_GLOB = "segment-*.dat";
+    private static final String SEGMENT_FORMAT = "segment-%06d.dat";
+    
+    private final Path directory;
+    private final long maxSegmentSize;
+    
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<Integer, Location> index = new HashMap<>();
+    private Segment active;
+    private long liveBytes = 0;
+    private long totalBytes = 0;
+    private boolean closed = false;
+    
+    /**
+     * Opens the store in the provided directory, creating it if needed, and
+     * recovers from an interrupted write if any
+     * 
+     * @param directory
+     *            the directory of the segment files
+     * @param maxSegmentSize
+     *            size (in bytes) from which a new segment is started
+     * @throws IOException
+     *             if the segments could not be read, or are not segments of
+     *             a store
+     */
+    public ParsedArticleStore(String directory, long maxSegmentSize) throws IOException {
+        Preconditions.throwIfNull("directory may not be null", directory);
+        if (maxSegmentSize <= SEGMENT_HEADER_SIZE || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment size must be positive and less than 2 GiB");
+        }
+        
+        this.directory = Paths.get(directory);
+        this.maxSegmentSize = maxSegmentSize;
+        
+        Files.createDirectories(this.directory);
+        final List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, SEGMENT_GLOB)) {
+            for (Path path : stream) {
+                final String name = path.getFileName().toString();
+                numbers.add(Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.'))));
+            }
+        } catch (NumberFormatException e) {
+            throw new StreamCorruptedException("unexpected segment file name: " + e.getMessage());
+        }
+        Collections.sort(numbers);
+        
+        if (numbers.isEmpty()) {
+            active = createSegment(0);
+        } else {
+            for (int i = 0; i < numbers.size(); i++) {
+                active = openSegment(numbers.get(i));
+                recover(active, i == numbers.size() - 1);
+            }
+        }
+    }
+    
+    /**
+     * Saves the article, superseding any former record of it
+     * 
+     * @param article
+     *            the article to save
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if the article cannot be encoded (see
+     *             {@link ArticleCodec#canEncode(Article)})
+     */
+    public synchronized void put(Article article) throws IOException {
+        Preconditions.throwIfNull("article may not be null", article);
+        ensureOpen();
+        
+        final byte[] payload = ArticleCodec.encode(article);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt(article.id()).putInt(checksum(article.id(), ByteBuffer.wrap(payload)));
+        record.put(payload);
+        record.flip();
+        append(article.id(), record);
+    }
+    
+    /**
+     * @param articleId
+     *            the id of the article to remove
+     * @return {@code true} if the article was in the store
+     * @throws IOException
+     */
+    public synchronized boolean remove(int articleId) throws IOException {
+        ensureOpen();
+        if (!index.containsKey(articleId)) {
+            return false;
+        }
+        
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        record.putInt(0).putInt(articleId).putInt(checksum(articleId, ByteBuffer.allocate(0)));
+        record.flip();
+        append(articleId, record);
+        return true;
+    }
+    
+    /**
+     * @param articleId
+     *            the id of an article
+     * @return the last saved state of the article, or {@code null} if it is
+     *         not in the store
+     * @throws IOException
+     *             if the record could not be read or decoded
+     */
+    public Article get(int articleId) throws IOException {
+        final ByteBuffer payload;
+        synchronized (this) {
+            ensureOpen();
+            final Location location = index.get(articleId);
+            if (location == null) {
+                return null;
+            }
+            payload = segments.get(location.segment).read(location.offset + RECORD_HEADER_SIZE, location.length);
+        }
+        
+        /* Decoding needs no lock: the mapping remains valid, even if the segment is compacted away */
+        return ArticleCodec.decode(new ByteBufferInputStream(payload));
+    }
+    
+    /**
+     * @param articleId
+     *            the id of an article
+     * @return {@code true} if the article is in the store
+     */
+    public synchronized boolean contains(int articleId) {
+        return index.containsKey(articleId);
+    }
+    
+    /**
+     * @return the ids of the articles in the store, in ascending order
+     */
+    public synchronized Set<Integer> ids() {
+        return Collections.unmodifiableSet(new TreeSet<>(index.keySet()));
+    }
+    
+    /**
+     * @return the number of articles in the store
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * @return the share of the stored bytes taken by superseded or removed
+     *         records, which {@link #compact()} would reclaim
+     */
+    public synchronized double garbageRatio() {
+        return totalBytes == 0 ? 0 : 1 - (double) liveBytes / totalBytes;
+    }
+    
+    /**
+     * Rewrites the live records into new segments, ordered by article id, then
+     * deletes the former segments, oldest first. If interrupted, the store is
+     * left with duplicate (identical) records, but loses none.
+     * 
+     * @return the number of deleted segments
+     * @throws IOException
+     */
+    public synchronized int compact() throws IOException {
+        ensureOpen();
+        final List<Segment> former = new ArrayList<>(segments.values());
+        final Map<Integer, Location> live = new TreeMap<>(index);
+        
+        roll();
+        for (Map.Entry<Integer, Location> entry : live.entrySet()) {
+            final Location location = entry.getValue();
+            append(entry.getKey(), segments.get(location.segment).read(location.offset,
+                    RECORD_HEADER_SIZE + location.length));
+        }
+        active.channel.force(true);
+        
+        for (Segment segment : former) {
+            segment.channel.close();
+            Files.delete(segment.path);
+            segments.remove(segment.number);
+        }
+        
+        totalBytes = liveBytes;
+        return former.size();
+    }
+    
+    /**
+     * Forces the appended records to the disk
+     * 
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        active.channel.force(false);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        
+        closed = true;
+        active.channel.force(false);
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("store is closed");
+        }
+    }
+    
+    /**
+     * Appends a complete record (header and payload) to the active segment,
+     * starting a new segment if it does not fit
+     */
+    private void append(int articleId, ByteBuffer record) throws IOException {
+        final int recordSize = record.remaining();
+        if (active.size > SEGMENT_HEADER_SIZE && active.size + recordSize > maxSegmentSize) {
+            roll();
+        }
+        
+        final long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += recordSize;
+        
+        track(articleId, recordSize > RECORD_HEADER_SIZE
+                ? new Location(active.number, offset, recordSize - RECORD_HEADER_SIZE)
+                : null, recordSize);
+    }
+    
+    /**
+     * Updates the index and the byte counts with a new record
+     * 
+     * @param location
+     *            the location of the record, or {@code null} for a removal
+     */
+    private void track(int articleId, Location location, int recordSize) {
+        final Location former = location == null ? index.remove(articleId) : index.put(articleId, location);
+        if (former != null) {
+            liveBytes -= RECORD_HEADER_SIZE + former.length;
+        }
+        if (location != null) {
+            liveBytes += recordSize;
+        }
+        totalBytes += recordSize;
+    }
+    
+    /**
+     * Seals the active segment, and starts a new one
+     */
+    private void roll() throws IOException {
+        active.channel.force(true);
+        active = createSegment(active.number + 1);
+    }
+    
+    private Segment createSegment(int number) throws IOException {
+        final Path path = directory.resolve(String.format(SEGMENT_FORMAT, number));
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        final Segment segment = new Segment(number, path, channel);
+        writeHeader(segment);
+        segments.put(number, segment);
+        return segment;
+    }
+    
+    private Segment openSegment(int number) throws IOException {
+        final Path path = directory.resolve(String.format(SEGMENT_FORMAT, number));
+        final Segment segment = new Segment(number, path, FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        segments.put(number, segment);
+        return segment;
+    }
+    
+    private static void writeHeader(Segment segment) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            segment.channel.write(header, header.position());
+        }
+        segment.size = SEGMENT_HEADER_SIZE;
+    }
+    
+    /**
+     * Scans the records of a segment to rebuild the index. The scan stops at
+     * the first incomplete or corrupted record, which is truncated away if the
+     * segment is the last one (an interrupted write).
+     */
+    private void recover(Segment segment, boolean last) throws IOException {
+        final long fileSize = segment.channel.size();
+        if (fileSize < SEGMENT_HEADER_SIZE && last) {
+            /* Crash right after the segment was created */
+            segment.channel.truncate(0);
+            writeHeader(segment);
+            return;
+        }
+        
+        segment.size = fileSize;
+        final ByteBuffer buffer = segment.read(0, (int) fileSize);
+        if (fileSize < SEGMENT_HEADER_SIZE || buffer.getInt() != SEGMENT_MAGIC) {
+            throw new StreamCorruptedException("not a segment: " + segment.path);
+        }
+        final int version = buffer.getInt();
+        if (version != SEGMENT_VERSION) {
+            throw new StreamCorruptedException("unsupported segment version " + version + ": " + segment.path);
+        }
+        
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int offset = buffer.position();
+            final int length = buffer.getInt();
+            final int articleId = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(offset);
+                break;
+            }
+            
+            final ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+            if (checksum(articleId, payload) != checksum) {
+                buffer.position(offset);
+                break;
+            }
+            
+            buffer.position(offset + RECORD_HEADER_SIZE + length);
+            track(articleId, length > 0 ? new Location(segment.number, offset, length) : null,
+                    RECORD_HEADER_SIZE + length);
+        }
+        
+        final int valid = buffer.position();
+        if (valid < fileSize) {
+            if (last) {
+                System.err.println("Truncating " + (fileSize - valid) + " byte(s) of incomplete record at the end of "
+                        + segment.path);
+                segment.channel.truncate(valid);
+                segment.size = valid;
+                segment.map = null;
+            } else {
+                System.err.println("Ignoring " + (fileSize - valid) + " corrupted byte(s) at the end of "
+                        + segment.path);
+            }
+        }
+    }
+    
+    private static int checksum(int articleId, ByteBuffer payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(4).putInt(0, articleId));
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * A segment file, with its mapping if it was read from
+     */
+    private static final class Segment {
+    
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private long size = 0;
+        private MappedByteBuffer map = null;
+        
+        private Segment(int number, Path path, FileChannel channel) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+        }
+        
+        /**
+         * @return a view of the bytes in the provided range, mapping (again)
+         *         the segment if the range is past the current mapping
+         */
+        private ByteBuffer read(long offset, int length) throws IOException {
+            if (map == null || map.capacity() < offset + length) {
+                map = channel.map(MapMode.READ_ONLY, 0, size);
+            }
+            
+            final ByteBuffer view = map.duplicate();
+            view.position((int) offset);
+            view.limit((int) offset + length);
+            return view.slice();
+        }
+    }
+    
+    /**
+     * Location of a record: segment number, offset of the record header, and
+     * length of the encoded article
+     */
+    private static final class Location {
+    
+        private final int segment;
+        private final long offset;
+        private final int length;
+        
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+    
+}
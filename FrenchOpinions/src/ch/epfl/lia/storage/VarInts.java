@@ -0,0 +1,98 @@
+package ch.epfl.lia.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Variable-length encoding of non-negative integers (LEB128): seven bits per
+ * byte, least significant group first, the high bit of each byte telling
+ * whether another byte follows. Small values thus take a single byte.
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class VarInts {
+
+    private VarInts() { }
+    
+    /**
+     * @param out
+     *            the output to write to
+     * @param value
+     *            a non-negative value
+     * @throws IOException
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+    
+    /**
+     * @param out
+     *            the output to write to
+     * @param value
+     *            a non-negative value
+     * @throws IOException
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("only non-negative values may be encoded");
+        }
+        
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    /**
+     * @param in
+     *            the input to read from
+     * @return the decoded value
+     * @throws IOException
+     *             if the value does not fit in an {@code int}, or the input
+     *             failed
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        final long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("varint overflow");
+        }
+        return (int) value;
+    }
+    
+    /**
+     * @param in
+     *            the input to read from
+     * @return the decoded value
+     * @throws IOException
+     *             if the value is malformed, or the input failed
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("malformed varint");
+    }
+    
+    /**
+     * @param value
+     *            a non-negative value
+     * @return the number of bytes of the encoded value
+     */
+    public static int size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+    
+}
@@ -0,0 +1,361 @@
+package ch.epfl.lia.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.opinion.dictionary.Stemmer;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Inverted index from the words of the parsed articles to the sentences they
+ * occur in, so that the opinions of the only sentences a change of the
+ * dictionary may affect are extracted again. A word is indexed under its
+ * lower-cased form and its normalized form (see {@link Stemmer#normalize}),
+ * and looked up the same way.
+ * <p>
+ * The postings of a key, pairs {@code (article id, sentence index)}, are kept
+ * sorted and delta-encoded as variable-length integers (see {@link VarInts}):
+ * the difference with the previous article id, then the difference with the
+ * previous sentence index within the same article, or the sentence index of a
+ * new article. Most postings thus take two bytes. Postings that come out of
+ * order (an article indexed after one of a greater id, or parsed again) are
+ * buffered, and merged into the list once per indexed article.
+ * </p>
+ * <p>
+ * The index is conservative: an article parsed again is indexed again, and
+ * the postings of its former parse are kept. A lookup may thus yield a
+ * sentence which no longer contains the word (or no longer exists), but never
+ * misses one. The index is rebuilt from scratch to get rid of them. It is
+ * written anew by {@link #save()}, through a temporary file.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class WordIndex {
+
+    private static final int MAGIC = 0x574F5244;
+    private static final int VERSION = 1;
+    
+    private final Path path;
+    private final Stemmer stemmer;
+    private final Set<Integer> indexedArticles = new HashSet<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    
+    private WordIndex(Path path, Language language) {
+        this.path = path;
+        this.stemmer = Stemmer.getForLanguage(language);
+    }
+    
+    /**
+     * @param location
+     *            the index file
+     * @param language
+     *            the language of the indexed articles
+     * @return the index read from the file, or an empty one if there is none
+     *         yet
+     * @throws IOException
+     *             if the file could not be read, or is malformed
+     */
+    public static WordIndex load(String location, Language language) throws IOException {
+        Preconditions.throwIfEmptyString("no location was provided", location);
+        Preconditions.throwIfNull("language may not be null", language);
+        
+        final WordIndex index = new WordIndex(Paths.get(location), language);
+        if (!Files.isRegularFile(index.path)) {
+            return index;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index.path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new StreamCorruptedException("not a word index, or of another version: " + location);
+            }
+            
+            int articleId = 0;
+            for (int i = VarInts.readVarInt(in); i > 0; i--) {
+                articleId += VarInts.readVarInt(in);
+                index.indexedArticles.add(articleId);
+            }
+            
+            for (int i = VarInts.readVarInt(in); i > 0; i--) {
+                final String key = in.readUTF();
+                final Postings list = new Postings();
+                list.count = VarInts.readVarInt(in);
+                list.lastArticle = VarInts.readVarInt(in);
+                list.lastSentence = VarInts.readVarInt(in);
+                list.length = VarInts.readVarInt(in);
+                list.bytes = new byte[list.length];
+                in.readFully(list.bytes);
+                index.postings.put(key, list);
+            }
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Indexes every word of every sentence of the article
+     * 
+     * @param article
+     *            the parsed article to index
+     */
+    public synchronized void add(ParsedArticle article) {
+        Preconditions.throwIfNull("article may not be null", article);
+        
+        final Set<Postings> unmerged = new HashSet<>();
+        final List<ParsedSentence> sentences = article.parsedSentences();
+        for (int s = 0; s < sentences.size(); s++) {
+            final ParsedSentence sentence = sentences.get(s);
+            for (int w = 0; w < sentence.size(); w++) {
+                for (String key : keys(sentence.value(w))) {
+                    final Postings list = postings.computeIfAbsent(key, k -> new Postings());
+                    if (!list.add(article.id(), s)) {
+                        unmerged.add(list);
+                    }
+                }
+            }
+        }
+        unmerged.forEach(Postings::merge);
+        indexedArticles.add(article.id());
+    }
+    
+    /**
+     * @return {@code true} if the article was ever indexed
+     */
+    public synchronized boolean isIndexed(int articleId) {
+        return indexedArticles.contains(articleId);
+    }
+    
+    /**
+     * @param words
+     *            the words to look up, e.g. the changed entries of the
+     *            dictionary
+     * @return the indices of the sentences that contain one of the words (or
+     *         one of its inflections), by article id
+     */
+    public synchronized SortedMap<Integer, SortedSet<Integer>> sentencesWith(Collection<String> words) {
+        Preconditions.throwIfNull("words may not be null", words);
+        
+        final SortedMap<Integer, SortedSet<Integer>> sentences = new TreeMap<>();
+        for (String word : words) {
+            for (String key : keys(word)) {
+                final Postings list = postings.get(key);
+                if (list != null) {
+                    list.forEach((articleId, sentence) ->
+                            sentences.computeIfAbsent(articleId, k -> new TreeSet<>()).add(sentence));
+                }
+            }
+        }
+        return sentences;
+    }
+    
+    /**
+     * Writes the index to its file
+     * 
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            final int[] articleIds = indexedArticles.stream().mapToInt(Integer::intValue).sorted().toArray();
+            VarInts.writeVarInt(out, articleIds.length);
+            int previous = 0;
+            for (int articleId : articleIds) {
+                VarInts.writeVarInt(out, articleId - previous);
+                previous = articleId;
+            }
+            
+            /* Sorted by key, for the file not to depend on the hashing */
+            VarInts.writeVarInt(out, postings.size());
+            for (Map.Entry<String, Postings> entry : new TreeMap<>(postings).entrySet()) {
+                final Postings list = entry.getValue();
+                out.writeUTF(entry.getKey());
+                VarInts.writeVarInt(out, list.count);
+                VarInts.writeVarInt(out, list.lastArticle);
+                VarInts.writeVarInt(out, list.lastSentence);
+                VarInts.writeVarInt(out, list.length);
+                out.write(list.bytes, 0, list.length);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    @Override
+    public synchronized String toString() {
+        long count = 0;
+        long bytes = 0;
+        for (Postings list : postings.values()) {
+            count += list.count;
+            bytes += list.length;
+        }
+        return String.format("Word index: %d article(s), %d key(s), %d posting(s) in %d byte(s) (%.2f byte(s)/posting)",
+                indexedArticles.size(), postings.size(), count, bytes, count == 0 ? 0.0 : (double) bytes / count);
+    }
+    
+    /**
+     * @return the keys a word is indexed under: its lower-cased and normalized
+     *         forms
+     */
+    private Set<String> keys(String value) {
+        final Set<String> keys = new HashSet<>(2);
+        keys.add(value.toLowerCase(Locale.ROOT));
+        keys.add(stemmer.normalize(value));
+        return keys;
+    }
+    
+    /**
+     * Visitor of postings
+     */
+    @FunctionalInterface
+    private interface PostingConsumer {
+    
+        void accept(int articleId, int sentence);
+        
+    }
+    
+    /**
+     * The sorted, delta-encoded postings of a key
+     */
+    private static final class Postings {
+    
+        private byte[] bytes = new byte[8];
+        private int length = 0;
+        private int count = 0;
+        private int lastArticle = 0;
+        private int lastSentence = 0;
+        
+        /* Postings that came out of order, to be merged */
+        private long[] pending = new long[0];
+        private int pendingCount = 0;
+        
+        /**
+         * Adds the posting, unless it already is in the list. Postings come
+         * in order when the articles are indexed by increasing id; otherwise
+         * they are buffered until {@link #merge()}.
+         * 
+         * @return {@code false} if the posting was buffered
+         */
+        boolean add(int articleId, int sentence) {
+            if (count == 0 || articleId > lastArticle || (articleId == lastArticle && sentence > lastSentence)) {
+                append(articleId, sentence);
+                return true;
+            }
+            if (articleId == lastArticle && sentence == lastSentence) {
+                return true;
+            }
+            
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(8, 2 * pending.length));
+            }
+            pending[pendingCount++] = pack(articleId, sentence);
+            return false;
+        }
+        
+        /**
+         * Merges the buffered postings into the list, which is encoded again
+         * once for all of them
+         */
+        void merge() {
+            if (pendingCount == 0) {
+                return;
+            }
+            
+            final long[] all = Arrays.copyOf(pending, pendingCount + count);
+            final int[] size = {pendingCount};
+            forEach((a, s) -> all[size[0]++] = pack(a, s));
+            Arrays.sort(all);
+            pending = new long[0];
+            pendingCount = 0;
+            
+            length = 0;
+            count = 0;
+            lastArticle = 0;
+            lastSentence = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (i == 0 || all[i] != all[i - 1]) {
+                    append((int) (all[i] >>> 32), (int) all[i]);
+                }
+            }
+        }
+        
+        void forEach(PostingConsumer consumer) {
+            int articleId = 0;
+            int sentence = 0;
+            final int[] position = {0};
+            for (int i = 0; i < count; i++) {
+                final int articleDelta = readVarInt(position);
+                articleId += articleDelta;
+                sentence = articleDelta == 0 && i > 0 ? sentence + readVarInt(position) : readVarInt(position);
+                consumer.accept(articleId, sentence);
+            }
+        }
+        
+        private void append(int articleId, int sentence) {
+            if (bytes.length - length < 10) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + 10));
+            }
+            
+            final boolean sameArticle = count > 0 && articleId == lastArticle;
+            writeVarInt(articleId - lastArticle);
+            writeVarInt(sameArticle ? sentence - lastSentence : sentence);
+            lastArticle = articleId;
+            lastSentence = sentence;
+            count++;
+        }
+        
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+        
+        private int readVarInt(int[] position) {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                final byte b = bytes[position[0]++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+        
+        private static long pack(int articleId, int sentence) {
+            return (long) articleId << 32 | sentence;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,100 @@
+package ch.epfl.lia.topic;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.epfl.lia.topic.TopicInferencer.Inference;
+
+/**
+ * Statistics of the articles a frozen topic model was applied to: how many,
+ * how many of their tokens were unknown to the model, and how well the model
+ * explains the others.
+ * <p>
+ * An article applied to again counts once, with its latest inference.
+ * </p>
+ * 
+ * @see RetrainPolicy
+ * @author Cyriaque Brousse
+ */
+public final class DriftMonitor implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+    
+    /** Latest inference of each article, by article id */
+    private final Map<Integer, Sample> samples = new HashMap<>();
+    private long tokenCount = 0;
+    private long unknownCount = 0;
+    private double logLikelihood = 0;
+    
+    DriftMonitor() { }
+    
+    /**
+     * Records the inference of the topics of an article, in place of the
+     * former one of the same article (if any)
+     * 
+     * @param inference
+     *            the inference
+     */
+    synchronized void record(Inference inference) {
+        final Sample sample = new Sample(inference.tokenCount(), inference.unknownCount(),
+                inference.logLikelihood());
+        final Sample former = samples.put(inference.articleId(), sample);
+        if (former != null) {
+            tokenCount -= former.tokenCount;
+            unknownCount -= former.unknownCount;
+            logLikelihood -= former.logLikelihood;
+        }
+        tokenCount += sample.tokenCount;
+        unknownCount += sample.unknownCount;
+        logLikelihood += sample.logLikelihood;
+    }
+    
+    /**
+     * @return the number of articles recorded
+     */
+    public synchronized int articleCount() {
+        return samples.size();
+    }
+    
+    /**
+     * @return the rate of tokens unknown to the model, over all recorded
+     *         articles
+     */
+    public synchronized double unknownRate() {
+        return tokenCount == 0 ? 0 : (double) unknownCount / tokenCount;
+    }
+    
+    /**
+     * @return the log-likelihood per known token, over all recorded articles
+     */
+    public synchronized double likelihoodPerToken() {
+        final long known = tokenCount - unknownCount;
+        return known == 0 ? 0 : logLikelihood / known;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("DriftMonitor(articles=%d, unknown=%.1f%%, likelihood/token=%.3f)",
+                articleCount(), 100 * unknownRate(), likelihoodPerToken());
+    }
+    
+    /**
+     * Token counts and log-likelihood of the inference of an article
+     */
+    private static final class Sample implements Serializable {
+    
+        private static final long serialVersionUID = 1L;
+        
+        private final int tokenCount;
+        private final int unknownCount;
+        private final double logLikelihood;
+        
+        Sample(int tokenCount, int unknownCount, double logLikelihood) {
+            this.tokenCount = tokenCount;
+            this.unknownCount = unknownCount;
+            this.logLikelihood = logLikelihood;
+        }
+    }
+    
+}
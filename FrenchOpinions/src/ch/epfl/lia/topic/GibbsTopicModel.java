@@ -0,0 +1,471 @@
+package ch.epfl.lia.topic;
+
+import static ch.epfl.lia.util.MathUtils.digamma;
+import static ch.epfl.lia.util.MathUtils.logGamma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * In-process LDA topic model, trained by collapsed Gibbs sampling over a
+ * {@link NounCorpus}.
+ * <p>
+ * Sampling is parallelized the approximate distributed way (AD-LDA): the
+ * documents are split among the threads, each thread samples its documents
+ * against its own copy of the topic-word counts, and the copies are merged at
+ * the end of each iteration. As MALLET does with {@code --optimize-interval},
+ * the (asymmetric) Dirichlet prior on the document-topic distributions is
+ * periodically re-estimated, and the resulting per-topic concentration is
+ * reported as the proportion of the topic.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class GibbsTopicModel {
+
+    /** Number of iterations between two log-likelihood measures */
+    private static final int LIKELIHOOD_INTERVAL = 10;
+    
+    /** Number of fixed-point iterations per prior optimization */
+    private static final int OPTIMIZATION_ROUNDS = 5;
+    
+    /** Smallest value a topic concentration may take */
+    private static final double MIN_ALPHA = 1e-6;
+    
+    private final int numTopics;
+    private final double[] alpha;
+    private double alphaSum;
+    private final double beta;
+    private final int threads;
+    private final long seed;
+    
+    /* Sampling state */
+    private NounCorpus corpus = null;
+    private int[][] assignments;
+    private int[][] documentTopicCounts;
+    private int[][] wordTopicCounts;
+    private int[] topicCounts;
+    
+    /** Log-likelihood per token, measured every {@link #LIKELIHOOD_INTERVAL} iterations */
+    private final List<Double> likelihoods = new ArrayList<>();
+    
+    /**
+     * @param numTopics
+     *            number of topics
+     * @param alphaSum
+     *            initial sum of the document-topic Dirichlet parameters
+     * @param beta
+     *            topic-word Dirichlet parameter
+     * @param threads
+     *            number of sampling threads
+     * @param seed
+     *            random seed, for reproducible results
+     */
+    public GibbsTopicModel(int numTopics, double alphaSum, double beta, int threads, long seed) {
+        if (numTopics <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("topic and thread counts must be strictly positive");
+        }
+        if (alphaSum <= 0 || beta <= 0) {
+            throw new IllegalArgumentException("Dirichlet parameters must be strictly positive");
+        }
+        
+        this.numTopics = numTopics;
+        this.alpha = new double[numTopics];
+        Arrays.fill(alpha, alphaSum / numTopics);
+        this.alphaSum = alphaSum;
+        this.beta = beta;
+        this.threads = threads;
+        this.seed = seed;
+    }
+    
+    /**
+     * Trains the model on the provided corpus
+     * 
+     * @param nounCorpus
+     *            the corpus to train on
+     * @param iterations
+     *            number of sampling iterations
+     * @param optimizeInterval
+     *            number of iterations between two optimizations of the prior,
+     *            or {@code 0} to keep it fixed
+     * @param burnIn
+     *            number of iterations before the first optimization
+     * @throws TopicExtractionException
+     *             if a sampling thread failed or was interrupted
+     */
+    public void train(NounCorpus nounCorpus, int iterations, int optimizeInterval, int burnIn)
+            throws TopicExtractionException {
+        Preconditions.throwIfNull("corpus may not be null", nounCorpus);
+        if (nounCorpus.size() == 0) {
+            throw new IllegalArgumentException("corpus may not be empty");
+        }
+        
+        initialize(nounCorpus);
+        
+        final List<int[]> partitions = partition(Math.min(threads, corpus.size()));
+        final Random[] randoms = new Random[partitions.size()];
+        for (int p = 0; p < randoms.length; p++) {
+            randoms[p] = new Random(seed + p + 1);
+        }
+        
+        final ExecutorService pool = Executors.newFixedThreadPool(partitions.size());
+        try {
+            for (int iteration = 1; iteration <= iterations; iteration++) {
+                sweep(pool, partitions, randoms);
+                
+                if (optimizeInterval > 0 && iteration > burnIn && iteration % optimizeInterval == 0) {
+                    optimizeAlpha();
+                }
+                if (iteration % LIKELIHOOD_INTERVAL == 0 || iteration == iterations) {
+                    likelihoods.add(logLikelihood() / corpus.tokenCount());
+                }
+            }
+            
+        } catch (InterruptedException | ExecutionException e) {
+            throw new TopicExtractionException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * @param topWords
+     *            maximal number of keys per topic
+     * @return the topics of the trained model, each one with its most frequent
+     *         words as keys and its concentration as proportion. Empty topics
+     *         are left out.
+     */
+    public List<Topic> topics(int topWords) {
+        throwIfNotTrained();
+        
+        List<Topic> topics = new ArrayList<>();
+        for (int k = 0; k < numTopics; k++) {
+            final int topic = k;
+            List<String> keys = new ArrayList<>();
+            topWordIds(topic, topWords).forEach(w -> keys.add(corpus.word(w)));
+            
+            if (!keys.isEmpty()) {
+                topics.add(new Topic(topic, alpha[topic], keys));
+            }
+        }
+        
+        return topics;
+    }
+    
+    /**
+     * Freezes the trained model, for inference on new articles
+     * 
+     * @param topWords
+     *            maximal number of keys per topic
+     * @return the frozen model
+     */
+    public TopicModel freeze(int topWords) {
+        throwIfNotTrained();
+        
+        final int vocabularySize = corpus.vocabularySize();
+        final double betaSum = beta * vocabularySize;
+        double[][] probabilities = new double[vocabularySize][numTopics];
+        for (int w = 0; w < vocabularySize; w++) {
+            for (int k = 0; k < numTopics; k++) {
+                probabilities[w][k] = (wordTopicCounts[w][k] + beta) / (topicCounts[k] + betaSum);
+            }
+        }
+        
+        /* Baseline: likelihood of the training tokens, as measured on new articles */
+        double likelihood = 0;
+        for (int d = 0; d < corpus.size(); d++) {
+            final double[] distribution = documentTopics(d);
+            for (int w : corpus.document(d)) {
+                double p = 0;
+                for (int k = 0; k < numTopics; k++) {
+                    p += distribution[k] * probabilities[w][k];
+                }
+                likelihood += Math.log(p);
+            }
+        }
+        
+        return new TopicModel(corpus, probabilities, alpha, topics(topWords),
+                likelihood / Math.max(1, corpus.tokenCount()));
+    }
+    
+    /**
+     * @param document
+     *            index of the document in the corpus
+     * @return the topic distribution of the document
+     */
+    public double[] documentTopics(int document) {
+        throwIfNotTrained();
+        
+        final int[] counts = documentTopicCounts[document];
+        final double total = assignments[document].length + alphaSum;
+        double[] distribution = new double[numTopics];
+        for (int k = 0; k < numTopics; k++) {
+            distribution[k] = (counts[k] + alpha[k]) / total;
+        }
+        return distribution;
+    }
+    
+    /**
+     * @return the log-likelihood per token along the training, measured every
+     *         ten iterations (and at the last one)
+     */
+    public List<Double> likelihoods() {
+        return new ArrayList<>(likelihoods);
+    }
+    
+    /**
+     * @return the log-likelihood of the current state of the model
+     */
+    public double logLikelihood() {
+        throwIfNotTrained();
+        double likelihood = 0;
+        
+        /* Document-topic part */
+        double alphaLogGammaSum = 0;
+        for (int k = 0; k < numTopics; k++) {
+            alphaLogGammaSum += logGamma(alpha[k]);
+        }
+        for (int d = 0; d < corpus.size(); d++) {
+            for (int k = 0; k < numTopics; k++) {
+                if (documentTopicCounts[d][k] > 0) {
+                    likelihood += logGamma(alpha[k] + documentTopicCounts[d][k]) - logGamma(alpha[k]);
+                }
+            }
+            likelihood -= logGamma(alphaSum + assignments[d].length) - logGamma(alphaSum);
+        }
+        
+        /* Topic-word part */
+        final int vocabularySize = corpus.vocabularySize();
+        final double logGammaBeta = logGamma(beta);
+        for (int w = 0; w < vocabularySize; w++) {
+            for (int k = 0; k < numTopics; k++) {
+                if (wordTopicCounts[w][k] > 0) {
+                    likelihood += logGamma(beta + wordTopicCounts[w][k]) - logGammaBeta;
+                }
+            }
+        }
+        for (int k = 0; k < numTopics; k++) {
+            likelihood -= logGamma(beta * vocabularySize + topicCounts[k]) - logGamma(beta * vocabularySize);
+        }
+        
+        return likelihood;
+    }
+    
+    int numTopics() {
+        return numTopics;
+    }
+    
+    double[] alpha() {
+        return alpha.clone();
+    }
+    
+    double beta() {
+        return beta;
+    }
+    
+    NounCorpus corpus() {
+        return corpus;
+    }
+    
+    int[][] wordTopicCounts() {
+        return wordTopicCounts;
+    }
+    
+    int[] topicCounts() {
+        return topicCounts;
+    }
+    
+    private void initialize(NounCorpus nounCorpus) {
+        this.corpus = nounCorpus;
+        this.assignments = new int[corpus.size()][];
+        this.documentTopicCounts = new int[corpus.size()][numTopics];
+        this.wordTopicCounts = new int[corpus.vocabularySize()][numTopics];
+        this.topicCounts = new int[numTopics];
+        this.likelihoods.clear();
+        
+        final Random random = new Random(seed);
+        for (int d = 0; d < corpus.size(); d++) {
+            final int[] document = corpus.document(d);
+            assignments[d] = new int[document.length];
+            for (int i = 0; i < document.length; i++) {
+                final int k = random.nextInt(numTopics);
+                assignments[d][i] = k;
+                documentTopicCounts[d][k]++;
+                wordTopicCounts[document[i]][k]++;
+                topicCounts[k]++;
+            }
+        }
+    }
+    
+    /**
+     * @return ranges {@code [from, to)} of documents, with about the same
+     *         number of tokens each
+     */
+    private List<int[]> partition(int count) {
+        final long perPartition = corpus.tokenCount() / count + 1;
+        List<int[]> partitions = new ArrayList<>();
+        
+        int from = 0;
+        long tokens = 0;
+        for (int d = 0; d < corpus.size(); d++) {
+            tokens += corpus.document(d).length;
+            if (tokens >= perPartition && partitions.size() < count - 1) {
+                partitions.add(new int[] {from, d + 1});
+                from = d + 1;
+                tokens = 0;
+            }
+        }
+        if (from < corpus.size()) {
+            partitions.add(new int[] {from, corpus.size()});
+        }
+        
+        return partitions;
+    }
+    
+    /**
+     * One sampling iteration over the whole corpus, in parallel
+     */
+    private void sweep(ExecutorService pool, List<int[]> partitions, Random[] randoms)
+            throws InterruptedException, ExecutionException {
+        List<Future<int[][]>> results = new ArrayList<>();
+        for (int p = 0; p < partitions.size(); p++) {
+            final int[] range = partitions.get(p);
+            final Random random = randoms[p];
+            results.add(pool.submit((Callable<int[][]>) () -> sample(range[0], range[1], random)));
+        }
+        
+        /* Merge: new = old + sum of the local differences */
+        final int[][] merged = copy(wordTopicCounts);
+        final int[] mergedTotals = topicCounts.clone();
+        for (Future<int[][]> result : results) {
+            final int[][] local = result.get();
+            final int[] localTotals = local[local.length - 1];
+            for (int w = 0; w < merged.length; w++) {
+                for (int k = 0; k < numTopics; k++) {
+                    merged[w][k] += local[w][k] - wordTopicCounts[w][k];
+                }
+            }
+            for (int k = 0; k < numTopics; k++) {
+                mergedTotals[k] += localTotals[k] - topicCounts[k];
+            }
+        }
+        
+        this.wordTopicCounts = merged;
+        this.topicCounts = mergedTotals;
+    }
+    
+    /**
+     * Samples the documents in {@code [from, to)} against a local copy of the
+     * topic-word counts
+     * 
+     * @return the local topic-word counts, followed by the local topic totals
+     */
+    private int[][] sample(int from, int to, Random random) {
+        final int vocabularySize = wordTopicCounts.length;
+        final double betaSum = beta * vocabularySize;
+        
+        final int[][] local = new int[vocabularySize + 1][];
+        for (int w = 0; w < vocabularySize; w++) {
+            local[w] = wordTopicCounts[w].clone();
+        }
+        final int[] totals = topicCounts.clone();
+        local[vocabularySize] = totals;
+        
+        final double[] cumulative = new double[numTopics];
+        for (int d = from; d < to; d++) {
+            final int[] document = corpus.document(d);
+            final int[] topics = assignments[d];
+            final int[] counts = documentTopicCounts[d];
+            
+            for (int i = 0; i < document.length; i++) {
+                final int[] wordCounts = local[document[i]];
+                int k = topics[i];
+                counts[k]--;
+                wordCounts[k]--;
+                totals[k]--;
+                
+                double sum = 0;
+                for (int t = 0; t < numTopics; t++) {
+                    sum += (counts[t] + alpha[t]) * (wordCounts[t] + beta) / (totals[t] + betaSum);
+                    cumulative[t] = sum;
+                }
+                
+                final double u = random.nextDouble() * sum;
+                k = 0;
+                while (k < numTopics - 1 && cumulative[k] <= u) {
+                    k++;
+                }
+                
+                topics[i] = k;
+                counts[k]++;
+                wordCounts[k]++;
+                totals[k]++;
+            }
+        }
+        
+        return local;
+    }
+    
+    /**
+     * Re-estimates the document-topic prior with Minka's fixed-point iteration
+     */
+    private void optimizeAlpha() {
+        for (int round = 0; round < OPTIMIZATION_ROUNDS; round++) {
+            double denominator = 0;
+            for (int d = 0; d < corpus.size(); d++) {
+                denominator += digamma(assignments[d].length + alphaSum) - digamma(alphaSum);
+            }
+            
+            double sum = 0;
+            for (int k = 0; k < numTopics; k++) {
+                double numerator = 0;
+                for (int d = 0; d < corpus.size(); d++) {
+                    if (documentTopicCounts[d][k] > 0) {
+                        numerator += digamma(documentTopicCounts[d][k] + alpha[k]) - digamma(alpha[k]);
+                    }
+                }
+                alpha[k] = Math.max(MIN_ALPHA, alpha[k] * numerator / denominator);
+                sum += alpha[k];
+            }
+            alphaSum = sum;
+        }
+    }
+    
+    private List<Integer> topWordIds(int topic, int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int w = 0; w < wordTopicCounts.length; w++) {
+            if (wordTopicCounts[w][topic] > 0) {
+                ids.add(w);
+            }
+        }
+        
+        ids.sort(Comparator.comparingInt((Integer w) -> wordTopicCounts[w][topic]).reversed());
+        return ids.subList(0, Math.min(count, ids.size()));
+    }
+    
+    private void throwIfNotTrained() {
+        if (corpus == null) {
+            throw new IllegalStateException("the model must be trained first");
+        }
+    }
+    
+    private static int[][] copy(int[][] array) {
+        int[][] copy = new int[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            copy[i] = array[i].clone();
+        }
+        return copy;
+    }
+    
+}
@@ -0,0 +1,242 @@
+package ch.epfl.lia.topic;
+
+import static ch.epfl.lia.main.Config.STOPLIST_LOCATION_PREFIX;
+import static ch.epfl.lia.util.FileUtils.foreachNonEmptyLine;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Integer-encoded corpus of the nouns of a set of articles, as consumed by the
+ * topic models. Each document is the sequence of the (vocabulary ids of the)
+ * nouns of an article.
+ * <p>
+ * The nouns are tokenized, lower-cased and filtered the same way MALLET's
+ * {@code import-dir} does in {@code run_mallet.sh}: tokens match
+ * {@code [\p{L}\p{M}]+}, and stopwords are removed.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class NounCorpus {
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("[\\p{L}\\p{M}]+");
+    
+    private final Language language;
+    private final Set<String> stopwords;
+    
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final List<int[]> documents = new ArrayList<>();
+    private final List<Integer> articleIds = new ArrayList<>();
+    private long tokenCount = 0;
+    
+    /**
+     * Creates an empty corpus
+     * 
+     * @param language
+     *            the language of the articles
+     * @param stopwords
+     *            the words to leave out of the corpus
+     */
+    public NounCorpus(Language language, Set<String> stopwords) {
+        Preconditions.throwIfNull("language and stopwords may not be null", language, stopwords);
+        
+        this.language = language;
+        this.stopwords = new HashSet<>(stopwords);
+    }
+    
+    /**
+     * @param articles
+     *            the articles to build the corpus from
+     * @param language
+     *            the language of the articles
+     * @return the corpus of the nouns of the articles, without the stopwords of
+     *         the language
+     * @throws IOException
+     *             if the stoplist could not be read
+     */
+    public static NounCorpus fromArticles(Collection<ParsedArticle> articles, Language language)
+            throws IOException {
+        Preconditions.throwIfNull("articles may not be null", articles);
+        
+        NounCorpus corpus = new NounCorpus(language, loadStoplist(language));
+        articles.forEach(a -> corpus.add(a));
+        return corpus;
+    }
+    
+    /**
+     * @param language
+     *            the language of the stoplist
+     * @return the stopwords of the language, as used by MALLET
+     * @throws IOException
+     *             if the stoplist could not be read
+     */
+    public static Set<String> loadStoplist(Language language) throws IOException {
+        Set<String> stopwords = new HashSet<>();
+        foreachNonEmptyLine(STOPLIST_LOCATION_PREFIX + language.shortName() + ".txt",
+                line -> stopwords.add(line.toLowerCase(Locale.ROOT)));
+        return stopwords;
+    }
+    
+    /**
+     * Adds the nouns of the article to the corpus, as a new document
+     * 
+     * @param article
+     *            the article to add
+     */
+    public void add(ParsedArticle article) {
+        Preconditions.throwIfNull("article may not be null", article);
+        
+        final List<String> tokens = tokenize(article, stopwords);
+        int[] document = new int[tokens.size()];
+        for (int i = 0; i < document.length; i++) {
+            document[i] = idOf(tokens.get(i));
+        }
+        
+        documents.add(document);
+        articleIds.add(article.id());
+        tokenCount += document.length;
+    }
+    
+    /**
+     * @param article
+     *            an article
+     * @param stopwords
+     *            the words to leave out
+     * @return the tokens of the nouns of the article, lower-cased and without
+     *         the stopwords
+     */
+    static List<String> tokenize(ParsedArticle article, Set<String> stopwords) {
+        List<String> tokens = new ArrayList<>();
+        for (String noun : article.nouns()) {
+            Matcher matcher = TOKEN_PATTERN.matcher(noun);
+            while (matcher.find()) {
+                final String token = matcher.group().toLowerCase(Locale.ROOT);
+                if (!stopwords.contains(token)) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+    
+    /**
+     * Writes the corpus in MALLET's {@code import-file} format: one document
+     * per line, made of the article id, the language (as label), and the
+     * words of the document
+     * 
+     * @param writer
+     *            the writer to write to. It is neither flushed nor closed.
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        Preconditions.throwIfNull("writer may not be null", writer);
+        
+        for (int d = 0; d < documents.size(); d++) {
+            writer.write(Integer.toString(articleIds.get(d)));
+            writer.write(' ');
+            writer.write(language.shortName());
+            for (int w : documents.get(d)) {
+                writer.write(' ');
+                writer.write(words.get(w));
+            }
+            writer.write('\n');
+        }
+    }
+    
+    public Language language() {
+        return language;
+    }
+    
+    /**
+     * @return the words left out of the corpus
+     */
+    public Set<String> stopwords() {
+        return new HashSet<>(stopwords);
+    }
+    
+    /**
+     * @return the number of documents
+     */
+    public int size() {
+        return documents.size();
+    }
+    
+    /**
+     * @return the number of distinct words
+     */
+    public int vocabularySize() {
+        return words.size();
+    }
+    
+    /**
+     * @return the total number of tokens, over all documents
+     */
+    public long tokenCount() {
+        return tokenCount;
+    }
+    
+    /**
+     * @param index
+     *            index of the document
+     * @return the word ids of the document. <em>Note:</em> the array is not
+     *         copied, and must not be modified.
+     */
+    public int[] document(int index) {
+        return documents.get(index);
+    }
+    
+    /**
+     * @param index
+     *            index of the document
+     * @return the id of the article the document was built from
+     */
+    public int articleId(int index) {
+        return articleIds.get(index);
+    }
+    
+    /**
+     * @param id
+     *            a word id
+     * @return the word with this id
+     */
+    public String word(int id) {
+        return words.get(id);
+    }
+    
+    /**
+     * @param word
+     *            a word
+     * @return the id of the word, or {@code -1} if it is not in the corpus
+     */
+    public int wordId(String word) {
+        final Integer id = wordIds.get(word);
+        return id == null ? -1 : id;
+    }
+    
+    private int idOf(String token) {
+        Integer id = wordIds.get(token);
+        if (id == null) {
+            id = words.size();
+            wordIds.put(token, id);
+            words.add(token);
+        }
+        return id;
+    }
+    
+}
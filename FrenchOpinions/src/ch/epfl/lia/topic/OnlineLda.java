@@ -0,0 +1,444 @@
+package ch.epfl.lia.topic;
+
+import static ch.epfl.lia.util.MathUtils.digamma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Streaming topic model, trained by online variational Bayes (Hoffman, Blei
+ * and Bach, 2010): the topic-word statistics are updated mini-batch by
+ * mini-batch, as the articles arrive, and the current topics may be read at
+ * any time.
+ * <p>
+ * The vocabulary grows with the stream. The learning rate
+ * {@code (tau0 + t)^-kappa} is floored, so that the statistics of the past
+ * mini-batches keep decaying geometrically: topics that stop being fed fade
+ * out, and are left out of {@link #topics(int)} once their weight falls below
+ * the fade threshold.
+ * </p>
+ * <p>
+ * Build instances with {@link Builder}. Instances are thread-safe.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class OnlineLda {
+
+    /** Maximal number of iterations of the per-document variational step */
+    private static final int MAX_E_STEP_ITERATIONS = 100;
+    
+    /** Mean change in the document-topic parameters under which the variational step stops */
+    private static final double E_STEP_TOLERANCE = 1e-3;
+    
+    private final Language language;
+    private final Set<String> stopwords;
+    private final int numTopics;
+    private final double alpha;
+    private final double eta;
+    private final double tau0;
+    private final double kappa;
+    private final double minLearningRate;
+    private final int corpusSize;
+    private final double fadeThreshold;
+    private final Random random;
+    
+    /* Variational topic-word parameters, one array (indexed by topic) per word */
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final List<double[]> lambda = new ArrayList<>();
+    private final double[] lambdaSums;
+    
+    private int updateCount = 0;
+    private long documentCount = 0;
+    
+    private OnlineLda(Builder b) {
+        this.language = b.language;
+        this.stopwords = new HashSet<>(b.stopwords);
+        this.numTopics = b.numTopics;
+        this.alpha = b.alpha;
+        this.eta = b.eta;
+        this.tau0 = b.tau0;
+        this.kappa = b.kappa;
+        this.minLearningRate = b.minLearningRate;
+        this.corpusSize = b.corpusSize;
+        this.fadeThreshold = b.fadeThreshold;
+        this.random = new Random(b.seed);
+        this.lambdaSums = new double[numTopics];
+    }
+    
+    /**
+     * Updates the model with a new mini-batch of articles
+     * 
+     * @param batch
+     *            the articles, tagged at least
+     */
+    public synchronized void update(Collection<ParsedArticle> batch) {
+        Preconditions.throwIfNullOrEmpty("batch may not be null or empty", batch);
+        
+        /* Documents as (word id, count) pairs, growing the vocabulary as needed */
+        List<int[][]> documents = new ArrayList<>();
+        for (ParsedArticle article : batch) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (String token : NounCorpus.tokenize(article, stopwords)) {
+                counts.merge(idOf(token), 1, Integer::sum);
+            }
+            
+            int[][] document = new int[2][counts.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+                document[0][i] = entry.getKey();
+                document[1][i] = entry.getValue();
+                i++;
+            }
+            documents.add(document);
+        }
+        
+        /* E step: sufficient statistics of the mini-batch */
+        final double[] logBetaNorms = new double[numTopics];
+        for (int k = 0; k < numTopics; k++) {
+            logBetaNorms[k] = digamma(lambdaSums[k]);
+        }
+        
+        Map<Integer, double[]> statistics = new HashMap<>();
+        for (int[][] document : documents) {
+            eStep(document, logBetaNorms, statistics);
+        }
+        
+        /* M step: blend the current parameters with the mini-batch estimate */
+        final double rate = Math.max(minLearningRate, Math.pow(tau0 + updateCount, -kappa));
+        final double scale = (double) corpusSize / documents.size();
+        for (int k = 0; k < numTopics; k++) {
+            lambdaSums[k] = 0;
+        }
+        for (int w = 0; w < lambda.size(); w++) {
+            final double[] parameters = lambda.get(w);
+            final double[] wordStatistics = statistics.get(w);
+            for (int k = 0; k < numTopics; k++) {
+                final double estimate = eta + (wordStatistics == null ? 0 : scale * wordStatistics[k]);
+                parameters[k] = (1 - rate) * parameters[k] + rate * estimate;
+                lambdaSums[k] += parameters[k];
+            }
+        }
+        
+        updateCount++;
+        documentCount += documents.size();
+    }
+    
+    /**
+     * @param topWords
+     *            maximal number of keys per topic
+     * @return the current topics, each one with its most likely words as keys
+     *         and its share of the word mass as proportion. Topics whose share
+     *         fell below the fade threshold are left out.
+     */
+    public synchronized List<Topic> topics(int topWords) {
+        List<Topic> topics = new ArrayList<>();
+        if (lambda.isEmpty()) {
+            return topics;
+        }
+        
+        /* Share of each topic in the word mass, the prior excluded */
+        final double prior = eta * lambda.size();
+        double total = 0;
+        for (int k = 0; k < numTopics; k++) {
+            total += Math.max(0, lambdaSums[k] - prior);
+        }
+        
+        for (int k = 0; k < numTopics; k++) {
+            final double weight = total == 0 ? 0 : Math.max(0, lambdaSums[k] - prior) / total;
+            if (weight < fadeThreshold) {
+                continue;
+            }
+            
+            final int topic = k;
+            List<Integer> ids = new ArrayList<>();
+            for (int w = 0; w < lambda.size(); w++) {
+                ids.add(w);
+            }
+            ids.sort(Comparator.comparingDouble((Integer w) -> lambda.get(w)[topic]).reversed());
+            
+            List<String> keys = new ArrayList<>();
+            ids.subList(0, Math.min(topWords, ids.size())).forEach(w -> keys.add(words.get(w)));
+            topics.add(new Topic(topic, weight, keys));
+        }
+        
+        return topics;
+    }
+    
+    public Language language() {
+        return language;
+    }
+    
+    /**
+     * @return the number of mini-batches the model was updated with
+     */
+    public synchronized int updateCount() {
+        return updateCount;
+    }
+    
+    /**
+     * @return the number of articles the model was updated with
+     */
+    public synchronized long documentCount() {
+        return documentCount;
+    }
+    
+    /**
+     * @return the number of distinct words seen so far
+     */
+    public synchronized int vocabularySize() {
+        return words.size();
+    }
+    
+    /**
+     * Variational step for a single document: fits its topic distribution, and
+     * adds its contribution to the statistics of the mini-batch
+     * 
+     * @param document
+     *            word ids and counts of the document
+     * @param logBetaNorms
+     *            digamma of the sums of the topic-word parameters
+     * @param statistics
+     *            statistics of the mini-batch, indexed by word id
+     */
+    private void eStep(int[][] document, double[] logBetaNorms, Map<Integer, double[]> statistics) {
+        final int[] ids = document[0];
+        final int[] counts = document[1];
+        
+        /* exp(E[log beta]) for the words of the document */
+        final double[][] expLogBeta = new double[ids.length][numTopics];
+        for (int i = 0; i < ids.length; i++) {
+            final double[] parameters = lambda.get(ids[i]);
+            for (int k = 0; k < numTopics; k++) {
+                expLogBeta[i][k] = Math.exp(digamma(parameters[k]) - logBetaNorms[k]);
+            }
+        }
+        
+        double[] gamma = new double[numTopics];
+        for (int k = 0; k < numTopics; k++) {
+            gamma[k] = randomParameter();
+        }
+        final double[] expLogTheta = new double[numTopics];
+        
+        for (int iteration = 0; iteration < MAX_E_STEP_ITERATIONS; iteration++) {
+            expectedLog(gamma, expLogTheta);
+            
+            final double[] next = new double[numTopics];
+            for (int i = 0; i < ids.length; i++) {
+                double norm = 1e-100;
+                for (int k = 0; k < numTopics; k++) {
+                    norm += expLogTheta[k] * expLogBeta[i][k];
+                }
+                for (int k = 0; k < numTopics; k++) {
+                    next[k] += counts[i] * expLogTheta[k] * expLogBeta[i][k] / norm;
+                }
+            }
+            
+            double change = 0;
+            for (int k = 0; k < numTopics; k++) {
+                next[k] += alpha;
+                change += Math.abs(next[k] - gamma[k]);
+            }
+            gamma = next;
+            if (change / numTopics < E_STEP_TOLERANCE) {
+                break;
+            }
+        }
+        
+        expectedLog(gamma, expLogTheta);
+        for (int i = 0; i < ids.length; i++) {
+            double norm = 1e-100;
+            for (int k = 0; k < numTopics; k++) {
+                norm += expLogTheta[k] * expLogBeta[i][k];
+            }
+            
+            final double[] wordStatistics = statistics.computeIfAbsent(ids[i], w -> new double[numTopics]);
+            for (int k = 0; k < numTopics; k++) {
+                wordStatistics[k] += counts[i] * expLogTheta[k] * expLogBeta[i][k] / norm;
+            }
+        }
+    }
+    
+    /**
+     * Computes {@code exp(E[log theta])} under a Dirichlet of parameters
+     * {@code gamma}
+     */
+    private static void expectedLog(double[] gamma, double[] result) {
+        double sum = 0;
+        for (double g : gamma) {
+            sum += g;
+        }
+        final double norm = digamma(sum);
+        for (int k = 0; k < gamma.length; k++) {
+            result[k] = Math.exp(digamma(gamma[k]) - norm);
+        }
+    }
+    
+    /**
+     * @return a random initial variational parameter, around {@code 1} (the
+     *         Gamma(100, 1/100) draw of the original algorithm, approximated
+     *         by a normal one)
+     */
+    private double randomParameter() {
+        return Math.max(0.5, 1 + 0.1 * random.nextGaussian());
+    }
+    
+    private int idOf(String token) {
+        Integer id = wordIds.get(token);
+        if (id == null) {
+            id = words.size();
+            wordIds.put(token, id);
+            words.add(token);
+            
+            final double[] parameters = new double[numTopics];
+            for (int k = 0; k < numTopics; k++) {
+                parameters[k] = randomParameter();
+                lambdaSums[k] += parameters[k];
+            }
+            lambda.add(parameters);
+        }
+        return id;
+    }
+    
+    /**
+     * Builder class for {@link OnlineLda}
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static class Builder {
+    
+        private final Language language;
+        private final Set<String> stopwords;
+        private int numTopics = 16;
+        private double alpha = 1.0 / 16;
+        private double eta = 0.01;
+        private double tau0 = 64;
+        private double kappa = 0.7;
+        private double minLearningRate = 0.05;
+        private int corpusSize = 10000;
+        private double fadeThreshold = 0.01;
+        private long seed = 0;
+        
+        /**
+         * @param language
+         *            the language of the articles
+         * @param stopwords
+         *            the words to leave out
+         */
+        public Builder(Language language, Set<String> stopwords) {
+            Preconditions.throwIfNull("language and stopwords may not be null", language, stopwords);
+            this.language = language;
+            this.stopwords = stopwords;
+        }
+        
+        /**
+         * @param count
+         *            number of topics. The document-topic prior is set to
+         *            {@code 1 / count}, unless set explicitly afterwards.
+         * @return this builder
+         */
+        public Builder numTopics(int count) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("topic count must be strictly positive");
+            }
+            this.numTopics = count;
+            this.alpha = 1.0 / count;
+            return this;
+        }
+        
+        /**
+         * @param alpha
+         *            document-topic Dirichlet parameter
+         * @param eta
+         *            topic-word Dirichlet parameter
+         * @return this builder
+         */
+        public Builder priors(double alpha, double eta) {
+            if (alpha <= 0 || eta <= 0) {
+                throw new IllegalArgumentException("Dirichlet parameters must be strictly positive");
+            }
+            this.alpha = alpha;
+            this.eta = eta;
+            return this;
+        }
+        
+        /**
+         * @param tau0
+         *            delay, down-weighting the first mini-batches
+         * @param kappa
+         *            forgetting rate, in {@code (0.5, 1]}
+         * @param floor
+         *            minimal learning rate, which sets how fast stale topics
+         *            fade out
+         * @return this builder
+         */
+        public Builder learningRate(double tau0, double kappa, double floor) {
+            if (tau0 < 0 || kappa <= 0.5 || kappa > 1 || floor < 0 || floor > 1) {
+                throw new IllegalArgumentException("invalid learning rate parameters");
+            }
+            this.tau0 = tau0;
+            this.kappa = kappa;
+            this.minLearningRate = floor;
+            return this;
+        }
+        
+        /**
+         * @param size
+         *            expected number of articles in the stream, over which
+         *            the mini-batch statistics are scaled
+         * @return this builder
+         */
+        public Builder corpusSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("corpus size must be strictly positive");
+            }
+            this.corpusSize = size;
+            return this;
+        }
+        
+        /**
+         * @param threshold
+         *            share of the word mass under which a topic is considered
+         *            faded out
+         * @return this builder
+         */
+        public Builder fadeThreshold(double threshold) {
+            if (threshold < 0 || threshold >= 1) {
+                throw new IllegalArgumentException("fade threshold must be in [0, 1)");
+            }
+            this.fadeThreshold = threshold;
+            return this;
+        }
+        
+        /**
+         * @param seed
+         *            random seed, for reproducible results
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+        
+        /**
+         * @return the built model
+         */
+        public OnlineLda build() {
+            return new OnlineLda(this);
+        }
+    }
+    
+}
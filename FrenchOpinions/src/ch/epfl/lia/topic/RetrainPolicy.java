@@ -0,0 +1,161 @@
+package ch.epfl.lia.topic;
+
+import java.util.concurrent.TimeUnit;
+
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Decides whether a frozen topic model is still fit for inference, or must be
+ * retrained. A model is retrained when it gets too old, when too many articles
+ * were inferred since it was trained, or when these articles drift away from
+ * the training corpus: too many unknown words, or a likelihood too far below
+ * the one of the training corpus.
+ * <p>
+ * Build instances with {@link Builder}. By default, nothing but drift triggers
+ * a retraining.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class RetrainPolicy {
+
+    private final long maxAgeMillis;
+    private final int maxNewArticles;
+    private final int minDriftSample;
+    private final double maxUnknownRate;
+    private final double maxLikelihoodDrop;
+    
+    private RetrainPolicy(long maxAgeMillis, int maxNewArticles, int minDriftSample, double maxUnknownRate,
+            double maxLikelihoodDrop) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxNewArticles = maxNewArticles;
+        this.minDriftSample = minDriftSample;
+        this.maxUnknownRate = maxUnknownRate;
+        this.maxLikelihoodDrop = maxLikelihoodDrop;
+    }
+    
+    /**
+     * @param model
+     *            the frozen model
+     * @return {@code true} if the model should be retrained
+     */
+    public boolean shouldRetrain(TopicModel model) {
+        return reason(model) != null;
+    }
+    
+    /**
+     * @param model
+     *            the frozen model
+     * @return why the model should be retrained, or {@code null} if it should
+     *         not
+     */
+    public String reason(TopicModel model) {
+        Preconditions.throwIfNull("model may not be null", model);
+        final DriftMonitor monitor = model.monitor();
+        
+        if (System.currentTimeMillis() - model.trainedAt() > maxAgeMillis) {
+            return "model is too old";
+        }
+        if (monitor.articleCount() > maxNewArticles) {
+            return "too many new articles (" + monitor.articleCount() + ")";
+        }
+        if (monitor.articleCount() < minDriftSample) {
+            return null;
+        }
+        if (monitor.unknownRate() > maxUnknownRate) {
+            return String.format("too many unknown words (%.1f%%)", 100 * monitor.unknownRate());
+        }
+        if (model.baselineLikelihood() - monitor.likelihoodPerToken() > maxLikelihoodDrop) {
+            return String.format("likelihood dropped (%.3f vs. %.3f)",
+                    monitor.likelihoodPerToken(), model.baselineLikelihood());
+        }
+        return null;
+    }
+    
+    /**
+     * Builder class for {@link RetrainPolicy}
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static class Builder {
+    
+        private long maxAgeMillis = Long.MAX_VALUE;
+        private int maxNewArticles = Integer.MAX_VALUE;
+        private int minDriftSample = 20;
+        private double maxUnknownRate = 0.25;
+        private double maxLikelihoodDrop = 1.0;
+        
+        /**
+         * @param days
+         *            age (in days) above which the model is retrained
+         * @return this builder
+         */
+        public Builder maxAgeDays(int days) {
+            throwIfNegative(days);
+            this.maxAgeMillis = TimeUnit.DAYS.toMillis(days);
+            return this;
+        }
+        
+        /**
+         * @param count
+         *            number of inferred articles above which the model is
+         *            retrained
+         * @return this builder
+         */
+        public Builder maxNewArticles(int count) {
+            throwIfNegative(count);
+            this.maxNewArticles = count;
+            return this;
+        }
+        
+        /**
+         * @param count
+         *            number of inferred articles below which drift is not
+         *            assessed
+         * @return this builder
+         */
+        public Builder minDriftSample(int count) {
+            throwIfNegative(count);
+            this.minDriftSample = count;
+            return this;
+        }
+        
+        /**
+         * @param rate
+         *            rate of unknown tokens above which the model is retrained
+         * @return this builder
+         */
+        public Builder maxUnknownRate(double rate) {
+            throwIfNegative(rate);
+            this.maxUnknownRate = rate;
+            return this;
+        }
+        
+        /**
+         * @param drop
+         *            drop of the log-likelihood per token (with respect to the
+         *            training corpus) above which the model is retrained
+         * @return this builder
+         */
+        public Builder maxLikelihoodDrop(double drop) {
+            throwIfNegative(drop);
+            this.maxLikelihoodDrop = drop;
+            return this;
+        }
+        
+        /**
+         * @return the built policy
+         */
+        public RetrainPolicy build() {
+            return new RetrainPolicy(maxAgeMillis, maxNewArticles, minDriftSample, maxUnknownRate,
+                    maxLikelihoodDrop);
+        }
+        
+        private static void throwIfNegative(double value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("value may not be negative");
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,226 @@
+package ch.epfl.lia.topic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Infers the topic distribution of new articles against a frozen
+ * {@link TopicModel}, by Gibbs sampling the topics of the article's tokens
+ * only: the topic-word distributions of the model are left untouched.
+ * <p>
+ * Each inference is recorded in the {@link DriftMonitor} of the model.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class TopicInferencer {
+
+    private final TopicModel model;
+    private final int iterations;
+    private final int burnIn;
+    private final long seed;
+    
+    /**
+     * @param model
+     *            the frozen model
+     * @param iterations
+     *            number of sampling iterations per article
+     * @param burnIn
+     *            number of iterations before the topic distribution is
+     *            averaged
+     * @param seed
+     *            random seed, for reproducible results
+     */
+    public TopicInferencer(TopicModel model, int iterations, int burnIn, long seed) {
+        Preconditions.throwIfNull("model may not be null", model);
+        if (iterations <= burnIn || burnIn < 0) {
+            throw new IllegalArgumentException("there must be more iterations than burn-in ones");
+        }
+        
+        this.model = model;
+        this.iterations = iterations;
+        this.burnIn = burnIn;
+        this.seed = seed;
+    }
+    
+    /**
+     * @param article
+     *            the article, tagged at least
+     * @return the inferred topic distribution of the article
+     */
+    public Inference infer(ParsedArticle article) {
+        Preconditions.throwIfNull("article may not be null", article);
+        return infer(article.id(), NounCorpus.tokenize(article, model.stopwords()));
+    }
+    
+    /**
+     * @param corpus
+     *            a corpus, built with the same stoplist as the model
+     * @param document
+     *            index of the document in the corpus
+     * @return the inferred topic distribution of the document
+     */
+    public Inference infer(NounCorpus corpus, int document) {
+        Preconditions.throwIfNull("corpus may not be null", corpus);
+        
+        List<String> tokens = new ArrayList<>();
+        for (int w : corpus.document(document)) {
+            tokens.add(corpus.word(w));
+        }
+        return infer(corpus.articleId(document), tokens);
+    }
+    
+    private Inference infer(int articleId, List<String> tokens) {
+        final int numTopics = model.numTopics();
+        
+        /* Only the words known to the model take part in the sampling */
+        final List<double[]> known = new ArrayList<>();
+        for (String token : tokens) {
+            final int id = model.wordId(token);
+            if (id >= 0) {
+                known.add(model.wordTopicProbabilities(id));
+            }
+        }
+        
+        final Random random = new Random(seed + articleId);
+        final int[] assignments = new int[known.size()];
+        final int[] counts = new int[numTopics];
+        for (int i = 0; i < assignments.length; i++) {
+            assignments[i] = random.nextInt(numTopics);
+            counts[assignments[i]]++;
+        }
+        
+        final double[] cumulative = new double[numTopics];
+        final double[] accumulated = new double[numTopics];
+        double alphaSum = 0;
+        for (int k = 0; k < numTopics; k++) {
+            alphaSum += model.alpha(k);
+        }
+        
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < assignments.length; i++) {
+                final double[] probabilities = known.get(i);
+                counts[assignments[i]]--;
+                
+                double sum = 0;
+                for (int k = 0; k < numTopics; k++) {
+                    sum += (counts[k] + model.alpha(k)) * probabilities[k];
+                    cumulative[k] = sum;
+                }
+                
+                final double u = random.nextDouble() * sum;
+                int k = 0;
+                while (k < numTopics - 1 && cumulative[k] <= u) {
+                    k++;
+                }
+                
+                assignments[i] = k;
+                counts[k]++;
+            }
+            
+            if (iteration >= burnIn) {
+                for (int k = 0; k < numTopics; k++) {
+                    accumulated[k] += (counts[k] + model.alpha(k)) / (assignments.length + alphaSum);
+                }
+            }
+        }
+        
+        final double[] distribution = new double[numTopics];
+        for (int k = 0; k < numTopics; k++) {
+            distribution[k] = accumulated[k] / (iterations - burnIn);
+        }
+        
+        double likelihood = 0;
+        for (double[] probabilities : known) {
+            double p = 0;
+            for (int k = 0; k < numTopics; k++) {
+                p += distribution[k] * probabilities[k];
+            }
+            likelihood += Math.log(p);
+        }
+        
+        final Inference inference = new Inference(articleId, distribution, tokens.size(),
+                tokens.size() - known.size(), likelihood);
+        model.monitor().record(inference);
+        return inference;
+    }
+    
+    /**
+     * Outcome of the inference of the topics of an article
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static final class Inference {
+    
+        private final int articleId;
+        private final double[] distribution;
+        private final int tokenCount;
+        private final int unknownCount;
+        private final double logLikelihood;
+        
+        private Inference(int articleId, double[] distribution, int tokenCount, int unknownCount,
+                double logLikelihood) {
+            this.articleId = articleId;
+            this.distribution = distribution;
+            this.tokenCount = tokenCount;
+            this.unknownCount = unknownCount;
+            this.logLikelihood = logLikelihood;
+        }
+        
+        public int articleId() {
+            return articleId;
+        }
+        
+        /**
+         * @return the topic distribution of the article, indexed by topic id
+         */
+        public double[] distribution() {
+            return distribution.clone();
+        }
+        
+        /**
+         * @return the id of the most likely topic of the article
+         */
+        public int mainTopic() {
+            int best = 0;
+            for (int k = 1; k < distribution.length; k++) {
+                if (distribution[k] > distribution[best]) {
+                    best = k;
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * @return the number of tokens of the article
+         */
+        public int tokenCount() {
+            return tokenCount;
+        }
+        
+        /**
+         * @return the number of tokens unknown to the model
+         */
+        public int unknownCount() {
+            return unknownCount;
+        }
+        
+        /**
+         * @return the log-likelihood of the known tokens of the article
+         */
+        public double logLikelihood() {
+            return logLikelihood;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Inference(article=%d, mainTopic=%d, p=%.2f, unknown=%d/%d)",
+                    articleId, mainTopic(), distribution[mainTopic()], unknownCount, tokenCount);
+        }
+    }
+    
+}
@@ -1,24 +1,43 @@
 package ch.epfl.lia.topic;
 
+import static ch.epfl.lia.main.Config.LDA_ALPHA_SUM;
+import static ch.epfl.lia.main.Config.LDA_BETA;
+import static ch.epfl.lia.main.Config.LDA_BURN_IN;
+import static ch.epfl.lia.main.Config.LDA_ITERATIONS;
+import static ch.epfl.lia.main.Config.LDA_OPTIMIZE_INTERVAL;
+import static ch.epfl.lia.main.Config.LDA_SEED;
+import static ch.epfl.lia.main.Config.LDA_THREADS;
 import static ch.epfl.lia.main.Config.MALLET_RUN_SCRIPT_LOCATION;
 import static ch.epfl.lia.main.Config.MALLET_TOPIC_KEYS_LOCATION;
-import static ch.epfl.lia.main.Config.NOUNS_LOCATION;
+import static ch.epfl.lia.main.Config.NOUNS_FILE_LOCATION;
 import static ch.epfl.lia.main.Config.SHELL;
+import static ch.epfl.lia.main.Config.TOPIC_CACHE_LOCATION;
+import static ch.epfl.lia.main.Config.TOPIC_COUNT;
+import static ch.epfl.lia.main.Config.TOPIC_MAX_KEYS;
+import static ch.epfl.lia.main.Config.TOPIC_MERGE_OVERLAP;
+import static ch.epfl.lia.main.Config.TOPIC_MIN_SHARE;
+import static ch.epfl.lia.main.Config.TOPIC_TOP_WORDS;
 import static ch.epfl.lia.util.FileUtils.foreachNonEmptyLine;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import ch.epfl.lia.entity.Article;
 import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.entity.ParsedArticle;
 import ch.epfl.lia.entity.Topic;
 import ch.epfl.lia.parser.ParseException;
-import ch.epfl.lia.util.FileUtils;
 import ch.epfl.lia.util.Preconditions;
 
 /**
@@ -28,12 +47,25 @@ import ch.epfl.lia.util.Preconditions;
  */
 public final class TopicManager {
     
+    private static final TopicModelCache CACHE = new TopicModelCache(TOPIC_CACHE_LOCATION);
+    
+    private static final TopicPostProcessor POST_PROCESSOR = new TopicPostProcessor.Builder()
+            .minShare(TOPIC_MIN_SHARE)
+            .mergeOverlap(TOPIC_MERGE_OVERLAP)
+            .maxKeys(TOPIC_MAX_KEYS)
+            .build();
+    
+    /** Log-likelihood per token, as MALLET reports it every ten iterations */
+    private static final Pattern MALLET_LIKELIHOOD = Pattern.compile("LL/token: (-?[0-9]+(\\.[0-9]+)?)");
+    
+    private static volatile List<Double> malletLikelihoods = new ArrayList<>();
+    
     private TopicManager() { }
     
     /**
      * Extracts topics from the provided list of articles. It will parse them if
-     * not already done, then extract the nouns to a directory that will
-     * previously have been cleared, then run MALLET to extract the topics.
+     * not already done, then train a topic model on their nouns (see
+     * {@link #extractTopics(Collection, Language)}).
      * 
      * @param articles
      *            articles to extract topics from.<br>
@@ -49,19 +81,186 @@ public final class TopicManager {
             throw new TopicExtractionException("Cannot extract topics on articles of different languages");
         }
         
-        /* Remove old nouns before proceeding */
-        FileUtils.clearDirectory(NOUNS_LOCATION);
+        List<ParsedArticle> parsedArticles = new ArrayList<>();
+        try {
+            for (Article article : articles) {
+                parsedArticles.add(article.parse());
+            }
+        } catch (ParseException e) {
+            throw new TopicExtractionException(e);
+        }
+        
+        return extractTopics(parsedArticles, language);
+    }
+    
+    /**
+     * Extracts topics from the provided list of parsed (or merely tagged)
+     * articles. The nouns are gathered into a corpus on which an in-process
+     * LDA model is trained, unless the same extraction is found in the cache,
+     * and the topics are post-processed (see {@link #extractTopics(NounCorpus)}).
+     * 
+     * @param parsedArticles
+     *            articles to extract topics from
+     * @param language
+     *            the language all articles are written in
+     * @return the list of extracted topics
+     * @throws TopicExtractionException
+     */
+    public static Collection<Topic> extractTopics(Collection<ParsedArticle> parsedArticles, Language language)
+            throws TopicExtractionException {
+        return extractTopics(corpusOf(parsedArticles, language));
+    }
+    
+    /**
+     * Extracts topics from the provided corpus, by training an in-process LDA
+     * model with the parameters found in {@link ch.epfl.lia.main.Config},
+     * unless the same extraction is found in the cache. The topics are then
+     * post-processed (see {@link #postProcess(Collection)}).
+     * 
+     * @param corpus
+     *            the nouns of the articles to extract topics from
+     * @return the list of extracted topics
+     * @throws TopicExtractionException
+     */
+    public static Collection<Topic> extractTopics(NounCorpus corpus) throws TopicExtractionException {
+        return postProcess(trainModel(corpus).topics());
+    }
+    
+    /**
+     * Trains a topic model on the provided list of parsed (or merely tagged)
+     * articles, and freezes it for later inference
+     * 
+     * @param parsedArticles
+     *            articles to train the model on
+     * @param language
+     *            the language all articles are written in
+     * @return the frozen model
+     * @throws TopicExtractionException
+     * @see #trainModel(NounCorpus)
+     */
+    public static TopicModel trainModel(Collection<ParsedArticle> parsedArticles, Language language)
+            throws TopicExtractionException {
+        return trainModel(corpusOf(parsedArticles, language));
+    }
+    
+    /**
+     * Trains a topic model on the provided corpus, with the parameters found
+     * in {@link ch.epfl.lia.main.Config}, and freezes it for later inference.
+     * If the same corpus was already trained on with the same parameters, the
+     * cached model is returned instead.
+     * 
+     * @param corpus
+     *            the nouns of the articles to train the model on
+     * @return the frozen model
+     * @throws TopicExtractionException
+     */
+    public static TopicModel trainModel(NounCorpus corpus) throws TopicExtractionException {
+        return trainModel(corpus, false);
+    }
+    
+    /**
+     * Trains a topic model on the provided corpus, as
+     * {@link #trainModel(NounCorpus)} does
+     * 
+     * @param corpus
+     *            the nouns of the articles to train the model on
+     * @param bypassCache
+     *            {@code true} to train a new model even if the same corpus was
+     *            already trained on (the cache is then updated), e.g. when
+     *            the saved model must be retrained
+     * @return the frozen model
+     * @throws TopicExtractionException
+     */
+    public static TopicModel trainModel(NounCorpus corpus, boolean bypassCache) throws TopicExtractionException {
+        return trainModel(corpus, bypassCache, CACHE);
+    }
+    
+    static TopicModel trainModel(NounCorpus corpus, boolean bypassCache, TopicModelCache cache)
+            throws TopicExtractionException {
+        Preconditions.throwIfNull("corpus may not be null", corpus);
+        if (corpus.tokenCount() == 0) {
+            throw new TopicExtractionException("No noun to extract topics from");
+        }
+        
+        final String fingerprint = TopicModelCache.fingerprint(corpus, gibbsParameters());
+        final TopicModelCache.Entry cached = bypassCache ? null : cache.get(fingerprint);
+        if (cached != null && cached.model() != null) {
+            return cached.model();
+        }
+        
+        GibbsTopicModel gibbs = new GibbsTopicModel(TOPIC_COUNT, LDA_ALPHA_SUM, LDA_BETA, LDA_THREADS, LDA_SEED);
+        gibbs.train(corpus, LDA_ITERATIONS, LDA_OPTIMIZE_INTERVAL, LDA_BURN_IN);
+        
+        final TopicModel model = gibbs.freeze(TOPIC_TOP_WORDS);
+        cache.put(fingerprint, model.topics(), model, corpus.size());
+        return model;
+    }
+    
+    /**
+     * Extracts topics from the provided list of parsed (or merely tagged)
+     * articles with the external MALLET tool
+     * 
+     * @param parsedArticles
+     *            articles to extract topics from
+     * @param language
+     *            the language all articles are written in
+     * @return the list of extracted topics
+     * @throws TopicExtractionException
+     * @see #extractTopicsWithMallet(NounCorpus)
+     */
+    public static Collection<Topic> extractTopicsWithMallet(Collection<ParsedArticle> parsedArticles,
+            Language language) throws TopicExtractionException {
+        return extractTopicsWithMallet(corpusOf(parsedArticles, language));
+    }
+    
+    /**
+     * Extracts topics from the provided corpus with the external MALLET tool.
+     * The corpus is streamed to a single file, one article per line, which
+     * MALLET then imports, unless the same extraction is found in the cache.
+     * The topics are then post-processed (see {@link #postProcess(Collection)}).
+     * 
+     * @param corpus
+     *            the nouns of the articles to extract topics from
+     * @return the list of extracted topics
+     * @throws TopicExtractionException
+     */
+    public static Collection<Topic> extractTopicsWithMallet(NounCorpus corpus) throws TopicExtractionException {
+        return extractTopicsWithMallet(corpus, false);
+    }
+    
+    /**
+     * Extracts topics from the provided corpus with the external MALLET tool,
+     * as {@link #extractTopicsWithMallet(NounCorpus)} does
+     * 
+     * @param corpus
+     *            the nouns of the articles to extract topics from
+     * @param bypassCache
+     *            {@code true} to run MALLET even if the same extraction is
+     *            found in the cache (the cache is then updated)
+     * @return the list of extracted topics
+     * @throws TopicExtractionException
+     */
+    public static Collection<Topic> extractTopicsWithMallet(NounCorpus corpus, boolean bypassCache)
+            throws TopicExtractionException {
+        Preconditions.throwIfNull("corpus may not be null", corpus);
+        
+        final String fingerprint = TopicModelCache.fingerprint(corpus,
+                "mallet topics=" + TOPIC_COUNT + " top=" + TOPIC_TOP_WORDS);
+        final TopicModelCache.Entry cached = bypassCache ? null : CACHE.get(fingerprint);
+        if (cached != null) {
+            malletLikelihoods = new ArrayList<>();
+            return postProcess(cached.topics());
+        }
         
         List<Topic> topics = new ArrayList<>();
         try {
-            /* Extract nouns */
-            for (Article article : articles) {
-                ParsedArticle parsed = article.parse();
-                parsed.writeNouns(NOUNS_LOCATION + parsed.id() + ".txt");
+            /* Stream the nouns to a single file */
+            try (Writer writer = Files.newBufferedWriter(Paths.get(NOUNS_FILE_LOCATION), StandardCharsets.UTF_8)) {
+                corpus.write(writer);
             }
             
             /* Run MALLET (topic extractor) */
-            runMallet(NOUNS_LOCATION, language);
+            malletLikelihoods = runMallet(NOUNS_FILE_LOCATION, corpus.language());
             
             /* Reading lines from the keys file */
             foreachNonEmptyLine(MALLET_TOPIC_KEYS_LOCATION, line -> {
@@ -74,34 +273,106 @@ public final class TopicManager {
                 topics.add(new Topic(Integer.parseInt(split[0]), Double.parseDouble(split[1]), keys));
             });
             
-        } catch (IOException | ParseException e) {
+        } catch (IOException e) {
             throw new TopicExtractionException(e);
         }
         
-        return topics;
+        CACHE.put(fingerprint, topics, null, corpus.size());
+        return postProcess(topics);
+    }
+    
+    /**
+     * Drops the topics with a negligible proportion, merges the near-duplicate
+     * ones, and caps the number of keys per topic, as set in
+     * {@link ch.epfl.lia.main.Config}. How much the topic set shrank is
+     * reported on the error stream.
+     * 
+     * @param topics
+     *            the extracted topics
+     * @return the post-processed topics
+     */
+    public static List<Topic> postProcess(Collection<Topic> topics) {
+        final List<Topic> processed = POST_PROCESSOR.process(topics);
+        System.err.println(POST_PROCESSOR.lastReport());
+        return processed;
+    }
+    
+    /**
+     * @return the log-likelihood per token along the last run of MALLET,
+     *         measured every ten iterations as with
+     *         {@link GibbsTopicModel#likelihoods()}; empty if the last
+     *         extraction with MALLET was found in the cache
+     */
+    public static List<Double> malletLikelihoods() {
+        return new ArrayList<>(malletLikelihoods);
+    }
+    
+    /**
+     * Empties the cache of extracted topics, so that the next extractions are
+     * run anew
+     * 
+     * @return the number of removed cache entries
+     */
+    public static int invalidateCache() {
+        return CACHE.invalidateAll();
+    }
+    
+    /**
+     * @return the description of the in-process engine and of its parameters,
+     *         as part of the cache fingerprint
+     */
+    private static String gibbsParameters() {
+        return String.format(Locale.ROOT,
+                "gibbs topics=%d top=%d iterations=%d optimize=%d burnin=%d alpha=%f beta=%f threads=%d seed=%d",
+                TOPIC_COUNT, TOPIC_TOP_WORDS, LDA_ITERATIONS, LDA_OPTIMIZE_INTERVAL, LDA_BURN_IN,
+                LDA_ALPHA_SUM, LDA_BETA, LDA_THREADS, LDA_SEED);
+    }
+    
+    /**
+     * @return the corpus of the nouns of the articles
+     * @throws TopicExtractionException
+     *             if the stoplist could not be read
+     */
+    private static NounCorpus corpusOf(Collection<ParsedArticle> parsedArticles, Language language)
+            throws TopicExtractionException {
+        Preconditions.throwIfNullOrEmpty("article list was empty", parsedArticles);
+        Preconditions.throwIfNull("a language is needed", language);
+        
+        try {
+            return NounCorpus.fromArticles(parsedArticles, language);
+        } catch (IOException e) {
+            throw new TopicExtractionException(e);
+        }
     }
     
     /**
-     * Run MALLET tool for topic extraction on the specified directory in the
+     * Run MALLET tool for topic extraction on the specified corpus file in the
      * specified language
      * 
      * @param language
      *            language to operate in (needed for the stopword list)
-     * @param nounsDir
-     *            directory in which the nouns are located
+     * @param nounsFile
+     *            file in which the nouns are located, one article per line
+     * @return the log-likelihood per token reported by MALLET along the
+     *         training
      * @throws TopicExtractionException
      */
-    private static void runMallet(String nounsDir, Language language) throws TopicExtractionException {
-        ProcessBuilder builder = new ProcessBuilder(SHELL, MALLET_RUN_SCRIPT_LOCATION,
-                language.shortName(), nounsDir, Integer.toString(16));
+    private static List<Double> runMallet(String nounsFile, Language language) throws TopicExtractionException {
+        ProcessBuilder builder = new ProcessBuilder(SHELL, MALLET_RUN_SCRIPT_LOCATION, language.shortName(),
+                nounsFile, Integer.toString(TOPIC_COUNT), Integer.toString(TOPIC_TOP_WORDS));
         builder.redirectErrorStream(true);
+        List<Double> likelihoods = new ArrayList<>();
 
         try {
             Process p = builder.start();
             BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
             
-            while (reader.readLine() != null) {
-                /* consume the line */
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Matcher matcher = MALLET_LIKELIHOOD.matcher(line);
+                if (matcher.find()) {
+                    likelihoods.add(Double.parseDouble(matcher.group(1)));
+                }
             }
             
             if (p.waitFor() != 0) {
@@ -111,5 +382,7 @@ public final class TopicManager {
         } catch (IOException | InterruptedException | IllegalStateException e) {
             throw new TopicExtractionException(e);
         }
+        
+        return likelihoods;
     }
 }
@@ -0,0 +1,176 @@
+package ch.epfl.lia.topic;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Serialization;
+
+/**
+ * Trained, frozen topic model: everything needed to infer the topics of new
+ * articles without retraining (see {@link TopicInferencer}).
+ * <p>
+ * The model also keeps track of the articles it was applied to since it was
+ * trained (see {@link #monitor()}), so that the decision to retrain (see
+ * {@link RetrainPolicy}) survives across runs once the model is saved.
+ * </p>
+ * 
+ * @see GibbsTopicModel#freeze(int)
+ * @author Cyriaque Brousse
+ */
+public final class TopicModel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    
+    private final Language language;
+    private final Set<String> stopwords;
+    private final Map<String, Integer> wordIds;
+    private final double[][] wordTopicProbabilities;
+    private final double[] alpha;
+    private final List<Topic> topics;
+    private final long trainedAt;
+    private final int trainingSize;
+    private final double baselineLikelihood;
+    private final DriftMonitor monitor = new DriftMonitor();
+    
+    /**
+     * @param corpus
+     *            the corpus the model was trained on
+     * @param wordTopicProbabilities
+     *            for each word id, the probability of the word in each topic
+     * @param alpha
+     *            the document-topic Dirichlet parameters
+     * @param topics
+     *            the topics, with their keys
+     * @param baselineLikelihood
+     *            log-likelihood per token of the training corpus
+     */
+    TopicModel(NounCorpus corpus, double[][] wordTopicProbabilities, double[] alpha, List<Topic> topics,
+            double baselineLikelihood) {
+        Preconditions.throwIfNull("model parts may not be null", corpus, wordTopicProbabilities, alpha, topics);
+        
+        this.language = corpus.language();
+        this.stopwords = corpus.stopwords();
+        this.wordIds = new HashMap<>();
+        for (int w = 0; w < corpus.vocabularySize(); w++) {
+            wordIds.put(corpus.word(w), w);
+        }
+        this.wordTopicProbabilities = wordTopicProbabilities;
+        this.alpha = alpha.clone();
+        this.topics = new ArrayList<>(topics);
+        this.trainedAt = System.currentTimeMillis();
+        this.trainingSize = corpus.size();
+        this.baselineLikelihood = baselineLikelihood;
+    }
+    
+    /**
+     * @param path
+     *            path of a saved model
+     * @return the model, or {@code null} if there is no (readable) model at
+     *         this path
+     */
+    public static TopicModel load(String path) {
+        Preconditions.throwIfEmptyString("no path was provided", path);
+        if (!new File(path).isFile()) {
+            return null;
+        }
+        
+        final Object obj = Serialization.deserialize(path);
+        return obj instanceof TopicModel ? (TopicModel) obj : null;
+    }
+    
+    /**
+     * Saves the model, along with its monitor, to disk
+     * 
+     * @param path
+     *            path of the file to write
+     */
+    public void save(String path) {
+        Serialization.serialize(this, path);
+    }
+    
+    public Language language() {
+        return language;
+    }
+    
+    /**
+     * @return the topics of the model
+     */
+    public List<Topic> topics() {
+        return new ArrayList<>(topics);
+    }
+    
+    /**
+     * @return the number of topics of the model (including those without keys)
+     */
+    public int numTopics() {
+        return alpha.length;
+    }
+    
+    /**
+     * @return the time at which the model was trained, in milliseconds since
+     *         the epoch
+     */
+    public long trainedAt() {
+        return trainedAt;
+    }
+    
+    /**
+     * @return the number of articles the model was trained on
+     */
+    public int trainingSize() {
+        return trainingSize;
+    }
+    
+    /**
+     * @return the log-likelihood per token of the training corpus, as a
+     *         reference for drift detection
+     */
+    public double baselineLikelihood() {
+        return baselineLikelihood;
+    }
+    
+    /**
+     * @return the statistics of the articles the model was applied to since
+     *         it was trained
+     */
+    public DriftMonitor monitor() {
+        return monitor;
+    }
+    
+    Set<String> stopwords() {
+        return new HashSet<>(stopwords);
+    }
+    
+    /**
+     * @param word
+     *            a word
+     * @return the id of the word, or {@code -1} if it is not in the
+     *         vocabulary of the model
+     */
+    int wordId(String word) {
+        final Integer id = wordIds.get(word);
+        return id == null ? -1 : id;
+    }
+    
+    /**
+     * @return the probabilities of the word in each topic. <em>Note:</em> the
+     *         array is not copied, and must not be modified.
+     */
+    double[] wordTopicProbabilities(int wordId) {
+        return wordTopicProbabilities[wordId];
+    }
+    
+    double alpha(int topic) {
+        return alpha[topic];
+    }
+    
+}
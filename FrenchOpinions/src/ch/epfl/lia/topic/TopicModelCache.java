@@ -0,0 +1,216 @@
+package ch.epfl.lia.topic;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+import ch.epfl.lia.util.Serialization;
+
+/**
+ * On-disk cache of extracted topics, keyed by a fingerprint of everything the
+ * extraction depends on: the ids and nouns of the articles (as found in the
+ * corpus), the stoplist, and the parameters of the model. Re-running the
+ * extraction on an unchanged corpus thus returns the topics immediately.
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class TopicModelCache {
+
+    private static final String EXTENSION = ".ser";
+    
+    private final File directory;
+    
+    /**
+     * @param directory
+     *            the directory to store the cache entries in. It is created if
+     *            needed.
+     */
+    public TopicModelCache(String directory) {
+        Preconditions.throwIfEmptyString("no directory was provided", directory);
+        this.directory = new File(directory);
+    }
+    
+    /**
+     * @param corpus
+     *            the corpus the topics are extracted from
+     * @param parameters
+     *            description of the engine and of all its parameters
+     * @return the fingerprint (hexadecimal SHA-256 digest) of the extraction.
+     *         The order of the articles does not matter.
+     */
+    public static String fingerprint(NounCorpus corpus, String parameters) {
+        Preconditions.throwIfNull("corpus and parameters may not be null", corpus, parameters);
+        
+        final MessageDigest digest = sha256();
+        update(digest, parameters);
+        
+        update(digest, "stoplist");
+        for (String stopword : new TreeSet<>(corpus.stopwords())) {
+            update(digest, stopword);
+        }
+        
+        List<Integer> documents = new ArrayList<>();
+        for (int d = 0; d < corpus.size(); d++) {
+            documents.add(d);
+        }
+        documents.sort(Comparator.comparingInt(corpus::articleId));
+        for (int d : documents) {
+            update(digest, "article " + corpus.articleId(d));
+            final MessageDigest content = sha256();
+            for (int w : corpus.document(d)) {
+                update(content, corpus.word(w));
+            }
+            digest.update(content.digest());
+        }
+        
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * @param fingerprint
+     *            fingerprint of the extraction
+     * @return the cached entry, or {@code null} if there is none
+     */
+    public Entry get(String fingerprint) {
+        final File file = fileOf(fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        final Object obj = Serialization.deserialize(file.getPath());
+        return obj instanceof Entry ? (Entry) obj : null;
+    }
+    
+    /**
+     * Caches the outcome of an extraction
+     * 
+     * @param fingerprint
+     *            fingerprint of the extraction
+     * @param topics
+     *            the extracted topics
+     * @param model
+     *            the trained model, or {@code null} if there is none (e.g. for
+     *            topics extracted by MALLET)
+     * @param articleCount
+     *            number of articles the topics were extracted from
+     * @return the cached entry
+     */
+    public Entry put(String fingerprint, Collection<Topic> topics, TopicModel model, int articleCount) {
+        Preconditions.throwIfNull("topics may not be null", topics);
+        
+        directory.mkdirs();
+        final Entry entry = new Entry(fingerprint, topics, model, articleCount);
+        Serialization.serialize(entry, fileOf(fingerprint).getPath());
+        return entry;
+    }
+    
+    /**
+     * Removes an entry from the cache
+     * 
+     * @param fingerprint
+     *            fingerprint of the extraction
+     * @return {@code true} if there was such an entry
+     */
+    public boolean invalidate(String fingerprint) {
+        return fileOf(fingerprint).delete();
+    }
+    
+    /**
+     * Removes all entries from the cache
+     * 
+     * @return the number of removed entries
+     */
+    public int invalidateAll() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        int count = 0;
+        if (files != null) {
+            for (File file : files) {
+                count += file.delete() ? 1 : 0;
+            }
+        }
+        return count;
+    }
+    
+    private File fileOf(String fingerprint) {
+        Preconditions.throwIfEmptyString("no fingerprint was provided", fingerprint);
+        return new File(directory, fingerprint + EXTENSION);
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform is required to support SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+    
+    /**
+     * Cached outcome of a topic extraction
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static final class Entry implements Serializable {
+    
+        private static final long serialVersionUID = 1L;
+        
+        private final String fingerprint;
+        private final List<Topic> topics;
+        private final TopicModel model;
+        private final int articleCount;
+        private final long createdAt = System.currentTimeMillis();
+        
+        private Entry(String fingerprint, Collection<Topic> topics, TopicModel model, int articleCount) {
+            this.fingerprint = fingerprint;
+            this.topics = new ArrayList<>(topics);
+            this.model = model;
+            this.articleCount = articleCount;
+        }
+        
+        public String fingerprint() {
+            return fingerprint;
+        }
+        
+        public List<Topic> topics() {
+            return new ArrayList<>(topics);
+        }
+        
+        /**
+         * @return the trained model, or {@code null} if there is none
+         */
+        public TopicModel model() {
+            return model;
+        }
+        
+        public int articleCount() {
+            return articleCount;
+        }
+        
+        /**
+         * @return the time at which the entry was created, in milliseconds
+         *         since the epoch
+         */
+        public long createdAt() {
+            return createdAt;
+        }
+    }
+    
+}
@@ -0,0 +1,230 @@
+package ch.epfl.lia.topic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Cleans up a set of extracted topics before opinion extraction, so that less
+ * topics (and keys) have to be checked for every dependency:
+ * <ol>
+ * <li>topics with a share of the total proportion below a threshold are
+ * dropped,</li>
+ * <li>near-duplicate topics, as measured by {@link Topics#keyOverlap}, are
+ * merged into the one with the highest proportion,</li>
+ * <li>the number of keys per topic is capped.</li>
+ * </ol>
+ * <p>
+ * Build instances with {@link Builder}. By default, nothing is dropped,
+ * merged or capped.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class TopicPostProcessor {
+
+    private final double minShare;
+    private final double mergeOverlap;
+    private final int maxKeys;
+    
+    private Report lastReport = null;
+    
+    private TopicPostProcessor(double minShare, double mergeOverlap, int maxKeys) {
+        this.minShare = minShare;
+        this.mergeOverlap = mergeOverlap;
+        this.maxKeys = maxKeys;
+    }
+    
+    /**
+     * @param topics
+     *            the topics to process
+     * @return the processed topics, by decreasing proportion
+     */
+    public List<Topic> process(Collection<Topic> topics) {
+        Preconditions.throwIfNull("topics may not be null", topics);
+        final Report report = new Report(topics.size(), keyCount(topics));
+        
+        /* Pruning */
+        final double total = topics.stream().mapToDouble(Topic::proportion).sum();
+        List<Topic> pruned = new ArrayList<>();
+        for (Topic topic : topics) {
+            if (total <= 0 || topic.proportion() / total >= minShare) {
+                pruned.add(topic);
+            }
+        }
+        report.afterPruning = pruned.size();
+        
+        /* Merging, into the topics with the highest proportion first */
+        pruned.sort(Comparator.comparingDouble(Topic::proportion).reversed());
+        List<Topic> merged = new ArrayList<>();
+        for (Topic topic : pruned) {
+            int target = -1;
+            for (int i = 0; i < merged.size() && target < 0; i++) {
+                if (Topics.keyOverlap(merged.get(i), topic) >= mergeOverlap) {
+                    target = i;
+                }
+            }
+            
+            if (target < 0) {
+                merged.add(topic);
+            } else {
+                merged.set(target, merge(merged.get(target), topic));
+            }
+        }
+        report.afterMerging = merged.size();
+        
+        /* Capping */
+        List<Topic> capped = new ArrayList<>();
+        for (Topic topic : merged) {
+            final List<String> keys = topic.keys();
+            capped.add(keys.size() <= maxKeys ? topic
+                    : new Topic(topic.lineId(), topic.proportion(), keys.subList(0, maxKeys)));
+        }
+        report.finalKeys = keyCount(capped);
+        
+        synchronized (this) {
+            lastReport = report;
+        }
+        return capped;
+    }
+    
+    /**
+     * @return the report of the last call to {@link #process(Collection)}, or
+     *         {@code null} if there was none
+     */
+    public synchronized Report lastReport() {
+        return lastReport;
+    }
+    
+    /**
+     * @return a topic with the id of the first topic, the sum of both
+     *         proportions, and the keys of the first topic followed by the
+     *         ones of the second topic it lacked
+     */
+    private static Topic merge(Topic t1, Topic t2) {
+        Set<String> keys = new LinkedHashSet<>(t1.keys());
+        keys.addAll(t2.keys());
+        return new Topic(t1.lineId(), t1.proportion() + t2.proportion(), new ArrayList<>(keys));
+    }
+    
+    private static int keyCount(Collection<Topic> topics) {
+        return topics.stream().mapToInt(t -> t.keys().size()).sum();
+    }
+    
+    /**
+     * How much each step shrank the topic set
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static final class Report {
+    
+        private final int initial;
+        private final int initialKeys;
+        private int afterPruning;
+        private int afterMerging;
+        private int finalKeys;
+        
+        private Report(int initial, int initialKeys) {
+            this.initial = initial;
+            this.initialKeys = initialKeys;
+        }
+        
+        public int initialCount() {
+            return initial;
+        }
+        
+        public int prunedCount() {
+            return initial - afterPruning;
+        }
+        
+        public int mergedCount() {
+            return afterPruning - afterMerging;
+        }
+        
+        public int finalCount() {
+            return afterMerging;
+        }
+        
+        public int initialKeyCount() {
+            return initialKeys;
+        }
+        
+        public int finalKeyCount() {
+            return finalKeys;
+        }
+        
+        @Override
+        public String toString() {
+            return "Topic post-processing: " + initial + " topics, " + prunedCount() + " pruned, "
+                    + mergedCount() + " merged, " + finalCount() + " left; keys: " + initialKeys + " -> "
+                    + finalKeys;
+        }
+    }
+    
+    /**
+     * Builder class for {@link TopicPostProcessor}
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static class Builder {
+    
+        private double minShare = 0;
+        private double mergeOverlap = Double.POSITIVE_INFINITY;
+        private int maxKeys = Integer.MAX_VALUE;
+        
+        /**
+         * @param share
+         *            share of the total proportion (in {@code [0, 1]}) under
+         *            which a topic is dropped
+         * @return this builder
+         */
+        public Builder minShare(double share) {
+            if (share < 0 || share > 1) {
+                throw new IllegalArgumentException("share must be in [0, 1]");
+            }
+            this.minShare = share;
+            return this;
+        }
+        
+        /**
+         * @param overlap
+         *            key overlap (in {@code (0, 1]}) from which two topics are
+         *            merged
+         * @return this builder
+         */
+        public Builder mergeOverlap(double overlap) {
+            if (overlap <= 0 || overlap > 1) {
+                throw new IllegalArgumentException("overlap must be in (0, 1]");
+            }
+            this.mergeOverlap = overlap;
+            return this;
+        }
+        
+        /**
+         * @param max
+         *            maximal number of keys per topic
+         * @return this builder
+         */
+        public Builder maxKeys(int max) {
+            if (max <= 0) {
+                throw new IllegalArgumentException("key count must be strictly positive");
+            }
+            this.maxKeys = max;
+            return this;
+        }
+        
+        /**
+         * @return the built post-processor
+         */
+        public TopicPostProcessor build() {
+            return new TopicPostProcessor(minShare, mergeOverlap, maxKeys);
+        }
+    }
+    
+}
@@ -0,0 +1,37 @@
+package ch.epfl.lia.topic;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.util.Preconditions;
+
+/**
+ * Collection of methods related to topics
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class Topics {
+
+    private Topics() { }
+    
+    /**
+     * @param t1
+     *            a topic
+     * @param t2
+     *            another topic
+     * @return the overlap (Jaccard index) of the keys of both topics, between
+     *         {@code 0} (no key in common) and {@code 1} (same keys)
+     */
+    public static double keyOverlap(Topic t1, Topic t2) {
+        Preconditions.throwIfNull("topics may not be null", t1, t2);
+        
+        Set<String> union = new HashSet<>(t1.keys());
+        union.addAll(t2.keys());
+        Set<String> intersection = new HashSet<>(t1.keys());
+        intersection.retainAll(t2.keys());
+        
+        return union.isEmpty() ? 0 : (double) intersection.size() / union.size();
+    }
+    
+}
@@ -0,0 +1,210 @@
+package ch.epfl.lia.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import ch.epfl.lia.entity.Article;
+
+/**
+ * Bulk loader of the articles saved on the disk (see
+ * {@link Articles#getFromDisk(int)}): the articles are read and decoded by a
+ * pool of threads, ahead of their consumption in the order of their ids.
+ * <p>
+ * At most a fixed number of articles are loading or loaded but not yet
+ * consumed, which bounds both the concurrency and the memory held by the
+ * loader: the articles are handed to a {@link Consumer} and not retained, so
+ * that the whole memory depends on what the consumer keeps.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class ArticleLoader {
+
+    private final int threads;
+    private final int prefetch;
+    private final IntFunction<Article> source;
+    
+    /**
+     * @param threads
+     *            number of loading threads
+     * @param prefetch
+     *            maximal number of articles loading, or loaded and waiting
+     *            to be consumed; at least the number of threads
+     */
+    public ArticleLoader(int threads, int prefetch) {
+        this(threads, prefetch, Articles::getFromDisk);
+    }
+    
+    /**
+     * Loads the articles from the provided source rather than from the disk
+     */
+    ArticleLoader(int threads, int prefetch, IntFunction<Article> source) {
+        if (threads <= 0 || prefetch < threads) {
+            throw new IllegalArgumentException("threads must be positive, and prefetch at least threads");
+        }
+        Preconditions.throwIfNull("source may not be null", source);
+        
+        this.threads = threads;
+        this.prefetch = prefetch;
+        this.source = source;
+    }
+    
+    /**
+     * @param from
+     *            first id of the range
+     * @param to
+     *            last id of the range (included)
+     * @return the ids of the range, in order
+     */
+    public static List<Integer> range(int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException("empty range: " + from + '-' + to);
+        }
+        
+        final List<Integer> ids = new ArrayList<>(to - from + 1);
+        for (int id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+    
+    /**
+     * Loads the articles with the provided ids, and hands them to the
+     * consumer in the order of the ids, on the calling thread. The loader
+     * keeps no reference to a consumed article.
+     * 
+     * @param ids
+     *            the ids of the articles; duplicates are loaded once
+     * @param consumer
+     *            consumer of each id, along with its article, or
+     *            {@code null} if it is missing
+     * @return the number of loaded articles, and the ids of the missing ones
+     * @throws InterruptedIOException
+     *             if interrupted while waiting for an article
+     * @throws IOException
+     *             if thrown by the consumer, which stops the loading
+     */
+    public Result load(List<Integer> ids, Consumer consumer) throws IOException {
+        Preconditions.throwIfNull("ids and consumer may not be null", ids, consumer);
+        
+        final long start = System.nanoTime();
+        final List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        final List<Integer> missing = new ArrayList<>();
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            final Thread thread = new Thread(r, "article-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            final Deque<Future<Article>> window = new ArrayDeque<>(prefetch);
+            int next = 0;
+            for (int i = 0; i < distinct.size(); i++) {
+                /* Keep the window full */
+                while (next < distinct.size() && window.size() < prefetch) {
+                    final int id = distinct.get(next++);
+                    window.add(pool.submit(() -> source.apply(id)));
+                }
+                
+                final int id = distinct.get(i);
+                final Article article = await(window.poll(), id);
+                if (article == null) {
+                    missing.add(id);
+                }
+                consumer.accept(id, article);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        return new Result(distinct.size() - missing.size(), missing, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    /**
+     * @return the loaded article, or {@code null} if it could not be loaded
+     */
+    private static Article await(Future<Article> future, int id) throws InterruptedIOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while loading article " + id);
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Consumer of the loaded articles
+     */
+    public interface Consumer {
+    
+        /**
+         * @param id
+         *            id of the article
+         * @param article
+         *            the loaded article, or {@code null} if it is missing
+         * @throws IOException
+         *             if the article could not be consumed
+         */
+        void accept(int id, Article article) throws IOException;
+    }
+    
+    /**
+     * Outcome of {@link ArticleLoader#load(List, Consumer)}
+     */
+    public static final class Result {
+    
+        private final int loaded;
+        private final List<Integer> missing;
+        private final long millis;
+        
+        private Result(int loaded, List<Integer> missing, long millis) {
+            this.loaded = loaded;
+            this.missing = Collections.unmodifiableList(missing);
+            this.millis = millis;
+        }
+        
+        /**
+         * @return the number of articles found on the disk
+         */
+        public int loaded() {
+            return loaded;
+        }
+        
+        /**
+         * @return the ids of the articles not found on the disk, in order
+         */
+        public List<Integer> missing() {
+            return missing;
+        }
+        
+        /**
+         * @return the time taken by the loading, in milliseconds
+         */
+        public long millis() {
+            return millis;
+        }
+        
+        @Override
+        public String toString() {
+            return "Loaded " + loaded + " article(s) in " + millis + " ms, " + missing.size() + " missing";
+        }
+        
+    }
+    
+}
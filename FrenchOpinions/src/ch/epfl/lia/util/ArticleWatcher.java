@@ -0,0 +1,369 @@
+package ch.epfl.lia.util;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Watcher of a directory of raw articles (files named {@code <id>.txt}),
+ * detecting the new and changed ones.
+ * <p>
+ * Changes are notified by a {@link WatchService}, or, if there is none for the
+ * file system (or if polling is asked for), found by listing the directory
+ * periodically. The watcher also falls back to a listing whenever events were
+ * lost, and to polling if the directory cannot be watched any more.
+ * </p>
+ * <p>
+ * A file is handed out only once it has settled: once its size and
+ * modification time did not change for the quiet period, so that a file being
+ * written is not read half-way. It is handed out again only if it changed
+ * since.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class ArticleWatcher implements Closeable {
+
+    private static final Pattern ARTICLE_FILE = Pattern.compile("([0-9]+)\\.txt");
+    
+    private final Path directory;
+    private final long quietNanos;
+    private final long pollMillis;
+    private WatchService watchService = null;
+    
+    /** Version of each file when it was handed out (or found at start) */
+    private final Map<Path, Version> handedOut = new HashMap<>();
+    
+    /** Files changed since, waiting to settle */
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+    
+    /**
+     * @param location
+     *            the directory to watch
+     * @param quietMillis
+     *            the time (in milliseconds) a file must stay unchanged before
+     *            it is handed out
+     * @param pollMillis
+     *            the interval (in milliseconds) between two listings, when
+     *            polling
+     * @param poll
+     *            {@code true} to poll even if the directory could be watched
+     * @param backlog
+     *            {@code true} to hand out the files already in the directory,
+     *            {@code false} to ignore them until they change
+     * @throws IOException
+     *             if the directory could not be listed
+     */
+    public ArticleWatcher(String location, long quietMillis, long pollMillis, boolean poll, boolean backlog)
+            throws IOException {
+        Preconditions.throwIfEmptyString("no location was provided", location);
+        if (quietMillis < 0 || pollMillis <= 0) {
+            throw new IllegalArgumentException("quiet period must be positive, and poll interval strictly");
+        }
+        
+        this.directory = Paths.get(location);
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.pollMillis = pollMillis;
+        
+        if (!poll) {
+            try {
+                watchService = directory.getFileSystem().newWatchService();
+                directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("Cannot watch " + directory + ", polling instead: " + e);
+                closeWatchService();
+            }
+        }
+        
+        /* Registered before listing, so that no file lands in between unnoticed */
+        if (backlog) {
+            scan();
+        } else {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    final Version version = versionOf(file);
+                    if (articleId(file) >= 0 && version != null) {
+                        handedOut.put(file, version);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Waits for files to settle
+     * 
+     * @return the settled files, in no particular order; empty if none
+     *         settled within the poll interval
+     * @throws IOException
+     *             if the directory could not be listed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public List<Arrival> awaitSettled() throws IOException, InterruptedException {
+        final long waitMillis = Math.max(1, Math.min(pollMillis, untilNextSettling()));
+        
+        if (watchService != null) {
+            final WatchKey key = watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        scan();
+                    } else {
+                        observe(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Cannot watch " + directory + " any more, polling instead");
+                    closeWatchService();
+                }
+            }
+        } else {
+            Thread.sleep(waitMillis);
+            scan();
+        }
+        
+        return settle();
+    }
+    
+    /**
+     * @return {@code true} if the directory is polled, rather than watched
+     */
+    public boolean isPolling() {
+        return watchService == null;
+    }
+    
+    /**
+     * @return the number of files waiting to settle
+     */
+    public int pendingCount() {
+        return candidates.size();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+    
+    private void scan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                observe(file);
+            }
+        }
+    }
+    
+    /**
+     * Makes the file a candidate if it changed since it was handed out
+     */
+    private void observe(Path file) throws IOException {
+        if (articleId(file) < 0) {
+            return;
+        }
+        
+        final Version version = versionOf(file);
+        if (version == null || version.equals(handedOut.get(file))) {
+            return;
+        }
+        
+        final Candidate candidate = candidates.get(file);
+        if (candidate == null) {
+            candidates.put(file, new Candidate(version, System.nanoTime()));
+        } else if (!version.equals(candidate.version)) {
+            candidate.changed(version);
+        }
+    }
+    
+    /**
+     * @return the candidates that did not change for the quiet period
+     */
+    private List<Arrival> settle() throws IOException {
+        final List<Arrival> settled = new ArrayList<>();
+        final long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Candidate>> it = candidates.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Path, Candidate> entry = it.next();
+            final Path file = entry.getKey();
+            final Candidate candidate = entry.getValue();
+            
+            /* Not all file systems notify every write: the file is checked again */
+            final Version version = versionOf(file);
+            if (version == null) {
+                it.remove();
+            } else if (!version.equals(candidate.version)) {
+                candidate.changed(version);
+            } else if (now - candidate.lastChange >= quietNanos) {
+                it.remove();
+                if (!version.equals(handedOut.get(file))) {
+                    handedOut.put(file, version);
+                    settled.add(new Arrival(articleId(file), file, candidate.detected));
+                }
+            }
+        }
+        return settled;
+    }
+    
+    /**
+     * @return the time (in milliseconds) until the next candidate may settle
+     */
+    private long untilNextSettling() {
+        long next = Long.MAX_VALUE;
+        final long now = System.nanoTime();
+        for (Candidate candidate : candidates.values()) {
+            next = Math.min(next, TimeUnit.NANOSECONDS.toMillis(candidate.lastChange + quietNanos - now) + 1);
+        }
+        return next;
+    }
+    
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            watchService = null;
+        }
+    }
+    
+    /**
+     * @return the article id of the file, or -1 if it is not an article
+     */
+    private static int articleId(Path file) {
+        final Matcher matcher = ARTICLE_FILE.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * @return the version of the file, or {@code null} if it is not a regular
+     *         file (any more)
+     */
+    private static Version versionOf(Path file) throws IOException {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? new Version(attributes.size(), attributes.lastModifiedTime().toMillis())
+                    : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * A settled article file
+     */
+    public static final class Arrival {
+    
+        private final int articleId;
+        private final Path file;
+        private final long detectedNanos;
+        
+        private Arrival(int articleId, Path file, long detectedNanos) {
+            this.articleId = articleId;
+            this.file = file;
+            this.detectedNanos = detectedNanos;
+        }
+        
+        public int articleId() {
+            return articleId;
+        }
+        
+        public Path file() {
+            return file;
+        }
+        
+        /**
+         * @return when the change of the file was first noticed, as given by
+         *         {@link System#nanoTime()}
+         */
+        public long detectedNanos() {
+            return detectedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+        
+    }
+    
+    /**
+     * Size and modification time of a file
+     */
+    private static final class Version {
+    
+        private final long size;
+        private final long lastModified;
+        
+        Version(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModified);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Version)) {
+                return false;
+            }
+            final Version other = (Version) obj;
+            return size == other.size && lastModified == other.lastModified;
+        }
+        
+    }
+    
+    /**
+     * A changed file, waiting to settle
+     */
+    private static final class Candidate {
+    
+        private final long detected;
+        private Version version;
+        private long lastChange;
+        
+        Candidate(Version version, long detected) {
+            this.detected = detected;
+            this.version = version;
+            this.lastChange = detected;
+        }
+        
+        void changed(Version newVersion) {
+            version = newVersion;
+            lastChange = System.nanoTime();
+        }
+        
+    }
+    
+}
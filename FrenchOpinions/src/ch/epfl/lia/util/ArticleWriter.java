@@ -0,0 +1,333 @@
+package ch.epfl.lia.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ch.epfl.lia.entity.Article;
+
+/**
+ * Write-behind for parsed articles: submitted articles are saved (see
+ * {@link Articles#saveToDisk(Article)}) by a background thread, so that
+ * encoding and disk I/O are off the path between two parses.
+ * <p>
+ * The thread takes as many articles as are waiting (up to the batch size),
+ * saves them, and forces the store of parsed articles to the disk once per
+ * batch. At most a fixed number of articles wait to be saved: beyond it,
+ * {@link #submit(Article)} blocks until the thread catches up. Use
+ * {@link #flush()} to wait until everything submitted so far is on the disk.
+ * </p>
+ * <p>
+ * An article that could not be saved does not stop the thread, but is
+ * reported by the next {@link #flush()} (or {@link #close()}), which throws a
+ * {@link SaveFailedException} with its id.
+ * </p>
+ * <p>
+ * A submitted article must not be modified until it is flushed.
+ * </p>
+ * 
+ * @see Articles#writer()
+ * @author Cyriaque Brousse
+ */
+public final class ArticleWriter implements Closeable {
+
+    /* Close marker, necessarily the last one */
+    private static final Pending CLOSE = new Pending(null);
+    
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue;
+    private final Sink sink;
+    private final Thread thread;
+    
+    /* Ids of the articles that could not be saved, not reported yet, guarded by this */
+    private final Set<Integer> failed = new TreeSet<>();
+    
+    /* Statistics, guarded by this */
+    private long submitted = 0;
+    private long written = 0;
+    private long failures = 0;
+    private long batches = 0;
+    private int maxQueueDepth = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+    private boolean closed = false;
+    
+    /**
+     * Starts the writing thread, saving to the store of parsed articles
+     * 
+     * @param queueCapacity
+     *            number of waiting articles from which submitting blocks
+     * @param maxBatchSize
+     *            maximal number of articles saved at once
+     */
+    public ArticleWriter(int queueCapacity, int maxBatchSize) {
+        this(queueCapacity, maxBatchSize, new Sink() {
+            @Override
+            public void save(Article article) throws IOException {
+                Articles.saveToDisk(article);
+            }
+            
+            @Override
+            public void force() throws IOException {
+                Articles.forceToDisk();
+            }
+        });
+    }
+    
+    /**
+     * Starts the writing thread, saving to the provided sink
+     */
+    ArticleWriter(int queueCapacity, int maxBatchSize, Sink sink) {
+        if (queueCapacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("queue capacity and batch size must be positive");
+        }
+        Preconditions.throwIfNull("sink may not be null", sink);
+        
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.sink = sink;
+        this.thread = new Thread(this::writeLoop, "article-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * Queues the article to be saved, blocking while the queue is full
+     * 
+     * @param article
+     *            the (parsed) article to save
+     * @throws InterruptedIOException
+     *             if interrupted while waiting for room in the queue
+     */
+    public void submit(Article article) throws InterruptedIOException {
+        Preconditions.throwIfNull("article may not be null", article);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("article writer is closed");
+            }
+        }
+        
+        try {
+            queue.put(new Pending(article));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while submitting article " + article.id());
+        }
+        
+        synchronized (this) {
+            submitted++;
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+    }
+    
+    /**
+     * Waits until all the articles submitted so far are saved and on the disk
+     * 
+     * @throws SaveFailedException
+     *             if articles could not be saved since the previous flush:
+     *             all the others are on the disk
+     * @throws InterruptedIOException
+     *             if interrupted while waiting
+     */
+    public synchronized void flush() throws IOException {
+        final long target = submitted;
+        while (written < target && thread.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while flushing articles");
+            }
+        }
+        
+        if (!failed.isEmpty()) {
+            final SaveFailedException e = new SaveFailedException(failed);
+            failed.clear();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return the number of articles waiting to be saved
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * @return the number of articles handled so far, saved or not
+     */
+    public synchronized long written() {
+        return written;
+    }
+    
+    /**
+     * @return the number of articles that could not be saved so far
+     */
+    public synchronized long failures() {
+        return failures;
+    }
+    
+    /**
+     * Saves the waiting articles, then stops the writing thread
+     * 
+     * @throws SaveFailedException
+     *             if articles could not be saved since the last flush
+     * @throws InterruptedIOException
+     *             if interrupted while waiting for the thread
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        
+        try {
+            queue.put(CLOSE);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the article writer");
+        }
+        flush();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "Article writer: %d article(s) saved in %d batch(es), %d failed, "
+                + "%d waiting (at most %d); latency %.1f ms on average, %.1f ms at most", written - failures,
+                batches, failures, queue.size(), maxQueueDepth, written == 0 ? 0 : totalLatencyNanos / 1e6 / written,
+                maxLatencyNanos / 1e6);
+    }
+    
+    private void writeLoop() {
+        final List<Pending> batch = new ArrayList<>();
+        boolean running = true;
+        try {
+            while (running) {
+                batch.clear();
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                
+                if (batch.get(batch.size() - 1) == CLOSE) {
+                    batch.remove(batch.size() - 1);
+                    running = false;
+                }
+                
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            /* Stopped */
+        } finally {
+            /* Wake up the flushers, which check that the thread is alive */
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Saves the articles, forces them to the disk, then accounts for them
+     */
+    private void write(List<Pending> batch) {
+        final List<Integer> lost = new ArrayList<>();
+        final List<Integer> saved = new ArrayList<>();
+        for (Pending pending : batch) {
+            try {
+                sink.save(pending.article);
+                saved.add(pending.article.id());
+            } catch (IOException | RuntimeException e) {
+                /* A single article is lost, not the following ones */
+                System.err.println("Could not save article " + pending.article.id() + ": " + e);
+                lost.add(pending.article.id());
+            }
+        }
+        try {
+            sink.force();
+        } catch (IOException | RuntimeException e) {
+            /* None of the batch is known to be on the disk */
+            System.err.println("Could not force " + saved.size() + " saved article(s) to the disk: " + e);
+            lost.addAll(saved);
+        }
+        
+        final long now = System.nanoTime();
+        synchronized (this) {
+            failed.addAll(lost);
+            failures += lost.size();
+            for (Pending pending : batch) {
+                final long latency = now - pending.submissionNanos;
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            }
+            written += batch.size();
+            batches++;
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Thrown when submitted articles could not be saved
+     * 
+     * @author Cyriaque Brousse
+     */
+    public static final class SaveFailedException extends IOException {
+    
+        private static final long serialVersionUID = 1L;
+        
+        private final Set<Integer> articleIds;
+        
+        SaveFailedException(Set<Integer> articleIds) {
+            super(articleIds.size() + " article(s) could not be saved: " + articleIds);
+            this.articleIds = Collections.unmodifiableSet(new TreeSet<>(articleIds));
+        }
+        
+        /**
+         * @return the ids of the articles that could not be saved, in
+         *         increasing order
+         */
+        public Set<Integer> articleIds() {
+            return articleIds;
+        }
+    }
+    
+    /**
+     * Where the articles are saved
+     */
+    interface Sink {
+    
+        void save(Article article) throws IOException;
+        
+        /**
+         * Forces the saved articles to the disk
+         */
+        void force() throws IOException;
+    }
+    
+    /**
+     * An article waiting to be saved, along with its submission time
+     */
+    private static final class Pending {
+    
+        private final Article article;
+        private final long submissionNanos = System.nanoTime();
+        
+        Pending(Article article) {
+            this.article = article;
+        }
+        
+    }
+    
+}
@@ -1,34 +1,194 @@
 package ch.epfl.lia.util;
 
-import static ch.epfl.lia.util.FileUtils.foreachLine;
+import static ch.epfl.lia.main.Config.ARTICLE_STORE_COMPACTION_RATIO;
+import static ch.epfl.lia.main.Config.ARTICLE_STORE_LOCATION;
+import static ch.epfl.lia.main.Config.ARTICLE_STORE_SEGMENT_SIZE;
+import static ch.epfl.lia.main.Config.ARTICLE_WRITER_BATCH_SIZE;
+import static ch.epfl.lia.main.Config.ARTICLE_WRITER_QUEUE_CAPACITY;
+import static ch.epfl.lia.main.Config.RAW_ARTICLES_LOCATION;
+import static ch.epfl.lia.main.Config.SERIALIZED_ARTICLES_LOCATION;
+import static ch.epfl.lia.util.FileUtils.readUtf8;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import ch.epfl.lia.entity.Article;
 import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.storage.ArticleCodec;
+import ch.epfl.lia.storage.ParsedArticleStore;
 
 /**
  * @author Cyriaque Brousse
  */
 public final class Articles {
     
+    /** Opened on first use, see {@link #store()} */
+    private static ParsedArticleStore store = null;
+    
+    /** Started on first use, see {@link #writer()} */
+    private static ArticleWriter writer = null;
+    
+    private static boolean shutdownHooked = false;
+    
     private Articles() { }
 
+    /**
+     * Looks the article up in the store of parsed articles (see
+     * {@link ParsedArticleStore}), then in its former serialized file, in
+     * which case it is moved to the store
+     * 
+     * @param articleId
+     *            the id of the article
+     * @return the disk-stored article if it was found (and readable),
+     *         {@code null} otherwise
+     */
+    public static Article getFromDisk(int articleId) {
+        try {
+            final Article stored = store().get(articleId);
+            if (stored != null) {
+                return stored;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        
+        final Article article = getFromDisk(SERIALIZED_ARTICLES_LOCATION + articleId + ".ser");
+        if (article != null && ArticleCodec.canEncode(article)) {
+            try {
+                saveToDisk(article);
+            } catch (IOException e) {
+                /* Still in its serialized file, moved on the next read */
+                e.printStackTrace();
+            }
+        }
+        return article;
+    }
+    
+    /**
+     * Saves the current state of the article to the store of parsed articles,
+     * or, if it carries parse trees, to its own serialized file
+     * 
+     * @param article
+     *            the article to save
+     * @throws IOException
+     *             if the article could not be saved
+     */
+    public static void saveToDisk(Article article) throws IOException {
+        Preconditions.throwIfNull("article may not be null", article);
+        if (!ArticleCodec.canEncode(article)) {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    SERIALIZED_ARTICLES_LOCATION + article.id() + ".ser")))) {
+                out.writeObject(article);
+            }
+            return;
+        }
+        
+        store().put(article);
+    }
+    
+    /**
+     * @return the ids of the articles in the store of parsed articles, in
+     *         increasing order (the former serialized files are not listed)
+     * @throws IOException
+     *             if the store could not be opened
+     */
+    public static List<Integer> storedIds() throws IOException {
+        final List<Integer> ids = new ArrayList<>(store().ids());
+        Collections.sort(ids);
+        return ids;
+    }
+    
+    /**
+     * @return the write-behind of parsed articles, started on first call, and
+     *         flushed on shutdown, before the store of parsed articles is
+     *         closed
+     */
+    public static synchronized ArticleWriter writer() {
+        if (writer == null) {
+            writer = new ArticleWriter(ARTICLE_WRITER_QUEUE_CAPACITY, ARTICLE_WRITER_BATCH_SIZE);
+            hookShutdown();
+        }
+        return writer;
+    }
+    
+    /**
+     * Forces the store of parsed articles to the disk, if it was opened
+     * 
+     * @throws IOException
+     *             if the store could not be forced
+     */
+    static void forceToDisk() throws IOException {
+        final ParsedArticleStore opened;
+        synchronized (Articles.class) {
+            opened = store;
+        }
+        
+        if (opened != null) {
+            opened.flush();
+        }
+    }
+    
+    /**
+     * Removes the article from the store of parsed articles, along with its
+     * former serialized file if any
+     * 
+     * @param articleId
+     *            the id of the article
+     * @return {@code true} if the article was on the disk
+     */
+    public static boolean deleteFromDisk(int articleId) {
+        boolean deleted = new File(SERIALIZED_ARTICLES_LOCATION + articleId + ".ser").delete();
+        try {
+            deleted |= store().remove(articleId);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return deleted;
+    }
+
     /**
      * @param fileName
-     *            the file to deserialize from
-     * @return the disk-stored article if it was found, {@code null} otherwise
+     *            the file to read from, either in the binary format of
+     *            {@link ArticleCodec}, or Java-serialized
+     * @return the disk-stored article if it was found (and readable),
+     *         {@code null} otherwise
      */
     public static Article getFromDisk(String fileName) {
         File file = new File(fileName);
-        if (file.exists()) {
-            Object obj = Serialization.deserialize(fileName);
-            return (Article) obj;
-        } else {
+        if (!file.exists()) {
+            return null;
+        }
+        
+        try {
+            final byte[] bytes = Files.readAllBytes(file.toPath());
+            if (ArticleCodec.hasMagic(bytes)) {
+                return ArticleCodec.decode(bytes);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
             return null;
         }
+        
+        /* Files written before the binary format */
+        Object obj = Serialization.deserialize(fileName);
+        return (Article) obj;
+    }
+
+    /**
+     * @param articleId
+     *            the id of the article
+     * @return {@code true} if the raw file of the article exists
+     */
+    public static boolean rawExists(int articleId) {
+        return new File(rawFileName(articleId)).isFile();
     }
 
     /**
@@ -37,9 +197,11 @@ public final class Articles {
      * @param language
      *            the language of the article
      * @return the constructed article. The creation date will be the current
-     *         system time, and the title will be "N/A".
+     *         system time, and the title will be "N/A". The file is read at
+     *         once, as UTF-8.
      * @throws IOException
-     *             if the file could not be found or an error happened
+     *             if the file could not be found, is not valid UTF-8, or an
+     *             error happened
      */
     public static Article constructArticleFromRaw(int articleId, Language language) throws IOException {
         Preconditions.throwIfNull("need a language", language);
@@ -50,12 +212,94 @@ public final class Articles {
         String title = "N/A";
         Timestamp creationDate = new Timestamp(System.currentTimeMillis());
         
-        StringBuilder builder = new StringBuilder();
-        final String fileName = "raw/" + articleId + ".txt";
-        foreachLine(fileName, true, line -> builder.append(line + "\n"));
-        String contents = builder.toString();
+        String contents = normalizeLineBreaks(readUtf8(rawFileName(articleId)));
         
         return new Article(articleId, language, null, null, title, contents, creationDate, null);
     }
 
+    /**
+     * @return the text with {@code \n} line breaks only, and ending with one
+     *         (if not empty), as if it was read line by line. The contents of
+     *         an article, and thus its content hash, do not depend on how its
+     *         raw file was read.
+     */
+    static String normalizeLineBreaks(String text) {
+        if (text.indexOf('\r') >= 0) {
+            text = text.replace("\r\n", "\n").replace('\r', '\n');
+        }
+        return text.isEmpty() || text.endsWith("\n") ? text : text + '\n';
+    }
+
+    /**
+     * @return the store of parsed articles, opened (and compacted if needed)
+     *         on first call, and closed on shutdown
+     * @throws IOException
+     *             if the store could not be opened
+     */
+    private static synchronized ParsedArticleStore store() throws IOException {
+        if (store == null) {
+            final ParsedArticleStore opened = new ParsedArticleStore(ARTICLE_STORE_LOCATION,
+                    ARTICLE_STORE_SEGMENT_SIZE);
+            if (opened.garbageRatio() > ARTICLE_STORE_COMPACTION_RATIO) {
+                System.err.println("Compacting article store: " + opened.compact() + " segment(s) rewritten");
+            }
+            store = opened;
+            hookShutdown();
+        }
+        return store;
+    }
+    
+    /**
+     * Registers, once, the shutdown hook closing the writer then the store.
+     * The hook does not hold the lock while closing: the writer needs it to
+     * save the waiting articles.
+     * <p>
+     * If the JVM is already shutting down (e.g. the store is first opened by
+     * another shutdown hook), no hook can be registered: the writer still
+     * forces each batch to the disk, but the store is left to the OS.
+     * </p>
+     */
+    private static synchronized void hookShutdown() {
+        if (shutdownHooked) {
+            return;
+        }
+        shutdownHooked = true;
+        
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(Articles::closeOnShutdown));
+        } catch (IllegalStateException e) {
+            System.err.println("Shutting down: the store of parsed articles will not be closed");
+        }
+    }
+    
+    private static void closeOnShutdown() {
+        final ArticleWriter openedWriter;
+        synchronized (Articles.class) {
+            openedWriter = writer;
+        }
+        if (openedWriter != null) {
+            try {
+                openedWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+            
+        final ParsedArticleStore opened;
+        synchronized (Articles.class) {
+            opened = store;
+        }
+        if (opened != null) {
+            try {
+                opened.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String rawFileName(int articleId) {
+        return RAW_ARTICLES_LOCATION + articleId + ".txt";
+    }
+
 }
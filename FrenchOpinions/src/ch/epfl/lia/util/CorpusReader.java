@@ -0,0 +1,293 @@
+package ch.epfl.lia.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * Streaming reader of a corpus file in the JSON Lines format: one article per
+ * line, as a JSON object with the fields {@code id} (required),
+ * {@code contents} (required), {@code title}, {@code creationDate} (epoch
+ * milliseconds, {@code yyyy-mm-dd[ hh:mm:ss]} or ISO-8601), {@code location},
+ * {@code imageLocation} and {@code language} (name or short name). Other
+ * fields are ignored. As for raw files, the title defaults to "N/A", and the
+ * creation date to the current time.
+ * <p>
+ * The file is read through a buffer of fixed size (grown only for a record
+ * that does not fit), and the records are decoded one at a time: memory does
+ * not depend on the size of the corpus. Malformed records, as well as records
+ * too large for the buffer at its maximal size, are reported and skipped.
+ * Reading may start at any byte offset returned by
+ * {@link #offset()}, so as to resume after a crash.
+ * </p>
+ * 
+ * @author Cyriaque Brousse
+ */
+public final class CorpusReader implements Closeable {
+
+    private static final String DEFAULT_TITLE = "N/A";
+    
+    private final String location;
+    private final Language defaultLanguage;
+    private final int maxRecordSize;
+    private final FileChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    
+    private byte[] bytes;
+    private int start = 0;
+    private int end = 0;
+    private int scanned = 0;
+    private boolean endOfFile = false;
+    
+    /* Whether the bytes up to the next line break belong to a record too large */
+    private boolean skipping = false;
+    
+    /** Offset in the file of {@code bytes[start]} */
+    private long offset;
+    
+    private long records = 0;
+    private long malformed = 0;
+    
+    /**
+     * @param location
+     *            the corpus file
+     * @param offset
+     *            the byte offset to start reading at: 0, or an offset
+     *            returned by {@link #offset()}
+     * @param defaultLanguage
+     *            the language of the records without any
+     * @param bufferSize
+     *            the initial size of the read buffer
+     * @param maxRecordSize
+     *            the size (in bytes) from which a record is skipped
+     * @throws IOException
+     *             if the file could not be opened, or the offset is not at the
+     *             start of a record
+     */
+    public CorpusReader(String location, long offset, Language defaultLanguage, int bufferSize, int maxRecordSize)
+            throws IOException {
+        Preconditions.throwIfEmptyString("no location was provided", location);
+        Preconditions.throwIfNull("default language may not be null", defaultLanguage);
+        if (offset < 0 || bufferSize <= 0 || maxRecordSize < bufferSize) {
+            throw new IllegalArgumentException("offset must be positive, and buffer size at most the record size");
+        }
+        
+        this.location = location;
+        this.defaultLanguage = defaultLanguage;
+        this.maxRecordSize = maxRecordSize;
+        this.bytes = new byte[bufferSize];
+        this.channel = FileChannel.open(Paths.get(location), StandardOpenOption.READ);
+        this.offset = offset;
+        
+        try {
+            if (offset > channel.size()) {
+                throw new IOException("offset " + offset + " is beyond the end of " + location);
+            }
+            if (offset > 0) {
+                final ByteBuffer previous = ByteBuffer.allocate(1);
+                channel.read(previous, offset - 1);
+                if (previous.get(0) != '\n') {
+                    throw new IOException("offset " + offset + " is not at the start of a record of " + location);
+                }
+            }
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return the next article, or {@code null} at the end of the file
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public Article next() throws IOException {
+        while (true) {
+            int newline = -1;
+            for (int i = scanned; i < end; i++) {
+                if (bytes[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            
+            if (newline < 0 && !endOfFile) {
+                if (end - start >= maxRecordSize) {
+                    /* Too large: dropped up to the next line break, without growing the buffer */
+                    if (!skipping) {
+                        skip(offset, "exceeds " + maxRecordSize + " bytes");
+                        skipping = true;
+                    }
+                    offset += end - start;
+                    start = end;
+                }
+                scanned = end;
+                fill();
+                continue;
+            }
+            if (skipping) {
+                final int next = newline >= 0 ? newline + 1 : end;
+                offset += next - start;
+                start = next;
+                scanned = next;
+                skipping = false;
+                continue;
+            }
+            if (newline < 0 && start == end) {
+                return null;
+            }
+            
+            /* A complete record, or the last one if the file does not end with a line break */
+            final int recordEnd = newline >= 0 ? newline : end;
+            final long recordOffset = offset;
+            final Article article = decode(start, recordEnd, recordOffset);
+            final int next = newline >= 0 ? newline + 1 : end;
+            offset += next - start;
+            start = next;
+            scanned = next;
+            if (article != null) {
+                records++;
+                return article;
+            }
+        }
+    }
+    
+    /**
+     * @return the byte offset of the record following the last returned one,
+     *         to resume reading at
+     */
+    public long offset() {
+        return offset;
+    }
+    
+    /**
+     * @return the number of articles read so far
+     */
+    public long recordCount() {
+        return records;
+    }
+    
+    /**
+     * @return the number of malformed records skipped so far
+     */
+    public long malformedCount() {
+        return malformed;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Corpus %s: %d article(s), %d malformed record(s) skipped, at offset %d", location,
+                records, malformed, offset);
+    }
+    
+    /**
+     * Reads more bytes, after making room for them
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(bytes, start, bytes, 0, end - start);
+            end -= start;
+            scanned -= start;
+            start = 0;
+        }
+        if (end == bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.min(2L * bytes.length, maxRecordSize));
+        }
+        
+        final int read = channel.read(ByteBuffer.wrap(bytes, end, bytes.length - end));
+        if (read < 0) {
+            endOfFile = true;
+        } else {
+            end += read;
+        }
+    }
+    
+    /**
+     * @return the article of the record, or {@code null} if it is blank or
+     *         malformed
+     */
+    private Article decode(int from, int to, long recordOffset) {
+        final String line;
+        try {
+            final CharBuffer chars = decoder.decode(ByteBuffer.wrap(bytes, from, to - from));
+            line = chars.toString().trim();
+        } catch (CharacterCodingException e) {
+            skip(recordOffset, "not valid UTF-8");
+            return null;
+        }
+        if (line.isEmpty()) {
+            return null;
+        }
+        
+        try {
+            final Map<String, String> fields = JsonRecord.parse(line);
+            final String id = fields.get("id");
+            final String contents = fields.get("contents");
+            Preconditions.throwIfNull("id and contents are required", id, contents);
+            
+            final String title = fields.getOrDefault("title", DEFAULT_TITLE);
+            final String language = fields.get("language");
+            final String creationDate = fields.get("creationDate");
+            return new Article(Integer.parseInt(id), language != null ? language(language) : defaultLanguage,
+                    fields.get("location"), fields.get("imageLocation"), title.isEmpty() ? DEFAULT_TITLE : title,
+                    Articles.normalizeLineBreaks(contents),
+                    creationDate != null ? timestamp(creationDate) : new Timestamp(System.currentTimeMillis()),
+                    null);
+        } catch (IllegalArgumentException | NullPointerException | DateTimeException e) {
+            skip(recordOffset, e.getMessage());
+            return null;
+        }
+    }
+    
+    private void skip(long recordOffset, String reason) {
+        malformed++;
+        System.err.println("Skipping malformed record at offset " + recordOffset + " of " + location + ": "
+                + reason);
+    }
+    
+    private static Language language(String name) {
+        for (Language language : Language.values()) {
+            if (language.name().equalsIgnoreCase(name) || language.shortName().equalsIgnoreCase(name)) {
+                return language;
+            }
+        }
+        throw new IllegalArgumentException("unknown language: " + name);
+    }
+    
+    private static Timestamp timestamp(String date) {
+        if (date.matches("-?[0-9]+")) {
+            return new Timestamp(Long.parseLong(date));
+        } else if (date.indexOf('T') >= 0) {
+            return Timestamp.from(OffsetDateTime.parse(date.toUpperCase(Locale.ROOT)).toInstant());
+        } else if (date.length() == 10) {
+            return Timestamp.valueOf(date + " 00:00:00");
+        }
+        return Timestamp.valueOf(date);
+    }
+    
+}
@@ -4,6 +4,12 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.function.Consumer;
 
 /**
@@ -70,4 +76,26 @@ public final class FileUtils {
         foreachLine(fileName, false, action);
     }
     
+    /**
+     * Reads the whole file at once, and decodes it as UTF-8
+     * 
+     * @param fileName
+     *            path of the file to read from
+     * @return the contents of the file
+     * @throws IOException
+     *             if the file could not be read, or is not valid UTF-8
+     */
+    public static String readUtf8(String fileName) throws IOException {
+        final byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("not valid UTF-8: " + fileName, e);
+        }
+    }
+
 }
@@ -0,0 +1,227 @@
+package ch.epfl.lia.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal parser of a JSON record: an object whose scalar fields are kept,
+ * and whose nested objects and arrays are skipped. Strings are unescaped;
+ * numbers and booleans are kept as written; {@code null} fields are dropped.
+ * This is all the corpus records need, without any dependency.
+ * 
+ * @author Cyriaque Brousse
+ */
+final class JsonRecord {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+    
+    private final String text;
+    private int position = 0;
+    
+    private JsonRecord(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * @param text
+     *            the JSON text of an object
+     * @return its scalar fields, by name
+     * @throws IllegalArgumentException
+     *             if the text is not a JSON object
+     */
+    static Map<String, String> parse(String text) {
+        Preconditions.throwIfNull("text may not be null", text);
+        
+        final JsonRecord parser = new JsonRecord(text);
+        parser.skipWhitespace();
+        final Map<String, String> fields = new HashMap<>();
+        parser.object(fields);
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw parser.error("trailing characters");
+        }
+        return fields;
+    }
+    
+    /**
+     * Reads an object, and puts its scalar fields in the map (if any)
+     */
+    private void object(Map<String, String> fields) {
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return;
+        }
+        
+        while (true) {
+            skipWhitespace();
+            final String name = string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            final String value = value();
+            if (fields != null && value != null) {
+                fields.put(name, value);
+            }
+            skipWhitespace();
+            
+            final char c = next();
+            if (c == '}') {
+                return;
+            } else if (c != ',') {
+                position--;
+                throw error("',' or '}' expected");
+            }
+        }
+    }
+    
+    /**
+     * @return the value if it is a scalar, or {@code null} if it is
+     *         {@code null}, an object or an array (which are skipped)
+     */
+    private String value() {
+        final char c = peek();
+        if (c == '"') {
+            return string();
+        } else if (c == '{') {
+            object(null);
+            return null;
+        } else if (c == '[') {
+            array();
+            return null;
+        }
+        
+        final int start = position;
+        while (position < text.length() && isLiteralChar(text.charAt(position))) {
+            position++;
+        }
+        final String literal = text.substring(start, position);
+        if (literal.equals("null")) {
+            return null;
+        } else if (literal.equals("true") || literal.equals("false")
+                || NUMBER.matcher(literal).matches()) {
+            return literal;
+        }
+        position = start;
+        throw error("value expected");
+    }
+    
+    private void array() {
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return;
+        }
+        
+        while (true) {
+            skipWhitespace();
+            value();
+            skipWhitespace();
+            
+            final char c = next();
+            if (c == ']') {
+                return;
+            } else if (c != ',') {
+                position--;
+                throw error("',' or ']' expected");
+            }
+        }
+    }
+    
+    private String string() {
+        expect('"');
+        final StringBuilder builder = new StringBuilder();
+        while (true) {
+            final char c = next();
+            if (c == '"') {
+                return builder.toString();
+            } else if (c < 0x20) {
+                position--;
+                throw error("control character in string");
+            } else if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            
+            final char escaped = next();
+            switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                builder.append(escaped);
+                break;
+            case 'b':
+                builder.append('\b');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'u':
+                if (position + 4 > text.length()) {
+                    throw error("truncated unicode escape");
+                }
+                try {
+                    builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("malformed unicode escape");
+                }
+                position += 4;
+                break;
+            default:
+                position--;
+                throw error("unknown escape");
+            }
+        }
+    }
+    
+    private void skipWhitespace() {
+        while (position < text.length()) {
+            final char c = text.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+    
+    private void expect(char expected) {
+        if (next() != expected) {
+            position--;
+            throw error("'" + expected + "' expected");
+        }
+    }
+    
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("unexpected end");
+        }
+        return text.charAt(position);
+    }
+    
+    private char next() {
+        final char c = peek();
+        position++;
+        return c;
+    }
+    
+    private static boolean isLiteralChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'E';
+    }
+    
+    private IllegalArgumentException error(String reason) {
+        return new IllegalArgumentException("malformed JSON at character " + position + ": " + reason);
+    }
+    
+}
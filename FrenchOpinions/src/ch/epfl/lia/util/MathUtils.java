@@ -0,0 +1,62 @@
+package ch.epfl.lia.util;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public final class MathUtils {
+
+    private MathUtils() { }
+    
+    /* Lanczos approximation coefficients (g = 7, n = 9) */
+    private static final double[] LANCZOS = {
+        0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+        771.32342877765313, -176.61502916214059, 12.507343278686905,
+        -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7
+    };
+    
+    /**
+     * @param x
+     *            a strictly positive number
+     * @return the natural logarithm of the gamma function at {@code x}
+     */
+    public static double logGamma(double x) {
+        if (x <= 0) {
+            throw new IllegalArgumentException("logGamma is only defined for strictly positive numbers");
+        }
+        if (x < 0.5) {
+            /* Reflection formula */
+            return Math.log(Math.PI / Math.sin(Math.PI * x)) - logGamma(1 - x);
+        }
+        
+        final double y = x - 1;
+        double sum = LANCZOS[0];
+        for (int i = 1; i < LANCZOS.length; i++) {
+            sum += LANCZOS[i] / (y + i);
+        }
+        final double t = y + LANCZOS.length - 1.5;
+        return 0.5 * Math.log(2 * Math.PI) + (y + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+    
+    /**
+     * @param x
+     *            a strictly positive number
+     * @return the digamma function (logarithmic derivative of the gamma
+     *         function) at {@code x}
+     */
+    public static double digamma(double x) {
+        if (x <= 0) {
+            throw new IllegalArgumentException("digamma is only defined for strictly positive numbers");
+        }
+        
+        /* Recurrence to shift x above 6, then asymptotic expansion */
+        double result = 0;
+        while (x < 6) {
+            result -= 1 / x;
+            x += 1;
+        }
+        final double f = 1 / (x * x);
+        return result + Math.log(x) - 0.5 / x
+                - f * (1.0 / 12 - f * (1.0 / 120 - f * (1.0 / 252 - f * (1.0 / 240 - f / 132))));
+    }
+    
+}
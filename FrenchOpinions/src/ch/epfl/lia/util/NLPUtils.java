@@ -2,6 +2,7 @@ package ch.epfl.lia.util;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 import ch.epfl.lia.entity.Language;
 import ch.epfl.lia.nlp.Word;
@@ -24,6 +25,27 @@ public final class NLPUtils {
     public static final List<String> POS_CONJ_FR = Arrays.asList("C", "CC", "CS");
     public static final List<String> POS_ADJ_FR = Arrays.asList("A", "ADJ", "ADJWH");
     
+    /* French negation words */
+    public static final List<String> NEGATIONS_FR = Arrays.asList("ne", "n'", "pas", "jamais", "aucun", "aucune",
+            "rien", "guère", "nullement", "sans");
+    
+    /**
+     * @param w
+     *            the word to check
+     * @param lang
+     *            the language of the word
+     * @return {@code true} if the word is a negation word (e.g. "pas" in
+     *         French), {@code false} otherwise
+     */
+    public static boolean isNegation(Word w, Language lang) {
+        switch (lang) {
+        case FRENCH:
+            return NEGATIONS_FR.contains(w.value().toLowerCase(Locale.FRENCH));
+        default:
+            return false;
+        }
+    }
+    
     public static boolean isVerb(Word w, Language lang) {
         switch (lang) {
         case FRENCH:
@@ -0,0 +1,81 @@
+package ch.epfl.lia.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ParsedSentenceTest {
+
+    private static final Word TRAITEMENT = new Word("traitement", 2, "NC");
+    private static final Word EFFICACE = new Word("efficace", 4, "ADJ");
+    private static final Word ABSENT = new Word("très", 5, "ADV");
+    
+    private final ParsedSentence sentence = new ParsedSentence(
+            Arrays.asList(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE),
+            Arrays.asList(new Dependency("suj", EFFICACE, TRAITEMENT), new Dependency("mod", ABSENT, EFFICACE)));
+    
+    @Test
+    public void testColumnarAccessors() {
+        assertEquals(4, sentence.size());
+        assertEquals("traitement", sentence.value(1));
+        assertEquals("NC", sentence.posTag(1));
+        assertEquals(4, sentence.position(3));
+        
+        assertEquals(2, sentence.dependencyCount());
+        assertEquals("suj", sentence.relation(0));
+        assertEquals(3, sentence.governor(0));
+        assertEquals(1, sentence.dependent(0));
+        
+        /* A word found in the dependencies only comes after those of the sentence */
+        assertEquals(4, sentence.governor(1));
+        assertEquals("très", sentence.value(4));
+        assertEquals("ADV", sentence.posTag(4));
+        assertEquals(5, sentence.position(4));
+    }
+    
+    @Test
+    public void testViewsMatchColumns() {
+        assertEquals(Arrays.asList(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE),
+                sentence.words());
+        assertEquals(Arrays.asList(new Dependency("suj", EFFICACE, TRAITEMENT),
+                new Dependency("mod", ABSENT, EFFICACE)), sentence.dependencies());
+        assertEquals(ABSENT, sentence.wordAt(4));
+    }
+    
+    @Test
+    public void testViewsAreStable() {
+        final List<Word> words = sentence.words();
+        final List<Dependency> dependencies = sentence.dependencies();
+        
+        assertSame(words.get(1), sentence.words().get(1));
+        assertSame(dependencies, sentence.dependencies());
+        assertSame(words.get(3), sentence.wordAt(3));
+        
+        /* The words of the dependencies are those of the sentence */
+        assertSame(words.get(3), dependencies.get(0).gov());
+        assertSame(words.get(1), dependencies.get(0).dep());
+        assertSame(dependencies.get(0).gov(), dependencies.get(1).dep());
+    }
+    
+    @Test
+    public void testClearViews() {
+        final Word word = sentence.wordAt(1);
+        sentence.clearViews();
+        
+        assertFalse(word == sentence.wordAt(1));
+        assertEquals(word, sentence.wordAt(1));
+        assertSame(sentence.words().get(1), sentence.dependencies().get(0).dep());
+    }
+    
+}
@@ -0,0 +1,105 @@
+package ch.epfl.lia.main;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+import ch.epfl.lia.storage.OpinionLog;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class OpinionBackfillTest {
+
+    private static final String VERSIONS = "models=1,dictionary=1";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final Topic health = new Topic(0, 0.6, Arrays.asList("santé", "hôpital"));
+    
+    @Test
+    public void testInterruptedChunkIsDroppedOnResume() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        final Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.properties");
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            assertEquals(-1, OpinionBackfill.resume(log, checkpoint, VERSIONS));
+            backfill(log, 1, 2);
+            OpinionBackfill.checkpoint(log, checkpoint, 2, VERSIONS);
+            
+            /* Interrupted once the log is on the disk, before the checkpoint */
+            backfill(log, 3, 4);
+            log.sync();
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            assertEquals(8, log.size());
+            assertEquals(2, OpinionBackfill.resume(log, checkpoint, VERSIONS));
+            assertEquals(4, log.size());
+            assertEquals(0, log.ofArticle(3).size());
+            
+            backfill(log, 3, 4);
+            OpinionBackfill.checkpoint(log, checkpoint, 4, VERSIONS);
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            assertEquals(4, OpinionBackfill.resume(log, checkpoint, VERSIONS));
+            assertEquals(8, log.size());
+            
+            final List<Integer> articles = new ArrayList<>();
+            log.scan(e -> articles.add(e.articleId()));
+            assertEquals(Arrays.asList(1, 1, 2, 2, 3, 3, 4, 4), articles);
+        }
+    }
+    
+    @Test(expected = StreamCorruptedException.class)
+    public void testLostOpinionsAreDetected() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        final Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.properties");
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            backfill(log, 1, 2);
+            OpinionBackfill.checkpoint(log, checkpoint, 2, VERSIONS);
+            log.truncate(3);
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            OpinionBackfill.resume(log, checkpoint, VERSIONS);
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testOtherVersionsAreRejected() throws IOException {
+        final Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.properties");
+        try (OpinionLog log = new OpinionLog(folder.getRoot().getPath(), 3)) {
+            backfill(log, 1, 1);
+            OpinionBackfill.checkpoint(log, checkpoint, 1, VERSIONS);
+            OpinionBackfill.resume(log, checkpoint, "models=2,dictionary=1");
+        }
+    }
+    
+    /**
+     * Logs two opinions for each article of the range
+     */
+    private void backfill(OpinionLog log, int from, int to) throws IOException {
+        for (int id = from; id <= to; id++) {
+            log.append(new Opinion(health, new Word("santé", 1, "NC"), new Word("bon", 2, "ADJ"),
+                    Polarity.POSITIVE).inArticle(id, 0));
+            log.append(new Opinion(health, new Word("hôpital", 4, "NC"), new Word("sale", 5, "ADJ"),
+                    Polarity.NEGATIVE).inArticle(id, 1));
+        }
+    }
+    
+}
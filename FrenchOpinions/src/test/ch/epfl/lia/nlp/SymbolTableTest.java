@@ -0,0 +1,45 @@
+package ch.epfl.lia.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class SymbolTableTest {
+
+    @Test
+    public void testCodesAreStable() {
+        final short code = SymbolTable.RELATIONS.code("obj");
+        assertEquals(code, SymbolTable.RELATIONS.code(new String("obj")));
+        assertTrue(code != SymbolTable.RELATIONS.code("suj"));
+        assertEquals("obj", SymbolTable.RELATIONS.symbol(code));
+    }
+    
+    @Test
+    public void testSymbolsAreInterned() {
+        final short code = SymbolTable.POS_TAGS.code(new String("NPP"));
+        assertSame("NPP", SymbolTable.POS_TAGS.symbol(code));
+    }
+    
+    @Test
+    public void testTablesAreSeparate() {
+        final int size = SymbolTable.RELATIONS.size();
+        SymbolTable.POS_TAGS.code("CLS");
+        assertEquals(size, SymbolTable.RELATIONS.size());
+    }
+    
+    @Test(expected = NullPointerException.class)
+    public void testNullSymbol() {
+        SymbolTable.POS_TAGS.code(null);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptySymbol() {
+        SymbolTable.POS_TAGS.code("");
+    }
+    
+}
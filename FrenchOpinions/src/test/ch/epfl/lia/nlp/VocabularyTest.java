@@ -0,0 +1,88 @@
+package ch.epfl.lia.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class VocabularyTest {
+
+    private final Vocabulary vocabulary = Vocabulary.getInstance();
+    
+    @Test
+    public void testIdsAreStable() {
+        final int id = vocabulary.id("vocabulaire");
+        assertEquals(id, vocabulary.id(new String("vocabulaire")));
+        assertEquals(id, vocabulary.find("vocabulaire"));
+        assertEquals("vocabulaire", vocabulary.token(id));
+    }
+    
+    @Test
+    public void testFindDoesNotAdd() {
+        final int size = vocabulary.size();
+        assertEquals(Vocabulary.UNKNOWN, vocabulary.find("jamais-vu-ailleurs"));
+        assertEquals(Vocabulary.UNKNOWN, vocabulary.find(null));
+        assertEquals(size, vocabulary.size());
+    }
+    
+    @Test
+    public void testTokensView() {
+        final int[] ids = {vocabulary.id("santé"), vocabulary.id("école"), vocabulary.id("santé")};
+        assertEquals(Arrays.asList("santé", "école", "santé"), vocabulary.tokens(ids));
+    }
+    
+    @Test
+    public void testConcurrentInterning() throws InterruptedException, ExecutionException {
+        final int threads = 8;
+        final int tokens = 5000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            /* Each thread interns the same tokens, in its own order, while the array grows */
+            final List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 613;
+                futures.add(executor.submit((Callable<int[]>) () -> {
+                    final int[] ids = new int[tokens];
+                    for (int i = 0; i < tokens; i++) {
+                        final int token = (i + offset) % tokens;
+                        ids[token] = vocabulary.id("concurrent-" + token);
+                        assertEquals("concurrent-" + token, vocabulary.token(ids[token]));
+                    }
+                    return ids;
+                }));
+            }
+            
+            final int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                final int[] ids = future.get();
+                for (int i = 0; i < tokens; i++) {
+                    assertEquals(expected[i], ids[i]);
+                }
+            }
+            
+            final Set<Integer> distinct = new HashSet<>();
+            for (int id : expected) {
+                distinct.add(id);
+            }
+            assertEquals(tokens, distinct.size());
+            assertTrue(vocabulary.size() >= tokens);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+}
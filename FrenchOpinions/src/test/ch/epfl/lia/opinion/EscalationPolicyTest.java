@@ -0,0 +1,117 @@
+package ch.epfl.lia.opinion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class EscalationPolicyTest {
+
+    private static final Topic TOPIC = new Topic(0, 0.5, Arrays.asList("traitement", "effet"));
+    private static final Collection<Topic> TOPICS = Arrays.asList(TOPIC);
+    
+    private static final Word TRAITEMENT = new Word("traitement", 2, "NC");
+    private static final Word EFFET = new Word("effet", 6, "NC");
+    private static final Word EFFICACE = new Word("efficace", 4, "ADJ");
+    private static final Word MAUVAIS = new Word("mauvais", 8, "ADJ");
+    
+    private static final EscalationPolicy DEFAULT = new EscalationPolicy.Builder().build();
+    
+    @Test
+    public void testNothingFoundIsNotEscalated() {
+        final SentenceProfile profile = new SentenceProfile();
+        
+        assertFalse(DEFAULT.shouldEscalate(profile));
+        assertFalse(new EscalationPolicy.Builder().maxOpinions(0).build().shouldEscalate(profile));
+    }
+    
+    @Test
+    public void testConflictNeedsSeveralTopicWords() {
+        final SentenceProfile oneTopicWord = new SentenceProfile();
+        oneTopicWord.add(new Opinion(TOPIC, TRAITEMENT, EFFICACE, Polarity.POSITIVE), false, false);
+        oneTopicWord.add(new Opinion(TOPIC, TRAITEMENT, MAUVAIS, Polarity.NEGATIVE), false, false);
+        assertFalse(DEFAULT.shouldEscalate(oneTopicWord));
+        
+        final SentenceProfile twoTopicWords = new SentenceProfile();
+        twoTopicWords.add(new Opinion(TOPIC, TRAITEMENT, EFFICACE, Polarity.POSITIVE), false, false);
+        twoTopicWords.add(new Opinion(TOPIC, EFFET, MAUVAIS, Polarity.NEGATIVE), false, false);
+        assertTrue(DEFAULT.shouldEscalate(twoTopicWords));
+        assertFalse(new EscalationPolicy.Builder().onConflict(false).build().shouldEscalate(twoTopicWords));
+    }
+    
+    @Test
+    public void testNegationAndVerbInversion() {
+        final SentenceProfile negated = new SentenceProfile();
+        negated.add(new Opinion(TOPIC, TRAITEMENT, EFFICACE, Polarity.NEGATIVE), true, false);
+        assertTrue(DEFAULT.shouldEscalate(negated));
+        assertFalse(new EscalationPolicy.Builder().onNegation(false).build().shouldEscalate(negated));
+        
+        final SentenceProfile inverted = new SentenceProfile();
+        inverted.add(new Opinion(TOPIC, TRAITEMENT, EFFICACE, Polarity.NEGATIVE), false, true);
+        assertTrue(DEFAULT.shouldEscalate(inverted));
+        assertFalse(new EscalationPolicy.Builder().onVerbInversion(false).build().shouldEscalate(inverted));
+    }
+    
+    @Test
+    public void testMaxOpinionsThreshold() {
+        final SentenceProfile profile = new SentenceProfile();
+        profile.add(new Opinion(TOPIC, TRAITEMENT, EFFICACE, Polarity.POSITIVE), false, false);
+        profile.add(new Opinion(TOPIC, TRAITEMENT, MAUVAIS, Polarity.POSITIVE), false, false);
+        
+        assertFalse(DEFAULT.shouldEscalate(profile));
+        assertFalse(new EscalationPolicy.Builder().maxOpinions(2).build().shouldEscalate(profile));
+        assertTrue(new EscalationPolicy.Builder().maxOpinions(1).build().shouldEscalate(profile));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxOpinions() {
+        new EscalationPolicy.Builder().maxOpinions(-1);
+    }
+    
+    @Test
+    public void testTierStatistics() throws OpinionExtractionException {
+        final TieredOpinionExtractor extractor = new TieredOpinionExtractor();
+        assertEquals(0, extractor.statistics().sentenceCount());
+        assertEquals(Double.NaN, extractor.statistics().escalationRate(), 0);
+        
+        /* Plain opinion: trusted */
+        extractor.extractOpinions(article(new ArrayList<>(), new Word("le", 1, "DET"), TRAITEMENT,
+                new Word("est", 3, "V"), EFFICACE), TOPICS);
+        assertEquals(1, extractor.statistics().sentenceCount());
+        assertEquals(0, extractor.statistics().escalatedCount());
+        
+        /* Negated opinion: escalated, already parsed */
+        final Word traitement = new Word("traitement", 2, "NC");
+        final Word efficace = new Word("efficace", 6, "ADJ");
+        extractor.extractOpinions(article(Arrays.asList(new Dependency("mod", traitement, efficace)),
+                new Word("le", 1, "DET"), traitement, new Word("n'", 3, "ADV"), new Word("est", 4, "V"),
+                new Word("pas", 5, "ADV"), efficace), TOPICS);
+        assertEquals(2, extractor.statistics().sentenceCount());
+        assertEquals(1, extractor.statistics().escalatedCount());
+        assertEquals(0.5, extractor.statistics().escalationRate(), 1e-9);
+        assertTrue(extractor.statistics().averageFullMillis() >= 0);
+    }
+    
+    private static ParsedArticle article(List<Dependency> dependencies, Word... words) {
+        return new ParsedArticle(1, Arrays.asList(new ParsedSentence(Arrays.asList(words), dependencies)),
+                Arrays.asList("traitement"));
+    }
+    
+}
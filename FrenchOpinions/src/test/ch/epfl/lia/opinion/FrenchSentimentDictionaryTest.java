@@ -1,6 +1,7 @@
 package ch.epfl.lia.opinion;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Arrays;
@@ -10,6 +11,7 @@ import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import ch.epfl.lia.nlp.Vocabulary;
 import ch.epfl.lia.nlp.Word;
 import ch.epfl.lia.opinion.dictionary.FrenchSentimentDictionary;
 import ch.epfl.lia.opinion.dictionary.Polarity;
@@ -43,4 +45,34 @@ public class FrenchSentimentDictionaryTest {
         });
     }
 
+    @Test
+    public void testLookupIsByValue() {
+        final FrenchSentimentDictionary dictionary = FrenchSentimentDictionary.getInstance();
+        assertEquals(Optional.of(Polarity.POSITIVE), dictionary.lookup(new Word("accessible", 7, "NC")));
+        assertEquals(Optional.of(Polarity.POSITIVE), dictionary.lookup(new Word(new String("accessible"), 2, "ADJ")));
+    }
+
+    @Test
+    public void testTokenAddedAfterLoading() {
+        final FrenchSentimentDictionary dictionary = FrenchSentimentDictionary.getInstance();
+        
+        /* Its id is beyond the polarities of the dictionary */
+        final Word word = new Word("mot-inconnu-du-lexique", 1, "NC");
+        assertTrue(word.valueId() >= 0);
+        assertEquals(Optional.empty(), dictionary.lookup(word));
+        
+        /* Looking up its stem does not add the stem to the vocabulary */
+        final int size = Vocabulary.getInstance().size();
+        assertEquals(Optional.empty(), dictionary.stemAndlookup(word));
+        assertEquals(size, Vocabulary.getInstance().size());
+    }
+    
+    @Test
+    public void testInflectedWordIsFoundByItsStem() {
+        final FrenchSentimentDictionary dictionary = FrenchSentimentDictionary.getInstance();
+        final Word word = new Word("Efficaces", 3, "ADJ");
+        assertEquals(Optional.empty(), dictionary.lookup(word));
+        assertEquals(Optional.of(Polarity.POSITIVE), dictionary.stemAndlookup(word));
+    }
+
 }
@@ -0,0 +1,88 @@
+package ch.epfl.lia.opinion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class FrenchWindowOpinionExtractorTest {
+
+    private static final Collection<Topic> TOPICS = Arrays.asList(new Topic(0, 0.5, Arrays.asList("traitement")));
+    
+    private static final Word TRAITEMENT = new Word("traitement", 2, "NC");
+    private static final Word EFFICACE = new Word("efficace", 4, "ADJ");
+    
+    @Test
+    public void testSimpleOpinion() {
+        ParsedSentence sentence = sentence(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE);
+        Set<Opinion> actual = new FrenchWindowOpinionExtractor().extractOpinions(sentence, TOPICS);
+        
+        assertEquals(1, actual.size());
+        Opinion opinion = actual.iterator().next();
+        assertEquals(TRAITEMENT, opinion.topicWord());
+        assertEquals(EFFICACE, opinion.polarWord());
+        assertEquals(Polarity.POSITIVE, opinion.polarity());
+    }
+    
+    @Test
+    public void testNegatedOpinion() {
+        ParsedSentence sentence = sentence(new Word("le", 1, "DET"), TRAITEMENT, new Word("n'", 3, "ADV"),
+                new Word("est", 4, "V"), new Word("pas", 5, "ADV"), new Word("efficace", 6, "ADJ"));
+        Set<Opinion> actual = new FrenchWindowOpinionExtractor().extractOpinions(sentence, TOPICS);
+        
+        assertEquals(1, actual.size());
+        assertEquals(Polarity.NEGATIVE, actual.iterator().next().polarity());
+    }
+    
+    @Test
+    public void testOutOfWindow() {
+        ParsedSentence sentence = sentence(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE);
+        Set<Opinion> actual = new FrenchWindowOpinionExtractor(1).extractOpinions(sentence, TOPICS);
+        
+        assertTrue(actual.isEmpty());
+    }
+    
+    @Test
+    public void testInflectedTopicWord() {
+        final Word traitements = new Word("Traitements", 2, "NC");
+        ParsedSentence sentence = sentence(new Word("les", 1, "DET"), traitements, new Word("sont", 3, "V"),
+                new Word("efficaces", 4, "ADJ"));
+        Set<Opinion> actual = new FrenchWindowOpinionExtractor().extractOpinions(sentence, TOPICS);
+        
+        assertEquals(1, actual.size());
+        assertEquals(traitements, actual.iterator().next().topicWord());
+    }
+    
+    @Test
+    public void testSameOpinionInTwoSentences() throws OpinionExtractionException {
+        final ParsedArticle article = new ParsedArticle(1, Arrays.asList(
+                sentence(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE),
+                sentence(new Word("le", 1, "DET"), TRAITEMENT, new Word("reste", 3, "V"), EFFICACE)),
+                Arrays.asList("traitement"));
+        Set<Opinion> actual = new FrenchWindowOpinionExtractor().extractOpinions(article, TOPICS);
+        
+        assertEquals(2, actual.size());
+    }
+    
+    private static ParsedSentence sentence(Word... words) {
+        List<Word> list = Arrays.asList(words);
+        return new ParsedSentence(list, new ArrayList<>());
+    }
+    
+}
@@ -0,0 +1,84 @@
+package ch.epfl.lia.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Dependency;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.parser.ParseException;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ArticleCodecTest {
+
+    private static final Word TRAITEMENT = new Word("traitement", 2, "NC");
+    private static final Word EFFICACE = new Word("efficace", 4, "ADJ");
+    private static final Word ABSENT = new Word("très", 5, "ADV");
+    
+    @Test
+    public void testRoundTrip() throws IOException, ParseException {
+        final Timestamp date = new Timestamp(1_400_000_000_123L);
+        final ParsedSentence sentence = new ParsedSentence(
+                Arrays.asList(new Word("le", 1, "DET"), TRAITEMENT, new Word("est", 3, "V"), EFFICACE),
+                Arrays.asList(new Dependency("suj", EFFICACE, TRAITEMENT), new Dependency("mod", ABSENT, EFFICACE)));
+        final ParsedArticle parsed = new ParsedArticle(7, Arrays.asList(sentence), Arrays.asList("traitement"));
+        final Article article = new Article(7, Language.FRENCH, null, "img/7.jpg", "Titre", "Le traitement est "
+                + "efficace, à 100 %.", date, parsed);
+        
+        final byte[] bytes = ArticleCodec.encode(article);
+        assertTrue(ArticleCodec.hasMagic(bytes));
+        
+        final Article decoded = ArticleCodec.decode(bytes);
+        assertEquals(article, decoded);
+        assertNull(decoded.location());
+        assertEquals("img/7.jpg", decoded.imageLocation());
+        assertEquals(article.contents(), decoded.contents());
+        assertEquals(article.creationDate(), decoded.creationDate());
+        assertTrue(decoded.isParsed());
+        
+        /* Already parsed: no parser (and no model) is loaded */
+        final ParsedArticle decodedParsed = decoded.parse(null);
+        assertEquals(parsed.nouns(), decodedParsed.nouns());
+        final ParsedSentence decodedSentence = decodedParsed.parsedSentences().get(0);
+        assertEquals(sentence.words(), decodedSentence.words());
+        assertEquals(sentence.dependencies(), decodedSentence.dependencies());
+        
+        /* A word shared by two dependencies is decoded once */
+        final List<Dependency> dependencies = decodedSentence.dependencies();
+        assertSame(dependencies.get(0).gov(), dependencies.get(1).dep());
+        /* A word found in the dependencies only is kept */
+        assertEquals(ABSENT, dependencies.get(1).gov());
+    }
+    
+    @Test
+    public void testUnparsedRoundTrip() throws IOException {
+        final Article article = new Article(3, Language.FRENCH, "raw/3.txt", null, "Titre", "Contenu",
+                new Timestamp(0), null);
+        
+        final Article decoded = ArticleCodec.decode(ArticleCodec.encode(article));
+        assertEquals("raw/3.txt", decoded.location());
+        assertNull(decoded.imageLocation());
+        assertFalse(decoded.isParsed());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testBadMagic() throws IOException {
+        ArticleCodec.decode(new byte[] {(byte) 0xAC, (byte) 0xED, 0, 5, 0, 0});
+    }
+    
+}
@@ -0,0 +1,72 @@
+package ch.epfl.lia.storage;
+
+import static ch.epfl.lia.storage.BuildManifest.Artefact.OPINIONS;
+import static ch.epfl.lia.storage.BuildManifest.Artefact.PARSED_ARTICLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class BuildManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testFreshAfterReload() throws IOException {
+        final String location = folder.getRoot().getPath() + "/manifest.tsv";
+        final BuildManifest manifest = BuildManifest.load(location);
+        assertFalse(manifest.isFresh(PARSED_ARTICLE, 1, "hash", "v1"));
+        
+        manifest.record(PARSED_ARTICLE, 1, "hash", "v1");
+        manifest.record(OPINIONS, 1, "hash", "v1,topics=abc");
+        manifest.save();
+        
+        final BuildManifest reloaded = BuildManifest.load(location);
+        assertTrue(reloaded.isFresh(PARSED_ARTICLE, 1, "hash", "v1"));
+        assertTrue(reloaded.isFresh(OPINIONS, 1, "hash", "v1,topics=abc"));
+        assertFalse(reloaded.isRecorded(PARSED_ARTICLE, 2));
+    }
+    
+    @Test
+    public void testStaleOnNewInputOrVersion() throws IOException {
+        final BuildManifest manifest = BuildManifest.load(folder.getRoot().getPath() + "/manifest.tsv");
+        manifest.record(PARSED_ARTICLE, 1, "hash", "v1");
+        
+        assertFalse(manifest.isFresh(PARSED_ARTICLE, 1, "edited", "v1"));
+        assertFalse(manifest.isFresh(PARSED_ARTICLE, 1, "hash", "v2"));
+        assertFalse(manifest.isFresh(OPINIONS, 1, "hash", "v1"));
+        
+        assertEquals("v1", manifest.recordedVersions(PARSED_ARTICLE, 1, "hash"));
+        assertNull(manifest.recordedVersions(PARSED_ARTICLE, 1, "edited"));
+        
+        manifest.invalidate(PARSED_ARTICLE, 1);
+        assertFalse(manifest.isRecorded(PARSED_ARTICLE, 1));
+    }
+    
+    @Test
+    public void testContentHashIgnoresDates() {
+        final Article article = new Article(1, Language.FRENCH, null, null, "titre", "contenu", new Timestamp(0), null);
+        final Article later = new Article(1, Language.FRENCH, null, null, "titre", "contenu", new Timestamp(1000),
+                null);
+        final Article edited = new Article(1, Language.FRENCH, null, null, "titre", "contenu modifié",
+                new Timestamp(0), null);
+        
+        assertEquals(BuildManifest.contentHash(article), BuildManifest.contentHash(later));
+        assertFalse(BuildManifest.contentHash(article).equals(BuildManifest.contentHash(edited)));
+    }
+    
+}
@@ -0,0 +1,141 @@
+package ch.epfl.lia.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class EntityStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final Topic health = new Topic(0, 0.6, Arrays.asList("santé", "hôpital"));
+    private final Topic school = new Topic(1, 0.4, Arrays.asList("école", "élève"));
+    
+    @Test
+    public void testReplayRestoresEntitiesAndIndexes() throws IOException {
+        final String log = new File(folder.getRoot(), "entities.log").getPath();
+        final int opinionId;
+        try (EntityStore store = new EntityStore(log, 2, 16)) {
+            store.saveAll(Arrays.asList(opinion(health, "hôpital", "bon", Polarity.POSITIVE, 7, 0),
+                    opinion(school, "école", "mauvais", Polarity.NEGATIVE, 7, 2),
+                    opinion(health, "santé", "fragile", Polarity.NEGATIVE, 8, 1)));
+            opinionId = store.save(opinion(health, "santé", "excellent", Polarity.POSITIVE, 8, 3));
+            store.sync();
+        }
+        
+        try (EntityStore store = new EntityStore(log, 2, 16)) {
+            assertEquals(2, store.topics().size());
+            assertEquals(2, store.opinionsOfArticle(7).size());
+            assertEquals(2, store.opinionsOfArticle(8).size());
+            assertEquals(3, store.opinionsOfTopic(health).size());
+            assertEquals(2, store.opinionsWithPolarity(Polarity.NEGATIVE).size());
+            
+            final Opinion replayed = store.opinion(opinionId);
+            assertEquals(opinion(health, "santé", "excellent", Polarity.POSITIVE, 8, 3), replayed);
+            assertEquals(health, replayed.topic());
+            assertEquals(8, replayed.articleId());
+            assertEquals(3, replayed.sentenceIndex());
+        }
+    }
+    
+    @Test
+    public void testSavingAgainKeepsTheId() throws IOException {
+        final String log = new File(folder.getRoot(), "entities.log").getPath();
+        try (EntityStore store = new EntityStore(log, 4, 16)) {
+            final int id = store.save(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+            assertEquals(id, store.save(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0)));
+            assertTrue(id != store.save(opinion(health, "santé", "bon", Polarity.POSITIVE, 2, 0)));
+            
+            /* The same words at the same positions in another sentence */
+            assertTrue(id != store.save(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 1)));
+            assertEquals(2, store.opinionsOfArticle(1).size());
+            assertEquals(1, store.topics().size());
+        }
+    }
+    
+    @Test
+    public void testDeletesAreReplayed() throws IOException {
+        final String log = new File(folder.getRoot(), "entities.log").getPath();
+        final Opinion deleted = opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0);
+        try (EntityStore store = new EntityStore(log, 4, 16)) {
+            store.saveAll(Arrays.asList(deleted, opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 1),
+                    opinion(school, "école", "bon", Polarity.POSITIVE, 1, 2)));
+            assertTrue(store.delete(deleted));
+            assertFalse(store.delete(deleted));
+            
+            /* Deleting a topic deletes its opinions */
+            assertTrue(store.delete(school));
+            assertEquals(0, store.opinionsOfTopic(school).size());
+        }
+        
+        try (EntityStore store = new EntityStore(log, 4, 16)) {
+            final List<Opinion> opinions = store.opinionsOfArticle(1);
+            assertEquals(1, opinions.size());
+            assertEquals(opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 1), opinions.get(0));
+            assertEquals(Arrays.asList(health), store.topics());
+            assertEquals(0, store.opinionsWithPolarity(Polarity.POSITIVE).size());
+        }
+    }
+    
+    @Test
+    public void testTruncatedTailIsDropped() throws IOException {
+        final File log = new File(folder.getRoot(), "entities.log");
+        try (EntityStore store = new EntityStore(log.getPath(), 4, 16)) {
+            store.save(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+        }
+        
+        /* A record header announcing more bytes than were written */
+        final long size = log.length();
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(new byte[] {0, 0, 0, 100, 0, 0, 0, 0, 1, 0, 0, 0, 0, 5, 1, 2});
+        }
+        
+        try (EntityStore store = new EntityStore(log.getPath(), 4, 16)) {
+            assertEquals(size, log.length());
+            assertEquals(1, store.opinionsOfArticle(1).size());
+            store.save(opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 1));
+        }
+        
+        try (EntityStore store = new EntityStore(log.getPath(), 4, 16)) {
+            assertEquals(2, store.opinionsOfArticle(1).size());
+            assertNull(store.opinion(1000));
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testForeignFileIsRejected() throws IOException {
+        final File log = folder.newFile("entities.log");
+        try (FileOutputStream out = new FileOutputStream(log)) {
+            out.write("not an entity log".getBytes("UTF-8"));
+        }
+        
+        new EntityStore(log.getPath(), 4, 16).close();
+    }
+    
+    private static Opinion opinion(Topic topic, String topicWord, String polarWord, Polarity polarity,
+            int articleId, int sentenceIndex) {
+        return new Opinion(topic, new Word(topicWord, 1, "NC"), new Word(polarWord, 2, "ADJ"), polarity)
+                .inArticle(articleId, sentenceIndex);
+    }
+    
+}
@@ -0,0 +1,232 @@
+package ch.epfl.lia.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Opinion;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+import ch.epfl.lia.opinion.dictionary.Polarity;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class OpinionLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final Topic health = new Topic(0, 0.6, Arrays.asList("santé", "hôpital"));
+    private final Topic school = new Topic(1, 0.4, Arrays.asList("école", "élève"));
+    
+    @Test
+    public void testAppendScanAndOfArticle() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 2)) {
+            log.append(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+            log.appendAll(Arrays.asList(opinion(school, "école", "mauvais", Polarity.NEGATIVE, 2, 0),
+                    opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 3)));
+            log.append(opinion(school, "élève", "bon", Polarity.POSITIVE, 1, 4));
+            
+            /* Still buffered, read back all the same */
+            assertEquals(4, log.size());
+            assertEquals(opinion(school, "école", "mauvais", Polarity.NEGATIVE, 2, 0),
+                    log.opinion(log.read(1)));
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 1000)) {
+            assertEquals(4, log.size());
+            
+            final List<Opinion> scanned = new ArrayList<>();
+            log.scan(e -> scanned.add(log.opinion(e)));
+            assertEquals(Arrays.asList(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0),
+                    opinion(school, "école", "mauvais", Polarity.NEGATIVE, 2, 0),
+                    opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 3),
+                    opinion(school, "élève", "bon", Polarity.POSITIVE, 1, 4)), scanned);
+            
+            final List<OpinionLog.Entry> ofArticle = log.ofArticle(1);
+            assertEquals(3, ofArticle.size());
+            assertEquals(3, ofArticle.get(1).sentenceIndex());
+            assertEquals(school, log.opinion(ofArticle.get(2)).topic());
+            assertEquals(0, log.ofArticle(3).size());
+        }
+    }
+    
+    @Test
+    public void testPartialRecordIsTruncated() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 100)) {
+            log.append(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+        }
+        
+        final File segment = new File(folder.getRoot(), "opinions-000000.bin");
+        final long size = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[] {0, 0, 0, 1, 0, 0, 0, 2});
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 100)) {
+            assertEquals(size, segment.length());
+            assertEquals(1, log.size());
+        }
+    }
+    
+    @Test
+    public void testZeroFilledTailIsTruncated() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 100)) {
+            log.append(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+            log.append(opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 1));
+        }
+        
+        /* Zeros would otherwise pass for records of article 0, with the first topic and word */
+        final File segment = new File(folder.getRoot(), "opinions-000000.bin");
+        final long size = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[3 * OpinionLog.RECORD_SIZE]);
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 100)) {
+            assertEquals(size, segment.length());
+            assertEquals(2, log.size());
+            assertEquals(0, log.ofArticle(0).size());
+            
+            log.append(opinion(school, "école", "bon", Polarity.POSITIVE, 2, 0));
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 100)) {
+            assertEquals(3, log.size());
+            assertEquals(school, log.topic(log.read(2).topicId()));
+        }
+    }
+    
+    @Test
+    public void testHeaderlessLastSegmentIsDeleted() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 1)) {
+            log.append(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0));
+        }
+        
+        /* Created, but the crash came before its header was written */
+        final File second = new File(dir, "opinions-000001.bin");
+        try (FileOutputStream out = new FileOutputStream(second)) {
+            out.write(new byte[] { 0x46, 0x4f });
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 1)) {
+            assertEquals(1, log.size());
+            log.append(opinion(school, "école", "mauvais", Polarity.NEGATIVE, 2, 0));
+        }
+        try (OpinionLog log = new OpinionLog(dir, 1)) {
+            assertEquals(2, log.size());
+            assertEquals(2, log.read(1).articleId());
+        }
+    }
+    
+    @Test
+    public void testTruncate() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 2)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, i));
+            }
+            log.sync();
+            
+            log.truncate(3);
+            assertEquals(3, log.size());
+            assertEquals(3, log.ofArticle(1).size());
+            log.append(opinion(school, "école", "bon", Polarity.POSITIVE, 2, 0));
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 2)) {
+            assertEquals(4, log.size());
+            assertEquals(3, log.ofArticle(1).size());
+            assertEquals(2, log.read(3).articleId());
+        }
+    }
+    
+    @Test
+    public void testReplacedRecordsAreSuperseded() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            log.replace(1, Arrays.asList(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0),
+                    opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 2)));
+            log.replace(2, Arrays.asList(opinion(school, "école", "bon", Polarity.POSITIVE, 2, 0)));
+            
+            /* No marker for a first extraction */
+            assertEquals(3, log.size());
+            
+            log.replace(1, Arrays.asList(opinion(health, "santé", "excellent", Polarity.POSITIVE, 1, 0)));
+            assertEquals(5, log.size());
+            assertEquals(1, log.ofArticle(1).size());
+            
+            log.supersede(2, 0);
+            log.append(opinion(school, "élève", "mauvais", Polarity.NEGATIVE, 2, 1));
+        }
+        
+        try (OpinionLog log = new OpinionLog(dir, 3)) {
+            assertEquals(7, log.size());
+            
+            final List<OpinionLog.Entry> ofFirst = log.ofArticle(1);
+            assertEquals(1, ofFirst.size());
+            assertEquals(opinion(health, "santé", "excellent", Polarity.POSITIVE, 1, 0), log.opinion(ofFirst.get(0)));
+            
+            final List<OpinionLog.Entry> ofSecond = log.ofArticle(2);
+            assertEquals(1, ofSecond.size());
+            assertEquals(1, ofSecond.get(0).sentenceIndex());
+            
+            final List<OpinionLog.Entry> markers = new ArrayList<>();
+            log.scan(e -> {
+                if (e.isMarker()) {
+                    markers.add(e);
+                }
+            });
+            assertEquals(2, markers.size());
+            assertEquals(OpinionLog.ALL_SENTENCES, markers.get(0).sentenceIndex());
+        }
+    }
+    
+    @Test
+    public void testReplacedSentenceKeepsTheOthers() throws IOException {
+        try (OpinionLog log = new OpinionLog(folder.getRoot().getPath(), 4)) {
+            log.appendAll(Arrays.asList(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0),
+                    opinion(health, "hôpital", "sale", Polarity.NEGATIVE, 1, 1),
+                    opinion(school, "école", "bon", Polarity.POSITIVE, 1, 1)));
+            
+            log.replace(1, 1, Arrays.asList(opinion(school, "école", "mauvais", Polarity.NEGATIVE, 1, 1)));
+            log.replace(1, 2, Arrays.asList(opinion(school, "élève", "bon", Polarity.POSITIVE, 1, 2)));
+            
+            final List<Opinion> current = new ArrayList<>();
+            for (OpinionLog.Entry entry : log.ofArticle(1)) {
+                current.add(log.opinion(entry));
+            }
+            assertEquals(Arrays.asList(opinion(health, "santé", "bon", Polarity.POSITIVE, 1, 0),
+                    opinion(school, "école", "mauvais", Polarity.NEGATIVE, 1, 1),
+                    opinion(school, "élève", "bon", Polarity.POSITIVE, 1, 2)), current);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceRejectsOpinionsOfAnotherArticle() throws IOException {
+        try (OpinionLog log = new OpinionLog(folder.getRoot().getPath(), 3)) {
+            log.replace(1, Arrays.asList(opinion(health, "santé", "bon", Polarity.POSITIVE, 2, 0)));
+        }
+    }
+    
+    private static Opinion opinion(Topic topic, String topicWord, String polarWord, Polarity polarity,
+            int articleId, int sentenceIndex) {
+        return new Opinion(topic, new Word(topicWord, 1, "NC"), new Word(polarWord, 2, "ADJ"), polarity)
+                .inArticle(articleId, sentenceIndex);
+    }
+    
+}
@@ -0,0 +1,94 @@
+package ch.epfl.lia.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ParsedArticleStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testLatestRecordWins() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 256)) {
+            for (int id = 1; id <= 5; id++) {
+                store.put(article(id, "v1"));
+            }
+            store.put(article(2, "v2"));
+            store.remove(3);
+        }
+        
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 256)) {
+            assertEquals(4, store.size());
+            assertEquals("v2", store.get(2).title());
+            assertEquals("v1", store.get(4).title());
+            assertNull(store.get(3));
+        }
+    }
+    
+    @Test
+    public void testPartialRecordIsTruncated() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 1 << 20)) {
+            store.put(article(1, "v1"));
+        }
+        
+        /* A record header announcing more bytes than were written */
+        final File segment = folder.getRoot().listFiles()[0];
+        final long size = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[] {0, 0, 0, 100, 0, 0, 0, 2, 1, 2, 3});
+        }
+        
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 1 << 20)) {
+            assertEquals(size, segment.length());
+            assertEquals(1, store.size());
+            store.put(article(2, "v1"));
+            assertEquals("v1", store.get(2).title());
+        }
+    }
+    
+    @Test
+    public void testCompaction() throws IOException {
+        final String dir = folder.getRoot().getPath();
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 256)) {
+            for (int round = 1; round <= 3; round++) {
+                for (int id = 1; id <= 4; id++) {
+                    store.put(article(id, "v" + round));
+                }
+            }
+            
+            store.compact();
+            assertEquals(0, store.garbageRatio(), 1e-9);
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4)), store.ids());
+        }
+        
+        try (ParsedArticleStore store = new ParsedArticleStore(dir, 256)) {
+            assertEquals("v3", store.get(1).title());
+            assertEquals(0, store.garbageRatio(), 1e-9);
+        }
+    }
+    
+    private static Article article(int id, String title) {
+        return new Article(id, Language.FRENCH, null, null, title, "contenu " + id, new Timestamp(0), null);
+    }
+    
+}
@@ -0,0 +1,101 @@
+package ch.epfl.lia.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class WordIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testInflectionsAcrossArticles() throws IOException {
+        final WordIndex index = WordIndex.load(folder.getRoot().getPath() + "/words.idx", Language.FRENCH);
+        index.add(article(7, sentence("le", "traitement", "est", "efficace"), sentence("il", "coûte", "cher")));
+        index.add(article(3, sentence("rien"), sentence("les", "traitements", "sont", "Efficaces")));
+        
+        final SortedMap<Integer, SortedSet<Integer>> actual = index.sentencesWith(Arrays.asList("efficace"));
+        assertEquals(Arrays.asList(3, 7), new ArrayList<>(actual.keySet()));
+        assertEquals(new TreeSet<>(Arrays.asList(1)), actual.get(3));
+        assertEquals(new TreeSet<>(Arrays.asList(0)), actual.get(7));
+        assertTrue(index.sentencesWith(Arrays.asList("inconnu")).isEmpty());
+    }
+    
+    @Test
+    public void testReloadOutOfOrder() throws IOException {
+        final String location = folder.getRoot().getPath() + "/words.idx";
+        final WordIndex index = WordIndex.load(location, Language.FRENCH);
+        index.add(article(1000, sentence("bon"), sentence("très", "bon"), sentence("mauvais")));
+        index.add(article(2, sentence("bon", "bon")));
+        index.add(article(2, sentence("bon", "bon")));
+        index.save();
+        
+        final WordIndex reloaded = WordIndex.load(location, Language.FRENCH);
+        assertTrue(reloaded.isIndexed(1000));
+        assertFalse(reloaded.isIndexed(3));
+        final SortedMap<Integer, SortedSet<Integer>> actual = reloaded.sentencesWith(Arrays.asList("bon"));
+        assertEquals(new TreeSet<>(Arrays.asList(0)), actual.get(2));
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1)), actual.get(1000));
+        assertEquals(index.toString(), reloaded.toString());
+    }
+    
+    @Test
+    public void testOutOfOrderArticlesAreMerged() throws IOException {
+        final String location = folder.getRoot().getPath();
+        final WordIndex inOrder = WordIndex.load(location + "/in-order.idx", Language.FRENCH);
+        final WordIndex outOfOrder = WordIndex.load(location + "/out-of-order.idx", Language.FRENCH);
+        final List<ParsedArticle> articles = new ArrayList<>();
+        for (int id = 0; id < 50; id++) {
+            articles.add(article(id, sentence("bon", "prix"), sentence("le", "prix", "est", "bon"),
+                    sentence(id % 2 == 0 ? "pair" : "impair")));
+        }
+        
+        for (ParsedArticle article : articles) {
+            inOrder.add(article);
+        }
+        for (int i = articles.size() - 1; i >= 0; i--) {
+            outOfOrder.add(articles.get(i));
+        }
+        outOfOrder.add(articles.get(10));
+        
+        assertEquals(inOrder.toString(), outOfOrder.toString());
+        final SortedMap<Integer, SortedSet<Integer>> actual = outOfOrder.sentencesWith(Arrays.asList("pair"));
+        assertEquals(25, actual.size());
+        assertEquals(new TreeSet<>(Arrays.asList(2)), actual.get(48));
+        assertEquals(inOrder.sentencesWith(Arrays.asList("prix")), outOfOrder.sentencesWith(Arrays.asList("prix")));
+    }
+    
+    private static ParsedArticle article(int id, ParsedSentence... sentences) {
+        return new ParsedArticle(id, Arrays.asList(sentences), Arrays.asList("nom"));
+    }
+    
+    private static ParsedSentence sentence(String... values) {
+        final List<Word> words = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            words.add(new Word(values[i], i + 1, "NC"));
+        }
+        return new ParsedSentence(words, new ArrayList<>());
+    }
+    
+}
@@ -0,0 +1,86 @@
+package ch.epfl.lia.topic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class GibbsTopicModelTest {
+
+    private static final List<String> HEALTH = Arrays.asList("santé", "médecin", "hôpital", "traitement");
+    private static final List<String> SCHOOL = Arrays.asList("école", "élève", "professeur", "classe");
+    
+    @Test
+    public void testSeededTrainingIsDeterministic() throws TopicExtractionException {
+        final NounCorpus corpus = corpus();
+        final GibbsTopicModel first = new GibbsTopicModel(2, 1, 0.01, 2, 7);
+        final GibbsTopicModel second = new GibbsTopicModel(2, 1, 0.01, 2, 7);
+        first.train(corpus, 50, 10, 20);
+        second.train(corpus, 50, 10, 20);
+        
+        assertEquals(first.likelihoods(), second.likelihoods());
+        assertEquals(first.topics(4).toString(), second.topics(4).toString());
+        assertTrue(Arrays.equals(first.documentTopics(3), second.documentTopics(3)));
+    }
+    
+    @Test
+    public void testLikelihoodImprovesAndTopicsSeparate() throws TopicExtractionException {
+        final GibbsTopicModel model = new GibbsTopicModel(2, 1, 0.01, 2, 7);
+        model.train(corpus(), 100, 10, 50);
+        
+        final List<Double> likelihoods = model.likelihoods();
+        assertEquals(10, likelihoods.size());
+        assertTrue(likelihoods.get(likelihoods.size() - 1) > likelihoods.get(0));
+        assertEquals(model.logLikelihood() / corpus().tokenCount(), likelihoods.get(likelihoods.size() - 1), 1e-9);
+        
+        /* Each topic gathers the words of a single theme */
+        final List<Topic> topics = model.topics(4);
+        assertEquals(2, topics.size());
+        for (Topic topic : topics) {
+            final Set<String> keys = new HashSet<>(topic.keys());
+            assertTrue(topic.toString(), keys.equals(new HashSet<>(HEALTH)) || keys.equals(new HashSet<>(SCHOOL)));
+        }
+        
+        double sum = 0;
+        for (double p : model.documentTopics(0)) {
+            sum += p;
+        }
+        assertEquals(1, sum, 1e-9);
+    }
+    
+    /**
+     * @return 20 documents of 30 nouns, drawn from either theme
+     */
+    private static NounCorpus corpus() {
+        final NounCorpus corpus = new NounCorpus(Language.FRENCH, new HashSet<>());
+        final Random random = new Random(42);
+        for (int d = 0; d < 20; d++) {
+            final List<String> theme = d % 2 == 0 ? HEALTH : SCHOOL;
+            final List<String> nouns = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                nouns.add(theme.get(random.nextInt(theme.size())));
+            }
+            final ParsedSentence sentence = new ParsedSentence(Arrays.asList(new Word(nouns.get(0), 1, "NC")),
+                    new ArrayList<>());
+            corpus.add(new ParsedArticle(d, Arrays.asList(sentence), nouns));
+        }
+        return corpus;
+    }
+    
+}
@@ -0,0 +1,78 @@
+package ch.epfl.lia.topic;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class RetrainPolicyTest {
+
+    @Test
+    public void testFreshModelIsKept() throws TopicExtractionException {
+        final TopicModel model = TopicInferencerTest.model();
+        
+        assertNull(new RetrainPolicy.Builder().build().reason(model));
+        assertNull(new RetrainPolicy.Builder().maxAgeDays(1).maxNewArticles(0).build().reason(model));
+    }
+    
+    @Test
+    public void testTooManyNewArticles() throws TopicExtractionException {
+        final TopicModel model = TopicInferencerTest.model();
+        infer(model, 3, "médecin", "santé");
+        
+        assertNull(new RetrainPolicy.Builder().maxNewArticles(3).build().reason(model));
+        assertTrue(new RetrainPolicy.Builder().maxNewArticles(2).build().shouldRetrain(model));
+        
+        /* The same articles again do not count as new ones */
+        infer(model, 3, "école", "classe");
+        assertNull(new RetrainPolicy.Builder().maxNewArticles(3).build().reason(model));
+    }
+    
+    @Test
+    public void testUnknownWordsNeedASample() throws TopicExtractionException {
+        final TopicModel model = TopicInferencerTest.model();
+        infer(model, 2, "vélo", "voiture", "médecin");
+        
+        final RetrainPolicy.Builder builder = new RetrainPolicy.Builder().maxUnknownRate(0.5);
+        assertNull(builder.minDriftSample(3).build().reason(model));
+        assertTrue(builder.minDriftSample(2).build().reason(model).startsWith("too many unknown words"));
+    }
+    
+    @Test
+    public void testLikelihoodDrop() throws TopicExtractionException {
+        final TopicModel model = TopicInferencerTest.model();
+        /* Articles mixing both themes are less likely than the training ones */
+        infer(model, 2, "médecin", "école", "santé", "classe");
+        
+        final double drop = model.baselineLikelihood() - model.monitor().likelihoodPerToken();
+        assertTrue(drop > 0);
+        final RetrainPolicy.Builder builder = new RetrainPolicy.Builder().minDriftSample(1);
+        assertNull(builder.maxLikelihoodDrop(drop + 0.01).build().reason(model));
+        assertTrue(builder.maxLikelihoodDrop(drop / 2).build().reason(model).startsWith("likelihood dropped"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        new RetrainPolicy.Builder().maxUnknownRate(-0.1);
+    }
+    
+    private static void infer(TopicModel model, int articles, String... nouns) {
+        final TopicInferencer inferencer = new TopicInferencer(model, 50, 10, 3);
+        for (int id = 0; id < articles; id++) {
+            final ParsedSentence sentence = new ParsedSentence(Arrays.asList(new Word(nouns[0], 1, "NC")),
+                    new ArrayList<>());
+            inferencer.infer(new ParsedArticle(id, Arrays.asList(sentence), Arrays.asList(nouns)));
+        }
+    }
+    
+}
@@ -0,0 +1,100 @@
+package ch.epfl.lia.topic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class TopicInferencerTest {
+
+    private static final List<String> HEALTH = Arrays.asList("santé", "médecin", "hôpital", "traitement");
+    private static final List<String> SCHOOL = Arrays.asList("école", "élève", "professeur", "classe");
+    
+    @Test
+    public void testInfersTheTopicOfTheTheme() throws TopicExtractionException {
+        final TopicModel model = model();
+        final TopicInferencer inferencer = new TopicInferencer(model, 50, 10, 3);
+        
+        final int health = inferencer.infer(article(100, "médecin", "hôpital", "santé", "médecin")).mainTopic();
+        final int school = inferencer.infer(article(101, "école", "professeur", "classe", "élève")).mainTopic();
+        assertTrue(health != school);
+        
+        final TopicInferencer.Inference inference = inferencer.infer(article(102, "hôpital", "traitement"));
+        assertEquals(health, inference.mainTopic());
+        double sum = 0;
+        for (double p : inference.distribution()) {
+            sum += p;
+        }
+        assertEquals(1, sum, 1e-9);
+    }
+    
+    @Test
+    public void testSeededInferenceIsDeterministic() throws TopicExtractionException {
+        final TopicModel model = model();
+        final ParsedArticle article = article(100, "médecin", "école", "santé", "classe");
+        
+        assertTrue(Arrays.equals(new TopicInferencer(model, 50, 10, 3).infer(article).distribution(),
+                new TopicInferencer(model, 50, 10, 3).infer(article).distribution()));
+    }
+    
+    @Test
+    public void testUnknownWordsAndDriftMonitor() throws TopicExtractionException {
+        final TopicModel model = model();
+        final TopicInferencer inferencer = new TopicInferencer(model, 50, 10, 3);
+        
+        final TopicInferencer.Inference inference = inferencer.infer(article(100, "médecin", "vélo", "voiture"));
+        assertEquals(3, inference.tokenCount());
+        assertEquals(2, inference.unknownCount());
+        assertEquals(1, model.monitor().articleCount());
+        assertEquals(2.0 / 3, model.monitor().unknownRate(), 1e-9);
+        
+        /* An article run again replaces its former inference */
+        inferencer.infer(article(100, "médecin", "santé", "voiture"));
+        assertEquals(1, model.monitor().articleCount());
+        assertEquals(1.0 / 3, model.monitor().unknownRate(), 1e-9);
+        
+        inferencer.infer(article(101, "école", "classe", "élève"));
+        assertEquals(2, model.monitor().articleCount());
+        assertEquals(1.0 / 6, model.monitor().unknownRate(), 1e-9);
+        assertTrue(model.monitor().likelihoodPerToken() < 0);
+    }
+    
+    /**
+     * @return a two-topic model, trained on 20 documents of either theme
+     */
+    static TopicModel model() throws TopicExtractionException {
+        final NounCorpus corpus = new NounCorpus(Language.FRENCH, new HashSet<>());
+        for (int d = 0; d < 20; d++) {
+            final List<String> theme = d % 2 == 0 ? HEALTH : SCHOOL;
+            final List<String> nouns = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                nouns.add(theme.get((d + i) % theme.size()));
+            }
+            corpus.add(article(d, nouns.toArray(new String[0])));
+        }
+        
+        final GibbsTopicModel gibbs = new GibbsTopicModel(2, 1, 0.01, 1, 7);
+        gibbs.train(corpus, 100, 10, 50);
+        return gibbs.freeze(4);
+    }
+    
+    private static ParsedArticle article(int id, String... nouns) {
+        final ParsedSentence sentence = new ParsedSentence(Arrays.asList(new Word(nouns[0], 1, "NC")),
+                new ArrayList<>());
+        return new ParsedArticle(id, Arrays.asList(sentence), Arrays.asList(nouns));
+    }
+    
+}
@@ -0,0 +1,112 @@
+package ch.epfl.lia.topic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Language;
+import ch.epfl.lia.entity.ParsedArticle;
+import ch.epfl.lia.entity.ParsedSentence;
+import ch.epfl.lia.entity.Topic;
+import ch.epfl.lia.nlp.Word;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class TopicModelCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static final ParsedArticle FIRST = article(1, "santé", "médecin");
+    private static final ParsedArticle SECOND = article(2, "école", "classe");
+    
+    @Test
+    public void testFingerprintIsStable() {
+        final String fingerprint = TopicModelCache.fingerprint(corpus(FIRST, SECOND), "gibbs");
+        
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, TopicModelCache.fingerprint(corpus(FIRST, SECOND), "gibbs"));
+        /* The order of the articles does not matter */
+        assertEquals(fingerprint, TopicModelCache.fingerprint(corpus(SECOND, FIRST), "gibbs"));
+    }
+    
+    @Test
+    public void testFingerprintDependsOnEverything() {
+        final String fingerprint = TopicModelCache.fingerprint(corpus(FIRST, SECOND), "gibbs");
+        
+        assertFalse(fingerprint.equals(TopicModelCache.fingerprint(corpus(FIRST, SECOND), "mallet")));
+        assertFalse(fingerprint.equals(TopicModelCache.fingerprint(corpus(FIRST), "gibbs")));
+        assertFalse(fingerprint.equals(TopicModelCache.fingerprint(
+                corpus(FIRST, article(2, "école", "élève")), "gibbs")));
+        assertFalse(fingerprint.equals(TopicModelCache.fingerprint(
+                corpus(FIRST, article(3, "école", "classe")), "gibbs")));
+        
+        final NounCorpus withStopwords = new NounCorpus(Language.FRENCH, new HashSet<>(Arrays.asList("le")));
+        withStopwords.add(FIRST);
+        withStopwords.add(SECOND);
+        assertFalse(fingerprint.equals(TopicModelCache.fingerprint(withStopwords, "gibbs")));
+    }
+    
+    @Test
+    public void testPutGetAndInvalidate() {
+        final TopicModelCache cache = new TopicModelCache(folder.getRoot().getPath() + "/cache");
+        final List<Topic> topics = Arrays.asList(new Topic(0, 0.4, Arrays.asList("santé", "médecin")),
+                new Topic(1, 0.6, Arrays.asList("école")));
+        assertNull(cache.get("abc"));
+        
+        cache.put("abc", topics, null, 2);
+        cache.put("def", Collections.emptyList(), null, 0);
+        final TopicModelCache.Entry entry = cache.get("abc");
+        assertEquals("abc", entry.fingerprint());
+        assertEquals(topics.toString(), entry.topics().toString());
+        assertNull(entry.model());
+        assertEquals(2, entry.articleCount());
+        
+        assertTrue(cache.invalidate("abc"));
+        assertNull(cache.get("abc"));
+        assertFalse(cache.invalidate("abc"));
+        assertEquals(1, cache.invalidateAll());
+        assertNull(cache.get("def"));
+    }
+    
+    @Test
+    public void testForcedRetrainBypassesCache() throws TopicExtractionException {
+        final TopicModelCache cache = new TopicModelCache(folder.getRoot().getPath() + "/cache");
+        final NounCorpus corpus = corpus(FIRST, SECOND);
+        
+        final TopicModel trained = TopicManager.trainModel(corpus, false, cache);
+        assertEquals(trained.trainedAt(), TopicManager.trainModel(corpus, false, cache).trainedAt());
+        
+        final TopicModel retrained = TopicManager.trainModel(corpus, true, cache);
+        assertTrue(retrained.trainedAt() > trained.trainedAt());
+        /* The cache now holds the new model */
+        assertEquals(retrained.trainedAt(), TopicManager.trainModel(corpus, false, cache).trainedAt());
+    }
+    
+    private static NounCorpus corpus(ParsedArticle... articles) {
+        final NounCorpus corpus = new NounCorpus(Language.FRENCH, new HashSet<>());
+        for (ParsedArticle article : articles) {
+            corpus.add(article);
+        }
+        return corpus;
+    }
+    
+    private static ParsedArticle article(int id, String... nouns) {
+        final ParsedSentence sentence = new ParsedSentence(Arrays.asList(new Word(nouns[0], 1, "NC")),
+                new ArrayList<>());
+        return new ParsedArticle(id, Arrays.asList(sentence), Arrays.asList(nouns));
+    }
+    
+}
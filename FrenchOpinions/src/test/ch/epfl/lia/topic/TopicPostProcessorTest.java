@@ -0,0 +1,61 @@
+package ch.epfl.lia.topic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Topic;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class TopicPostProcessorTest {
+
+    private static final Topic HEALTH = new Topic(0, 0.5, Arrays.asList("santé", "hôpital", "médecin", "soin"));
+    private static final Topic CARE = new Topic(1, 0.3, Arrays.asList("santé", "hôpital", "médecin", "patient"));
+    private static final Topic SPORT = new Topic(2, 0.19, Arrays.asList("match", "équipe", "but"));
+    private static final Topic NOISE = new Topic(3, 0.01, Arrays.asList("chose", "fois"));
+    
+    @Test
+    public void testDefaultKeepsEverything() {
+        final List<Topic> topics = new TopicPostProcessor.Builder().build()
+                .process(Arrays.asList(HEALTH, CARE, SPORT, NOISE));
+        
+        assertEquals(4, topics.size());
+    }
+    
+    @Test
+    public void testPruning() {
+        final TopicPostProcessor processor = new TopicPostProcessor.Builder().minShare(0.05).build();
+        final List<Topic> topics = processor.process(Arrays.asList(HEALTH, CARE, SPORT, NOISE));
+        
+        assertEquals(Arrays.asList(HEALTH, CARE, SPORT), topics);
+        assertEquals(1, processor.lastReport().prunedCount());
+    }
+    
+    @Test
+    public void testMerging() {
+        final TopicPostProcessor processor = new TopicPostProcessor.Builder().mergeOverlap(0.5).build();
+        final List<Topic> topics = processor.process(Arrays.asList(CARE, SPORT, HEALTH));
+        
+        assertEquals(2, topics.size());
+        assertEquals(0, topics.get(0).lineId());
+        assertEquals(0.8, topics.get(0).proportion(), 1e-9);
+        assertEquals(Arrays.asList("santé", "hôpital", "médecin", "soin", "patient"), topics.get(0).keys());
+        assertEquals(1, processor.lastReport().mergedCount());
+    }
+    
+    @Test
+    public void testCapping() {
+        final TopicPostProcessor processor = new TopicPostProcessor.Builder().maxKeys(2).build();
+        final List<Topic> topics = processor.process(Arrays.asList(HEALTH, SPORT));
+        
+        assertEquals(Arrays.asList("santé", "hôpital"), topics.get(0).keys());
+        assertEquals(Arrays.asList("match", "équipe"), topics.get(1).keys());
+        assertEquals(4, processor.lastReport().finalKeyCount());
+    }
+    
+}
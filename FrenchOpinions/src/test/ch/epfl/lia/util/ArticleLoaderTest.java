@@ -0,0 +1,99 @@
+package ch.epfl.lia.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ArticleLoaderTest {
+
+    @Test
+    public void testArticlesAreConsumedInOrderOnce() throws IOException {
+        final ArticleLoader loader = new ArticleLoader(3, 4, id -> id % 5 == 0 ? null : article(id));
+        final List<Integer> consumed = new ArrayList<>();
+        final List<Integer> nulls = new ArrayList<>();
+        
+        final ArticleLoader.Result result = loader.load(Arrays.asList(3, 1, 5, 3, 2, 10, 4), (id, article) -> {
+            consumed.add(id);
+            if (article == null) {
+                nulls.add(id);
+            } else {
+                assertEquals(id, article.id());
+            }
+        });
+        
+        assertEquals(Arrays.asList(3, 1, 5, 2, 10, 4), consumed);
+        assertEquals(Arrays.asList(5, 10), nulls);
+        assertEquals(Arrays.asList(5, 10), result.missing());
+        assertEquals(4, result.loaded());
+    }
+    
+    @Test
+    public void testFailedLoadIsMissing() throws IOException {
+        final ArticleLoader loader = new ArticleLoader(2, 2, id -> {
+            if (id == 2) {
+                throw new IllegalStateException("corrupted article " + id);
+            }
+            return article(id);
+        });
+        
+        final List<Article> articles = new ArrayList<>();
+        final ArticleLoader.Result result = loader.load(ArticleLoader.range(1, 3), (id, article) -> {
+            if (id == 2) {
+                assertNull(article);
+            } else {
+                articles.add(article);
+            }
+        });
+        assertEquals(2, articles.size());
+        assertEquals(Arrays.asList(2), result.missing());
+    }
+    
+    @Test
+    public void testPrefetchBoundsTheLoadedArticles() throws IOException {
+        final int prefetch = 5;
+        final AtomicInteger unconsumed = new AtomicInteger();
+        final AtomicInteger maxUnconsumed = new AtomicInteger();
+        final ArticleLoader loader = new ArticleLoader(4, prefetch, id -> {
+            maxUnconsumed.accumulateAndGet(unconsumed.incrementAndGet(), Math::max);
+            return article(id);
+        });
+        
+        /* A slow consumer lets the loading threads run ahead, up to the window */
+        loader.load(ArticleLoader.range(1, 200), (id, article) -> {
+            unconsumed.decrementAndGet();
+            Thread.yield();
+        });
+        
+        assertEquals(0, unconsumed.get());
+        assertTrue(maxUnconsumed.get() <= prefetch);
+    }
+    
+    @Test(expected = IOException.class)
+    public void testConsumerFailureStopsTheLoading() throws IOException {
+        new ArticleLoader(2, 4, ArticleLoaderTest::article).load(ArticleLoader.range(1, 100), (id, article) -> {
+            if (id == 10) {
+                throw new IOException("disk full");
+            }
+        });
+    }
+    
+    private static Article article(int id) {
+        return new Article(id, Language.FRENCH, null, null, "titre", "contenu", new Timestamp(0), null);
+    }
+    
+}
@@ -0,0 +1,198 @@
+package ch.epfl.lia.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ArticleWriterTest {
+
+    @Test
+    public void testFlushWaitsForSubmittedArticles() throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        final ArticleWriter writer = new ArticleWriter(4, 2, sink);
+        for (int id = 1; id <= 10; id++) {
+            writer.submit(article(id));
+        }
+        
+        writer.flush();
+        assertEquals(10, sink.saved().size());
+        assertEquals(10, writer.written());
+        assertEquals(0, writer.failures());
+        assertTrue(sink.forces() >= 5);
+        writer.close();
+    }
+    
+    @Test
+    public void testFailedArticleIsReportedOnce() throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        sink.failOn(2);
+        sink.failOn(4);
+        final ArticleWriter writer = new ArticleWriter(8, 8, sink);
+        for (int id = 1; id <= 5; id++) {
+            writer.submit(article(id));
+        }
+        
+        try {
+            writer.flush();
+            fail("the failures should be reported");
+        } catch (ArticleWriter.SaveFailedException e) {
+            assertEquals(new HashSet<>(Arrays.asList(2, 4)), e.articleIds());
+        }
+        assertEquals(Arrays.asList(1, 3, 5), sink.saved());
+        assertEquals(2, writer.failures());
+        
+        /* Reported, and the thread goes on */
+        writer.submit(article(6));
+        writer.flush();
+        writer.close();
+    }
+    
+    @Test
+    public void testFailedForceLosesTheBatch() throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        sink.failForce = true;
+        final ArticleWriter writer = new ArticleWriter(8, 8, sink);
+        writer.submit(article(1));
+        writer.submit(article(2));
+        
+        try {
+            writer.close();
+            fail("the failures should be reported");
+        } catch (ArticleWriter.SaveFailedException e) {
+            assertEquals(2, e.articleIds().size());
+        }
+    }
+    
+    @Test
+    public void testSubmitBlocksWhenTheQueueIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingSink sink = new RecordingSink(release);
+        final ArticleWriter writer = new ArticleWriter(1, 1, sink);
+        
+        /* The first one is being saved, the second one waits in the queue */
+        writer.submit(article(1));
+        sink.saving.await();
+        writer.submit(article(2));
+        
+        final Thread submitter = new Thread(() -> {
+            try {
+                writer.submit(article(3));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        submitter.start();
+        while (submitter.getState() != Thread.State.WAITING) {
+            assertTrue(submitter.isAlive());
+            Thread.sleep(1);
+        }
+        assertEquals(0, writer.written());
+        
+        release.countDown();
+        submitter.join();
+        writer.flush();
+        assertEquals(Arrays.asList(1, 2, 3), sink.saved());
+        writer.close();
+    }
+    
+    @Test
+    public void testCloseSavesWaitingArticles() throws IOException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingSink sink = new RecordingSink(release);
+        final ArticleWriter writer = new ArticleWriter(8, 2, sink);
+        for (int id = 1; id <= 5; id++) {
+            writer.submit(article(id));
+        }
+        
+        release.countDown();
+        writer.close();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), sink.saved());
+        
+        /* Closing again does nothing */
+        writer.close();
+        try {
+            writer.submit(article(6));
+            fail("a closed writer should not accept articles");
+        } catch (IllegalStateException e) {
+            /* Expected */
+        }
+    }
+    
+    private static Article article(int id) {
+        return new Article(id, Language.FRENCH, null, null, "titre", "contenu", new Timestamp(0), null);
+    }
+    
+    /**
+     * Records the saved ids, failing for the chosen ones
+     */
+    private static final class RecordingSink implements ArticleWriter.Sink {
+    
+        private final CountDownLatch release;
+        private final CountDownLatch saving = new CountDownLatch(1);
+        private final Set<Integer> failing = new HashSet<>();
+        private final List<Integer> saved = Collections.synchronizedList(new ArrayList<>());
+        private volatile int forces = 0;
+        private volatile boolean failForce = false;
+        
+        RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+        
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+        
+        void failOn(int id) {
+            failing.add(id);
+        }
+        
+        List<Integer> saved() {
+            return new ArrayList<>(saved);
+        }
+        
+        int forces() {
+            return forces;
+        }
+        
+        @Override
+        public void save(Article article) throws IOException {
+            saving.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (failing.contains(article.id())) {
+                throw new IOException("no room left for article " + article.id());
+            }
+            saved.add(article.id());
+        }
+        
+        @Override
+        public void force() throws IOException {
+            forces++;
+            if (failForce) {
+                throw new IOException("could not force");
+            }
+        }
+    }
+    
+}
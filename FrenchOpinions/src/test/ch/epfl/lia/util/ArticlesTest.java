@@ -0,0 +1,21 @@
+package ch.epfl.lia.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class ArticlesTest {
+
+    @Test
+    public void testLineBreaksAsIfReadLineByLine() {
+        assertEquals("", Articles.normalizeLineBreaks(""));
+        assertEquals("un\n", Articles.normalizeLineBreaks("un"));
+        assertEquals("un\ndeux\n", Articles.normalizeLineBreaks("un\ndeux\n"));
+        assertEquals("un\n\ndeux\n", Articles.normalizeLineBreaks("un\r\n\r\ndeux"));
+        assertEquals("un\ndeux\n", Articles.normalizeLineBreaks("un\rdeux\r"));
+    }
+    
+}
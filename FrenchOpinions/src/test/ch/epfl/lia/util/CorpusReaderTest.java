@@ -0,0 +1,109 @@
+package ch.epfl.lia.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.epfl.lia.entity.Article;
+import ch.epfl.lia.entity.Language;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class CorpusReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testRecordsAndMalformedOnes() throws IOException {
+        final File corpus = corpus("{\"id\": 1, \"title\": \"Santé\", \"contents\": \"Le traitement\\nest efficace.\","
+                + " \"creationDate\": \"2016-03-01\", \"tags\": [\"a\", {\"b\": null}], \"language\": \"fr\"}\n"
+                + "\n"
+                + "{\"id\": 2, \"title\": \"sans contenu\"}\n"
+                + "{\"id\": 3, \"contents\": \"\\u00e9t\\u00e9\", \"creationDate\": 1456790400000}");
+        
+        try (CorpusReader reader = new CorpusReader(corpus.getPath(), 0, Language.FRENCH, 16, 1024)) {
+            final Article first = reader.next();
+            assertEquals(1, first.id());
+            assertEquals("Santé", first.title());
+            assertEquals("Le traitement\nest efficace.\n", first.contents());
+            assertEquals(Language.FRENCH, first.language());
+            
+            final Article third = reader.next();
+            assertEquals(3, third.id());
+            assertEquals("N/A", third.title());
+            assertEquals("été\n", third.contents());
+            assertEquals(1456790400000L, third.creationDate().getTime());
+            
+            assertNull(reader.next());
+            assertEquals(2, reader.recordCount());
+            assertEquals(1, reader.malformedCount());
+            assertEquals(corpus.length(), reader.offset());
+        }
+    }
+    
+    @Test
+    public void testResumeAtOffset() throws IOException {
+        final File corpus = corpus("{\"id\": 1, \"contents\": \"un\"}\n{\"id\": 2, \"contents\": \"deux\"}\n"
+                + "{\"id\": 3, \"contents\": \"trois\"}\n");
+        
+        final long offset;
+        try (CorpusReader reader = new CorpusReader(corpus.getPath(), 0, Language.FRENCH, 8, 64)) {
+            reader.next();
+            offset = reader.offset();
+        }
+        
+        try (CorpusReader reader = new CorpusReader(corpus.getPath(), offset, Language.FRENCH, 8, 64)) {
+            assertEquals(2, reader.next().id());
+            assertEquals(3, reader.next().id());
+            assertNull(reader.next());
+        }
+    }
+    
+    @Test
+    public void testRecordTooLargeIsSkipped() throws IOException {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            large.append("beaucoup trop long ");
+        }
+        final File corpus = corpus("{\"id\": 1, \"contents\": \"un\"}\n{\"id\": 2, \"contents\": \"" + large
+                + "\"}\n{\"id\": 3, \"contents\": \"trois\"}\n{\"id\": 4, \"contents\": \"" + large + "\"}");
+        
+        try (CorpusReader reader = new CorpusReader(corpus.getPath(), 0, Language.FRENCH, 8, 64)) {
+            assertEquals(1, reader.next().id());
+            final long offset = reader.offset();
+            assertEquals(3, reader.next().id());
+            assertNull(reader.next());
+            assertEquals(2, reader.recordCount());
+            assertEquals(2, reader.malformedCount());
+            assertEquals(corpus.length(), reader.offset());
+            
+            /* Resuming after the skipped record */
+            try (CorpusReader resumed = new CorpusReader(corpus.getPath(), offset, Language.FRENCH, 8, 64)) {
+                assertEquals(3, resumed.next().id());
+            }
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testOffsetWithinRecord() throws IOException {
+        final File corpus = corpus("{\"id\": 1, \"contents\": \"un\"}\n");
+        new CorpusReader(corpus.getPath(), 3, Language.FRENCH, 8, 64).close();
+    }
+    
+    private File corpus(String contents) throws IOException {
+        final File file = folder.newFile("corpus.jsonl");
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+}
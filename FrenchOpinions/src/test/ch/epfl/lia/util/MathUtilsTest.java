@@ -0,0 +1,54 @@
+package ch.epfl.lia.util;
+
+import static ch.epfl.lia.util.MathUtils.digamma;
+import static ch.epfl.lia.util.MathUtils.logGamma;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Cyriaque Brousse
+ */
+public class MathUtilsTest {
+
+    private static final double EPSILON = 1e-9;
+    
+    /** Euler-Mascheroni constant */
+    private static final double GAMMA = 0.5772156649015329;
+    
+    @Test
+    public void testLogGammaOfIntegers() {
+        assertEquals(0, logGamma(1), EPSILON);
+        assertEquals(0, logGamma(2), EPSILON);
+        assertEquals(Math.log(24), logGamma(5), EPSILON);
+        assertEquals(Math.log(3628800), logGamma(11), EPSILON);
+    }
+    
+    @Test
+    public void testLogGammaOfSmallValues() {
+        assertEquals(0.5 * Math.log(Math.PI), logGamma(0.5), EPSILON);
+        /* Gamma(x + 1) = x Gamma(x), through the reflection formula */
+        assertEquals(logGamma(1.1) - Math.log(0.1), logGamma(0.1), EPSILON);
+    }
+    
+    @Test
+    public void testDigamma() {
+        assertEquals(-GAMMA, digamma(1), EPSILON);
+        assertEquals(-GAMMA - 2 * Math.log(2), digamma(0.5), EPSILON);
+        /* digamma(x + 1) = digamma(x) + 1 / x */
+        for (double x : new double[] {0.01, 0.3, 2.5, 7, 40}) {
+            assertEquals(digamma(x) + 1 / x, digamma(x + 1), EPSILON);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testLogGammaOfZero() {
+        logGamma(0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testDigammaOfNegative() {
+        digamma(-1);
+    }
+    
+}